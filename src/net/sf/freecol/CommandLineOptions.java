@@ -298,6 +298,10 @@ public class CommandLineOptions
         options.addOption(OptionBuilder.create());
 		
 		// Ordinary options, handled here.
+        OptionBuilder.withLongOpt("binary-saves");
+		OptionBuilder.withDescription(Messages.message("cli.binary-saves"));
+		options.addOption(OptionBuilder.create());
+		
         OptionBuilder.withLongOpt("check-savegame");
 		OptionBuilder.withDescription(Messages.message("cli.check-savegame"));
 		OptionBuilder.withArgName(Messages.message("cli.arg.file"));
@@ -365,6 +369,10 @@ public class CommandLineOptions
 		OptionBuilder.withDescription(Messages.message("cli.headless"));
 		options.addOption(OptionBuilder.create());
 		
+        OptionBuilder.withLongOpt("journal");
+		OptionBuilder.withDescription(Messages.message("cli.journal"));
+		options.addOption(OptionBuilder.create());
+		
         OptionBuilder.withLongOpt("load-savegame");
 		OptionBuilder.withDescription(Messages.message("cli.load-savegame"));
 		OptionBuilder.withArgName(Messages.message("cli.arg.file"));
@@ -654,6 +662,11 @@ public class CommandLineOptions
      */
     private static void saveGameOptions(CommandLine line)
     {
+        if (line.hasOption("binary-saves"))
+        {
+            Shared.binarySaves = true;
+        }
+        
         if (line.hasOption("check-savegame"))
         {
             String arg = line.getOptionValue("check-savegame");
@@ -666,6 +679,11 @@ public class CommandLineOptions
             Shared.standAloneServer = true;
         }
         
+        if (line.hasOption("journal"))
+        {
+            Shared.journal = true;
+        }
+
         if (line.hasOption("load-savegame"))
         {
             String arg = line.getOptionValue("load-savegame");
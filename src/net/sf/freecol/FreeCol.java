@@ -25,7 +25,12 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URL;
 import java.net.JarURLConnection;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.logging.Handler;
@@ -81,6 +86,10 @@ public final class FreeCol
     /** The locale, either default or command-line specified. */
     private static Locale       locale = null;
 
+    /** Specifications being loaded in the background, by TC identifier. */
+    private static final Map<String, Future<Specification>> specificationPreloads
+        = new HashMap<>();
+
 
     // Cli defaults.
     private static final Advantages ADVANTAGES_DEFAULT = Advantages.SELECTABLE;
@@ -326,6 +335,51 @@ public final class FreeCol
         return null;
     }
 
+    /**
+     * Start loading the specification from a given TC file in the
+     * background.  The next {@link #loadSpecification} of the same TC
+     * uses the result rather than loading it again, so the load can
+     * overlap other startup work.
+     *
+     * @param tcf The <code>FreeColTcFile</code> to load.
+     */
+    public static void preloadSpecification(final FreeColTcFile tcf) {
+        if (tcf == null) return;
+        synchronized (specificationPreloads) {
+            if (specificationPreloads.containsKey(tcf.getId())) return;
+            FutureTask<Specification> task
+                = new FutureTask<>(() -> tcf.getSpecification());
+            specificationPreloads.put(tcf.getId(), task);
+            Thread t = new Thread(task, CLIENT_THREAD + "-Specification "
+                + tcf.getId());
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Take the result of a background load of a TC specification.
+     *
+     * @param tcf The <code>FreeColTcFile</code> to take the
+     *     specification for.
+     * @return The <code>Specification</code>, or null if it was not
+     *     preloaded or the preload failed.
+     */
+    private static Specification takePreloadedSpecification(FreeColTcFile tcf) {
+        Future<Specification> preload;
+        synchronized (specificationPreloads) {
+            preload = specificationPreloads.remove(tcf.getId());
+        }
+        if (preload == null) return null;
+        try {
+            return preload.get();
+        } catch (InterruptedException | ExecutionException e) {
+            Shared.logger.log(Level.WARNING, "Specification preload failed: "
+                + tcf.getId(), e);
+        }
+        return null;
+    }
+
     /**
      * Get the specification from a given TC file.
      *
@@ -339,7 +393,10 @@ public final class FreeCol
                                                   String difficulty) {
         Specification spec = null;
         try {
-            if (tcf != null) spec = tcf.getSpecification();
+            if (tcf != null) {
+                spec = takePreloadedSpecification(tcf);
+                if (spec == null) spec = tcf.getSpecification();
+            }
         } catch (IOException ioe) {
             System.err.println("Spec read failed in " + tcf.getId()
                 + ": " + ioe.getMessage() + "\n");
@@ -594,6 +651,44 @@ public final class FreeCol
         return false;
     }
 
+    /**
+     * Is the server to write saved games in the binary format?
+     *
+     * @return True if binary saves are enabled.
+     */
+    public static boolean getBinarySaves() {
+        return Shared.binarySaves;
+    }
+
+    /**
+     * Sets whether the server is to write saved games in the binary
+     * format.
+     *
+     * @param binarySaves The new binary saves state.
+     */
+    public static void setBinarySaves(boolean binarySaves) {
+        Shared.binarySaves = binarySaves;
+    }
+
+    /**
+     * Is the server to keep a journal of game actions, so that games
+     * can be recovered after a crash?
+     *
+     * @return True if journaling is enabled.
+     */
+    public static boolean getJournal() {
+        return Shared.journal;
+    }
+
+    /**
+     * Sets whether the server is to keep a journal of game actions.
+     *
+     * @param journal The new journaling state.
+     */
+    public static void setJournal(boolean journal) {
+        Shared.journal = journal;
+    }
+
     /**
      * Utility to make a load failure message.
      *
@@ -667,10 +762,11 @@ public final class FreeCol
     private static void startClient(String userMsg)
     {
         Specification spec = null;
+        boolean needSpec = false;
         File savegame = FreeColDirectories.getSavegameFile();
         if (Shared.debugStart)
         {
-            spec = FreeCol.getTCSpecification();
+            needSpec = true;
         }
         
         else if (Shared.fastStart)
@@ -680,15 +776,17 @@ public final class FreeCol
                 // continue last saved game if possible,
                 // otherwise start a new one
                 savegame = FreeColDirectories.getLastSaveGameFile();
-                if (savegame == null)
-                {
-                    spec = FreeCol.getTCSpecification();
-                }
+                needSpec = savegame == null;
             }
             // savegame was specified on command line
         }
+        // Load the specification while the client starts up, for
+        // immediate use when it is needed now, otherwise for the
+        // new game panel.
+        if (needSpec || savegame == null) preloadSpecification(getTCFile());
         final FreeColClient freeColClient
             = new FreeColClient(Shared.splashStream, Shared.fontName, Shared.guiScale, Shared.headless);
+        if (needSpec) spec = FreeCol.getTCSpecification();
         freeColClient.startClient(Shared.windowSize, userMsg, Shared.sound, Shared.introVideo,
                                   savegame, spec);
     }
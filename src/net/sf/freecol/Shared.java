@@ -26,12 +26,14 @@ public class Shared
 	
     // Cli values.  Often set to null so the default can be applied in
     // the accessor function.
-    static boolean checkIntegrity = false,
+    static boolean binarySaves = false,
+                   checkIntegrity = false,
 				   consoleLogging = false,
 	               debugStart = false,
 	               fastStart = false,
 	               headless = false,
 	               introVideo = true,
+	               journal = false,
 	               javaCheck = true,
 	               memoryCheck = true,
 	               publicServer = true,
@@ -326,6 +326,13 @@ public class ClientOptions extends OptionGroup {
     public static final String AUTOSAVE_VALIDITY
         = "model.option.autosaveValidity";
 
+    /**
+     * Option for setting the number of periodic autosaves to keep.
+     * If set to 0, the number is not limited.
+     */
+    public static final String AUTOSAVE_COUNT
+        = "model.option.autosaveCount";
+
     /**
      * Option for deleting autosaves when a new game is started.  If set to
      * true, old autosaves will be deleted if a new game is started.
@@ -803,6 +810,11 @@ public class ClientOptions extends OptionGroup {
                 + " option", e);
         }
         // end @compat 0.11.3
+
+        // @compat 0.11.6
+        addIntegerOption(AUTOSAVE_COUNT,
+            "clientOptions.savegames", 20);
+        // end @compat 0.11.6
     }
 
     private void addBooleanOption(String id, String gr, boolean val) {
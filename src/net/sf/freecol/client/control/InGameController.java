@@ -611,18 +611,39 @@ public final class InGameController implements NetworkConstants {
         File lastTurnFile = new File(autoSaveDir, lastTurnName);
         File beforeLastTurnFile = new File(autoSaveDir, beforeLastTurnName);
         // if "last-turn" file exists, shift it to "before-last-turn" file
-        if (lastTurnFile.exists()) {
-            beforeLastTurnFile.delete();
-            lastTurnFile.renameTo(beforeLastTurnFile);
-        }
-        saveGame(lastTurnFile);
+        autoSaveGame(lastTurnFile, beforeLastTurnFile);
 
-        // conditional save after user-set period
+        // conditional save after user-set period, keeping only the
+        // most recent ones
         int saveGamePeriod = options.getInteger(ClientOptions.AUTOSAVE_PERIOD);
         int turnNumber = game.getTurn().getNumber();
         if (saveGamePeriod >= 1 && turnNumber % saveGamePeriod == 0) {
             String fileName = prefix + "-" + getSaveGameString(game);
-            saveGame(new File(autoSaveDir, fileName));
+            autoSaveGame(new File(autoSaveDir, fileName), null);
+            int count = options.getInteger(ClientOptions.AUTOSAVE_COUNT);
+            if (count > 0) {
+                freeColClient.getFreeColServer().pruneAutosaves(prefix,
+                    count, lastTurnFile, beforeLastTurnFile);
+            }
+        }
+    }
+
+    /**
+     * Autosaves the game to the given file in the background, so as
+     * not to hold up the game.
+     *
+     * @param file The <code>File</code>.
+     * @param previous If not null, move an existing save in the file
+     *     here first.
+     */
+    private void autoSaveGame(File file, File previous) {
+        final FreeColServer server = freeColClient.getFreeColServer();
+        try {
+            server.setActiveUnit(gui.getActiveUnit());
+            server.saveGameInBackground(file, previous,
+                                        freeColClient.getClientOptions());
+        } catch (IOException e) {
+            gui.showErrorMessage(FreeCol.badSave(file));
         }
     }
 
@@ -20,26 +20,141 @@
 package net.sf.freecol.client.gui.panel;
 
 import java.awt.event.ActionEvent;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
 import javax.swing.filechooser.FileFilter;
+import javax.swing.filechooser.FileSystemView;
+
+import net.miginfocom.swing.MigLayout;
 
 import net.sf.freecol.client.FreeColClient;
 import net.sf.freecol.client.gui.ChoiceItem;
 import net.sf.freecol.common.i18n.Messages;
+import net.sf.freecol.common.io.SavegameIndex;
+import net.sf.freecol.common.model.StringTemplate;
+import net.sf.freecol.common.model.Turn;
 
 
 /**
  * A dialog for choosing a file to load.
+ *
+ * In the directories where saved games are indexed, the file list
+ * comes from the index, and the details of the selected saved game
+ * are shown alongside it.
  */
 public final class LoadDialog extends FreeColDialog<File> {
 
+    private static final Logger logger = Logger.getLogger(LoadDialog.class.getName());
+
     /** Fake file for the cancel selection. */
     private static final File cancelFile = new File("");
 
+    /**
+     * A file system view that lists the indexed directories from
+     * their index, so only the saved games found there are listed,
+     * and the index has their details ready to show.
+     */
+    private static final class IndexedFileSystemView extends FileSystemView {
+
+        /** The platform view to delegate to. */
+        private final FileSystemView fsv = FileSystemView.getFileSystemView();
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public File[] getFiles(File dir, boolean useFileHiding) {
+            if (!SavegameIndex.isIndexed(dir.getAbsoluteFile())) {
+                return fsv.getFiles(dir, useFileHiding);
+            }
+            List<SavegameIndex.Entry> entries
+                = SavegameIndex.getIndex(dir).getEntries();
+            File[] files = new File[entries.size()];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = entries.get(i).getFile();
+            }
+            return files;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public File createNewFolder(File containingDir) throws IOException {
+            return fsv.createNewFolder(containingDir);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public File[] getRoots() {
+            return fsv.getRoots();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isRoot(File f) {
+            return fsv.isRoot(f);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public File getHomeDirectory() {
+            return fsv.getHomeDirectory();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public File getDefaultDirectory() {
+            return fsv.getDefaultDirectory();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getSystemDisplayName(File f) {
+            return fsv.getSystemDisplayName(f);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Icon getSystemIcon(File f) {
+            return fsv.getSystemIcon(f);
+        }
+    }
+
+    /** The index of the current directory, if it is indexed. */
+    private SavegameIndex index = null;
+
+    /** The labels showing the details of the selected saved game. */
+    private final JLabel thumbnailLabel = new JLabel(),
+        turnLabel = new JLabel(),
+        playersLabel = new JLabel(),
+        mapSizeLabel = new JLabel();
+
 
     /**
      * Creates a dialog to choose a file to load.
@@ -53,7 +168,8 @@ public final class LoadDialog extends FreeColDialog<File> {
             File directory, FileFilter[] fileFilters) {
         super(freeColClient, frame);
 
-        final JFileChooser fileChooser = new JFileChooser(directory);
+        final JFileChooser fileChooser = new JFileChooser(directory,
+            new IndexedFileSystemView());
         if (fileFilters.length > 0) {
             for (FileFilter fileFilter : fileFilters) {
                 fileChooser.addChoosableFileFilter(fileFilter);
@@ -72,13 +188,80 @@ public final class LoadDialog extends FreeColDialog<File> {
                 File value = (JFileChooser.APPROVE_SELECTION.equals(cmd))
                     ? ((JFileChooser)ae.getSource()).getSelectedFile()
                     : cancelFile;
+                setIndex(null);
                 setValue(value);
             });
 
+        JPanel details = new JPanel(new MigLayout("wrap 1", "[128!]"));
+        details.setOpaque(false);
+        details.add(thumbnailLabel);
+        details.add(turnLabel);
+        details.add(playersLabel);
+        details.add(mapSizeLabel);
+        fileChooser.setAccessory(details);
+        fileChooser.addPropertyChangeListener((PropertyChangeEvent e) -> {
+                switch (e.getPropertyName()) {
+                case JFileChooser.DIRECTORY_CHANGED_PROPERTY:
+                    setIndex((File)e.getNewValue());
+                    break;
+                case JFileChooser.SELECTED_FILE_CHANGED_PROPERTY:
+                    showDetails((File)e.getNewValue());
+                    break;
+                default:
+                    break;
+                }
+            });
+        setIndex(fileChooser.getCurrentDirectory());
+
         List<ChoiceItem<File>> c = choices();
         initializeDialog(frame, DialogType.QUESTION, true, fileChooser, null, c);
     }
 
+    /**
+     * Switch to the index of a new directory, saving any entries
+     * the listing added to the index of the previous one.
+     *
+     * @param directory The new directory, or null if none.
+     */
+    private void setIndex(File directory) {
+        if (index != null) {
+            try {
+                index.save();
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, "Failed to save index for "
+                    + index.getDirectory(), ioe);
+            }
+        }
+        index = (directory != null && SavegameIndex.isIndexed(directory
+                .getAbsoluteFile())) ? SavegameIndex.getIndex(directory)
+            : null;
+        showDetails(null);
+    }
+
+    /**
+     * Show the details of a saved game.
+     *
+     * @param file The saved game <code>File</code>, or null to clear
+     *     the details.
+     */
+    private void showDetails(File file) {
+        SavegameIndex.Entry entry = (index == null || file == null) ? null
+            : index.getEntry(file);
+        BufferedImage image = (entry == null) ? null : entry.getThumbnail();
+        thumbnailLabel.setIcon((image == null) ? null : new ImageIcon(image));
+        turnLabel.setText((entry == null || entry.getTurn() <= 0) ? null
+            : Messages.message(StringTemplate.template("loadDialog.turn")
+                .addStringTemplate("%turn%", Turn.getLabel(entry.getTurn()))));
+        playersLabel.setText((entry == null || entry.getPlayers() == null)
+            ? null
+            : Messages.message(StringTemplate.template("loadDialog.players")
+                .addName("%players%", entry.getPlayers())));
+        mapSizeLabel.setText((entry == null || entry.getWidth() <= 0) ? null
+            : Messages.message(StringTemplate.template("loadDialog.mapSize")
+                .addAmount("%width%", entry.getWidth())
+                .addAmount("%height%", entry.getHeight())));
+    }
+
 
     /**
      * {@inheritDoc}
@@ -46,6 +46,7 @@ import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.model.Direction;
 import net.sf.freecol.common.model.IndianNationType;
 import net.sf.freecol.common.model.LostCityRumour;
+import net.sf.freecol.common.model.Map;
 import net.sf.freecol.common.model.ModelMessage;
 import net.sf.freecol.common.model.Nation;
 import net.sf.freecol.common.model.Player;
@@ -249,8 +250,16 @@ public final class MapEditorTransformPanel extends FreeColPanel {
 
         @Override
         public void transform(Tile t) {
+            final boolean land = t.isLand();
+            final boolean direct = t.isDirectlyHighSeasConnected();
             t.changeType(tileType);
             t.removeLostCityRumour();
+            if (land != t.isLand()
+                || direct != t.isDirectlyHighSeasConnected()) {
+                final Map map = t.getMap();
+                if (land != t.isLand()) map.resetContiguity(t);
+                map.resetHighSeasCount(t);
+            }
         }
     }
 
@@ -27,7 +27,9 @@ import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.List;
 import java.util.Map;
@@ -117,6 +119,24 @@ public class Messages {
      */
     private static final Map<String, Selector> tagMap = new HashMap<>();
 
+    /** The maximum number of resolved template messages to cache. */
+    static final int MESSAGE_CACHE_SIZE = 1024;
+
+    /**
+     * Cache of resolved template messages, keyed by an encoding of
+     * the template and all its replacement values, and evicting the
+     * least recently used entry when full.  Cleared whenever the
+     * message bundle or the choice selectors change.
+     */
+    private static final Map<String, String> messageCache
+        = Collections.synchronizedMap(new LinkedHashMap<String, String>(
+                MESSAGE_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> e) {
+                return size() > MESSAGE_CACHE_SIZE;
+            }
+        });
+
 
     // Message bundle initialization
 
@@ -137,6 +157,7 @@ public class Messages {
      */
     public static void setGrammaticalNumber(Number number) {
         tagMap.put("plural", number);
+        messageCache.clear();
     }
 
     /**
@@ -171,6 +192,7 @@ public class Messages {
      */
     public static void loadMessageBundle(Locale locale) {
         messageBundle.clear(); // Reset the message bundle.
+        messageCache.clear();
 
         if (!Locale.getDefault().equals(locale)) {
             Locale.setDefault(locale);
@@ -227,6 +249,7 @@ public class Messages {
             return; // We have big problems if UTF-8 is not supported.
         }
         BufferedReader in = new BufferedReader(inputReader);
+        messageCache.clear();
 
         String line = null;
         while((line = in.readLine()) != null) {
@@ -702,6 +725,83 @@ public class Messages {
      */
     public static String message(StringTemplate template) {
         if (template == null) return null;
+        // Only full templates are worth caching, the other types
+        // are at most a bundle lookup away from their result.
+        if (template.getTemplateType() != TemplateType.TEMPLATE) {
+            return resolve(template);
+        }
+        StringBuilder sb = new StringBuilder(64);
+        appendCacheKey(sb, template);
+        final String key = sb.toString();
+        String result = messageCache.get(key);
+        if (result == null) {
+            result = resolve(template);
+            messageCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of resolved messages currently cached.
+     *
+     * Package-private for the test suite.
+     *
+     * @return The message cache size.
+     */
+    static int getMessageCacheSize() {
+        return messageCache.size();
+    }
+
+    /**
+     * Append an unambiguous encoding of a template and its
+     * replacements to a cache key.  Every string is length-prefixed
+     * so that values containing separators can not collide.
+     *
+     * @param sb The <code>StringBuilder</code> to append to.
+     * @param template The <code>StringTemplate</code> to encode.
+     */
+    private static void appendCacheKey(StringBuilder sb,
+                                       StringTemplate template) {
+        sb.append(template.getTemplateType().ordinal());
+        appendCacheKey(sb, template.getId());
+        appendCacheKey(sb, template.getDefaultId());
+        switch (template.getTemplateType()) {
+        case TEMPLATE:
+            for (String key : template.getKeys()) appendCacheKey(sb, key);
+            // Fall through
+        case LABEL:
+            List<StringTemplate> replacements = template.getReplacements();
+            sb.append('[').append(replacements.size()).append(':');
+            for (StringTemplate other : replacements) {
+                appendCacheKey(sb, other);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Append a length-prefixed string to a cache key.
+     *
+     * @param sb The <code>StringBuilder</code> to append to.
+     * @param s The string to append, which may be null.
+     */
+    private static void appendCacheKey(StringBuilder sb, String s) {
+        if (s == null) {
+            sb.append('-');
+        } else {
+            sb.append(s.length()).append(':').append(s);
+        }
+    }
+
+    /**
+     * Localize a template without consulting the message cache.
+     *
+     * @param template The <code>StringTemplate</code> to localize.
+     * @return The localized string.
+     */
+    private static String resolve(StringTemplate template) {
         String result = "";
         switch (template.getTemplateType()) {
         case LABEL:
@@ -762,6 +862,8 @@ public class Messages {
      * @return a <code>String</code> value
      */
     private static String replaceChoices(String input, StringTemplate template) {
+        // Most messages have no choice formats at all.
+        if (input.indexOf("{{") < 0) return input;
         int openChoice = 0;
         int closeChoice = 0;
         int highWaterMark = 0;
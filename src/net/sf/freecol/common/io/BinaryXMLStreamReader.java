@@ -0,0 +1,642 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+
+/**
+ * An <code>XMLStreamReader</code> that reads the compact binary
+ * encoding of XML written by {@link BinaryXMLStreamWriter}.
+ *
+ * The reader reports the same events as a standard reader would for
+ * the equivalent XML text, less whitespace, so all the existing
+ * <code>readFromXML</code> routines work unchanged on top of it.
+ */
+public final class BinaryXMLStreamReader implements XMLStreamReader {
+
+    /** The stream to read from. */
+    private final DataInputStream in;
+
+    /** The strings read so far, by number. */
+    private final List<String> strings = new ArrayList<>();
+
+    /** The names of the open elements. */
+    private String[] names = new String[32];
+
+    /** The number of open elements. */
+    private int depth = 0;
+
+    /** The current event type. */
+    private int event = XMLStreamConstants.START_DOCUMENT;
+
+    /** The current element name, for element events. */
+    private String name = null;
+
+    /** The current text, for character and comment events. */
+    private String text = null;
+
+    /** The attribute names and values of the current start element. */
+    private String[] attributes = new String[32];
+
+    /** The number of attributes of the current start element. */
+    private int attributeCount = 0;
+
+
+    /**
+     * Create a new binary XML reader.
+     *
+     * @param inputStream The <code>InputStream</code> to read from.
+     * @exception XMLStreamException if the stream does not start with a
+     *     binary XML header.
+     */
+    public BinaryXMLStreamReader(InputStream inputStream)
+        throws XMLStreamException {
+        this.in = new DataInputStream((inputStream instanceof BufferedInputStream)
+            ? inputStream : new BufferedInputStream(inputStream));
+        try {
+            if (in.readInt() != BinaryXMLStreamWriter.MAGIC) {
+                throw new XMLStreamException("Not a binary XML stream");
+            }
+            int version = in.readUnsignedByte();
+            if (version != BinaryXMLStreamWriter.VERSION) {
+                throw new XMLStreamException("Unsupported binary XML"
+                    + " version: " + version);
+            }
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+
+    /**
+     * Read an unsigned variable length integer.
+     *
+     * @return The value read.
+     * @exception IOException if the read fails.
+     */
+    private int readVarInt() throws IOException {
+        int value = 0, shift = 0, b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Read a literal string.
+     *
+     * @return The string read.
+     * @exception IOException if the read fails.
+     */
+    private String readLiteral() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a string, which is either a reference to a string already
+     * read or a new string.
+     *
+     * @return The string read.
+     * @exception IOException if the read fails.
+     */
+    private String readString() throws IOException {
+        int index = readVarInt();
+        if (index < strings.size()) return strings.get(index);
+        if (index != strings.size()) {
+            throw new IOException("Bad string reference: " + index);
+        }
+        String s = readLiteral().intern();
+        strings.add(s);
+        return s;
+    }
+
+    /**
+     * Read the next start element token.
+     *
+     * @exception IOException if the read fails.
+     */
+    private void readStartElement() throws IOException {
+        name = readString();
+        attributeCount = readVarInt();
+        if (2 * attributeCount > attributes.length) {
+            attributes = new String[4 * attributeCount];
+        }
+        for (int i = 0; i < 2 * attributeCount; i++) {
+            attributes[i] = readString();
+        }
+        if (depth >= names.length) names = Arrays.copyOf(names, 2 * depth);
+        names[depth++] = name;
+        text = null;
+    }
+
+    /**
+     * Check the current event is a start element.
+     *
+     * @exception IllegalStateException if it is not.
+     */
+    private void checkStartElement() {
+        if (event != XMLStreamConstants.START_ELEMENT) {
+            throw new IllegalStateException("Not at a start element");
+        }
+    }
+
+
+    // Implement XMLStreamReader
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() throws XMLStreamException {
+        if (event == XMLStreamConstants.END_DOCUMENT) {
+            throw new IllegalStateException("No more events");
+        }
+        try {
+            int token = in.readUnsignedByte();
+            switch (token) {
+            case BinaryXMLStreamWriter.START_ELEMENT:
+                readStartElement();
+                event = XMLStreamConstants.START_ELEMENT;
+                break;
+            case BinaryXMLStreamWriter.END_ELEMENT:
+                if (depth <= 0) {
+                    throw new XMLStreamException("Unbalanced end element");
+                }
+                name = names[--depth];
+                names[depth] = null;
+                attributeCount = 0;
+                text = null;
+                event = XMLStreamConstants.END_ELEMENT;
+                break;
+            case BinaryXMLStreamWriter.CHARACTERS:
+                text = readLiteral();
+                attributeCount = 0;
+                event = XMLStreamConstants.CHARACTERS;
+                break;
+            case BinaryXMLStreamWriter.COMMENT:
+                text = readLiteral();
+                attributeCount = 0;
+                event = XMLStreamConstants.COMMENT;
+                break;
+            case BinaryXMLStreamWriter.END_DOCUMENT:
+                name = text = null;
+                attributeCount = 0;
+                event = XMLStreamConstants.END_DOCUMENT;
+                break;
+            default:
+                throw new XMLStreamException("Bad token: " + token);
+            }
+        } catch (EOFException eofe) {
+            throw new XMLStreamException("Unexpected end of stream", eofe);
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+        return event;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void require(int type, String namespaceURI, String localName)
+        throws XMLStreamException {
+        if (type != event
+            || (localName != null && !localName.equals(getLocalName()))) {
+            throw new XMLStreamException("Expected " + type + "/" + localName
+                + " but found " + event + "/" + name);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getElementText() throws XMLStreamException {
+        checkStartElement();
+        StringBuilder sb = new StringBuilder();
+        for (;;) {
+            switch (next()) {
+            case XMLStreamConstants.CHARACTERS:
+                sb.append(text);
+                break;
+            case XMLStreamConstants.COMMENT:
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                return sb.toString();
+            default:
+                throw new XMLStreamException("Unexpected element in text");
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int nextTag() throws XMLStreamException {
+        for (;;) {
+            switch (next()) {
+            case XMLStreamConstants.START_ELEMENT:
+            case XMLStreamConstants.END_ELEMENT:
+                return event;
+            case XMLStreamConstants.CHARACTERS:
+                if (!isWhiteSpace()) {
+                    throw new XMLStreamException("Unexpected text: " + text);
+                }
+                break;
+            case XMLStreamConstants.COMMENT:
+                break;
+            default:
+                throw new XMLStreamException("Expected a tag, found " + event);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        return event != XMLStreamConstants.END_DOCUMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws XMLStreamException {
+        try {
+            in.close();
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI(String prefix) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStartElement() {
+        return event == XMLStreamConstants.START_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEndElement() {
+        return event == XMLStreamConstants.END_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCharacters() {
+        return event == XMLStreamConstants.CHARACTERS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWhiteSpace() {
+        return isCharacters() && text.trim().isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        checkStartElement();
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributes[2*i].equals(localName)) return attributes[2*i+1];
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAttributeCount() {
+        checkStartElement();
+        return attributeCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QName getAttributeName(int index) {
+        return new QName(getAttributeLocalName(index));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeNamespace(int index) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeLocalName(int index) {
+        checkStartElement();
+        return attributes[2*index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributePrefix(int index) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeType(int index) {
+        return "CDATA";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeValue(int index) {
+        checkStartElement();
+        return attributes[2*index+1];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAttributeSpecified(int index) {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNamespaceCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespacePrefix(int index) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI(int index) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getEventType() {
+        return event;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getText() {
+        if (text == null) throw new IllegalStateException("No text");
+        return text;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public char[] getTextCharacters() {
+        return getText().toCharArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextCharacters(int sourceStart, char[] target,
+                                 int targetStart, int length) {
+        String s = getText();
+        int n = Math.max(0, Math.min(length, s.length() - sourceStart));
+        s.getChars(sourceStart, sourceStart + n, target, targetStart);
+        return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextStart() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextLength() {
+        return getText().length();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getEncoding() {
+        return "UTF-8";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasText() {
+        return text != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Location getLocation() {
+        return new Location() {
+            public int getLineNumber() { return -1; }
+            public int getColumnNumber() { return -1; }
+            public int getCharacterOffset() { return -1; }
+            public String getPublicId() { return null; }
+            public String getSystemId() { return null; }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QName getName() {
+        return new QName(getLocalName());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLocalName() {
+        if (name == null) throw new IllegalStateException("No name");
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasName() {
+        return name != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getVersion() {
+        return "1.0";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStandalone() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean standaloneSet() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCharacterEncodingScheme() {
+        return "UTF-8";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPITarget() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPIData() {
+        return null;
+    }
+}
@@ -0,0 +1,488 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+
+/**
+ * An <code>XMLStreamWriter</code> that writes the compact binary
+ * encoding of XML read by {@link BinaryXMLStreamReader}.
+ *
+ * The encoding is a sequence of tokens, one per XML event.  Element
+ * names, attribute names and attribute values are written once, the
+ * first time they are used, and are referred to by number thereafter.
+ * As saved games repeat the same names, type identifiers and object
+ * identifiers many times, this makes the encoding compact and very
+ * quick to read back.  Namespaces, processing instructions and
+ * entity references are not supported, as FreeCol does not use them.
+ */
+public final class BinaryXMLStreamWriter implements XMLStreamWriter {
+
+    /** The magic number at the start of a binary XML stream. */
+    public static final int MAGIC = 0x46434258; // "FCBX"
+
+    /** The version of the encoding. */
+    public static final int VERSION = 1;
+
+    /** Token types. */
+    static final int START_ELEMENT = 1, END_ELEMENT = 2, CHARACTERS = 3,
+        COMMENT = 4, END_DOCUMENT = 5;
+
+    /** The stream to write to. */
+    private final DataOutputStream out;
+
+    /** The strings written so far, by number. */
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    /** The number of open elements. */
+    private int depth = 0;
+
+    /** The name of the pending start element, if any. */
+    private String pendingName = null;
+
+    /** Is the pending element empty? */
+    private boolean pendingEmpty = false;
+
+    /** The attribute names and values of the pending element. */
+    private final List<String> pendingAttributes = new ArrayList<>();
+
+
+    /**
+     * Create a new binary XML writer.
+     *
+     * @param outputStream The <code>OutputStream</code> to write to.
+     */
+    public BinaryXMLStreamWriter(OutputStream outputStream) {
+        this.out = new DataOutputStream(new BufferedOutputStream(outputStream));
+    }
+
+
+    /**
+     * Write an unsigned variable length integer.
+     *
+     * @param value The value to write.
+     * @exception IOException if the write fails.
+     */
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Write a literal string.
+     *
+     * @param s The string to write.
+     * @exception IOException if the write fails.
+     */
+    private void writeLiteral(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Write a string, by reference if it has been written before.
+     *
+     * @param s The string to write.
+     * @exception IOException if the write fails.
+     */
+    private void writeString(String s) throws IOException {
+        Integer index = strings.get(s);
+        if (index != null) {
+            writeVarInt(index);
+        } else {
+            int n = strings.size();
+            strings.put(s, n);
+            writeVarInt(n);
+            writeLiteral(s);
+        }
+    }
+
+    /**
+     * Write out the pending start element, if any.
+     *
+     * @exception XMLStreamException if the write fails.
+     */
+    private void flushPending() throws XMLStreamException {
+        if (pendingName == null) return;
+        try {
+            out.writeByte(START_ELEMENT);
+            writeString(pendingName);
+            writeVarInt(pendingAttributes.size() / 2);
+            for (String s : pendingAttributes) writeString(s);
+            depth++;
+            if (pendingEmpty) endElement();
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+        pendingName = null;
+        pendingEmpty = false;
+        pendingAttributes.clear();
+    }
+
+    /**
+     * Write the end of the innermost open element.
+     *
+     * @exception IOException if the write fails.
+     */
+    private void endElement() throws IOException {
+        out.writeByte(END_ELEMENT);
+        depth--;
+    }
+
+    /**
+     * Write a token with a literal string argument.
+     *
+     * @param token The token type.
+     * @param text The string argument.
+     * @exception XMLStreamException if the write fails.
+     */
+    private void writeToken(int token, String text)
+        throws XMLStreamException {
+        flushPending();
+        try {
+            out.writeByte(token);
+            writeLiteral(text);
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+
+    // Implement XMLStreamWriter
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String localName)
+        throws XMLStreamException {
+        flushPending();
+        pendingName = localName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String prefix, String localName,
+                                  String namespaceURI)
+        throws XMLStreamException {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String localName)
+        throws XMLStreamException {
+        writeStartElement(localName);
+        pendingEmpty = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String prefix, String localName,
+                                  String namespaceURI)
+        throws XMLStreamException {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        flushPending();
+        if (depth <= 0) throw new XMLStreamException("No open element");
+        try {
+            endElement();
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        flushPending();
+        while (depth > 0) writeEndElement();
+        try {
+            out.writeByte(END_DOCUMENT);
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws XMLStreamException {
+        try {
+            out.flush();
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String localName, String value)
+        throws XMLStreamException {
+        if (pendingName == null) {
+            throw new XMLStreamException("Attribute outside start element: "
+                + localName);
+        }
+        pendingAttributes.add(localName);
+        pendingAttributes.add(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI,
+                               String localName, String value)
+        throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String namespaceURI, String localName,
+                               String value) throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI)
+        throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDefaultNamespace(String namespaceURI)
+        throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        writeToken(COMMENT, data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target)
+        throws XMLStreamException {
+        throw new XMLStreamException("Processing instructions not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target, String data)
+        throws XMLStreamException {
+        throw new XMLStreamException("Processing instructions not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        writeCharacters(data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        throw new XMLStreamException("DTDs not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity references not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        writeStartDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String encoding, String version)
+        throws XMLStreamException {
+        writeStartDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        writeToken(CHARACTERS, text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(char[] text, int start, int len)
+        throws XMLStreamException {
+        writeCharacters(new String(text, start, len));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix(String uri) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPrefix(String prefix, String uri) {
+        // Namespaces are not supported
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDefaultNamespace(String uri) {
+        // Namespaces are not supported
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNamespaceContext(NamespaceContext context) {
+        // Namespaces are not supported
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("No property: " + name);
+    }
+}
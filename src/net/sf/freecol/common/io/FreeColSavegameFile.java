@@ -19,10 +19,28 @@
 
 package net.sf.freecol.common.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.BufferedInputStream;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import net.sf.freecol.FreeCol;
 
@@ -62,11 +80,30 @@ public class FreeColSavegameFile extends FreeColDataFile {
      */
     public static final String THUMBNAIL_FILE = "thumbnail.png";
 
+    /**
+     * The name of the index of a binary saved game, which replaces
+     * {@link #SAVEGAME_FILE}.  It is a properties file naming the
+     * format and the main entry of the saved game.
+     */
+    public static final String SAVEGAME_INDEX = "savegame.index";
+
+    /** The name of the main entry of a binary saved game. */
+    public static final String SAVEGAME_BINARY = "savegame.bin";
+
+    /** Keys in the index of a binary saved game. */
+    private static final String INDEX_FORMAT = "format",
+        INDEX_VERSION = "version",
+        INDEX_MAIN = "main";
+
     /** A file filter to select the saved game files. */
     private static final FileFilter fileFilter = makeFileFilter(SAVEGAME_FILE,
         FreeCol.FREECOL_SAVE_EXTENSION, ZIP_FILE_EXTENSION);
 
 
+    /** The index of a binary saved game, loaded on demand. */
+    private Properties index = null;
+
+
     /**
      * Create a new save game file from a given file.
      *
@@ -105,6 +142,38 @@ public class FreeColSavegameFile extends FreeColDataFile {
         return getInputStream(SAVEGAME_FILE);
     }
 
+    /**
+     * Get the index of a binary saved game.
+     *
+     * @return The index <code>Properties</code>, which are empty if
+     *     this is not a binary saved game.
+     * @exception IOException if the index can not be read.
+     */
+    private synchronized Properties getIndex() throws IOException {
+        if (index == null) {
+            Properties p = new Properties();
+            try (
+                InputStream is = getInputStream(SAVEGAME_INDEX);
+            ) {
+                p.load(is);
+            } catch (FileNotFoundException fnfe) {
+                ; // Not binary
+            }
+            index = p;
+        }
+        return index;
+    }
+
+    /**
+     * Is this a binary saved game?
+     *
+     * @return True if this saved game is in the binary format.
+     * @exception IOException if the saved game can not be read.
+     */
+    public boolean isBinary() throws IOException {
+        return "binary".equals(getIndex().getProperty(INDEX_FORMAT));
+    }
+
     /**
      * Creates a <code>FreeColXMLReader</code> for reading this saved game.
      *
@@ -113,7 +182,177 @@ public class FreeColSavegameFile extends FreeColDataFile {
      *     <code>XMLStreamException</code> have been thrown by the parser.
      */
     public FreeColXMLReader getFreeColXMLReader() throws IOException {
-        return new FreeColXMLReader(getSavegameInputStream());
+        if (!isBinary()) {
+            return new FreeColXMLReader(getSavegameInputStream());
+        }
+        String main = getIndex().getProperty(INDEX_MAIN, SAVEGAME_BINARY);
+        InputStream is = getInputStream(main);
+        try {
+            return new FreeColXMLReader(new BinaryXMLStreamReader(is));
+        } catch (XMLStreamException xse) {
+            is.close();
+            throw new IOException("Bad binary saved game: " + getFile(), xse);
+        }
+    }
+
+    /**
+     * Create a writer for the game data of a saved game.
+     *
+     * @param out The <code>OutputStream</code> to write to.
+     * @param binary If true, write the binary format.
+     * @return A new <code>XMLStreamWriter</code>.
+     * @exception IOException if the writer can not be created.
+     */
+    public static XMLStreamWriter createSavegameWriter(OutputStream out,
+                                                       boolean binary)
+        throws IOException {
+        if (binary) return new BinaryXMLStreamWriter(out);
+        try {
+            return XMLOutputFactory.newInstance()
+                .createXMLStreamWriter(FreeColXMLWriter.getWriter(out));
+        } catch (XMLStreamException xse) {
+            throw new IOException(xse);
+        }
+    }
+
+    /**
+     * Collect the saved game entries written with a writer made by
+     * {@link #createSavegameWriter}.
+     *
+     * @param data The data written to the main stream.
+     * @param writer The <code>XMLStreamWriter</code> that wrote it.
+     * @return A map of entry names to contents, in the order to write
+     *     them to the saved game.
+     * @exception IOException if the entries can not be collected.
+     */
+    public static Map<String, byte[]> getSavegameEntries(byte[] data,
+        XMLStreamWriter writer) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        if (!(writer instanceof BinaryXMLStreamWriter)) {
+            entries.put(SAVEGAME_FILE, data);
+            return entries;
+        }
+        Properties p = new Properties();
+        p.setProperty(INDEX_FORMAT, "binary");
+        p.setProperty(INDEX_VERSION,
+                      Integer.toString(BinaryXMLStreamWriter.VERSION));
+        p.setProperty(INDEX_MAIN, SAVEGAME_BINARY);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        p.store(bos, null);
+        entries.put(SAVEGAME_INDEX, bos.toByteArray());
+        entries.put(SAVEGAME_BINARY, data);
+        return entries;
+    }
+
+    /**
+     * Is an entry part of the game data of a saved game?
+     *
+     * @param name The entry name.
+     * @return True if the entry holds game data.
+     */
+    private static boolean isGameEntry(String name) {
+        return SAVEGAME_FILE.equals(name) || SAVEGAME_INDEX.equals(name)
+            || SAVEGAME_BINARY.equals(name);
+    }
+
+    /**
+     * Convert a saved game between the XML and binary formats.
+     *
+     * The game data is copied event by event, without loading the
+     * game, so the result is exactly equivalent to the original.
+     * Other entries, such as the thumbnail and client options, are
+     * copied unchanged.
+     *
+     * @param from The <code>FreeColSavegameFile</code> to convert.
+     * @param to The <code>File</code> to write the converted game to.
+     * @param binary If true convert to the binary format, otherwise
+     *     to XML.
+     * @exception IOException if the conversion fails.
+     */
+    public static void convert(FreeColSavegameFile from, File to,
+                               boolean binary) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (
+            ZipFile zf = new ZipFile(from.getFile());
+        ) {
+            Enumeration<? extends ZipEntry> e = zf.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry ze = e.nextElement();
+                if (ze.isDirectory() || isGameEntry(ze.getName())) continue;
+                try (
+                    InputStream is = zf.getInputStream(ze);
+                ) {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    byte[] buf = new byte[8192];
+                    int n;
+                    while ((n = is.read(buf)) > 0) bos.write(buf, 0, n);
+                    entries.put(ze.getName(), bos.toByteArray());
+                }
+            }
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 20);
+        XMLStreamWriter xw = createSavegameWriter(bos, binary);
+        try (
+            FreeColXMLReader xr = from.getFreeColXMLReader();
+        ) {
+            copyEvents(xr, xw);
+            xw.flush();
+        } catch (XMLStreamException xse) {
+            throw new IOException("Failed to convert " + from.getFile(), xse);
+        }
+        entries.putAll(getSavegameEntries(bos.toByteArray(), xw));
+
+        try (
+            JarOutputStream jos = new JarOutputStream(new FileOutputStream(to));
+        ) {
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                jos.putNextEntry(new JarEntry(e.getKey()));
+                jos.write(e.getValue());
+                jos.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Copy all the events from a reader to a writer.  Whitespace
+     * between elements is dropped.
+     *
+     * @param xr The <code>FreeColXMLReader</code> to read from.
+     * @param xw The <code>XMLStreamWriter</code> to write to.
+     * @exception XMLStreamException if there is a problem copying.
+     */
+    private static void copyEvents(FreeColXMLReader xr, XMLStreamWriter xw)
+        throws XMLStreamException {
+        for (int event = xr.getEventType();; event = xr.next()) {
+            switch (event) {
+            case XMLStreamConstants.START_DOCUMENT:
+                xw.writeStartDocument("UTF-8", "1.0");
+                break;
+            case XMLStreamConstants.START_ELEMENT:
+                xw.writeStartElement(xr.getLocalName());
+                for (int i = 0; i < xr.getAttributeCount(); i++) {
+                    xw.writeAttribute(xr.getAttributeLocalName(i),
+                                      xr.getAttributeValue(i));
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                xw.writeEndElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+                if (!xr.isWhiteSpace()) xw.writeCharacters(xr.getText());
+                break;
+            case XMLStreamConstants.COMMENT:
+                xw.writeComment(xr.getText());
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                xw.writeEndDocument();
+                return;
+            default:
+                break;
+            }
+        }
     }
 
     /**
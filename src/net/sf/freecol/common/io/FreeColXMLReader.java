@@ -37,6 +37,7 @@ import java.util.logging.Logger;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.util.StreamReaderDelegate;
 
 import net.sf.freecol.common.model.FreeColObject;
@@ -75,6 +76,9 @@ public class FreeColXMLReader extends StreamReaderDelegate
     /** A cache of uninterned objects. */
     private Map<String, FreeColObject> uninterned = null;
 
+    /** The canonical instances of the string attributes read. */
+    private final Map<String, String> strings = new HashMap<>();
+
 
     /**
      * Creates a new <code>FreeColXMLReader</code>.
@@ -118,6 +122,19 @@ public class FreeColXMLReader extends StreamReaderDelegate
         this.readScope = ReadScope.NORMAL;
     }
 
+    /**
+     * Creates a new <code>FreeColXMLReader</code> on top of an
+     * existing <code>XMLStreamReader</code>.
+     *
+     * @param xmlStreamReader The <code>XMLStreamReader</code> to read from.
+     */
+    public FreeColXMLReader(XMLStreamReader xmlStreamReader) {
+        super(xmlStreamReader);
+
+        this.inputStream = null;
+        this.readScope = ReadScope.NORMAL;
+    }
+
 
     /**
      * Should reads from this stream intern their objects into the
@@ -363,7 +380,23 @@ public class FreeColXMLReader extends StreamReaderDelegate
         final String attrib = getParent().getAttributeValue(null,
                                                             attributeName);
         return (attrib == null) ? defaultValue
-            : attrib;
+            : canonical(attrib);
+    }
+
+    /**
+     * Get the canonical instance of a string read from this stream.
+     *
+     * Identifiers recur throughout a stream, for example the AI
+     * objects repeat the identifiers of the units they control, and
+     * every native unit names its nation.  Sharing one instance of
+     * each saves keeping a copy in every object that holds on to it.
+     *
+     * @param value The string to look up.
+     * @return The canonical instance of the string.
+     */
+    private String canonical(String value) {
+        String old = strings.putIfAbsent(value, value);
+        return (old == null) ? value : old;
     }
 
     /**
@@ -114,6 +114,78 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
     }
 
 
+    /**
+     * An unsynchronized buffer in front of a writer.
+     */
+    private static class BufferedOutput extends Writer {
+
+        /** The writer to write the buffered output to. */
+        private final Writer out;
+
+        /** The buffer. */
+        private final char[] buffer = new char[8192];
+
+        /** The number of characters in the buffer. */
+        private int count = 0;
+
+
+        public BufferedOutput(Writer out) {
+            this.out = out;
+        }
+
+        private void flushBuffer() throws IOException {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (count >= buffer.length) flushBuffer();
+            buffer[count++] = (char)c;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (len > buffer.length - count) {
+                flushBuffer();
+                if (len > buffer.length) {
+                    out.write(cbuf, off, len);
+                    return;
+                }
+            }
+            System.arraycopy(cbuf, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (len > buffer.length - count) {
+                flushBuffer();
+                if (len > buffer.length) {
+                    out.write(str, off, len);
+                    return;
+                }
+            }
+            str.getChars(off, off + len, buffer, count);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            out.close();
+        }
+    }
+
+
     /** The stream to write to. */
     private final XMLStreamWriter xmlStreamWriter;
 
@@ -139,7 +211,7 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
      */
     public FreeColXMLWriter(OutputStream outputStream, WriteScope scope,
                             boolean indent) throws IOException {
-        this(new OutputStreamWriter(outputStream, "UTF-8"), scope, indent);
+        this(getWriter(outputStream), scope, indent);
     }
 
     /**
@@ -156,6 +228,20 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
         this(writer, scope, false);
     }
 
+    /**
+     * Creates a new <code>FreeColXMLWriter</code> on top of an
+     * existing <code>XMLStreamWriter</code>.
+     *
+     * @param xmlStreamWriter The <code>XMLStreamWriter</code> to write to.
+     * @param scope The <code>WriteScope</code> to use for FreeCol
+     *     object writes.
+     */
+    public FreeColXMLWriter(XMLStreamWriter xmlStreamWriter,
+                            WriteScope scope) {
+        this.xmlStreamWriter = xmlStreamWriter;
+        this.writeScope = scope;
+    }
+
     /**
      * Creates a new <code>FreeColXMLWriter</code>.
      *
@@ -175,7 +261,8 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
                     .createXMLStreamWriter(this.stringWriter);
             } else {
                 this.xmlStreamWriter = getFactory()
-                    .createXMLStreamWriter(writer);
+                    .createXMLStreamWriter((writer instanceof BufferedOutput)
+                        ? writer : new BufferedOutput(writer));
             }
         } catch (XMLStreamException e) {
             throw new IOException(e);
@@ -184,6 +271,28 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
     }
 
 
+    /**
+     * Get a buffered UTF-8 writer for an output stream.
+     *
+     * The stream writers write many small pieces of text, and
+     * encoding each one separately is much slower than encoding
+     * them in blocks.  In particular, given an output stream, the
+     * standard stream writer encodes UTF-8 itself a byte at a time.
+     * The buffer is flushed when the stream writer is closed.
+     *
+     * Unlike a <code>BufferedWriter</code>, the buffer is not
+     * synchronized, as a stream writer is only used by one thread.
+     *
+     * @param outputStream The <code>OutputStream</code> to write to.
+     * @return A buffered <code>Writer</code> for the stream.
+     * @exception IOException if UTF-8 is not supported.
+     */
+    public static Writer getWriter(OutputStream outputStream)
+        throws IOException {
+        return new BufferedOutput(new OutputStreamWriter(outputStream,
+                                                         "UTF-8"));
+    }
+
     /**
      * Get the <code>XMLOutputFactory</code> to create the output stream with.
      *
@@ -387,6 +496,33 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
         return writeScope.validFor(player);
     }
 
+    /**
+     * Is this writer recording, so that writes can be deferred?
+     *
+     * @return True if writing to a <code>RecordingXMLStreamWriter</code>.
+     */
+    public boolean isRecording() {
+        return xmlStreamWriter instanceof RecordingXMLStreamWriter;
+    }
+
+    /**
+     * Perform a write, deferring it until the recording is replayed
+     * if this writer is recording.  A deferred write must only use
+     * state that will not change before the replay.
+     *
+     * @param action The <code>RecordingXMLStreamWriter.Action</code>
+     *     to perform.
+     * @exception XMLStreamException if a write error occurs.
+     */
+    public void writeDeferred(RecordingXMLStreamWriter.Action action)
+        throws XMLStreamException {
+        if (isRecording()) {
+            ((RecordingXMLStreamWriter)xmlStreamWriter).defer(action);
+        } else {
+            action.write(this);
+        }
+    }
+
     // Simple delegations to the XMLStreamWriter.  All should be
     // present here except close which is supplied above.
 
@@ -0,0 +1,353 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+
+/**
+ * An <code>XMLStreamWriter</code> that records the events written to
+ * it, to be replayed onto another writer later, possibly on another
+ * thread.
+ *
+ * As well as the plain XML events, whole writes can be deferred
+ * with {@link FreeColXMLWriter#writeDeferred}, so that objects which
+ * are expensive to serialize can be snapshotted cheaply (say, by a
+ * structural copy) and serialized when the recording is replayed.
+ * Namespaces, processing instructions, DTDs and entity references
+ * are not supported, as FreeCol does not use them.
+ */
+public final class RecordingXMLStreamWriter implements XMLStreamWriter {
+
+    /** A recorded write. */
+    public interface Action {
+
+        /**
+         * Perform the write.
+         *
+         * @param xw The <code>FreeColXMLWriter</code> to write to.
+         * @exception XMLStreamException if there is a problem writing
+         *     to the stream.
+         */
+        public void write(FreeColXMLWriter xw) throws XMLStreamException;
+    }
+
+    /** The writes recorded so far. */
+    private final List<Action> actions = new ArrayList<>();
+
+
+    /**
+     * Create a new recording writer.
+     */
+    public RecordingXMLStreamWriter() {}
+
+
+    /**
+     * Record a deferred write.
+     *
+     * @param action The <code>Action</code> to perform on replay.
+     */
+    public void defer(Action action) {
+        actions.add(action);
+    }
+
+    /**
+     * Replay the recorded writes.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to replay to.
+     * @exception XMLStreamException if there is a problem writing
+     *     to the stream.
+     */
+    public void replay(FreeColXMLWriter xw) throws XMLStreamException {
+        for (Action a : actions) a.write(xw);
+    }
+
+
+    // Implement XMLStreamWriter
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String localName) {
+        actions.add((xw) -> xw.writeStartElement(localName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String prefix, String localName,
+                                  String namespaceURI) {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String localName) {
+        actions.add((xw) -> xw.writeEmptyElement(localName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String prefix, String localName,
+                                  String namespaceURI) {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndElement() {
+        actions.add((xw) -> xw.writeEndElement());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndDocument() {
+        actions.add((xw) -> xw.writeEndDocument());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // Nothing to close, the replay writer is closed by its owner
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        // Nothing to flush
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String localName, String value) {
+        actions.add((xw) -> xw.writeAttribute(localName, value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI,
+                               String localName, String value) {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String namespaceURI, String localName,
+                               String value) {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI)
+        throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDefaultNamespace(String namespaceURI)
+        throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeComment(String data) {
+        actions.add((xw) -> xw.writeComment(data));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target)
+        throws XMLStreamException {
+        throw new XMLStreamException("Processing instructions not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target, String data)
+        throws XMLStreamException {
+        throw new XMLStreamException("Processing instructions not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCData(String data) {
+        actions.add((xw) -> xw.writeCData(data));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        throw new XMLStreamException("DTDs not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity references not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument() {
+        actions.add((xw) -> xw.writeStartDocument());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String version) {
+        actions.add((xw) -> xw.writeStartDocument(version));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String encoding, String version) {
+        actions.add((xw) -> xw.writeStartDocument(encoding, version));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(String text) {
+        actions.add((xw) -> xw.writeCharacters(text));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(char[] text, int start, int len) {
+        writeCharacters(new String(text, start, len));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix(String uri) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPrefix(String prefix, String uri) {
+        // Namespaces are not supported
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDefaultNamespace(String uri) {
+        // Namespaces are not supported
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNamespaceContext(NamespaceContext context) {
+        // Namespaces are not supported
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("No property: " + name);
+    }
+}
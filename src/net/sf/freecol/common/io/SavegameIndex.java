@@ -0,0 +1,633 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * An index of the saved games in a directory.
+ *
+ * Listing saved games with their details would otherwise require
+ * opening every saved game to read its properties and thumbnail.
+ * The index keeps those details in a single small file in the
+ * directory, and a reduced thumbnail of each saved game in a
+ * subdirectory.  Entries are updated when a game is saved, and are
+ * checked against the modification time and size of the saved game
+ * when they are looked up, so an index that is out of date (or even
+ * missing) is repaired on demand.
+ *
+ * There is one shared index per directory, found with
+ * {@link #getIndex}, and all changes to the index files go through
+ * it, so concurrent saves can not lose each other's updates.
+ */
+public class SavegameIndex {
+
+    private static final Logger logger = Logger.getLogger(SavegameIndex.class.getName());
+
+    /** The name of the index file. */
+    public static final String INDEX_FILE = "savegames.index";
+
+    /** The name of the subdirectory holding the reduced thumbnails. */
+    public static final String THUMBNAIL_DIRECTORY = "savegames.thumbnails";
+
+    /** The saved game property holding the turn number. */
+    public static final String TURN_PROPERTY = "game.turn";
+
+    /** The saved game property holding the European player names. */
+    public static final String PLAYERS_PROPERTY = "game.players";
+
+    /** The saved game properties holding the map size. */
+    public static final String MAP_WIDTH_PROPERTY = "map.width",
+        MAP_HEIGHT_PROPERTY = "map.height";
+
+    /** The largest dimension of an indexed thumbnail. */
+    public static final int THUMBNAIL_SIZE = 128;
+
+    /** Keys of the entry fields in the index file. */
+    private static final String MODIFIED_KEY = "modified",
+        LENGTH_KEY = "length",
+        TURN_KEY = "turn",
+        PLAYERS_KEY = "players",
+        WIDTH_KEY = "width",
+        HEIGHT_KEY = "height",
+        THUMBNAIL_KEY = "thumbnail";
+
+    /** The shared indexes, by directory. */
+    private static final Map<File, SavegameIndex> indexes = new HashMap<>();
+
+    /**
+     * The indexed details of a saved game.
+     */
+    public static class Entry {
+
+        /** The saved game file. */
+        private final File file;
+
+        /** The modification time and size of the indexed file. */
+        private final long lastModified, length;
+
+        /** The turn number, or zero if unknown. */
+        private int turn = 0;
+
+        /** The names of the European players, or null if unknown. */
+        private String players = null;
+
+        /** The map size, or zero if unknown. */
+        private int width = 0, height = 0;
+
+        /** The reduced thumbnail file, or null if none. */
+        private File thumbnail = null;
+
+
+        /**
+         * Create a new entry.
+         *
+         * @param file The saved game file.
+         * @param lastModified The modification time of the saved game.
+         * @param length The size of the saved game.
+         */
+        private Entry(File file, long lastModified, long length) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * Get the saved game file.
+         *
+         * @return The saved game <code>File</code>.
+         */
+        public File getFile() {
+            return this.file;
+        }
+
+        /**
+         * Get the file name of the saved game.
+         *
+         * @return The file name.
+         */
+        public String getName() {
+            return this.file.getName();
+        }
+
+        /**
+         * Get the turn the game was saved in.
+         *
+         * @return The turn number, or zero if unknown.
+         */
+        public int getTurn() {
+            return this.turn;
+        }
+
+        /**
+         * Get the names of the European players in the game.
+         *
+         * @return A comma separated list of player names, or null
+         *     if unknown.
+         */
+        public String getPlayers() {
+            return this.players;
+        }
+
+        /**
+         * Get the map width.
+         *
+         * @return The map width, or zero if unknown.
+         */
+        public int getWidth() {
+            return this.width;
+        }
+
+        /**
+         * Get the map height.
+         *
+         * @return The map height, or zero if unknown.
+         */
+        public int getHeight() {
+            return this.height;
+        }
+
+        /**
+         * Get the reduced thumbnail of the saved game.
+         *
+         * @return The thumbnail image, or null if none is available.
+         */
+        public BufferedImage getThumbnail() {
+            if (this.thumbnail == null) return null;
+            try {
+                return ImageIO.read(this.thumbnail);
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, "Bad thumbnail for " + getName(),
+                    ioe);
+            }
+            return null;
+        }
+
+        /**
+         * Is this entry current for its file?
+         *
+         * @return True if the file has not changed since it was indexed.
+         */
+        private boolean isCurrent() {
+            return file.lastModified() == this.lastModified
+                && file.length() == this.length;
+        }
+
+        /**
+         * Fill in the details of this entry from saved game properties.
+         *
+         * @param properties The saved game <code>Properties</code>.
+         */
+        private void setProperties(Properties properties) {
+            this.turn = getInt(properties, TURN_PROPERTY);
+            this.players = properties.getProperty(PLAYERS_PROPERTY);
+            this.width = getInt(properties, MAP_WIDTH_PROPERTY);
+            this.height = getInt(properties, MAP_HEIGHT_PROPERTY);
+        }
+
+        /**
+         * Add this entry to the index properties.
+         *
+         * @param properties The index <code>Properties</code> to add to.
+         */
+        private void store(Properties properties) {
+            properties.setProperty(key(MODIFIED_KEY),
+                                   Long.toString(lastModified));
+            properties.setProperty(key(LENGTH_KEY), Long.toString(length));
+            properties.setProperty(key(TURN_KEY), Integer.toString(turn));
+            if (players != null) {
+                properties.setProperty(key(PLAYERS_KEY), players);
+            }
+            properties.setProperty(key(WIDTH_KEY), Integer.toString(width));
+            properties.setProperty(key(HEIGHT_KEY), Integer.toString(height));
+            if (thumbnail != null) {
+                properties.setProperty(key(THUMBNAIL_KEY),
+                                       thumbnail.getName());
+            }
+        }
+
+        /**
+         * Read an entry from the index properties.
+         *
+         * @param properties The index <code>Properties</code> to read.
+         * @param directory The indexed directory.
+         * @param name The file name of the entry.
+         * @return The <code>Entry</code> found, or null if it is broken.
+         */
+        private static Entry load(Properties properties, File directory,
+                                  String name) {
+            try {
+                Entry entry = new Entry(new File(directory, name),
+                    Long.parseLong(properties.getProperty(name + "/"
+                            + MODIFIED_KEY)),
+                    Long.parseLong(properties.getProperty(name + "/"
+                            + LENGTH_KEY)));
+                entry.turn = getInt(properties, entry.key(TURN_KEY));
+                entry.players = properties.getProperty(entry.key(PLAYERS_KEY));
+                entry.width = getInt(properties, entry.key(WIDTH_KEY));
+                entry.height = getInt(properties, entry.key(HEIGHT_KEY));
+                String t = properties.getProperty(entry.key(THUMBNAIL_KEY));
+                if (t != null) {
+                    entry.thumbnail = new File(new File(directory,
+                            THUMBNAIL_DIRECTORY), t);
+                }
+                return entry;
+            } catch (IllegalArgumentException iae) {
+                logger.log(Level.WARNING, "Bad index entry: " + name, iae);
+            }
+            return null;
+        }
+
+        /**
+         * Get the index key for a field of this entry.  File names
+         * can not contain a slash, so it separates them from the
+         * field name.
+         *
+         * @param field The field name.
+         * @return The index key.
+         */
+        private String key(String field) {
+            return getName() + "/" + field;
+        }
+    }
+
+    /** The directory that is indexed. */
+    private final File directory;
+
+    /** The index entries by file name. */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** Has the index changed since it was loaded or saved? */
+    private boolean changed = false;
+
+    /** The modification time of the index file when last read or written. */
+    private long indexModified = 0L;
+
+
+    /**
+     * Create the index for a directory, loading the existing index
+     * file if present.
+     *
+     * @param directory The absolute directory to index.
+     */
+    private SavegameIndex(File directory) {
+        this.directory = directory;
+        File file = getIndexFile();
+        if (!file.exists()) return;
+        this.indexModified = file.lastModified();
+        Properties properties = new Properties();
+        try (
+            InputStream is = new FileInputStream(file);
+        ) {
+            properties.load(is);
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Failed to read index: " + file, ioe);
+            return;
+        }
+        final String suffix = "/" + MODIFIED_KEY;
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.endsWith(suffix)) continue;
+            Entry entry = Entry.load(properties, directory,
+                key.substring(0, key.length() - suffix.length()));
+            if (entry != null) entries.put(entry.getName(), entry);
+        }
+    }
+
+
+    /**
+     * Get the shared index for a directory.
+     *
+     * The index is loaded when first needed, and again if the index
+     * file has been replaced from outside (say, by another client
+     * saving into the same directory).
+     *
+     * @param directory The directory to index.
+     * @return The <code>SavegameIndex</code> for the directory.
+     */
+    public static SavegameIndex getIndex(File directory) {
+        directory = directory.getAbsoluteFile();
+        synchronized (indexes) {
+            SavegameIndex index = indexes.get(directory);
+            if (index == null || !index.isLoaded()) {
+                index = new SavegameIndex(directory);
+                indexes.put(directory, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Get the directory this index covers.
+     *
+     * @return The indexed directory.
+     */
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Get the index file.
+     *
+     * @return The index <code>File</code>.
+     */
+    private File getIndexFile() {
+        return new File(directory, INDEX_FILE);
+    }
+
+    /**
+     * Is the index file unchanged since this index last read or
+     * wrote it?
+     *
+     * @return True if this index is up to date with its file.
+     */
+    private synchronized boolean isLoaded() {
+        File file = getIndexFile();
+        return (file.exists()) ? file.lastModified() == indexModified
+            : indexModified == 0L;
+    }
+
+    /**
+     * Get the index entry for a saved game, reading the saved game
+     * if the entry is missing or out of date.
+     *
+     * @param file The saved game <code>File</code>.
+     * @return The <code>Entry</code> for the file, or null if it
+     *     is not a readable saved game file in this directory.
+     */
+    public synchronized Entry getEntry(File file) {
+        file = file.getAbsoluteFile();
+        if (!directory.equals(file.getParentFile()) || !file.isFile()) {
+            return null;
+        }
+        Entry old = entries.get(file.getName());
+        if (old != null && old.isCurrent()) return old;
+
+        Entry entry = new Entry(file, file.lastModified(), file.length());
+        try {
+            FreeColSavegameFile fsg = new FreeColSavegameFile(file);
+            Properties properties = new Properties();
+            try (
+                InputStream is = fsg.getInputStream(FreeColSavegameFile.SAVEGAME_PROPERTIES);
+            ) {
+                properties.load(is);
+            }
+            entry.setProperties(properties);
+            try (
+                InputStream is = fsg.getInputStream(FreeColSavegameFile.THUMBNAIL_FILE);
+            ) {
+                entry.thumbnail = writeThumbnail(file.getName(),
+                                                 ImageIO.read(is));
+            } catch (IOException ioe) {
+                ; // No thumbnail
+            }
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, "Not indexing " + file, ioe);
+            return null;
+        }
+        if (old != null && old.thumbnail != null && entry.thumbnail == null) {
+            old.thumbnail.delete();
+        }
+        entries.put(entry.getName(), entry);
+        changed = true;
+        return entry;
+    }
+
+    /**
+     * Get the index entries for all the saved games in the directory,
+     * and forget any entries for saved games that are gone.
+     *
+     * @return A list of <code>Entry</code>s.
+     */
+    public synchronized List<Entry> getEntries() {
+        List<Entry> result = new ArrayList<>();
+        File[] files = directory.listFiles(FreeColSavegameFile.getFileFilter());
+        Map<String, Entry> found = new HashMap<>();
+        if (files != null) {
+            for (File f : files) {
+                Entry entry = getEntry(f);
+                if (entry == null) continue;
+                result.add(entry);
+                found.put(entry.getName(), entry);
+            }
+        }
+        if (found.size() != entries.size()) {
+            for (Entry e : entries.values()) {
+                if (e.thumbnail != null && !found.containsKey(e.getName())) {
+                    e.thumbnail.delete();
+                }
+            }
+            entries.clear();
+            entries.putAll(found);
+            changed = true;
+        }
+        return result;
+    }
+
+    /**
+     * Update the index entry for a saved game that has just been
+     * written.
+     *
+     * @param file The saved game <code>File</code>.
+     * @param properties The saved game <code>Properties</code>.
+     * @param image The thumbnail image of the saved game, or null.
+     */
+    public synchronized void update(File file, Properties properties,
+                                    BufferedImage image) {
+        file = file.getAbsoluteFile();
+        Entry entry = new Entry(file, file.lastModified(), file.length());
+        entry.setProperties(properties);
+        if (image != null) {
+            try {
+                entry.thumbnail = writeThumbnail(file.getName(), image);
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, "Failed to write thumbnail", ioe);
+            }
+        }
+        entries.put(entry.getName(), entry);
+        changed = true;
+    }
+
+    /**
+     * Save the index file if the index has changed.
+     *
+     * The index is written to a temporary file which then replaces
+     * the old index, so readers never see a partial index.  The
+     * thumbnails are already saved, so the index file only holds a
+     * few short properties per saved game.
+     *
+     * @exception IOException if the index can not be written.
+     */
+    public synchronized void save() throws IOException {
+        if (!changed) return;
+        Properties properties = new Properties();
+        for (Entry entry : entries.values()) entry.store(properties);
+        File file = getIndexFile();
+        File tmp = File.createTempFile(INDEX_FILE, null, directory);
+        try (
+            OutputStream os = new FileOutputStream(tmp);
+        ) {
+            properties.store(os, null);
+        } catch (IOException ioe) {
+            tmp.delete();
+            throw ioe;
+        }
+        replace(tmp, file);
+        indexModified = file.lastModified();
+        changed = false;
+    }
+
+    /**
+     * Update the index after a game has been saved, if it was saved
+     * to one of the standard save directories.  Failures are logged,
+     * as the index will be repaired when it is next used.
+     *
+     * @param file The saved game <code>File</code>.
+     * @param properties The saved game <code>Properties</code>.
+     * @param image The thumbnail image of the saved game, or null.
+     */
+    public static void updateIndex(File file, Properties properties,
+                                   BufferedImage image) {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (!isIndexed(directory)) return;
+        SavegameIndex index = getIndex(directory);
+        index.update(file, properties, image);
+        try {
+            index.save();
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Failed to update index in "
+                + directory, ioe);
+        }
+    }
+
+    /**
+     * Is a directory one where the saved games are indexed?
+     *
+     * @param directory The directory to check.
+     * @return True if the directory is the save or autosave directory.
+     */
+    public static boolean isIndexed(File directory) {
+        if (directory == null) return false;
+        for (File d : new File[] { FreeColDirectories.getSaveDirectory(),
+                                   FreeColDirectories.getAutosaveDirectory() }) {
+            if (d != null && directory.equals(d.getAbsoluteFile())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reduce a thumbnail image to the index size, and save it in the
+     * thumbnail directory.
+     *
+     * @param name The file name of the saved game.
+     * @param image The thumbnail <code>BufferedImage</code>.
+     * @return The reduced thumbnail file, or null if there is no image.
+     * @exception IOException if the image can not be written.
+     */
+    private File writeThumbnail(String name, BufferedImage image)
+        throws IOException {
+        if (image == null) return null;
+        final int w = image.getWidth(), h = image.getHeight();
+        final int max = Math.max(w, h);
+        if (max > THUMBNAIL_SIZE) {
+            int tw = Math.max(1, w * THUMBNAIL_SIZE / max),
+                th = Math.max(1, h * THUMBNAIL_SIZE / max);
+            BufferedImage reduced = new BufferedImage(tw, th,
+                BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = reduced.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                               RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, tw, th, null);
+            g.dispose();
+            image = reduced;
+        }
+        File dir = new File(directory, THUMBNAIL_DIRECTORY);
+        if (!dir.isDirectory() && !dir.mkdir()) {
+            throw new IOException("Can not create " + dir);
+        }
+        File file = new File(dir, name + ".png");
+        File tmp = File.createTempFile(name, null, dir);
+        try {
+            if (!ImageIO.write(image, "png", tmp)) {
+                throw new IOException("No PNG writer");
+            }
+        } catch (IOException ioe) {
+            tmp.delete();
+            throw ioe;
+        }
+        replace(tmp, file);
+        return file;
+    }
+
+    /**
+     * Replace a file with a temporary file, atomically if possible.
+     *
+     * @param tmp The temporary <code>File</code>.
+     * @param file The <code>File</code> to replace.
+     * @exception IOException if the file can not be replaced.
+     */
+    private static void replace(File tmp, File file) throws IOException {
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Get an integer property.
+     *
+     * @param properties The <code>Properties</code> to read.
+     * @param key The property key.
+     * @return The integer value, or zero if absent or malformed.
+     */
+    private static int getInt(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            return 0;
+        }
+    }
+}
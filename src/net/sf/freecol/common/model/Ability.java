@@ -19,6 +19,8 @@
 
 package net.sf.freecol.common.model;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.xml.stream.XMLStreamException;
 
 import net.sf.freecol.common.io.FreeColXMLReader;
@@ -405,6 +407,14 @@ public final class Ability extends Feature {
         = "model.ability.undead";
 
 
+    /**
+     * Small integer indexes for the ability identifiers, allowing
+     * containers to summarize their abilities as bit sets.  Shared by
+     * all specifications.
+     */
+    private static final ConcurrentHashMap<String, Integer> indexes
+        = new ConcurrentHashMap<>();
+
     /** The ability value. */
     private boolean value = true;
 
@@ -476,6 +486,21 @@ public final class Ability extends Feature {
     }
 
 
+    /**
+     * Get the index of an ability identifier, allocating a new one if
+     * the identifier has not been seen before.
+     *
+     * @param id The ability identifier.
+     * @return The index for the identifier.
+     */
+    public static int getIndex(String id) {
+        Integer index = indexes.get(id);
+        if (index != null) return index;
+        synchronized (indexes) {
+            return indexes.computeIfAbsent(id, k -> indexes.size());
+        }
+    }
+
     /**
      * Get the ability value.
      *
@@ -492,6 +517,7 @@ public final class Ability extends Feature {
      */
     public void setValue(final boolean newValue) {
         this.value = newValue;
+        changed();
     }
 
 
@@ -588,6 +588,14 @@ public class Building extends WorkLocation
         return getType().getAbilities(id, type, turn);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getAbilityState(String id) {
+        return getType().getAbilityState(id);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -613,6 +621,27 @@ public class Building extends WorkLocation
     }
 
 
+    // Override FreeColGameObject
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final Building o = (Building)other;
+        this.buildingType = o.buildingType;
+    }
+
+
     // Serialization
 
     private static final String BUILDING_TYPE_TAG = "buildingType";
@@ -2015,6 +2015,15 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
         productionCache.invalidate();
     }
 
+    /**
+     * Invalidates the production of a work location in this colony.
+     *
+     * @param workLocation The <code>WorkLocation</code> that changed.
+     */
+    public void invalidateCache(WorkLocation workLocation) {
+        productionCache.invalidate(workLocation);
+    }
+
     /**
      * Can this colony produce certain goods?
      *
@@ -2403,9 +2412,65 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getAbilityState(String id) {
+        int state = super.getAbilityState(id);
+        // Owner abilities also apply to colonies
+        return (owner == null) ? state
+            : Math.max(state, owner.getAbilityState(id));
+    }
+
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final Colony o = (Colony)other;
+        final Specification spec = getSpecification();
+        for (Entry<String, Building> e : o.buildingMap.entrySet()) {
+            buildingMap.put(e.getKey(),
+                            context.copy(e.getValue(), Building.class));
+        }
+        for (ColonyTile ct : o.colonyTiles) {
+            colonyTiles.add(context.copy(ct, ColonyTile.class));
+        }
+        for (ExportData ed : o.exportData.values()) {
+            ExportData data = new ExportData(spec.getGoodsType(ed.getId()))
+                .setHighLevel(ed.getHighLevel())
+                .setLowLevel(ed.getLowLevel())
+                .setExportLevel(ed.getExportLevel());
+            data.setExported(ed.getExported());
+            exportData.put(data.getId(), data);
+        }
+        this.liberty = o.liberty;
+        this.sonsOfLiberty = o.sonsOfLiberty;
+        this.oldSonsOfLiberty = o.oldSonsOfLiberty;
+        this.tories = o.tories;
+        this.oldTories = o.oldTories;
+        this.productionBonus = o.productionBonus;
+        this.immigration = o.immigration;
+        this.established = new Turn(o.established.getNumber());
+        for (BuildableType bt : o.buildQueue.getValues()) buildQueue.add(bt);
+        for (UnitType ut : o.populationQueue.getValues()) {
+            populationQueue.add(ut);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -492,6 +492,27 @@ public class ColonyTile extends WorkLocation {
     }
 
 
+    // Override FreeColGameObject
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final ColonyTile o = (ColonyTile)other;
+        context.resolve(o.workTile, t -> this.workTile = t);
+    }
+
+
     // Serialization
 
     private static final String WORK_TILE_TAG = "workTile";
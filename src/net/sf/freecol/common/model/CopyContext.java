@@ -0,0 +1,133 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+
+/**
+ * The state of a structural copy of a tree of game objects.
+ *
+ * A structural copy produces the same result as the serialization
+ * round trip in {@link FreeColObject#copy}, but works directly on the
+ * objects.  The copies are not interned into the game.  Objects
+ * contained in the copied object are copied too, and references to
+ * them are redirected to the copies, while references to anything
+ * outside the copied tree continue to refer to the original objects.
+ *
+ * References are resolved when the copy is complete, so objects may
+ * refer to other copied objects regardless of the order in which
+ * they are copied.
+ */
+public final class CopyContext {
+
+    /** The game to create the copies in. */
+    private final Game game;
+
+    /** The copies made so far, keyed by the original object. */
+    private final Map<FreeColGameObject, FreeColGameObject> copies
+        = new IdentityHashMap<>();
+
+    /** Pending reference resolutions. */
+    private final List<Runnable> references = new ArrayList<>();
+
+
+    /**
+     * Create a new copy context.
+     *
+     * @param game The <code>Game</code> to create the copies in.
+     */
+    public CopyContext(Game game) {
+        this.game = game;
+    }
+
+
+    /**
+     * Copy a tree of game objects.
+     *
+     * @param original The root <code>FreeColGameObject</code> to copy.
+     * @param returnClass The class of the copy to create.
+     * @return The copy of the root object.
+     * @exception UnsupportedOperationException if an object in the tree
+     *     can not be copied structurally.
+     */
+    public <T extends FreeColGameObject> T copyTree(FreeColGameObject original,
+                                                    Class<T> returnClass) {
+        T ret = copy(original, returnClass);
+        for (Runnable r : references) r.run();
+        references.clear();
+        return ret;
+    }
+
+    /**
+     * Copy an object contained in the tree being copied.
+     *
+     * If the object has already been copied, the existing copy is
+     * returned.
+     *
+     * @param original The <code>FreeColGameObject</code> to copy.
+     * @param returnClass The class of the copy to create.
+     * @return The copy, or null if the original is null.
+     * @exception UnsupportedOperationException if the object can not be
+     *     copied structurally.
+     */
+    public <T extends FreeColGameObject> T copy(FreeColGameObject original,
+                                                Class<T> returnClass) {
+        if (original == null) return null;
+        FreeColGameObject fcgo = copies.get(original);
+        if (fcgo != null) return returnClass.cast(fcgo);
+        if (!original.isStructurallyCopyable()) {
+            throw new UnsupportedOperationException("Can not copy: "
+                + original.getId());
+        }
+        T ret;
+        try {
+            ret = game.newInstance(returnClass, false);
+        } catch (IOException ioe) {
+            throw new UnsupportedOperationException(ioe);
+        }
+        copies.put(original, ret);
+        ret.copyFrom(original, this);
+        return ret;
+    }
+
+    /**
+     * Resolve a reference from a copied object.  The setter is called
+     * when the copy is complete, with the copy of the referenced
+     * object if it was copied, or the original object if not.
+     *
+     * @param original The referenced object in the original tree.
+     * @param setter A <code>Consumer</code> to set the reference in
+     *     the copy.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void resolve(final T original, final Consumer<T> setter) {
+        references.add(() -> {
+                Object copy = (original instanceof FreeColGameObject)
+                    ? copies.get(original) : null;
+                setter.accept((copy == null) ? original : (T)copy);
+            });
+    }
+}
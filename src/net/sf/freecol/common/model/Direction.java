@@ -96,6 +96,30 @@ public enum Direction implements Named {
             : new Map.Position(x + evenDX, y + evenDY);
     }
 
+    /**
+     * Step the x coordinate in this direction, without allocating a
+     * position.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The x coordinate after the step.
+     */
+    public int stepX(int x, int y) {
+        return x + (((y & 1) != 0) ? oddDX : evenDX);
+    }
+
+    /**
+     * Step the y coordinate in this direction, without allocating a
+     * position.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The y coordinate after the step.
+     */
+    public int stepY(int x, int y) {
+        return y + (((y & 1) != 0) ? oddDY : evenDY);
+    }
+
     /**
      * Gets this direction rotated by n places.
      *
@@ -0,0 +1,178 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.PriorityQueue;
+
+import static net.sf.freecol.common.model.FreeColObject.INFINITY;
+
+
+/**
+ * The cost of reaching a set of target tiles from every tile of the
+ * map, for one movement profile (owner, land or naval movement, and
+ * initial moves).
+ *
+ * The field is built with one reverse Dijkstra search from the
+ * targets, using the static move costs (terrain, roads and rivers).
+ * Units are ignored, and settlements are only passable if they belong
+ * to the owner or are targets.  Every move is capped at the initial
+ * moves of the profile, as a unit with all its moves left can always
+ * make a move.  The turns given by the field are thus an estimate of
+ * the turns a real path would take, good enough to compare targets,
+ * and answered without a search.
+ *
+ * Fields are obtained from, and cached by, Map.getDistanceField.
+ */
+public final class DistanceField {
+
+    /** The width of the map, to index the costs. */
+    private final int width;
+
+    /** The initial moves of the profile. */
+    private final int initialMoves;
+
+    /** The cost in moves to reach a target from each tile. */
+    private final int[] costs;
+
+
+    /**
+     * Build a new distance field.
+     *
+     * @param map The <code>Map</code> to use.
+     * @param owner The <code>Player</code> owning the units.
+     * @param naval True for naval movement.
+     * @param initialMoves The initial moves of the units.
+     * @param targets The target <code>Tile</code>s.
+     */
+    DistanceField(Map map, Player owner, boolean naval, int initialMoves,
+                  Collection<Tile> targets) {
+        final MapClusters.MovementClass mc = (naval)
+            ? MapClusters.MovementClass.NAVAL
+            : MapClusters.MovementClass.LAND;
+        this.width = map.getWidth();
+        this.initialMoves = Math.max(1, initialMoves);
+        this.costs = new int[width * map.getHeight()];
+        Arrays.fill(costs, INFINITY);
+
+        final PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (Tile t : targets) {
+            costs[index(t)] = 0;
+            queue.offer((long)index(t));
+        }
+        while (!queue.isEmpty()) {
+            final long k = queue.poll();
+            final int c = (int)(k >>> 32), p = (int)k;
+            if (c != costs[p]) continue; // Stale entry
+            final int x = p % width, y = p / width;
+            final Tile tile = map.getTile(x, y);
+            // Find the tiles a unit could move to this tile from.
+            for (Direction d : Direction.values()) {
+                final int nx = d.stepX(x, y), ny = d.stepY(x, y);
+                if (!map.isValid(nx, ny)) continue;
+                final Tile from = map.getTile(nx, ny);
+                if (!isPassable(from, owner, naval)) continue;
+                final int nc = c + Math.min(this.initialMoves,
+                    MapClusters.getMoveCost(from, tile, mc));
+                final int i = ny * width + nx;
+                if (nc < costs[i]) {
+                    costs[i] = nc;
+                    queue.offer(((long)nc << 32) | i);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Is a tile passable in this field?
+     *
+     * @param tile The <code>Tile</code> to check.
+     * @param owner The <code>Player</code> owning the units.
+     * @param naval True for naval movement.
+     * @return True if the tile is passable.
+     */
+    private static boolean isPassable(Tile tile, Player owner, boolean naval) {
+        if (!tile.isExplored()) return false;
+        final Settlement settlement = tile.getSettlement();
+        return (settlement != null) ? settlement.getOwner() == owner
+            : tile.isLand() != naval;
+    }
+
+    /**
+     * Get the index of a tile.
+     *
+     * @param tile The <code>Tile</code> to index.
+     * @return The tile index.
+     */
+    private int index(Tile tile) {
+        return tile.getY() * width + tile.getX();
+    }
+
+    /**
+     * Get the cost in moves of reaching the nearest target from a tile.
+     *
+     * @param tile The <code>Tile</code> to start at.
+     * @return The cost, or INFINITY if no target is reachable.
+     */
+    public int getCost(Tile tile) {
+        return costs[index(tile)];
+    }
+
+    /**
+     * Is a target reachable from a tile?
+     *
+     * @param tile The <code>Tile</code> to start at.
+     * @return True if a target is reachable.
+     */
+    public boolean isReachable(Tile tile) {
+        return getCost(tile) != INFINITY;
+    }
+
+    /**
+     * Get the estimated number of turns to reach the nearest target
+     * from a tile, with all moves left.
+     *
+     * @param tile The <code>Tile</code> to start at.
+     * @return The number of turns, or Unit.MANY_TURNS if no target is
+     *     reachable.
+     */
+    public int getTurns(Tile tile) {
+        return getTurns(tile, initialMoves);
+    }
+
+    /**
+     * Get the estimated number of turns to reach the nearest target
+     * from a tile.  As with PathNode.getTotalTurns, arriving with no
+     * moves left counts as taking the turn.
+     *
+     * @param tile The <code>Tile</code> to start at.
+     * @param movesLeft The moves left this turn.
+     * @return The number of turns, or Unit.MANY_TURNS if no target is
+     *     reachable.
+     */
+    public int getTurns(Tile tile, int movesLeft) {
+        final int cost = getCost(tile);
+        return (cost == INFINITY) ? Unit.MANY_TURNS
+            : (cost < movesLeft) ? 0
+            : 1 + (cost - movesLeft) / initialMoves;
+    }
+}
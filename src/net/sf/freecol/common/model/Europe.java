@@ -264,6 +264,17 @@ public class Europe extends UnitLocation
         return featureContainer;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getAbilityState(String id) {
+        return Math.max(featureContainer.getAbilityState(id),
+            (Ability.DRESS_MISSIONARY.equals(id))
+            ? FeatureContainer.ABILITY_TRUE
+            : FeatureContainer.ABILITY_ABSENT);
+    }
+
     // Override FreeColGameObject
 
     /**
@@ -64,6 +64,12 @@ public abstract class Feature extends FreeColObject implements Named {
      */
     private List<Scope> scopes = null;
 
+    /**
+     * Has this feature been added to a <code>FeatureContainer</code>?
+     * Do not serialize.
+     */
+    private boolean contained = false;
+
 
     /**
      * Copy another Feature.
@@ -80,6 +86,22 @@ public abstract class Feature extends FreeColObject implements Named {
         setScopes(other.getScopes());
     }
 
+    /**
+     * Mark this feature as held in a <code>FeatureContainer</code>.
+     */
+    void setContained() {
+        contained = true;
+    }
+
+    /**
+     * Note a change that could alter the containers this feature
+     * resolves in, or its order of application.  Changes to features
+     * not yet in any container are free.
+     */
+    void changed() {
+        if (contained) FeatureContainer.featureChanged();
+    }
+
     /**
      * Does this feature have a time limit?
      *
@@ -105,6 +127,7 @@ public abstract class Feature extends FreeColObject implements Named {
      */
     public final void setFirstTurn(final Turn newFirstTurn) {
         this.firstTurn = newFirstTurn;
+        changed();
     }
 
     /**
@@ -123,6 +146,7 @@ public abstract class Feature extends FreeColObject implements Named {
      */
     public final void setLastTurn(final Turn newLastTurn) {
         this.lastTurn = newLastTurn;
+        changed();
     }
 
     /**
@@ -151,6 +175,7 @@ public abstract class Feature extends FreeColObject implements Named {
      */
     public final void setScopes(List<Scope> scopes) {
         this.scopes = scopes;
+        changed();
     }
 
     /**
@@ -161,6 +186,7 @@ public abstract class Feature extends FreeColObject implements Named {
     public void addScope(Scope scope) {
         if (scopes == null) scopes = new ArrayList<>();
         scopes.add(scope);
+        changed();
     }
 
     /**
@@ -179,6 +205,7 @@ public abstract class Feature extends FreeColObject implements Named {
      */
     public final void setSource(final FreeColObject newSource) {
         this.source = newSource;
+        changed();
     }
 
     /**
@@ -443,6 +470,7 @@ public abstract class Feature extends FreeColObject implements Named {
     protected void readChildren(FreeColXMLReader xr) throws XMLStreamException {
         // Clear containers.
         scopes = null;
+        changed();
 
         super.readChildren(xr);
     }
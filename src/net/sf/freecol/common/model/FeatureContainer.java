@@ -19,6 +19,8 @@
 package net.sf.freecol.common.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -28,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import static net.sf.freecol.common.util.CollectionUtils.*;
@@ -49,16 +52,128 @@ public final class FeatureContainer {
 
     private static final Logger logger = Logger.getLogger(FeatureContainer.class.getName());
 
+    /**
+     * A count of changes to features that alter which objects they
+     * apply to or the order they are applied in.  Such changes are
+     * not visible to the containers holding the features, so any
+     * change invalidates all the modifier caches and ability masks.
+     * They are rare once the specification has been loaded.
+     */
+    private static final AtomicInteger featureChanges
+        = new AtomicInteger(0);
+
     /** Lock variables. */
     private final Object abilitiesLock = new Object();
     private final Object modifiersLock = new Object();
 
+    /**
+     * Summary states of an ability, as returned by getAbilityState.
+     * They are ordered so that the state of the union of two sets of
+     * abilities is the maximum of their states.
+     */
+    public static final int ABILITY_ABSENT = 0,  // No abilities present
+        ABILITY_TRUE = 1,    // All present abilities are true
+        ABILITY_FALSE = 2,   // Some present ability is false
+        ABILITY_UNKNOWN = 3; // Scopes or time limits apply, check fully
+
     /** The abilities in the container. */
     private Map<String, Set<Ability>> abilities = null;
 
+    /**
+     * The version of the abilities, incremented on every change.
+     * Protected by abilitiesLock.
+     */
+    private int abilitiesVersion = 0;
+
+    /**
+     * Summary of the abilities by ability index, valid only for
+     * abilitiesVersion == abilityMaskVersion.  The present bit is set
+     * for identifiers with abilities, the simple bit if none of them
+     * have scopes or time limits, and the true bit if all of them are
+     * true.  Protected by abilitiesLock.
+     */
+    private BitSet abilityPresent = null, abilitySimple = null,
+        abilityTrue = null;
+
+    /** The abilities version the masks were built at. */
+    private int abilityMaskVersion = -1;
+
+    /** The feature changes count the masks were built at. */
+    private int abilityMaskChanges = -1;
+
     /** The modifiers in the container. */
     private Map<String, Set<Modifier>> modifiers = null;
 
+    /**
+     * The version of the modifiers, incremented on every change.
+     * Protected by modifiersLock.
+     */
+    private int modifiersVersion = 0;
+
+    /**
+     * Cache of resolved modifiers by identifier and type, valid only
+     * for modifiersVersion == modifierCacheVersion.
+     * Protected by modifiersLock.
+     */
+    private Map<String, Map<FreeColGameObjectType, ModifierResolution>>
+        modifierCache = null;
+
+    /** The modifiers version the cache was filled at. */
+    private int modifierCacheVersion = -1;
+
+    /** The feature changes count the cache was filled at. */
+    private int modifierCacheChanges = -1;
+
+
+    /**
+     * The modifiers with a given identifier that apply to a given
+     * type, sorted in application order.
+     */
+    private static final class ModifierResolution {
+
+        /** The sorted modifiers. */
+        public final Modifier[] modifiers;
+
+        /** An unmodifiable list view of the modifiers. */
+        public final List<Modifier> list;
+
+        /**
+         * The turn number the modifiers were resolved for, or
+         * NO_TURN if they do not depend on the turn.
+         */
+        public final int turn;
+
+        /** Marker for turn independent resolutions. */
+        public static final int NO_TURN = Integer.MIN_VALUE;
+
+
+        public ModifierResolution(Modifier[] modifiers, int turn) {
+            this.modifiers = modifiers;
+            this.list = Collections.unmodifiableList(Arrays.asList(modifiers));
+            this.turn = turn;
+        }
+
+        /**
+         * Is this resolution valid for a turn?
+         *
+         * @param turn The <code>Turn</code> to check.
+         * @return True if the resolution can be used for the turn.
+         */
+        public boolean isValid(Turn turn) {
+            return this.turn == NO_TURN || this.turn == turnNumber(turn);
+        }
+
+        /**
+         * Get the number of an optional turn.
+         *
+         * @param turn The <code>Turn</code> to check.
+         * @return The turn number, or -1 if null.
+         */
+        public static int turnNumber(Turn turn) {
+            return (turn == null) ? -1 : turn.getNumber();
+        }
+    }
+
 
     /**
      * Have the abilities map been created?
@@ -101,6 +216,14 @@ public final class FeatureContainer {
     }
 
 
+    /**
+     * Note that a feature has changed in a way that could alter the
+     * result of resolving it in any container.
+     */
+    static void featureChanged() {
+        featureChanges.incrementAndGet();
+    }
+
     /**
      * Is the given set of abilities non-empty and contains no
      * false-valued members?
@@ -125,9 +248,55 @@ public final class FeatureContainer {
      */
     public boolean hasAbility(String id, FreeColGameObjectType fcgot,
                               Turn turn) {
+        if (id != null) {
+            switch (getAbilityState(id)) {
+            case ABILITY_ABSENT: case ABILITY_FALSE:
+                return false;
+            case ABILITY_TRUE:
+                return true;
+            default:
+                break;
+            }
+        }
         return FeatureContainer.hasAbility(getAbilities(id, fcgot, turn));
     }
 
+    /**
+     * Get the summary state of the abilities with a given identifier,
+     * without creating any collections.
+     *
+     * @param id The object identifier.
+     * @return The ability state, ABILITY_UNKNOWN if the abilities
+     *     need to be checked with their scopes and time limits.
+     */
+    public int getAbilityState(String id) {
+        if (!abilitiesPresent()) return ABILITY_ABSENT;
+        final int index = Ability.getIndex(id);
+        synchronized (abilitiesLock) {
+            final int changes = featureChanges.get();
+            if (abilityMaskVersion != abilitiesVersion
+                || abilityMaskChanges != changes) {
+                abilityPresent = new BitSet();
+                abilitySimple = new BitSet();
+                abilityTrue = new BitSet();
+                for (Entry<String, Set<Ability>> e : abilities.entrySet()) {
+                    if (e.getValue().isEmpty()) continue;
+                    int i = Ability.getIndex(e.getKey());
+                    abilityPresent.set(i);
+                    abilitySimple.set(i, none(e.getValue(),
+                            a -> a.hasScope() || a.hasTimeLimit()));
+                    abilityTrue.set(i, all(e.getValue(), Ability::getValue));
+                }
+                abilityMaskVersion = abilitiesVersion;
+                abilityMaskChanges = changes;
+            }
+            return (!abilityPresent.get(index)) ? ABILITY_ABSENT
+                : (!abilitySimple.get(index)) ? ABILITY_UNKNOWN
+                : (abilityTrue.get(index)) ? ABILITY_TRUE
+                : ABILITY_FALSE;
+        }
+    }
+
     /**
      * Checks if this container contains a given ability key.
      *
@@ -181,7 +350,9 @@ public final class FeatureContainer {
         if (ability == null) return false;
 
         requireAbilities();
+        ability.setContained();
         synchronized (abilitiesLock) {
+            abilitiesVersion++;
             Set<Ability> abilitySet = abilities.get(ability.getId());
             if (abilitySet == null) {
                 abilitySet = new HashSet<>();
@@ -201,6 +372,7 @@ public final class FeatureContainer {
         if (ability == null || !abilitiesPresent()) return null;
 
         synchronized (abilitiesLock) {
+            abilitiesVersion++;
             Set<Ability> abilitySet = abilities.get(ability.getId());
             return (abilitySet == null
                 || !abilitySet.remove(ability)) ? null
@@ -217,6 +389,7 @@ public final class FeatureContainer {
         if (!abilitiesPresent()) return;
 
         synchronized (abilitiesLock) {
+            abilitiesVersion++;
             abilities.remove(id);
         }
     }
@@ -236,25 +409,32 @@ public final class FeatureContainer {
                                       Turn turn) {
         Set<Modifier> result = new HashSet<>();
         if (modifiersPresent()) {
-            synchronized (modifiersLock) {
-                if (id == null) {
-                    for (Set<Modifier> mset : modifiers.values()) {
-                        result.addAll(mset);
-                    }
-                } else {
-                    Set<Modifier> mset = modifiers.get(id);
-                    if (mset != null) result.addAll(mset);
-                }
-            }
-            Iterator<Modifier> it = result.iterator();
-            while (it.hasNext()) {
-                Modifier m = it.next();
-                if (!m.appliesTo(fcgot, turn)) it.remove();
-            }
+            Collections.addAll(result, resolveModifiers(id, fcgot, turn));
         }
         return result;
     }
 
+    /**
+     * Gets the modifiers with the given identifier from this
+     * container, sorted in the order they are applied.
+     *
+     * The result is shared between callers and must not be modified.
+     *
+     * @param id The object identifier.
+     * @param fcgot An optional <code>FreeColGameObjectType</code> the
+     *     modifier applies to.
+     * @param turn An optional applicable <code>Turn</code>.
+     * @return An unmodifiable sorted list of modifiers.
+     */
+    public List<Modifier> getSortedModifiers(String id,
+                                             FreeColGameObjectType fcgot,
+                                             Turn turn) {
+        if (!modifiersPresent()) return Collections.<Modifier>emptyList();
+        synchronized (modifiersLock) {
+            return resolveModifierCache(id, fcgot, turn).list;
+        }
+    }
+
     /**
      * Applies this objects modifiers with the given identifier to the
      * given number.
@@ -268,7 +448,84 @@ public final class FeatureContainer {
      */
     public final float applyModifiers(float number, Turn turn,
                                       String id, FreeColGameObjectType fcgot) {
-        return applyModifiers(number, turn, getModifiers(id, fcgot, turn));
+        if (!modifiersPresent()) return number;
+        float result = number;
+        for (Modifier m : resolveModifiers(id, fcgot, turn)) {
+            float value = m.getValue(turn);
+            if (value == Modifier.UNKNOWN) return value;
+            result = m.apply(result, value);
+        }
+        return result;
+    }
+
+    /**
+     * Get the sorted modifiers that apply, using the cache if possible.
+     *
+     * @param id The object identifier.
+     * @param fcgot An optional <code>FreeColGameObjectType</code> the
+     *     modifier applies to.
+     * @param turn An optional applicable <code>Turn</code>.
+     * @return The sorted array of applicable modifiers, which must not
+     *     be modified.
+     */
+    private Modifier[] resolveModifiers(String id, FreeColGameObjectType fcgot,
+                                        Turn turn) {
+        synchronized (modifiersLock) {
+            return resolveModifierCache(id, fcgot, turn).modifiers;
+        }
+    }
+
+    /**
+     * Look up or fill in the modifier cache entry.  The modifiers
+     * lock must be held and the modifiers present.
+     *
+     * @param id The object identifier.
+     * @param fcgot An optional <code>FreeColGameObjectType</code> the
+     *     modifier applies to.
+     * @param turn An optional applicable <code>Turn</code>.
+     * @return The <code>ModifierResolution</code> found.
+     */
+    private ModifierResolution resolveModifierCache(String id,
+        FreeColGameObjectType fcgot, Turn turn) {
+        final int changes = featureChanges.get();
+        if (modifierCache == null
+            || modifierCacheVersion != modifiersVersion
+            || modifierCacheChanges != changes) {
+            modifierCache = new HashMap<>();
+            modifierCacheVersion = modifiersVersion;
+            modifierCacheChanges = changes;
+        }
+        Map<FreeColGameObjectType, ModifierResolution> byType
+            = modifierCache.get(id);
+        if (byType == null) {
+            byType = new HashMap<>();
+            modifierCache.put(id, byType);
+        }
+        ModifierResolution mr = byType.get(fcgot);
+        if (mr == null || !mr.isValid(turn)) {
+            List<Modifier> result = new ArrayList<>();
+            if (id == null) {
+                for (Set<Modifier> mset : modifiers.values()) {
+                    result.addAll(mset);
+                }
+            } else {
+                Set<Modifier> mset = modifiers.get(id);
+                if (mset != null) result.addAll(mset);
+            }
+            boolean timed = false;
+            Iterator<Modifier> it = result.iterator();
+            while (it.hasNext()) {
+                Modifier m = it.next();
+                timed |= m.getFirstTurn() != null || m.getLastTurn() != null;
+                if (!m.appliesTo(fcgot, turn)) it.remove();
+            }
+            Collections.sort(result);
+            mr = new ModifierResolution(result.toArray(new Modifier[0]),
+                (timed) ? ModifierResolution.turnNumber(turn)
+                : ModifierResolution.NO_TURN);
+            byType.put(fcgot, mr);
+        }
+        return mr;
     }
 
     /**
@@ -303,7 +560,9 @@ public final class FeatureContainer {
         if (modifier == null) return false;
 
         requireModifiers();
+        modifier.setContained();
         synchronized (modifiersLock) {
+            modifiersVersion++;
             Set<Modifier> modifierSet = modifiers.get(modifier.getId());
             if (modifierSet == null) {
                 modifierSet = new HashSet<>();
@@ -322,7 +581,9 @@ public final class FeatureContainer {
     public Modifier removeModifier(Modifier modifier) {
         if (modifier == null || !modifiersPresent()) return null;
 
+        modifier.setContained();
         synchronized (modifiersLock) {
+            modifiersVersion++;
             Set<Modifier> modifierSet = modifiers.get(modifier.getId());
             return (modifierSet == null
                 || !modifierSet.remove(modifier)) ? null
@@ -339,6 +600,7 @@ public final class FeatureContainer {
         if (!modifiersPresent()) return;
 
         synchronized (modifiersLock) {
+            modifiersVersion++;
             modifiers.remove(id);
         }
     }
@@ -359,12 +621,14 @@ public final class FeatureContainer {
                 ca = new HashMap<>(c.abilities);
             }
             synchronized (abilitiesLock) {
+                abilitiesVersion++;
                 for (Entry<String, Set<Ability>> e : ca.entrySet()) {
                     Set<Ability> abilitySet = abilities.get(e.getKey());
                     if (abilitySet == null) {
                         abilitySet = new HashSet<>();
                         abilities.put(e.getKey(), abilitySet);
                     }
+                    for (Ability a : e.getValue()) a.setContained();
                     abilitySet.addAll(e.getValue());
                 }
             }
@@ -377,12 +641,14 @@ public final class FeatureContainer {
                 cm = new HashMap<>(c.modifiers);
             }
             synchronized (modifiersLock) {
+                modifiersVersion++;
                 for (Entry<String, Set<Modifier>> e : cm.entrySet()) {
                     Set<Modifier> modifierSet = modifiers.get(e.getKey());
                     if (modifierSet == null) {
                         modifierSet = new HashSet<>();
                         modifiers.put(e.getKey(), modifierSet);
                     }
+                    for (Modifier m : e.getValue()) m.setContained();
                     modifierSet.addAll(e.getValue());
                 }
             }
@@ -405,6 +671,7 @@ public final class FeatureContainer {
                 ca.addAll(c.abilities.keySet());
             }
             synchronized (abilitiesLock) {
+                abilitiesVersion++;
                 for (String key : ca) {
                     Set<Ability> abilitySet = abilities.get(key);
                     if (abilitySet == null) continue;
@@ -421,6 +688,7 @@ public final class FeatureContainer {
                 cm.addAll(c.modifiers.keySet());
             }
             synchronized (modifiersLock) {
+                modifiersVersion++;
                 for (String key : cm) {
                     Set<Modifier> modifierSet = modifiers.get(key);
                     if (modifierSet == null) continue;
@@ -438,11 +706,13 @@ public final class FeatureContainer {
     public void clear() {
         if (abilitiesPresent()) {
             synchronized (abilitiesLock) {
+                abilitiesVersion++;
                 abilities.clear();
             }
         }
         if (modifiersPresent()) {
             synchronized (modifiersLock) {
+                modifiersVersion++;
                 modifiers.clear();
             }
         }
@@ -215,6 +215,46 @@ public abstract class FreeColGameObject extends FreeColObject {
         return null;
     }
 
+    /**
+     * Can this object be copied with {@link #copyIn}?
+     *
+     * To be overridden by the subclasses that fully implement copyIn.
+     *
+     * @return True if a structural copy is possible.
+     */
+    protected boolean isStructurallyCopyable() {
+        return false;
+    }
+
+    /**
+     * Initialize this object as a structural copy of another.
+     *
+     * @param other The <code>FreeColGameObject</code> to copy.
+     * @param context The <code>CopyContext</code> of the copy.
+     */
+    final void copyFrom(FreeColGameObject other, CopyContext context) {
+        setId(other.getId());
+        uninitialized = false;
+        copyIn(other, context);
+    }
+
+    /**
+     * Copy the state of another object into this one, as part of a
+     * structural copy.  Contained objects are copied with
+     * {@link CopyContext#copy}, and references to other objects are
+     * set with {@link CopyContext#resolve}.
+     *
+     * To be extended by subclasses, which should copy the same state
+     * that they serialize.
+     *
+     * @param other The <code>FreeColGameObject</code> to copy from,
+     *     which is of the same class as this object or a subclass.
+     * @param context The <code>CopyContext</code> of the copy.
+     */
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        // Nothing to copy at this level
+    }
+
     /**
      * Get a suitable game object to use as a clickable link in messages
      * to a player.
@@ -307,6 +347,28 @@ public abstract class FreeColGameObject extends FreeColObject {
         return 31 * hash + Utils.hashCode(this.game);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Objects that support it are copied structurally, which avoids
+     * the serialization round trip.
+     */
+    @Override
+    public <T extends FreeColObject> T copy(Game game, Class<T> returnClass) {
+        if (isStructurallyCopyable()
+            && FreeColGameObject.class.isAssignableFrom(returnClass)) {
+            try {
+                CopyContext context = new CopyContext(game);
+                return returnClass.cast(context.copyTree(this,
+                        returnClass.asSubclass(FreeColGameObject.class)));
+            } catch (UnsupportedOperationException uoe) {
+                logger.log(Level.FINE, "Falling back to serialized copy of "
+                    + getId(), uoe);
+            }
+        }
+        return super.copy(game, returnClass);
+    }
+
 
     // Serialization
 
@@ -114,6 +114,14 @@ public abstract class FreeColGameObjectType extends FreeColObject
         return featureContainer;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getAbilityState(String id) {
+        return getFeatureContainer().getAbilityState(id);
+    }
+
     /**
      * Gets the index of this FreeColGameObjectType.
      *
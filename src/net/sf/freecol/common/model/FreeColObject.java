@@ -430,9 +430,36 @@ public abstract class FreeColObject
      */
     public final boolean hasAbility(String id, FreeColGameObjectType fcgot,
                                     Turn turn) {
+        if (id != null) {
+            switch (getAbilityState(id)) {
+            case FeatureContainer.ABILITY_ABSENT:
+            case FeatureContainer.ABILITY_FALSE:
+                return false;
+            case FeatureContainer.ABILITY_TRUE:
+                return true;
+            default:
+                break;
+            }
+        }
         return FeatureContainer.hasAbility(getAbilities(id, fcgot, turn));
     }
 
+    /**
+     * Get the summary state of the abilities with a given identifier,
+     * allowing hasAbility to avoid building the ability set.
+     *
+     * Subclasses that can summarize the result of their getAbilities
+     * cheaply should override this.  The default is unknown, which
+     * forces the full evaluation.
+     *
+     * @param id The object identifier.
+     * @return The ability state, as in
+     *     {@link FeatureContainer#getAbilityState(String)}.
+     */
+    protected int getAbilityState(String id) {
+        return FeatureContainer.ABILITY_UNKNOWN;
+    }
+
     /**
      * Checks if this object contains a given ability key.
      *
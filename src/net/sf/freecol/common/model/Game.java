@@ -1045,6 +1045,9 @@ public class Game extends FreeColGameObject {
             stats.put(entry.getKey(), Long.toString(entry.getValue()));
         }
 
+        // Path finding
+        if (map != null) stats.putAll(map.getPathCacheStatistics());
+
         return stats;
     }
 
@@ -1230,7 +1233,9 @@ public class Game extends FreeColGameObject {
     protected void writeChildren(FreeColXMLWriter xw) throws XMLStreamException {
         super.writeChildren(xw);
 
-        specification.toXML(xw);
+        // The specification is fixed once the game is underway, so
+        // its serialization can wait for a snapshot to be replayed.
+        xw.writeDeferred((w) -> specification.toXML(w));
 
         for (String cityName : NameCache.getCitiesOfCibola()) {
             // Preserve existing order
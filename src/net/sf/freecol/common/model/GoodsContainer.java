@@ -481,6 +481,30 @@ public class GoodsContainer extends FreeColGameObject implements Ownable {
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final GoodsContainer o = (GoodsContainer)other;
+        synchronized (o.storedGoods) {
+            storedGoods.putAll(o.storedGoods);
+            synchronized (o.oldStoredGoods) {
+                oldStoredGoods.putAll(o.oldStoredGoods);
+            }
+        }
+        context.resolve(o.parent, l -> this.parent = l);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -316,6 +316,19 @@ public abstract class GoodsLocation extends UnitLocation {
     }
 
 
+    // Override FreeColGameObject
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final GoodsLocation o = (GoodsLocation)other;
+        goodsContainer = context.copy(o.goodsContainer, GoodsContainer.class);
+    }
+
+
     // Serialization
 
 
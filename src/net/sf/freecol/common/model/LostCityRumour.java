@@ -372,6 +372,25 @@ public class LostCityRumour extends TileItem {
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final LostCityRumour o = (LostCityRumour)other;
+        this.type = o.type;
+        this.name = o.name;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -20,24 +20,32 @@
 package net.sf.freecol.common.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 import javax.xml.stream.XMLStreamException;
 
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.RecordingXMLStreamWriter;
 import net.sf.freecol.common.model.pathfinding.CostDecider;
 import net.sf.freecol.common.model.pathfinding.CostDeciders;
 import net.sf.freecol.common.model.pathfinding.GoalDecider;
@@ -66,7 +74,7 @@ public class Map extends FreeColGameObject implements Location {
      * Possible actions by the unit travelling along a path in consideration
      * of the next tile.
      */
-    private static enum MoveStep { FAIL, BYLAND, BYWATER, EMBARK, DISEMBARK };
+    static enum MoveStep { FAIL, BYLAND, BYWATER, EMBARK, DISEMBARK };
 
     /**
      * The number of tiles from the upper edge that are considered
@@ -74,6 +82,16 @@ public class Map extends FreeColGameObject implements Location {
      */
     public final static int POLAR_HEIGHT = 2;
 
+    /** The largest radius with a precomputed ring of tile offsets. */
+    public static final int MAX_RING_RADIUS = 4;
+
+    /**
+     * The offsets of the tiles in each ring around a tile, indexed by
+     * the parity of the row of the center tile and the ring radius.
+     * Offsets are x,y pairs in the order a CircleIterator visits them.
+     */
+    private static final int[][][] RING_OFFSETS = makeRingOffsets();
+
     /**
      * The layers included in the map. The RIVERS layer includes all
      * natural tile improvements that are not resources. The NATIVES
@@ -238,6 +256,42 @@ public class Map extends FreeColGameObject implements Location {
         }
     }
 
+    /** A search to run with {@link #searchAll}. */
+    public static final class SearchRequest {
+
+        /** The arguments to {@link #search}. */
+        public final Unit unit;
+        public final Location start;
+        public final GoalDecider goalDecider;
+        public final CostDecider costDecider;
+        public final int maxTurns;
+        public final Unit carrier;
+
+
+        /**
+         * Creates a new search request.
+         *
+         * @param unit The <code>Unit</code> to find a path for.
+         * @param start The <code>Location</code> to start the search from.
+         * @param goalDecider The <code>GoalDecider</code> for this
+         *     search only.
+         * @param costDecider An optional <code>CostDecider</code> for
+         *     this search only.
+         * @param maxTurns The maximum number of turns to search.
+         * @param carrier An optional naval carrier <code>Unit</code>.
+         */
+        public SearchRequest(Unit unit, Location start,
+                             GoalDecider goalDecider, CostDecider costDecider,
+                             int maxTurns, Unit carrier) {
+            this.unit = unit;
+            this.start = start;
+            this.goalDecider = goalDecider;
+            this.costDecider = costDecider;
+            this.maxTurns = maxTurns;
+            this.carrier = carrier;
+        }
+    }
+
 
     /** The tiles that this map contains. */
     private Tile[][] tiles;
@@ -268,6 +322,67 @@ public class Map extends FreeColGameObject implements Location {
     /** The search tracing status.  Do not serialize. */
     private boolean traceSearch = false;
 
+    /**
+     * Use the array based search engine, see {@link PathSearch}.
+     * Only turned off to compare against the original engine.
+     */
+    private static boolean arraySearch = true;
+
+    /**
+     * Plan the long paths of AI units with the cluster graph, see
+     * {@link MapClusters}.  Only turned off to compare against whole
+     * map searches.
+     */
+    private static boolean hierarchicalSearch = true;
+
+    /** The clusters for long range searches.  Do not serialize. */
+    private MapClusters clusters = null;
+
+    /** Cache the paths found by findPath, see {@link PathCache}. */
+    private static boolean pathCaching = true;
+
+    /**
+     * Check cached paths against a fresh search.  Only turned on
+     * in tests.
+     */
+    private static boolean verifyPathCache = false;
+
+    /** The paths found this turn.  Do not serialize. */
+    private final PathCache pathCache = new PathCache();
+
+    /**
+     * Repair the previous paths of units rather than replanning,
+     * see {@link PathRepair}.  Only turned off in tests.
+     */
+    private static boolean pathRepairing = true;
+
+    /** The plans of units with a destination.  Do not serialize. */
+    private final PathRepair pathRepair = new PathRepair();
+
+    /** Are the costs of sea moves cached? */
+    private static boolean seaLegCaching = true;
+
+    /** The costs of the sea moves of naval units.  Do not serialize. */
+    private final SeaLegCache seaLegCache = new SeaLegCache();
+
+    /**
+     * The distance fields built this turn, the turn they were built
+     * in, and the version of the map they were built with.  The version
+     * is bumped by changes to the tiles, see tileChanged and
+     * pathsChanged.  Do not serialize.
+     */
+    private final java.util.Map<List<Object>, DistanceField> distanceFields
+        = new HashMap<>();
+    private int distanceFieldTurn = -1;
+    private int distanceFieldVersion = -1;
+    private int tileVersion = 0;
+
+    /**
+     * The next unused contiguity identifier, negative if not yet known.
+     * Do not serialize.
+     */
+    private int nextContiguity = -1;
+
 
     /**
      * Create a new <code>Map</code> from a collection of tiles.
@@ -688,7 +803,7 @@ public class Map extends FreeColGameObject implements Location {
     /**
      * Simple interface to supply a heuristic to the A* routine.
      */
-    private interface SearchHeuristic {
+    interface SearchHeuristic {
         int getValue(Tile tile);
     }
 
@@ -854,8 +969,8 @@ public class Map extends FreeColGameObject implements Location {
             // without-carrier paths.  The latter will usually be
             // faster, but not always, e.g. mounted units on a good
             // road system.
-            path = searchMap(unit, start, gd, costDecider,
-                             INFINITY, null, sh, lb);
+            path = searchLongPath(unit, start, end, gd, costDecider,
+                                  sh, lb);
             PathNode carrierPath = (carrier == null) ? null
                 : searchMap(unit, start, gd, costDecider,
                             INFINITY, carrier, sh, lb);
@@ -871,8 +986,10 @@ public class Map extends FreeColGameObject implements Location {
             // use settlements and inland lakes are possible, but hard
             // to capture with the contiguity test, so just allow the
             // search to proceed.
-            path = searchMap(unit, start, gd, costDecider,
-                             INFINITY, carrier, sh, lb);
+            path = (carrier == null)
+                ? searchLongPath(unit, start, end, gd, costDecider, sh, lb)
+                : searchMap(unit, start, gd, costDecider,
+                            INFINITY, carrier, sh, lb);
 
         } else if (unit != null && unit.isOnCarrier()
             && !start.isLand() && end.isLand()
@@ -947,7 +1064,85 @@ public class Map extends FreeColGameObject implements Location {
                              final Unit carrier, CostDecider costDecider,
                              LogBuilder lb) {
         if (traceSearch) lb = new LogBuilder(1024);
+        if (pathCaching && lb == null && unit != null) {
+            final Turn turn = getGame().getTurn();
+            final int turnNumber = (turn == null) ? 0 : turn.getNumber();
+            return pathCache.findPath(unit, start, end, carrier, costDecider,
+                turnNumber, verifyPathCache,
+                () -> findPathRepaired(unit, start, end, carrier,
+                                       costDecider, turnNumber));
+        }
+        return findPathInternal(unit, start, end, carrier, costDecider, lb);
+    }
 
+    /**
+     * Finds a shortest path between the given tiles, repairing the
+     * previous path of the unit if possible, see {@link PathRepair}.
+     * Only paths for a unit on the map, to the tile of its destination,
+     * without a carrier, are repaired.
+     *
+     * @param unit The <code>Unit</code> to find the path for.
+     * @param start The <code>Location</code> in which the path starts from.
+     * @param end The <code>Location</code> at the end of the path.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param costDecider An optional <code>CostDecider</code>.
+     * @param turn The current turn number.
+     * @return A path starting at the start location and ending at the
+     *     end location.
+     */
+    private PathNode findPathRepaired(final Unit unit,
+                                      final Location start, final Location end,
+                                      final Unit carrier,
+                                      final CostDecider costDecider,
+                                      final int turn) {
+        if (pathRepairing) pathRepair.setTurn(turn);
+        final Tile startTile = (start == null) ? null : start.getTile();
+        final Location realEnd = (end == null) ? null
+            : (end instanceof Tile) ? end
+            : end.getTile();
+        if (!pathRepairing || !arraySearch || carrier != null
+            || startTile == null || startTile != unit.getTile()
+            || unit.isOnCarrier() || !(realEnd instanceof Tile)
+            || !((Tile)realEnd).isExplored()
+            || unit.getDestination() == null
+            || unit.getDestination().getTile() != realEnd) {
+            return findPathInternal(unit, start, end, carrier, costDecider,
+                                    null);
+        }
+        final Tile endTile = (Tile)realEnd;
+        return pathRepair.findPath(this, unit, startTile, endTile,
+            costDecider, turn, verifyPathCache,
+            (boolean[] corridor) -> {
+                PathNode path = PathSearch.get().search(this, unit,
+                    startTile, GoalDeciders.getLocationGoalDecider(endTile),
+                    costDecider, INFINITY, null,
+                    getManhattenHeuristic(endTile), corridor);
+                finishPath(path, unit, null);
+                return path;
+            },
+            () -> findPathInternal(unit, start, end, carrier, costDecider,
+                                   null));
+    }
+
+    /**
+     * Finds a shortest path between the given tiles, without the cache.
+     *
+     * @param unit The <code>Unit</code> to find the path for.
+     * @param start The <code>Location</code> in which the path starts from.
+     * @param end The <code>Location</code> at the end of the path.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param costDecider An optional <code>CostDecider</code> for
+     *     determining the movement costs (uses default cost deciders
+     *     for the unit/s if not provided).
+     * @param lb An optional <code>LogBuilder</code> to log to.
+     * @return A path starting at the start location and ending at the
+     *     end location.
+     */
+    private PathNode findPathInternal(final Unit unit,
+                                      final Location start, final Location end,
+                                      final Unit carrier,
+                                      final CostDecider costDecider,
+                                      LogBuilder lb) {
         // Validate the arguments, reducing to either Europe or a Tile.
         final Location realStart = findRealStart(unit, start, carrier);
         final Location realEnd;
@@ -1119,6 +1314,41 @@ public class Map extends FreeColGameObject implements Location {
         return path;
     }
 
+    /**
+     * Runs a batch of searches concurrently on the fork-join pool.
+     *
+     * The searches only read the map, and the calling thread waits
+     * until they are all done, so the map must not be changed by
+     * other threads meanwhile, as is the case during an AI turn.
+     * The deciders must not change the game either, and each request
+     * needs its own decider instances (see GoalDecider and CostDecider).
+     *
+     * @param requests The <code>SearchRequest</code>s to run.
+     * @return A list of the paths found, or null where none was found,
+     *     in the order of the requests.
+     * @throws IllegalArgumentException If a decider is shared between
+     *     requests, or a search fails as {@link #search} would.
+     */
+    public List<PathNode> searchAll(List<SearchRequest> requests) {
+        final java.util.Map<Object, Boolean> deciders
+            = new IdentityHashMap<>();
+        for (SearchRequest r : requests) {
+            if (deciders.put(r.goalDecider, Boolean.TRUE) != null
+                || (r.costDecider != null
+                    && deciders.put(r.costDecider, Boolean.TRUE) != null)) {
+                throw new IllegalArgumentException("Decider shared between"
+                    + " search requests: " + r.unit);
+            }
+        }
+        final PathNode[] paths = new PathNode[requests.size()];
+        IntStream.range(0, paths.length).parallel().forEach(i -> {
+                final SearchRequest r = requests.get(i);
+                paths[i] = search(r.unit, r.start, r.goalDecider,
+                                  r.costDecider, r.maxTurns, r.carrier, null);
+            });
+        return Arrays.asList(paths);
+    }
+
     /**
      * Gets the search tracing status.
      *
@@ -1140,6 +1370,277 @@ public class Map extends FreeColGameObject implements Location {
         return ret;
     }
 
+    /**
+     * Sets whether searches use the array based engine.
+     *
+     * @param array If true use the array based engine.
+     * @return The original setting.
+     */
+    static boolean setArraySearch(boolean array) {
+        boolean ret = arraySearch;
+        arraySearch = array;
+        return ret;
+    }
+
+    /**
+     * Sets whether long paths are planned with the cluster graph.
+     *
+     * @param hierarchical If true use the cluster graph.
+     * @return The original setting.
+     */
+    static boolean setHierarchicalSearch(boolean hierarchical) {
+        boolean ret = hierarchicalSearch;
+        hierarchicalSearch = hierarchical;
+        return ret;
+    }
+
+    /**
+     * Gets the clusters used to plan long paths, creating them if needed.
+     *
+     * @return The <code>MapClusters</code> for this map.
+     */
+    synchronized MapClusters getClusters() {
+        if (clusters == null) clusters = new MapClusters(this);
+        return clusters;
+    }
+
+    /**
+     * Sets whether the paths found by findPath are cached.
+     *
+     * @param caching If true cache the paths.
+     * @return The original setting.
+     */
+    static boolean setPathCaching(boolean caching) {
+        boolean ret = pathCaching;
+        pathCaching = caching;
+        return ret;
+    }
+
+    /**
+     * Sets whether the previous paths of units are repaired rather
+     * than replanned.
+     *
+     * @param repairing If true repair paths.
+     * @return The original setting.
+     */
+    static boolean setPathRepairing(boolean repairing) {
+        boolean ret = pathRepairing;
+        pathRepairing = repairing;
+        return ret;
+    }
+
+    /**
+     * Sets whether the costs of sea moves are cached.
+     *
+     * @param caching If true cache the sea move costs.
+     * @return The original setting.
+     */
+    static boolean setSeaLegCaching(boolean caching) {
+        boolean ret = seaLegCaching;
+        seaLegCaching = caching;
+        return ret;
+    }
+
+    /**
+     * Sets whether cached paths are checked against a fresh search.
+     * Stale paths are logged and counted in the statistics.
+     *
+     * @param verify If true check the cached paths.
+     * @return The original setting.
+     */
+    static boolean setVerifyPathCache(boolean verify) {
+        boolean ret = verifyPathCache;
+        verifyPathCache = verify;
+        return ret;
+    }
+
+    /**
+     * Gets the path cache statistics.
+     *
+     * @return A map of the statistics.
+     */
+    public java.util.Map<String, String> getPathCacheStatistics() {
+        java.util.Map<String, String> stats = pathCache.getStatistics();
+        pathRepair.addStatistics(stats);
+        seaLegCache.addStatistics(stats);
+        return stats;
+    }
+
+    /**
+     * Notes a change to a tile that affects path finding, such as a
+     * change to its type, improvements or settlement.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    void tileChanged(Tile tile) {
+        final MapClusters mc = clusters;
+        if (mc != null) mc.tileChanged(tile);
+        pathsChanged(tile);
+    }
+
+    /**
+     * Notes a change to a tile that affects the legality of moves
+     * but not the terrain, such as a change of its ownership.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    void pathsChanged(Tile tile) {
+        pathRepair.tileChanged(this, tile);
+        seaLegCache.tileChanged(this, tile);
+        versionChanged();
+    }
+
+    /**
+     * Notes a change that affects the legality of moves across the
+     * map, such as a change of the stance between players.
+     */
+    void pathsChanged() {
+        pathRepair.mapChanged();
+        seaLegCache.clear();
+        versionChanged();
+    }
+
+    /**
+     * Invalidate the cached paths and distance fields.
+     */
+    private void versionChanged() {
+        pathCache.mapChanged();
+        synchronized (distanceFields) {
+            tileVersion++;
+        }
+    }
+
+    /**
+     * Gets the distance field for a unit to reach a tile, see
+     * {@link DistanceField}.
+     *
+     * @param unit The <code>Unit</code> that is to move.
+     * @param target The target <code>Tile</code>.
+     * @return The <code>DistanceField</code> for units with the same
+     *     owner, naval-ness and initial moves as the unit.
+     */
+    public DistanceField getDistanceField(Unit unit, Tile target) {
+        return getDistanceField(unit, Collections.singletonList(target));
+    }
+
+    /**
+     * Gets the distance field for a unit to reach the nearest of a
+     * collection of tiles.  Fields are cached until the end of the
+     * turn, or until the tiles change.
+     *
+     * @param unit The <code>Unit</code> that is to move.
+     * @param targets The target <code>Tile</code>s.
+     * @return The <code>DistanceField</code> for units with the same
+     *     owner, naval-ness and initial moves as the unit.
+     */
+    public DistanceField getDistanceField(Unit unit,
+                                          Collection<Tile> targets) {
+        final Player owner = unit.getOwner();
+        final boolean naval = unit.isNaval();
+        final int initialMoves = unit.getInitialMovesLeft();
+        final List<Object> key = new ArrayList<>(targets.size() + 3);
+        key.add(owner);
+        key.add(naval);
+        key.add(initialMoves);
+        key.addAll(targets);
+        final Turn turn = getGame().getTurn();
+        final int turnNumber = (turn == null) ? 0 : turn.getNumber();
+        synchronized (distanceFields) {
+            if (distanceFieldTurn != turnNumber
+                || distanceFieldVersion != tileVersion) {
+                distanceFields.clear();
+                distanceFieldTurn = turnNumber;
+                distanceFieldVersion = tileVersion;
+            }
+            DistanceField field = distanceFields.get(key);
+            if (field == null) {
+                field = new DistanceField(this, owner, naval, initialMoves,
+                                          targets);
+                distanceFields.put(key, field);
+            }
+            return field;
+        }
+    }
+
+    /**
+     * Notes a unit moving onto or off a tile, which may block or
+     * unblock the paths of other units.
+     *
+     * @param tile The <code>Tile</code> the unit moved onto or off.
+     * @param unit The <code>Unit</code> that moved.
+     */
+    void unitMoved(Tile tile, Unit unit) {
+        pathCache.unitMoved(unit);
+        // Only a unit leaving can open a shortcut outside a plan.
+        if (!tile.contains(unit)) pathRepair.tileChanged(this, tile);
+        seaLegCache.tileChanged(this, tile);
+    }
+
+    /**
+     * Notes a change that only affects the paths of one player, such
+     * as it exploring or unexploring a tile.
+     *
+     * @param player The <code>Player</code> whose paths changed.
+     */
+    void playerPathsChanged(Player player) {
+        pathCache.ownerChanged(player);
+    }
+
+    /**
+     * Gets the cached costs of the sea moves of a naval unit, see
+     * {@link SeaLegCache}.
+     *
+     * @param unit The naval <code>Unit</code> that is to move.
+     * @return The <code>SeaLegs</code> of the unit, or null if the
+     *     costs are not cached.
+     */
+    SeaLegCache.SeaLegs getSeaLegs(Unit unit) {
+        if (!seaLegCaching) return null;
+        final Turn turn = getGame().getTurn();
+        return seaLegCache.getSeaLegs(this, unit,
+            (turn == null) ? 0 : turn.getNumber());
+    }
+
+    /**
+     * Search for a path between two distant tiles without a carrier.
+     *
+     * For units of AI players, the cluster graph is used to find the
+     * corridor the path should follow, and the search is restricted
+     * to that corridor.  The path found may cost a little more than
+     * the best one, which is a fair trade for the AI, but not for the
+     * orders of human players, so they always search the whole map.
+     * The whole map is also searched if the corridor search fails,
+     * or the tiles are close.
+     *
+     * @param unit The <code>Unit</code> to find the path for.
+     * @param start The <code>Tile</code> in which the path starts from.
+     * @param end The <code>Tile</code> at the end of the path.
+     * @param gd The <code>GoalDecider</code> for the end tile.
+     * @param costDecider An optional <code>CostDecider</code>.
+     * @param sh The <code>SearchHeuristic</code> to use.
+     * @param lb An optional <code>LogBuilder</code> to log to.
+     * @return A path starting at the start tile and ending at the end
+     *     tile, or null if none found.
+     */
+    private PathNode searchLongPath(Unit unit, Tile start, Tile end,
+                                    GoalDecider gd, CostDecider costDecider,
+                                    SearchHeuristic sh, LogBuilder lb) {
+        if (hierarchicalSearch && arraySearch && lb == null && unit != null
+            && unit.getOwner().isAI()
+            && getDistance(start, end) > MapClusters.CLUSTER_WIDTH) {
+            final MapClusters mc = getClusters();
+            final boolean[] corridor = mc.getCorridor(start, end,
+                MapClusters.MovementClass.of(unit));
+            if (corridor != null) {
+                PathNode path = PathSearch.get().search(this, unit, start,
+                    gd, costDecider, INFINITY, null, sh, mc, corridor);
+                if (path != null) return path;
+            }
+        }
+        return searchMap(unit, start, gd, costDecider, INFINITY, null,
+                         sh, lb);
+    }
+
     /**
      * Was a carrier used previously on a path?
      *
@@ -1343,6 +1844,9 @@ public class Map extends FreeColGameObject implements Location {
      * with the minimal f (cost+heuristics). This gives O(1) on membership
      * test and O(log N) for remove-best and insertions.
      *
+     * Untraced searches are delegated to {@link PathSearch}, which
+     * performs the same search with array based state.
+     *
      * @param unit The <code>Unit</code> to find a path for.
      * @param start The <code>Tile</code> to start the search from.
      * @param goalDecider The object responsible for determining whether a
@@ -1364,6 +1868,12 @@ public class Map extends FreeColGameObject implements Location {
                                final int maxTurns, final Unit carrier,
                                final SearchHeuristic searchHeuristic,
                                final LogBuilder lb) {
+        // Traced searches stay with the original engine, which logs.
+        if (arraySearch && lb == null) {
+            return PathSearch.get().search(this, unit, start, goalDecider,
+                costDecider, maxTurns, carrier, searchHeuristic);
+        }
+
         final HashMap<String, PathNode> openMap = new HashMap<>();
         final HashMap<String, PathNode> closedMap = new HashMap<>();
         final HashMap<String, Integer> f = new HashMap<>();
@@ -1378,6 +1888,15 @@ public class Map extends FreeColGameObject implements Location {
         final Europe europe = (unit == null) ? null
             : unit.getOwner().getEurope();
         final Unit offMapUnit = (carrier != null) ? carrier : unit;
+        // The default cost deciders keep state, so each search needs
+        // its own, but one per unit will do for the whole search.
+        final CostDecider unitCostDecider = (costDecider != null)
+            ? costDecider
+            : CostDeciders.defaultCostDeciderFor(unit);
+        final CostDecider offMapCostDecider = (offMapUnit == unit)
+            ? unitCostDecider
+            : (costDecider != null) ? costDecider
+            : CostDeciders.defaultCostDeciderFor(offMapUnit);
         Unit currentUnit = (start.isLand())
             ? ((start.hasSettlement()
                     && start.getSettlement().isConnectedPort()
@@ -1573,27 +2092,23 @@ public class Map extends FreeColGameObject implements Location {
                 case BYLAND:
                     move = new MoveCandidate(unit, currentNode, moveTile, 
                         currentMovesLeft, currentTurns, false,
-                        ((costDecider != null) ? costDecider
-                            : CostDeciders.defaultCostDeciderFor(unit)));
+                        unitCostDecider);
                     break;
                 case BYWATER:
                     move = new MoveCandidate(offMapUnit, currentNode, moveTile,
                         currentMovesLeft, currentTurns, currentOnCarrier,
-                        ((costDecider != null) ? costDecider
-                            : CostDeciders.defaultCostDeciderFor(offMapUnit)));
+                        offMapCostDecider);
                     break;
                 case EMBARK:
                     move = new MoveCandidate(unit, currentNode, moveTile,
                         currentMovesLeft, currentTurns, true,
-                        ((costDecider != null) ? costDecider
-                            : CostDeciders.defaultCostDeciderFor(unit)));
+                        unitCostDecider);
                     move.embarkUnit(carrier);
                     break;
                 case DISEMBARK:
                     move = new MoveCandidate(unit, currentNode, moveTile,
                         0, currentTurns, false,
-                        ((costDecider != null) ? costDecider
-                            : CostDeciders.defaultCostDeciderFor(unit)));
+                        unitCostDecider);
                     break;
                 case FAIL: default: // Loop on failure.
                     move = null;
@@ -1699,25 +2214,15 @@ public class Map extends FreeColGameObject implements Location {
             this.radius = radius;
             n = 0;
 
-            Position step;
+            x = center.getX();
+            y = center.getY();
             if (isFilled || radius == 1) {
-                step = Direction.NE.step(center.getX(), center.getY());
-                x = step.x;
-                y = step.y;
                 currentRadius = 1;
             } else {
                 this.currentRadius = radius;
-                x = center.getX();
-                y = center.getY();
-                for (int i = 1; i < radius; i++) {
-                    step = Direction.N.step(x, y);
-                    x = step.x;
-                    y = step.y;
-                }
-                step = Direction.NE.step(x, y);
-                x = step.x;
-                y = step.y;
+                for (int i = 1; i < radius; i++) step(Direction.N);
             }
+            step(Direction.NE);
             if (!isValid(x, y)) nextTile();
         }
 
@@ -1750,9 +2255,7 @@ public class Map extends FreeColGameObject implements Location {
                     } else {
                         n = 0;
                         started = false;
-                        Position step = Direction.NE.step(x, y);
-                        x = step.x;
-                        y = step.y;
+                        step(Direction.NE);
                     }
                 } else {
                     int i = n / width;
@@ -1774,13 +2277,22 @@ public class Map extends FreeColGameObject implements Location {
                         throw new IllegalStateException("i=" + i + ", n=" + n
                                                         + ", width=" + width);
                     }
-                    Position step = direction.step(x, y);
-                    x = step.x;
-                    y = step.y;
+                    step(direction);
                 }
             } while (!isValid(x, y));
         }
 
+        /**
+         * Step the current position.
+         *
+         * @param direction The <code>Direction</code> to step in.
+         */
+        private void step(Direction direction) {
+            final int nx = direction.stepX(x, y);
+            y = direction.stepY(x, y);
+            x = nx;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1844,6 +2356,127 @@ public class Map extends FreeColGameObject implements Location {
         };
     }
 
+    /**
+     * Build the ring offset tables by walking the CircleIterator
+     * spiral around a center far from any edge.
+     *
+     * @return The ring offsets, by row parity and radius.
+     */
+    private static int[][][] makeRingOffsets() {
+        final Direction[] sides = { Direction.SE, Direction.SW,
+                                    Direction.NW, Direction.NE };
+        final int[][][] result = new int[2][MAX_RING_RADIUS + 1][];
+        for (int parity = 0; parity < 2; parity++) {
+            final int cx = 2 * MAX_RING_RADIUS,
+                cy = 4 * MAX_RING_RADIUS + parity;
+            result[parity][0] = new int[0];
+            int x = Direction.NE.stepX(cx, cy), y = Direction.NE.stepY(cx, cy);
+            for (int r = 1; r <= MAX_RING_RADIUS; r++) {
+                final int width = 2 * r;
+                final int[] ring = new int[2 * 4 * width];
+                for (int n = 0; n < 4 * width; n++) {
+                    ring[2 * n] = x - cx;
+                    ring[2 * n + 1] = y - cy;
+                    final Direction d = (n + 1 < 4 * width)
+                        ? sides[(n + 1) / width]
+                        : Direction.NE;
+                    final int nx = d.stepX(x, y);
+                    y = d.stepY(x, y);
+                    x = nx;
+                }
+                result[parity][r] = ring;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visit the tiles within a range of distances from a tile, in the
+     * order of Tile.getSurroundingTiles, without allocating.
+     *
+     * @param center The center <code>Tile</code>, visited if rangeMin
+     *     is zero.
+     * @param rangeMin The inclusive minimum distance from the center.
+     * @param rangeMax The inclusive maximum distance from the center.
+     * @param visitor A <code>Consumer</code> to call for each tile.
+     */
+    public void forEachTile(Tile center, int rangeMin, int rangeMax,
+                            Consumer<Tile> visitor) {
+        visitTiles(center, rangeMin, rangeMax, visitor, null);
+    }
+
+    /**
+     * Is there a tile within a range of distances from a tile that
+     * satisfies a predicate?  Tiles are tested in the order of
+     * Tile.getSurroundingTiles, stopping at the first match.
+     *
+     * @param center The center <code>Tile</code>, tested if rangeMin
+     *     is zero.
+     * @param rangeMin The inclusive minimum distance from the center.
+     * @param rangeMax The inclusive maximum distance from the center.
+     * @param predicate The <code>Predicate</code> to test tiles with.
+     * @return True if a tile satisfies the predicate.
+     */
+    public boolean anyTile(Tile center, int rangeMin, int rangeMax,
+                           Predicate<Tile> predicate) {
+        return visitTiles(center, rangeMin, rangeMax, null, predicate);
+    }
+
+    /**
+     * Visit the tiles within a range of distances from a tile, using
+     * the ring offset tables up to MAX_RING_RADIUS and a CircleIterator
+     * beyond.
+     *
+     * @param center The center <code>Tile</code>.
+     * @param rangeMin The inclusive minimum distance from the center.
+     * @param rangeMax The inclusive maximum distance from the center.
+     * @param visitor An optional <code>Consumer</code> to call for
+     *     each tile.
+     * @param predicate An optional <code>Predicate</code> to test each
+     *     tile with, stopping at the first match.
+     * @return True if a tile satisfies the predicate.
+     */
+    private boolean visitTiles(Tile center, int rangeMin, int rangeMax,
+                               Consumer<Tile> visitor,
+                               Predicate<Tile> predicate) {
+        if (rangeMin < 0 || rangeMin > rangeMax) return false;
+        if (rangeMin == 0 && visit(center, visitor, predicate)) return true;
+        final int cx = center.getX(), cy = center.getY();
+        final int width = getWidth(), height = getHeight();
+        final int[][] rings = RING_OFFSETS[cy & 1];
+        final int top = Math.min(rangeMax, MAX_RING_RADIUS);
+        for (int r = Math.max(1, rangeMin); r <= top; r++) {
+            final int[] ring = rings[r];
+            for (int i = 0; i < ring.length; i += 2) {
+                final int x = cx + ring[i], y = cy + ring[i + 1];
+                if (isValid(x, y, width, height)
+                    && visit(tiles[x][y], visitor, predicate)) return true;
+            }
+        }
+        if (rangeMax > MAX_RING_RADIUS) {
+            final int min = Math.max(rangeMin, MAX_RING_RADIUS + 1);
+            for (Tile t : getCircleTiles(center, true, rangeMax)) {
+                if (getDistance(center, t) >= min
+                    && visit(t, visitor, predicate)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visit a tile with either a visitor or a predicate.
+     *
+     * @param tile The <code>Tile</code> to visit.
+     * @param visitor An optional <code>Consumer</code> to call.
+     * @param predicate An optional <code>Predicate</code> to test.
+     * @return True if the predicate is present and satisfied.
+     */
+    private static boolean visit(Tile tile, Consumer<Tile> visitor,
+                                 Predicate<Tile> predicate) {
+        if (visitor != null) visitor.accept(tile);
+        return predicate != null && predicate.test(tile);
+    }
+
     /**
      * An iterator for the whole map.
      */
@@ -2093,8 +2726,132 @@ public class Map extends FreeColGameObject implements Location {
                 }
             }
         }
+        nextContiguity = contig;
     }        
 
+    /**
+     * Repair the contiguity identifiers after a single tile has
+     * changed between land and water.
+     *
+     * Only the components adjacent to the tile are visited.  The
+     * component the tile used to belong to is checked for a split,
+     * and the components it now joins are merged.  Falls back to
+     * {@link #resetContiguity()} if the contiguity has never been set.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    public void resetContiguity(Tile tile) {
+        final int oldContig = tile.getContiguity();
+        final boolean land = tile.isLand();
+        final List<Tile> adjacent = getAdjacentTiles(tile);
+        if (oldContig < 0 || any(adjacent, t -> t.getContiguity() < 0)) {
+            resetContiguity();
+            return;
+        }
+
+        // The neighbours that were in the same component as the tile
+        // before it changed may no longer be connected to each other.
+        // Search from the first one, stopping as soon as all the
+        // others are reached, and relabel any that are not.
+        final List<Tile> split = new ArrayList<>();
+        for (Tile t : adjacent) {
+            if (t.isLand() != land && t.getContiguity() == oldContig) {
+                split.add(t);
+            }
+        }
+        if (split.size() > 1) {
+            Set<Tile> found = new HashSet<>();
+            Queue<Tile> queue = new LinkedList<>();
+            Tile first = split.remove(0);
+            found.add(first);
+            queue.add(first);
+            while (!queue.isEmpty() && !found.containsAll(split)) {
+                for (Tile t : getAdjacentTiles(queue.poll())) {
+                    if (t.isLand() != land && t.getContiguity() == oldContig
+                        && found.add(t)) queue.add(t);
+                }
+            }
+            for (Tile t : split) {
+                if (!found.contains(t) && t.getContiguity() == oldContig) {
+                    relabelContiguity(t, allocateContiguity());
+                }
+            }
+        }
+
+        // Join the tile to the components of its new kind, merging
+        // them if the tile bridges several.
+        Tile join = find(adjacent, t -> t.isLand() == land);
+        if (join == null) {
+            tile.setContiguity(allocateContiguity());
+        } else {
+            final int contig = join.getContiguity();
+            tile.setContiguity(contig);
+            for (Tile t : adjacent) {
+                if (t.isLand() == land && t.getContiguity() != contig) {
+                    relabelContiguity(t, contig);
+                }
+            }
+        }
+    }
+
+    /**
+     * Relabel the component containing a tile with a new contiguity
+     * identifier.
+     *
+     * @param start The <code>Tile</code> to start from.
+     * @param contig The new contiguity identifier.
+     */
+    private void relabelContiguity(Tile start, int contig) {
+        final int old = start.getContiguity();
+        final boolean land = start.isLand();
+        if (old == contig) return;
+        Queue<Tile> queue = new LinkedList<>();
+        start.setContiguity(contig);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            for (Tile t : getAdjacentTiles(queue.poll())) {
+                if (t.isLand() == land && t.getContiguity() == old) {
+                    t.setContiguity(contig);
+                    queue.add(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get an unused contiguity identifier.
+     *
+     * @return A new contiguity identifier.
+     */
+    private int allocateContiguity() {
+        if (nextContiguity < 0) {
+            nextContiguity = 0;
+            for (Tile t : getAllTiles()) {
+                nextContiguity = Math.max(nextContiguity,
+                                          t.getContiguity() + 1);
+            }
+        }
+        return nextContiguity++;
+    }
+
+    /**
+     * Get the tiles adjacent to a given tile.
+     *
+     * Deliberately using low level access to neighbours for the
+     * same reason as {@link #resetHighSeasCount()}.
+     *
+     * @param tile The <code>Tile</code> to find the neighbours of.
+     * @return A list of adjacent <code>Tile</code>s.
+     */
+    private List<Tile> getAdjacentTiles(Tile tile) {
+        List<Tile> result = new ArrayList<>(Direction.NUMBER_OF_DIRECTIONS);
+        for (Direction d : Direction.values()) {
+            Position p = d.step(tile.getX(), tile.getY());
+            if (isValid(p)) result.add(getTile(p));
+        }
+        return result;
+    }
+
     /**
      * Places the "high seas"-tiles on the border of this map.
      *
@@ -2242,6 +2999,81 @@ public class Map extends FreeColGameObject implements Location {
         }
     }
 
+    /**
+     * Repair the high seas counts after a single tile has changed
+     * between land and water, or gained or lost its direct connection
+     * to the high seas.
+     *
+     * The tiles whose count could have been derived through the
+     * changed tile are those reachable from it by a chain of water
+     * tiles each one step further from the high seas.  Only these are
+     * cleared and recomputed from their still valid neighbours, then
+     * any improvement is propagated outward until the counts settle.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    public void resetHighSeasCount(Tile tile) {
+        if (!tile.isLand()
+            && (tile.getX() == 0 || tile.getX() == getWidth()-1)
+            && tile.getType() != null
+            && tile.getType().isHighSeasConnected()
+            && !tile.getType().isDirectlyHighSeasConnected()
+            && tile.getMoveToEurope() == null) {
+            tile.setMoveToEurope(Boolean.TRUE);
+        }
+
+        // Find and clear the tiles that might depend on the tile.
+        // The tile itself may have been water before the change, so
+        // always look beyond it.
+        Set<Tile> affected = new HashSet<>();
+        Queue<Tile> queue = new LinkedList<>();
+        affected.add(tile);
+        queue.add(tile);
+        while (!queue.isEmpty()) {
+            Tile t = queue.poll();
+            int count = t.getHighSeasCount();
+            if (count < 0 || (t != tile && t.isLand())) continue;
+            for (Tile n : getAdjacentTiles(t)) {
+                if (n.getHighSeasCount() == count + 1 && affected.add(n)) {
+                    queue.add(n);
+                }
+            }
+        }
+        for (Tile t : affected) t.setHighSeasCount(-1);
+
+        // Recompute the cleared tiles from their valid neighbours.
+        for (Tile t : affected) {
+            int best = -1;
+            if (!t.isLand() && t.isDirectlyHighSeasConnected()) {
+                best = 0;
+            } else {
+                for (Tile n : getAdjacentTiles(t)) {
+                    int count = n.getHighSeasCount();
+                    if (count >= 0 && !n.isLand()
+                        && (best < 0 || best > count + 1)) best = count + 1;
+                }
+            }
+            if (best >= 0) {
+                t.setHighSeasCount(best);
+                if (!t.isLand()) queue.add(t);
+            }
+        }
+
+        // Propagate outward from the recomputed water tiles, which
+        // also reaches any cleared tiles only connected through others.
+        while (!queue.isEmpty()) {
+            Tile t = queue.poll();
+            int count = t.getHighSeasCount() + 1;
+            for (Tile n : getAdjacentTiles(t)) {
+                if (n.getHighSeasCount() < 0
+                    || n.getHighSeasCount() > count) {
+                    n.setHighSeasCount(count);
+                    if (!n.isLand()) queue.add(n);
+                }
+            }
+        }
+    }
+
     /**
      * Reset layer to reflect what is actually there.
      */
@@ -2499,6 +3331,17 @@ public class Map extends FreeColGameObject implements Location {
             region.toXML(xw);
         }
 
+        if (xw.isRecording() && xw.validForSave()) {
+            // Copy the tiles now, serialize them when replayed.
+            final List<Player> players = getGame().getLiveEuropeanPlayers(null);
+            for (Tile tile : getAllTiles()) {
+                RecordingXMLStreamWriter.Action a
+                    = tile.getSaveSnapshot(players);
+                if (a == null) tile.toXML(xw); else xw.writeDeferred(a);
+            }
+            return;
+        }
+
         for (Tile tile: getAllTiles()) {
             tile.toXML(xw);
         }
@@ -2549,6 +3392,7 @@ public class Map extends FreeColGameObject implements Location {
         // @compat 0.10.x
         missingRegions.clear();
         // end @compat
+        nextContiguity = -1;
 
         super.readChildren(xr);
 
@@ -0,0 +1,660 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static net.sf.freecol.common.model.FreeColObject.INFINITY;
+
+
+/**
+ * The abstract graph used for long range path finding.
+ *
+ * The map is cut into clusters of CLUSTER_WIDTH by CLUSTER_HEIGHT
+ * tiles.  Where passable tiles of two neighbouring clusters touch,
+ * each run of touching tiles gets one pair of portal tiles, one on
+ * each side.  The costs between the portals within each cluster are
+ * precomputed with the static part of the movement costs (terrain,
+ * roads and rivers), separately for land and naval movement.
+ *
+ * A long path is then planned by first searching the abstract graph
+ * of portals, which yields the corridor of clusters the path should
+ * pass through, and then running the real search restricted to that
+ * corridor (see Map.findMapPath).  The static costs ignore units,
+ * settlement rules and the turn structure, so the corridor is only a
+ * guide, and the real search falls back to the whole map if it can
+ * not find a path within it.
+ *
+ * Clusters are rebuilt lazily.  Changes to the terrain, improvements
+ * or settlements of a tile are reported through Map.tileChanged,
+ * which marks the cluster of the tile and its neighbours for
+ * rebuilding before the next query.
+ */
+final class MapClusters {
+
+    /**
+     * The cluster size in tiles.  Rows of the isometric map are half
+     * as high as the columns are wide, so clusters are twice as tall
+     * as they are wide in tile coordinates.
+     */
+    static final int CLUSTER_WIDTH = 16, CLUSTER_HEIGHT = 32;
+
+    /** The movement classes, with their own portals and costs. */
+    static enum MovementClass {
+        LAND, // Land units, including wagon trains
+        NAVAL;
+
+        /**
+         * Get the movement class for a unit.
+         *
+         * @param unit The <code>Unit</code> to check.
+         * @return The <code>MovementClass</code> of the unit.
+         */
+        static MovementClass of(Unit unit) {
+            return (unit.isNaval()) ? NAVAL : LAND;
+        }
+    }
+
+    /** The cluster neighbour offsets, in cluster coordinates. */
+    private static final int[][] NEIGHBOURS = {
+        { -1, -1 }, { 0, -1 }, { 1, -1 }, { -1, 0 },
+        { 1, 0 }, { -1, 1 }, { 0, 1 }, { 1, 1 }
+    };
+
+    /** The map to cluster. */
+    private final Map map;
+
+    /** The map and cluster grid dimensions. */
+    private final int width, height, columns, rows;
+
+    /** The abstract graph for each movement class, built on demand. */
+    private final Layer[] layers = new Layer[MovementClass.values().length];
+
+    /** Clusters that have changed since each layer was last updated. */
+    private final BitSet[] dirty = new BitSet[layers.length];
+
+    /**
+     * Scratch state for the searches, reused as the searches are
+     * synchronized.  The portal costs are valid where the stamp
+     * matches the current generation, so they are never cleared.
+     */
+    private int generation = 0;
+    private int[] stamp, portalCost, previous;
+    private final int[] clusterCost = new int[CLUSTER_WIDTH * CLUSTER_HEIGHT];
+    private final KeyHeap heap = new KeyHeap();
+
+
+    /**
+     * A binary min-heap of search keys, see {@link #key}.  Entries
+     * are not removed when their cost improves, the searches skip
+     * stale entries instead.
+     */
+    private static final class KeyHeap {
+
+        private long[] keys = new long[64];
+        private int size = 0;
+
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        public void offer(long key) {
+            if (size == keys.length) keys = Arrays.copyOf(keys, 2 * size);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            keys[i] = key;
+        }
+
+        public long poll() {
+            final long result = keys[0];
+            final long key = keys[--size];
+            int i = 0;
+            for (;;) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) break;
+                keys[i] = keys[child];
+                i = child;
+            }
+            if (size > 0) keys[i] = key;
+            return result;
+        }
+    }
+
+
+    /**
+     * The abstract graph for a movement class.
+     */
+    private final class Layer {
+
+        /** The movement class. */
+        public final MovementClass movementClass;
+
+        /**
+         * The portal pairs on the border between two clusters, keyed
+         * by the lower numbered cluster, then the position of the
+         * other cluster in NEIGHBOURS (only the last four are used).
+         * Each pair is stored as { tile, otherTile, cost, otherCost },
+         * where the cost is that of entering the tile from the other.
+         */
+        public final int[][][][] borders;
+
+        /** The portal tile indexes in each cluster. */
+        public final int[][] portals;
+
+        /** The costs between the portals within each cluster. */
+        public final int[][][] costs;
+
+
+        public Layer(MovementClass movementClass) {
+            this.movementClass = movementClass;
+            this.borders = new int[columns * rows][NEIGHBOURS.length][][];
+            this.portals = new int[columns * rows][];
+            this.costs = new int[columns * rows][][];
+        }
+    }
+
+
+    /**
+     * Create the clusters for a map.
+     *
+     * @param map The <code>Map</code> to cluster.
+     */
+    MapClusters(Map map) {
+        this.map = map;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.columns = (width + CLUSTER_WIDTH - 1) / CLUSTER_WIDTH;
+        this.rows = (height + CLUSTER_HEIGHT - 1) / CLUSTER_HEIGHT;
+    }
+
+
+    /**
+     * Get the cluster containing a map position.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The cluster index.
+     */
+    int getCluster(int x, int y) {
+        return (y / CLUSTER_HEIGHT) * columns + x / CLUSTER_WIDTH;
+    }
+
+    /**
+     * Get the number of clusters.
+     *
+     * @return The number of clusters.
+     */
+    int getClusterCount() {
+        return columns * rows;
+    }
+
+    /**
+     * Mark the clusters affected by a change to a tile for rebuilding.
+     * Tiles on the edge of a cluster also affect the borders of the
+     * neighbouring clusters.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    synchronized void tileChanged(Tile tile) {
+        final int x = tile.getX(), y = tile.getY();
+        if (!map.isValid(x, y)) return;
+        for (BitSet b : dirty) {
+            if (b == null) continue;
+            b.set(getCluster(x, y));
+            for (Direction d : Direction.values()) {
+                int nx = d.stepX(x, y), ny = d.stepY(x, y);
+                if (map.isValid(nx, ny)) b.set(getCluster(nx, ny));
+            }
+        }
+    }
+
+    /**
+     * Get the corridor of clusters a path between two tiles should
+     * pass through.
+     *
+     * @param start The starting <code>Tile</code>.
+     * @param end The end <code>Tile</code>.
+     * @param movementClass The <code>MovementClass</code> to use.
+     * @return An array of flags for each cluster, true if it is in the
+     *     corridor, or null if there is no useful corridor because the
+     *     tiles are in the same cluster or the abstract graph does
+     *     not connect them.
+     */
+    synchronized boolean[] getCorridor(Tile start, Tile end,
+                                       MovementClass movementClass) {
+        final int startCluster = getCluster(start.getX(), start.getY());
+        final int endCluster = getCluster(end.getX(), end.getY());
+        if (startCluster == endCluster) return null;
+        final Layer layer = getLayer(movementClass);
+
+        // Costs from the start to the portals of its cluster, and
+        // from the portals of the end cluster to the end.
+        final int[] startCosts = searchCluster(layer, startCluster,
+            index(start), false, layer.portals[startCluster]);
+        final int[] endCosts = searchCluster(layer, endCluster,
+            index(end), true, layer.portals[endCluster]);
+
+        // Dijkstra over the portals.  Costs are kept by tile index.
+        if (stamp == null) {
+            final int n = width * height;
+            stamp = new int[n];
+            portalCost = new int[n];
+            previous = new int[n];
+        }
+        if (++generation == 0) { // Wrapped, clear the old stamps
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        heap.clear();
+        final int[] startPortals = layer.portals[startCluster];
+        for (int i = 0; i < startPortals.length; i++) {
+            if (startCosts[i] == INFINITY) continue;
+            setPortalCost(startPortals[i], startCosts[i], -1);
+        }
+        int best = INFINITY, bestPortal = -1;
+        while (!heap.isEmpty()) {
+            final long k = heap.poll();
+            final int c = (int)(k >>> 32), p = (int)k;
+            if (c != getPortalCost(p)) continue; // Stale entry
+            if (c >= best) break;
+            final int cluster = getCluster(p % width, p / width);
+            final int[] portals = layer.portals[cluster];
+            final int i = Arrays.binarySearch(portals, p);
+            if (cluster == endCluster && endCosts[i] != INFINITY
+                && c + endCosts[i] < best) {
+                best = c + endCosts[i];
+                bestPortal = p;
+            }
+            // Within the cluster
+            final int[] costs = layer.costs[cluster][i];
+            for (int j = 0; j < portals.length; j++) {
+                if (costs[j] != INFINITY
+                    && c + costs[j] < getPortalCost(portals[j])) {
+                    setPortalCost(portals[j], c + costs[j], p);
+                }
+            }
+            // Across the borders
+            for (int d = 0; d < NEIGHBOURS.length; d++) {
+                final int[][] pairs = getBorder(layer, cluster, d);
+                if (pairs == null) continue;
+                for (int[] pair : pairs) {
+                    int q = -1, qc = 0;
+                    if (pair[0] == p) {
+                        q = pair[1];
+                        qc = pair[3];
+                    } else if (pair[1] == p) {
+                        q = pair[0];
+                        qc = pair[2];
+                    }
+                    if (q >= 0 && c + qc < getPortalCost(q)) {
+                        setPortalCost(q, c + qc, p);
+                    }
+                }
+            }
+        }
+        if (bestPortal < 0) return null;
+
+        final boolean[] corridor = new boolean[columns * rows];
+        corridor[startCluster] = corridor[endCluster] = true;
+        for (int p = bestPortal; p >= 0; p = previous[p]) {
+            corridor[getCluster(p % width, p / width)] = true;
+        }
+        return corridor;
+    }
+
+    /**
+     * Get the cost to a portal in the current corridor search.
+     *
+     * @param p The portal tile index.
+     * @return The cost found so far, or INFINITY if none.
+     */
+    private int getPortalCost(int p) {
+        return (stamp[p] == generation) ? portalCost[p] : INFINITY;
+    }
+
+    /**
+     * Set the cost to a portal in the current corridor search, and
+     * queue it.
+     *
+     * @param p The portal tile index.
+     * @param cost The new cost.
+     * @param from The portal tile index it was reached from, or
+     *     negative for a start portal.
+     */
+    private void setPortalCost(int p, int cost, int from) {
+        stamp[p] = generation;
+        portalCost[p] = cost;
+        previous[p] = from;
+        heap.offer(key(cost, p));
+    }
+
+    /**
+     * Get the tile index of a tile.
+     *
+     * @param tile The <code>Tile</code> to index.
+     * @return The tile index.
+     */
+    private int index(Tile tile) {
+        return tile.getY() * width + tile.getX();
+    }
+
+    /**
+     * Make a priority queue key for a cost and tile index.
+     *
+     * @param cost The cost.
+     * @param index The tile index.
+     * @return The key.
+     */
+    private static long key(int cost, int index) {
+        return ((long)cost << 32) | index;
+    }
+
+    /**
+     * Get the layer for a movement class, building or updating it
+     * as needed.
+     *
+     * @param movementClass The <code>MovementClass</code> to get.
+     * @return The up to date <code>Layer</code>.
+     */
+    private Layer getLayer(MovementClass movementClass) {
+        final int m = movementClass.ordinal();
+        if (layers[m] == null) {
+            layers[m] = new Layer(movementClass);
+            dirty[m] = new BitSet();
+            dirty[m].set(0, columns * rows);
+        }
+        final Layer layer = layers[m];
+        final BitSet changed = dirty[m];
+        if (!changed.isEmpty()) {
+            // Rebuild the borders of the changed clusters, then the
+            // portals of those clusters and their neighbours.
+            BitSet update = new BitSet();
+            for (int c = changed.nextSetBit(0); c >= 0;
+                 c = changed.nextSetBit(c+1)) {
+                update.set(c);
+                for (int d = 0; d < NEIGHBOURS.length; d++) {
+                    int other = getNeighbour(c, d);
+                    if (other < 0) continue;
+                    update.set(other);
+                    if (c < other) {
+                        layer.borders[c][d] = findBorder(layer, c, other);
+                    } else if (!changed.get(other)) {
+                        layer.borders[other][NEIGHBOURS.length - 1 - d]
+                            = findBorder(layer, other, c);
+                    }
+                }
+            }
+            for (int c = update.nextSetBit(0); c >= 0;
+                 c = update.nextSetBit(c+1)) {
+                updatePortals(layer, c);
+            }
+            changed.clear();
+        }
+        return layer;
+    }
+
+    /**
+     * Get a neighbouring cluster.
+     *
+     * @param cluster The cluster index.
+     * @param d The index of the neighbour in NEIGHBOURS.
+     * @return The neighbouring cluster index, or negative if off the map.
+     */
+    private int getNeighbour(int cluster, int d) {
+        final int cx = cluster % columns + NEIGHBOURS[d][0];
+        final int cy = cluster / columns + NEIGHBOURS[d][1];
+        return (cx < 0 || cx >= columns || cy < 0 || cy >= rows) ? -1
+            : cy * columns + cx;
+    }
+
+    /**
+     * Get all the portal pairs on the borders of a cluster.
+     *
+     * @param layer The <code>Layer</code> to look in.
+     * @param cluster The cluster index.
+     * @return A list of portal pairs.
+     */
+    private List<int[]> getPairs(Layer layer, int cluster) {
+        List<int[]> result = new ArrayList<>();
+        for (int d = 0; d < NEIGHBOURS.length; d++) {
+            int[][] pairs = getBorder(layer, cluster, d);
+            if (pairs != null) result.addAll(Arrays.asList(pairs));
+        }
+        return result;
+    }
+
+    /**
+     * Get the portal pairs on one border of a cluster.
+     *
+     * @param layer The <code>Layer</code> to look in.
+     * @param cluster The cluster index.
+     * @param d The index of the neighbour in NEIGHBOURS.
+     * @return The portal pairs, or null if none.
+     */
+    private int[][] getBorder(Layer layer, int cluster, int d) {
+        final int other = getNeighbour(cluster, d);
+        return (other < 0) ? null
+            : (cluster < other) ? layer.borders[cluster][d]
+            : layer.borders[other][NEIGHBOURS.length - 1 - d];
+    }
+
+    /**
+     * Is a tile passable in a movement class, ignoring units and
+     * settlement ownership?
+     *
+     * @param tile The <code>Tile</code> to check.
+     * @param movementClass The <code>MovementClass</code> to check.
+     * @return True if the tile is passable.
+     */
+    private static boolean isPassable(Tile tile, MovementClass movementClass) {
+        if (!tile.isExplored()) return false;
+        switch (movementClass) {
+        case NAVAL:
+            return !tile.isLand() || tile.hasSettlement();
+        default:
+            return tile.isLand();
+        }
+    }
+
+    /**
+     * Get the static cost of moving between adjacent tiles.
+     *
+     * @param from The <code>Tile</code> to move from.
+     * @param to The <code>Tile</code> to move to.
+     * @param movementClass The <code>MovementClass</code> to use.
+     * @return The move cost, as in Unit.getMoveCost but ignoring
+     *     the moves left.
+     */
+    static int getMoveCost(Tile from, Tile to,
+                            MovementClass movementClass) {
+        return (movementClass == MovementClass.LAND && to.isLand())
+            ? to.getLandMoveCost(from)
+            : to.getType().getBasicMoveCost();
+    }
+
+    /**
+     * Find the portal pairs on the border between two clusters.  Each
+     * run of adjacent crossing points gets the pair in its middle.
+     *
+     * @param layer The <code>Layer</code> to use.
+     * @param cluster The first cluster.
+     * @param other The other, neighbouring, cluster.
+     * @return The portal pairs.
+     */
+    private int[][] findBorder(Layer layer, int cluster, int other) {
+        final MovementClass mc = layer.movementClass;
+        final List<int[]> crossings = new ArrayList<>();
+        forEachTile(cluster, (Tile tile) -> {
+                if (!isPassable(tile, mc)) return;
+                final int x = tile.getX(), y = tile.getY();
+                for (Direction d : Direction.values()) {
+                    int nx = d.stepX(x, y), ny = d.stepY(x, y);
+                    if (!map.isValid(nx, ny)
+                        || getCluster(nx, ny) != other) continue;
+                    Tile t = map.getTile(nx, ny);
+                    if (!isPassable(t, mc)) continue;
+                    crossings.add(new int[] { index(tile), index(t),
+                            getMoveCost(t, tile, mc),
+                            getMoveCost(tile, t, mc) });
+                    break;
+                }
+            });
+
+        // Group crossings whose tiles are adjacent into runs.
+        final List<int[]> result = new ArrayList<>();
+        final boolean[] used = new boolean[crossings.size()];
+        for (int i = 0; i < crossings.size(); i++) {
+            if (used[i]) continue;
+            List<int[]> run = new ArrayList<>();
+            run.add(crossings.get(i));
+            used[i] = true;
+            for (int r = 0; r < run.size(); r++) {
+                Tile t = tileAt(run.get(r)[0]);
+                for (int j = i + 1; j < crossings.size(); j++) {
+                    if (!used[j] && t.isAdjacent(tileAt(crossings.get(j)[0]))) {
+                        run.add(crossings.get(j));
+                        used[j] = true;
+                    }
+                }
+            }
+            result.add(run.get(run.size() / 2));
+        }
+        return result.toArray(new int[0][]);
+    }
+
+    /**
+     * Update the portals of a cluster and the costs between them.
+     *
+     * @param layer The <code>Layer</code> to update.
+     * @param cluster The cluster index.
+     */
+    private void updatePortals(Layer layer, int cluster) {
+        final int[] portals = getPairs(layer, cluster).stream()
+            .mapToInt(pair -> (getCluster(pair[0] % width, pair[0] / width)
+                    == cluster) ? pair[0] : pair[1])
+            .distinct().sorted().toArray();
+        layer.portals[cluster] = portals;
+        layer.costs[cluster] = new int[portals.length][];
+        for (int i = 0; i < portals.length; i++) {
+            layer.costs[cluster][i] = searchCluster(layer, cluster,
+                portals[i], false, portals);
+        }
+    }
+
+    /**
+     * Find the cheapest static costs between a tile and a set of
+     * targets, moving only within a cluster.
+     *
+     * @param layer The <code>Layer</code> to use.
+     * @param cluster The cluster to search in.
+     * @param source The tile index to start from.  This tile need not
+     *     be passable, so that searches can start from a unit on a
+     *     carrier or end at a settlement.
+     * @param reverse If true, find the costs from the targets to the
+     *     source instead.
+     * @param targets The tile indexes to find the costs to.
+     * @return The costs for each target, INFINITY if unreachable.
+     */
+    private int[] searchCluster(Layer layer, int cluster, int source,
+                                boolean reverse, int[] targets) {
+        final MovementClass mc = layer.movementClass;
+        final int x0 = (cluster % columns) * CLUSTER_WIDTH;
+        final int y0 = (cluster / columns) * CLUSTER_HEIGHT;
+        final int[] cost = clusterCost;
+        Arrays.fill(cost, INFINITY);
+        heap.clear();
+        final int sx = source % width, sy = source / width;
+        cost[(sy - y0) * CLUSTER_WIDTH + sx - x0] = 0;
+        heap.offer(key(0, source));
+        while (!heap.isEmpty()) {
+            final long k = heap.poll();
+            final int c = (int)(k >>> 32), p = (int)k;
+            final int x = p % width, y = p / width;
+            if (c != cost[(y - y0) * CLUSTER_WIDTH + x - x0]) continue;
+            final Tile tile = map.getTile(x, y);
+            for (Direction d : Direction.values()) {
+                int nx = d.stepX(x, y), ny = d.stepY(x, y);
+                if (!map.isValid(nx, ny)
+                    || getCluster(nx, ny) != cluster) continue;
+                Tile t = map.getTile(nx, ny);
+                if (!isPassable(t, mc)) continue;
+                int nc = c + ((reverse) ? getMoveCost(t, tile, mc)
+                    : getMoveCost(tile, t, mc));
+                int i = (ny - y0) * CLUSTER_WIDTH + nx - x0;
+                if (nc < cost[i]) {
+                    cost[i] = nc;
+                    heap.offer(key(nc, ny * width + nx));
+                }
+            }
+        }
+        final int[] result = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            result[i] = cost[(targets[i] / width - y0) * CLUSTER_WIDTH
+                + targets[i] % width - x0];
+        }
+        return result;
+    }
+
+    /**
+     * Get the tile with a given index.
+     *
+     * @param index The tile index.
+     * @return The <code>Tile</code> at that index.
+     */
+    private Tile tileAt(int index) {
+        return map.getTile(index % width, index / width);
+    }
+
+    /**
+     * Apply an action to each tile of a cluster.
+     *
+     * @param cluster The cluster index.
+     * @param action The action to apply.
+     */
+    private void forEachTile(int cluster,
+                             Consumer<Tile> action) {
+        final int x0 = (cluster % columns) * CLUSTER_WIDTH;
+        final int y0 = (cluster / columns) * CLUSTER_HEIGHT;
+        for (int y = y0; y < Math.min(y0 + CLUSTER_HEIGHT, height); y++) {
+            for (int x = x0; x < Math.min(x0 + CLUSTER_WIDTH, width); x++) {
+                Tile tile = map.getTile(x, y);
+                if (tile != null) action.accept(tile);
+            }
+        }
+    }
+}
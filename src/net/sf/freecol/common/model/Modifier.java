@@ -324,6 +324,7 @@ public class Modifier extends Feature {
      */
     public final void setType(final ModifierType modifierType) {
         this.modifierType = modifierType;
+        changed();
     }
 
     /**
@@ -447,6 +448,7 @@ public class Modifier extends Feature {
      */
     public final void setModifierIndex(final int modifierIndex) {
         this.modifierIndex = modifierIndex;
+        changed();
     }
 
     /**
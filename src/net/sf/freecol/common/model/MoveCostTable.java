@@ -0,0 +1,136 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static net.sf.freecol.common.model.FreeColObject.INFINITY;
+
+
+/**
+ * The static cost for a land unit of moving onto a tile, by tile type
+ * and by the set of improvements connecting the tile to the tile the
+ * unit moves from.
+ *
+ * Only improvements with a movement cost (roads and rivers) are
+ * counted.  Each is given a bit, and the cost for a tile type and a
+ * mask of those bits is the basic move cost of the tile type reduced
+ * by the improvements in the mask, as in TileItemContainer.getMoveCost.
+ * Tiles cache the cost of moving onto them from each direction, built
+ * from the table (see Tile.getLandMoveCost), so the static cost of a
+ * move is an array lookup.
+ *
+ * The costs depend only on the specification, which builds the table
+ * on demand, and drops it when it is cleaned.  Naval units always pay
+ * the basic move cost, and the dynamic parts of a move (beached
+ * units, partial moves, settlements) are left to Unit.getMoveCost.
+ */
+final class MoveCostTable {
+
+    /** The maximum number of improvement types with a movement cost. */
+    private static final int MAX_BITS = 16;
+
+    /**
+     * Direction costs for tiles with more movement improvement types
+     * than can be tabulated, which must use the improvements directly.
+     */
+    static final int[] UNTABLED = new int[0];
+
+    /** The bit for each improvement type with a movement cost. */
+    private final java.util.Map<TileImprovementType, Integer> bits
+        = new IdentityHashMap<>();
+
+    /** The costs for each tile type, indexed by mask. */
+    private final java.util.Map<TileType, int[]> costs
+        = new IdentityHashMap<>();
+
+    /** The direction costs for each tile type without improvements. */
+    private final java.util.Map<TileType, int[]> plain
+        = new IdentityHashMap<>();
+
+    /** Are there too many movement improvement types to tabulate? */
+    private final boolean untabled;
+
+
+    /**
+     * Build the table for a specification.
+     *
+     * @param spec The <code>Specification</code> to use.
+     */
+    MoveCostTable(Specification spec) {
+        int n = 0;
+        for (TileImprovementType tit : spec.getTileImprovementTypeList()) {
+            if (tit.getMoveCost(INFINITY) < INFINITY) bits.put(tit, n++);
+        }
+        this.untabled = n > MAX_BITS;
+        if (untabled) return;
+
+        final TileImprovementType[] types = new TileImprovementType[n];
+        for (java.util.Map.Entry<TileImprovementType, Integer> e
+                 : bits.entrySet()) types[e.getValue()] = e.getKey();
+        for (TileType tt : spec.getTileTypeList()) {
+            final int[] row = new int[1 << n];
+            for (int mask = 0; mask < row.length; mask++) {
+                int cost = tt.getBasicMoveCost();
+                for (int b = 0; b < n; b++) {
+                    if ((mask & (1 << b)) != 0) {
+                        cost = Math.min(cost, types[b].getMoveCost(cost));
+                    }
+                }
+                row[mask] = cost;
+            }
+            costs.put(tt, row);
+            final int[] dirs = new int[Direction.NUMBER_OF_DIRECTIONS];
+            Arrays.fill(dirs, row[0]);
+            plain.put(tt, dirs);
+        }
+    }
+
+
+    /**
+     * Get the costs of moving onto a tile from each direction.
+     *
+     * @param tile The <code>Tile</code> to check.
+     * @return The move costs, indexed by the ordinal of the direction
+     *     from the tile to the tile moved from, or UNTABLED if the
+     *     table can not be used.
+     */
+    int[] getCosts(Tile tile) {
+        final int[] row = costs.get(tile.getType());
+        if (untabled || row == null) return UNTABLED;
+        final TileItemContainer tic = tile.getTileItemContainer();
+        final List<TileImprovement> tis = (tic == null) ? null
+            : tic.getCompletedImprovements();
+        if (tis == null || tis.isEmpty()) return plain.get(tile.getType());
+
+        final int[] dirs = new int[Direction.NUMBER_OF_DIRECTIONS];
+        for (Direction d : Direction.allDirections) {
+            int mask = 0;
+            for (TileImprovement ti : tis) {
+                final Integer bit = bits.get(ti.getType());
+                if (bit != null && ti.isConnectedTo(d)) mask |= 1 << bit;
+            }
+            dirs[d.ordinal()] = row[mask];
+        }
+        return dirs;
+    }
+}
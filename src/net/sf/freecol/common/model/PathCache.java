@@ -0,0 +1,352 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.HashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import net.sf.freecol.common.model.pathfinding.CostDecider;
+
+
+/**
+ * A cache of the paths found by Map.findPath within a turn.
+ *
+ * Paths are keyed by the movement profile of the unit (owner, type,
+ * role, location, moves left, cargo and whether it follows a trade
+ * route), the start and end, the carrier and its cargo, and the cost
+ * decider.  Named cost decider classes do not keep state
+ * between searches, so all their instances share entries, but
+ * anonymous ones (such as composed cost deciders) are only shared
+ * by instance.
+ *
+ * Entries are stamped with a version of the map that is bumped by
+ * changes to tiles (terrain, improvements, settlements, ownership),
+ * by stance changes, and by naval units moving.  Land units only
+ * block the units of other players, so their moves are counted per
+ * owner, and only the moves of other players invalidate an entry.
+ * Changes to the tiles a player has explored only affect the paths
+ * of that player (see CostDeciders.serverAvoidIllegal), so they are
+ * also counted per owner, and invalidate only that player's entries.
+ * The whole cache is dropped when the turn changes.
+ *
+ * Cached paths are copied on the way in and out, as callers are free
+ * to modify the paths they are given.
+ */
+final class PathCache {
+
+    private static final Logger logger = Logger.getLogger(PathCache.class.getName());
+
+    /** The maximum number of entries before the cache is dropped. */
+    private static final int MAX_ENTRIES = 10000;
+
+    /** The key for a path query. */
+    private static final class Key {
+
+        private final Player owner;
+        private final UnitType type;
+        private final Role role;
+        private final Location location;
+        private final int movesLeft, workLeft;
+        private final int spaceLeft, goodsSpace;
+        private final boolean tradeRoute;
+        private final Location start, end;
+        private final Unit carrier;
+        private final int carrierMovesLeft, carrierSpaceLeft,
+            carrierGoodsSpace;
+        private final Object costDecider;
+        private final int hash;
+
+
+        public Key(Unit unit, Location start, Location end, Unit carrier,
+                   CostDecider costDecider) {
+            this.owner = unit.getOwner();
+            this.type = unit.getType();
+            this.role = unit.getRole();
+            // Units in a settlement building path as if on the tile.
+            this.location = (unit.isOnCarrier() || !unit.hasTile())
+                ? unit.getLocation() : unit.getTile();
+            this.movesLeft = unit.getMovesLeft();
+            this.workLeft = unit.getWorkLeft();
+            this.spaceLeft = unit.getSpaceLeft();
+            this.goodsSpace = unit.getGoodsSpaceTaken();
+            // The trade route decides if rumours are avoided.
+            this.tradeRoute = unit.getTradeRoute() != null;
+            this.start = start;
+            this.end = end;
+            this.carrier = carrier;
+            this.carrierMovesLeft = (carrier == null) ? -1
+                : carrier.getMovesLeft();
+            this.carrierSpaceLeft = (carrier == null) ? -1
+                : carrier.getSpaceLeft();
+            this.carrierGoodsSpace = (carrier == null) ? -1
+                : carrier.getGoodsSpaceTaken();
+            this.costDecider = (costDecider == null) ? null
+                : (costDecider.getClass().isAnonymousClass()) ? costDecider
+                : costDecider.getClass();
+            int h = System.identityHashCode(owner);
+            h = 31 * h + System.identityHashCode(type);
+            h = 31 * h + System.identityHashCode(role);
+            h = 31 * h + System.identityHashCode(location);
+            h = 31 * h + movesLeft;
+            h = 31 * h + workLeft;
+            h = 31 * h + spaceLeft;
+            h = 31 * h + goodsSpace;
+            h = 31 * h + ((tradeRoute) ? 1 : 0);
+            h = 31 * h + System.identityHashCode(start);
+            h = 31 * h + System.identityHashCode(end);
+            h = 31 * h + System.identityHashCode(carrier);
+            h = 31 * h + carrierMovesLeft;
+            h = 31 * h + carrierSpaceLeft;
+            h = 31 * h + carrierGoodsSpace;
+            h = 31 * h + System.identityHashCode(this.costDecider);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key)o;
+            return hash == other.hash
+                && owner == other.owner
+                && type == other.type
+                && role == other.role
+                && location == other.location
+                && movesLeft == other.movesLeft
+                && workLeft == other.workLeft
+                && spaceLeft == other.spaceLeft
+                && goodsSpace == other.goodsSpace
+                && tradeRoute == other.tradeRoute
+                && start == other.start
+                && end == other.end
+                && carrier == other.carrier
+                && carrierMovesLeft == other.carrierMovesLeft
+                && carrierSpaceLeft == other.carrierSpaceLeft
+                && carrierGoodsSpace == other.carrierGoodsSpace
+                && costDecider == other.costDecider;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** A cached path, with the versions it is valid for. */
+    private static final class Entry {
+
+        public final PathNode path;
+        public final int version;
+        public final long foreignMoves;
+        public final long ownerChanges;
+
+
+        public Entry(PathNode path, int version, long foreignMoves,
+                     long ownerChanges) {
+            this.path = path;
+            this.version = version;
+            this.foreignMoves = foreignMoves;
+            this.ownerChanges = ownerChanges;
+        }
+    }
+
+    /** The cached paths. */
+    private final java.util.Map<Key, Entry> entries = new HashMap<>();
+
+    /** The turn the cached paths were found in. */
+    private int turn = -1;
+
+    /** The map version, bumped by changes that affect all paths. */
+    private int version = 0;
+
+    /** The number of land unit moves this turn, in total and by owner. */
+    private long landMoves = 0;
+    private final java.util.Map<Player, Long> ownerLandMoves
+        = new HashMap<>();
+
+    /** The number of changes affecting only one player, by player. */
+    private final java.util.Map<Player, Long> ownerChanges
+        = new HashMap<>();
+
+    /** Statistics. */
+    private long hits = 0, misses = 0, stale = 0, mismatches = 0;
+
+
+    /**
+     * Find a path, using the cache if possible.
+     *
+     * @param unit The <code>Unit</code> to find the path for.
+     * @param start The <code>Location</code> in which the path starts.
+     * @param end The <code>Location</code> at the end of the path.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param costDecider An optional <code>CostDecider</code>.
+     * @param turn The current turn number.
+     * @param verify If true, always search, and check the cached
+     *     path against the search result.
+     * @param search The search to run if the path is not cached.
+     * @return The path found, or null if none.
+     */
+    PathNode findPath(Unit unit, Location start, Location end, Unit carrier,
+                      CostDecider costDecider, int turn, boolean verify,
+                      Supplier<PathNode> search) {
+        final Key key = new Key(unit, start, end, carrier, costDecider);
+        final Entry entry;
+        final int v;
+        final long foreign, own;
+        synchronized (this) {
+            if (turn != this.turn) clear(turn);
+            v = version;
+            foreign = getForeignMoves(unit.getOwner());
+            own = getOwnerChanges(unit.getOwner());
+            Entry e = entries.get(key);
+            if (e == null) {
+                misses++;
+            } else if (e.version != v || e.foreignMoves != foreign
+                || e.ownerChanges != own) {
+                entries.remove(key);
+                stale++;
+                e = null;
+            } else {
+                hits++;
+            }
+            entry = e;
+        }
+        if (entry != null && !verify) return copy(entry.path);
+
+        final PathNode path = search.get();
+        if (entry != null) {
+            String cached = (entry.path == null) ? "null"
+                : entry.path.fullPathToString();
+            String found = (path == null) ? "null" : path.fullPathToString();
+            if (!cached.equals(found)) {
+                synchronized (this) {
+                    mismatches++;
+                }
+                logger.warning("Cached path for " + unit + " from " + start
+                    + " to " + end + " with " + carrier + " is stale:\n"
+                    + cached + "\nfound:\n" + found);
+            }
+            return path;
+        }
+        synchronized (this) {
+            if (turn == this.turn) {
+                if (entries.size() >= MAX_ENTRIES) entries.clear();
+                entries.put(key, new Entry(copy(path), v, foreign,
+                                                own));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Get the number of land moves made by players other than a given one.
+     *
+     * @param owner The <code>Player</code> to check.
+     * @return The number of moves by other players this turn.
+     */
+    private long getForeignMoves(Player owner) {
+        Long own = ownerLandMoves.get(owner);
+        return landMoves - ((own == null) ? 0 : own);
+    }
+
+    /**
+     * Get the number of changes affecting only the paths of a player.
+     *
+     * @param owner The <code>Player</code> to check.
+     * @return The number of changes for the player.
+     */
+    private long getOwnerChanges(Player owner) {
+        Long changes = ownerChanges.get(owner);
+        return (changes == null) ? 0 : changes;
+    }
+
+    /**
+     * Drop all the cached paths, and start a new turn.
+     *
+     * @param turn The new turn number.
+     */
+    private void clear(int turn) {
+        entries.clear();
+        ownerLandMoves.clear();
+        landMoves = 0;
+        this.turn = turn;
+    }
+
+    /**
+     * Copy a path.
+     *
+     * @param path The <code>PathNode</code> to copy.
+     * @return A copy of the path, or null if the path is null.
+     */
+    private static PathNode copy(PathNode path) {
+        return (path == null) ? null : path.copyPath();
+    }
+
+    /**
+     * Invalidate all the cached paths.
+     */
+    synchronized void mapChanged() {
+        version++;
+    }
+
+    /**
+     * Note that a unit has moved onto or off a tile.
+     *
+     * @param unit The <code>Unit</code> that moved.
+     */
+    synchronized void unitMoved(Unit unit) {
+        if (unit.isNaval()) {
+            // Naval units also change where our own units can embark.
+            version++;
+        } else {
+            landMoves++;
+            ownerLandMoves.merge(unit.getOwner(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Invalidate the cached paths of one player, such as when it
+     * explores a tile.
+     *
+     * @param owner The <code>Player</code> whose paths changed.
+     */
+    synchronized void ownerChanged(Player owner) {
+        ownerChanges.merge(owner, 1L, Long::sum);
+    }
+
+    /**
+     * Get the statistics of the cache.
+     *
+     * @return A map of the statistics.
+     */
+    synchronized java.util.Map<String, String> getStatistics() {
+        java.util.Map<String, String> stats = new HashMap<>();
+        stats.put("pathCacheEntries", Integer.toString(entries.size()));
+        stats.put("pathCacheHits", Long.toString(hits));
+        stats.put("pathCacheMisses", Long.toString(misses));
+        stats.put("pathCacheStale", Long.toString(stale));
+        stats.put("pathCacheMismatches", Long.toString(mismatches));
+        final long total = hits + misses + stale;
+        stats.put("pathCacheHitRate",
+            Long.toString((total == 0) ? 0 : 100 * hits / total) + "%");
+        return stats;
+    }
+}
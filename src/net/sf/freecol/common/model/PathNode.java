@@ -180,6 +180,22 @@ public class PathNode {
         this.onCarrier = onCarrier;
     }
 
+    /**
+     * Copy the path from this node onward.
+     *
+     * @return The first <code>PathNode</code> of the copy.
+     */
+    public PathNode copyPath() {
+        PathNode first = null, last = null;
+        for (PathNode p = this; p != null; p = p.next) {
+            PathNode n = new PathNode(p.location, p.movesLeft, p.turns,
+                                      p.onCarrier, last, null);
+            if (last == null) first = n; else last.next = n;
+            last = n;
+        }
+        return first;
+    }
+
     /**
      * Get the length of the path.
      *
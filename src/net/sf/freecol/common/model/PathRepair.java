@@ -0,0 +1,344 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import net.sf.freecol.common.model.pathfinding.CostDecider;
+
+
+/**
+ * Incremental replanning of the paths of units with a standing
+ * destination.
+ *
+ * The last path found for each unit to its destination is kept as a
+ * plan.  When the unit asks for a path to the same destination again
+ * from a tile of the plan, usually having moved along it, the plan is
+ * repaired rather than replanned: the search is rerun, but restricted
+ * to a narrow corridor of tiles around the rest of the plan.  Changes
+ * inside the corridor (units blocking, new roads, settlements) are
+ * thus found by the repair, which only visits the tiles near the
+ * plan.  The repaired path becomes the plan, but keeps the turn the
+ * original plan was expected to arrive in.
+ *
+ * The changes to the terrain, improvements, settlements and ownership
+ * of tiles are logged, as are the tiles units leave.  A change
+ * outside the corridor that is close enough to the plan that a path
+ * through it could be faster than the plan, a change that is not
+ * tied to a tile (such as of stance), or a repaired path that would
+ * arrive later than the plan all fall back to a full search, which
+ * then becomes the new plan.  Units arriving are not logged, as they
+ * only block a plan where it passes them, which is inside the
+ * corridor.
+ *
+ * On the first search of each turn the plans of disposed units, of
+ * units whose destination has changed, and plans that can no longer
+ * be repaired are dropped.
+ *
+ * This is D* Lite in spirit rather than in form.  Path costs depend
+ * on the moves left at each step, so costs can not be kept from the
+ * goal backwards.  Instead the repair is an ordinary search with a
+ * much smaller search space.
+ */
+final class PathRepair {
+
+    private static final Logger logger = Logger.getLogger(PathRepair.class.getName());
+
+    /** The radius of the corridor around a plan. */
+    static final int CORRIDOR_RADIUS = 2;
+
+    /** The number of changes kept in the log. */
+    private static final int LOG_SIZE = 4096;
+
+    /** The maximum number of plans before all are dropped. */
+    private static final int MAX_PLANS = 4096;
+
+    /** The plan of a unit. */
+    private static final class Plan {
+
+        /** The destination tile. */
+        public final Tile end;
+
+        /** The cost decider, as in the path cache key. */
+        public final Object costDecider;
+
+        /** The tiles along the plan. */
+        public final Tile[] tiles;
+
+        /** The turn the unit was expected to arrive in. */
+        public final int arrival;
+
+        /** The number of changes logged, and the global change count,
+            when the plan was made. */
+        public final long logged, epoch;
+
+
+        public Plan(Tile end, Object costDecider, PathNode path,
+                    int arrival, long logged, long epoch) {
+            this.end = end;
+            this.costDecider = costDecider;
+            this.tiles = new Tile[path.getLength()];
+            int i = 0;
+            for (PathNode p = path; p != null; p = p.next) {
+                tiles[i++] = p.getTile();
+            }
+            this.arrival = arrival;
+            this.logged = logged;
+            this.epoch = epoch;
+        }
+
+        /**
+         * Find a tile in the plan.
+         *
+         * @param tile The <code>Tile</code> to look for.
+         * @return The index of the tile, or -1 if not present.
+         */
+        public int indexOf(Tile tile) {
+            for (int i = 0; i < tiles.length; i++) {
+                if (tiles[i] == tile) return i;
+            }
+            return -1;
+        }
+    }
+
+    /** The plans by unit. */
+    private final java.util.Map<Unit, Plan> plans = new HashMap<>();
+
+    /** The log of changed tiles, as a ring buffer of tile indexes. */
+    private final int[] log = new int[LOG_SIZE];
+
+    /** The number of changes logged. */
+    private long logged = 0;
+
+    /** The number of changes not tied to a tile. */
+    private long epoch = 0;
+
+    /** The turn the plans were last pruned in. */
+    private int turn = -1;
+
+    /** Statistics. */
+    private long plansMade = 0, repairs = 0, fallbacks = 0, mismatches = 0;
+
+
+    /**
+     * Find a path, repairing the plan of the unit if possible.
+     *
+     * @param map The <code>Map</code> to search.
+     * @param unit The <code>Unit</code> to find the path for, which
+     *     must be on the start tile, and not on a carrier.
+     * @param start The <code>Tile</code> to start at.
+     * @param end The <code>Tile</code> to reach.
+     * @param costDecider An optional <code>CostDecider</code>.
+     * @param turn The current turn number.
+     * @param verify If true, also run a full search, and check the
+     *     repaired path against it.
+     * @param repair The search restricted to a corridor of tiles.
+     * @param search The full search.
+     * @return The path found, or null if none.
+     */
+    PathNode findPath(Map map, Unit unit, Tile start, Tile end,
+                      CostDecider costDecider, int turn, boolean verify,
+                      Function<boolean[], PathNode> repair,
+                      Supplier<PathNode> search) {
+        final Object cd = (costDecider == null) ? null
+            : (costDecider.getClass().isAnonymousClass()) ? costDecider
+            : costDecider.getClass();
+        final boolean[] corridor;
+        final Plan plan;
+        final long now, nowEpoch;
+        synchronized (this) {
+            Plan p = plans.get(unit);
+            plan = (p != null && p.end == end && p.costDecider == cd) ? p
+                : null;
+            corridor = (plan == null) ? null
+                : getCorridor(map, unit, plan, start);
+            now = logged;
+            nowEpoch = epoch;
+        }
+        if (corridor != null) {
+            final PathNode path = repair.apply(corridor);
+            if (path != null
+                && turn + path.getTotalTurns() <= plan.arrival) {
+                synchronized (this) {
+                    repairs++;
+                    plans.put(unit, new Plan(end, cd, path, plan.arrival,
+                                             now, nowEpoch));
+                }
+                if (verify) verify(unit, start, end, path, search.get());
+                return path;
+            }
+        }
+
+        final PathNode path = search.get();
+        synchronized (this) {
+            if (plan != null) fallbacks++;
+            if (path == null || !isPlannable(path)) {
+                plans.remove(unit);
+            } else {
+                if (plans.size() >= MAX_PLANS) plans.clear();
+                plans.put(unit, new Plan(end, cd, path,
+                        turn + path.getTotalTurns(), now, nowEpoch));
+                plansMade++;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Start a turn, dropping the plans that can no longer be used if
+     * it is a new one.
+     *
+     * @param turn The current turn number.
+     */
+    synchronized void setTurn(int turn) {
+        if (turn == this.turn) return;
+        Iterator<java.util.Map.Entry<Unit, Plan>> it
+            = plans.entrySet().iterator();
+        while (it.hasNext()) {
+            java.util.Map.Entry<Unit, Plan> e = it.next();
+            final Unit unit = e.getKey();
+            final Plan plan = e.getValue();
+            final Location dst = unit.getDestination();
+            if (unit.isDisposed() || dst == null || dst.getTile() != plan.end
+                || plan.epoch != epoch || logged - plan.logged > LOG_SIZE
+                || plan.arrival < turn) it.remove();
+        }
+        this.turn = turn;
+    }
+
+    /**
+     * Can a path be used as a plan?  Only paths that stay on the map
+     * and do not use a carrier are planned.
+     *
+     * @param path The <code>PathNode</code> to check.
+     * @return True if the path can be planned.
+     */
+    private static boolean isPlannable(PathNode path) {
+        for (PathNode p = path; p != null; p = p.next) {
+            if (p.getTile() == null || p.isOnCarrier()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the corridor to repair a plan in.
+     *
+     * @param map The <code>Map</code> to search.
+     * @param unit The <code>Unit</code> the plan is for.
+     * @param plan The <code>Plan</code> to repair.
+     * @param start The <code>Tile</code> the unit is now at.
+     * @return Flags for the tiles the repair may visit, or null if
+     *     the plan can not be repaired.
+     */
+    private boolean[] getCorridor(Map map, Unit unit, Plan plan, Tile start) {
+        final int index = plan.indexOf(start);
+        if (index < 0 || plan.epoch != epoch
+            || logged - plan.logged > LOG_SIZE) return null;
+
+        final int width = map.getWidth();
+        final boolean[] corridor = new boolean[width * map.getHeight()];
+        final MapClusters.MovementClass mc
+            = MapClusters.MovementClass.of(unit);
+        final int initialMoves = unit.getInitialMovesLeft();
+        int moves = 0;
+        for (int i = index; i < plan.tiles.length; i++) {
+            map.forEachTile(plan.tiles[i], 0, CORRIDOR_RADIUS,
+                t -> corridor[t.getY() * width + t.getX()] = true);
+            if (i > index) {
+                moves += Math.min(initialMoves, MapClusters.getMoveCost(
+                        plan.tiles[i - 1], plan.tiles[i], mc));
+            }
+        }
+
+        // Check the changes outside the corridor.  Every move costs
+        // at least one (a third of a movement point, along a road or
+        // river), so a path through a changed tile can only beat the
+        // plan if the tile is close enough to both ends of the plan.
+        // Allow a turn of slack for the moves left over each turn.
+        final int limit = moves + initialMoves;
+        for (long k = plan.logged; k < logged; k++) {
+            final int i = log[(int)(k % LOG_SIZE)];
+            if (corridor[i]) continue;
+            final Tile tile = map.getTile(i % width, i / width);
+            if (map.getDistance(start, tile) + map.getDistance(tile, plan.end)
+                <= limit) return null;
+        }
+        return corridor;
+    }
+
+    /**
+     * Check a repaired path against a full search.
+     *
+     * @param unit The <code>Unit</code> the path is for.
+     * @param start The start <code>Tile</code>.
+     * @param end The end <code>Tile</code>.
+     * @param repaired The repaired path.
+     * @param found The path found by a full search.
+     */
+    private void verify(Unit unit, Tile start, Tile end, PathNode repaired,
+                        PathNode found) {
+        if (found == null || found.getTotalTurns() < repaired.getTotalTurns()) {
+            synchronized (this) {
+                mismatches++;
+            }
+            logger.warning("Repaired path for " + unit + " from " + start
+                + " to " + end + " is worse:\n" + repaired.fullPathToString()
+                + "\nfound:\n"
+                + ((found == null) ? "null" : found.fullPathToString()));
+        }
+    }
+
+    /**
+     * Log a change to a tile.
+     *
+     * @param map The <code>Map</code> containing the tile.
+     * @param tile The <code>Tile</code> that changed.
+     */
+    synchronized void tileChanged(Map map, Tile tile) {
+        log[(int)(logged % LOG_SIZE)] = tile.getY() * map.getWidth()
+            + tile.getX();
+        logged++;
+    }
+
+    /**
+     * Invalidate all the plans, following a change that is not tied
+     * to a tile.
+     */
+    synchronized void mapChanged() {
+        epoch++;
+    }
+
+    /**
+     * Add the statistics of the plans to a map.
+     *
+     * @param stats The map of statistics to add to.
+     */
+    synchronized void addStatistics(java.util.Map<String, String> stats) {
+        stats.put("pathRepairPlans", Integer.toString(plans.size()));
+        stats.put("pathRepairPlansMade", Long.toString(plansMade));
+        stats.put("pathRepairRepairs", Long.toString(repairs));
+        stats.put("pathRepairFallbacks", Long.toString(fallbacks));
+        stats.put("pathRepairMismatches", Long.toString(mismatches));
+    }
+}
@@ -0,0 +1,645 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.Arrays;
+
+import net.sf.freecol.common.model.pathfinding.CostDecider;
+import net.sf.freecol.common.model.pathfinding.CostDeciders;
+import net.sf.freecol.common.model.pathfinding.GoalDecider;
+import static net.sf.freecol.common.model.FreeColObject.INFINITY;
+
+
+/**
+ * The A* engine behind {@link Map#search} and {@link Map#findPath}.
+ *
+ * This is the same search as the location keyed one in Map, but the
+ * search state lives in arrays indexed by tile position (y * width +
+ * x), which are kept per thread and reused.  Entries belong to the
+ * current search only if their stamp matches the search generation,
+ * so the arrays never need to be cleared between searches.
+ *
+ * The open list is a binary heap of tile indexes with a position
+ * index, so an open tile can be found and updated in O(log N).  The
+ * heap deliberately sifts exactly as the java.util.PriorityQueue it
+ * replaces, so ties are broken the same way and the search expands
+ * the same tiles in the same order and returns the same paths.
+ *
+ * Path nodes are only created when a tile is taken off the open
+ * list, as that is the node the goal decider is shown, and may keep
+ * as its goal.
+ *
+ * A search may be restricted to a corridor of {@link MapClusters},
+ * or to a corridor of tiles (see {@link PathRepair}).
+ *
+ * Sea moves of naval units with the default cost decider are costed
+ * from the {@link SeaLegCache}.
+ */
+final class PathSearch {
+
+    /** The states of a tile in the current search. */
+    private static final byte NONE = 0, OPEN = 1, CLOSED = 2;
+
+    /** Flags for the path to a tile. */
+    private static final byte ON_CARRIER = 1, USED_CARRIER = 2, DISEMBARK = 4;
+
+    /** The neighbour order, as in Tile.getSurroundingTiles(1). */
+    private static final Direction[] NEIGHBOURS = {
+        Direction.NE, Direction.E, Direction.SE, Direction.S,
+        Direction.SW, Direction.W, Direction.NW, Direction.N
+    };
+
+    /** The search state of each thread. */
+    private static final ThreadLocal<PathSearch> searches
+        = new ThreadLocal<>();
+
+    /** Is this search state in use? */
+    private boolean busy = false;
+
+    /** The current search generation. */
+    private int generation = 0;
+
+    /** The generation that last touched each tile. */
+    private int[] stamp = new int[0];
+
+    /** The state of each tile. */
+    private byte[] state;
+
+    /** The flags of the path to each tile. */
+    private byte[] flags;
+
+    /** The cost, heuristic cost, moves left and turns at each tile. */
+    private int[] cost, f, movesLeft, turns;
+
+    /** The moves left and turns on the carrier before disembarking. */
+    private int[] carrierMovesLeft, carrierTurns;
+
+    /** The node each tile was reached from. */
+    private PathNode[] previous;
+
+    /** The open list heap, and the position of each tile in it. */
+    private int[] heap, position;
+
+    /** The number of tiles in the heap. */
+    private int size;
+
+    /** The clusters, and which of them the search may enter. */
+    private MapClusters clusters;
+    private boolean[] corridor;
+
+    /** The tiles the search may enter, or null for all. */
+    private boolean[] tiles;
+
+    /** The moves left and new turns of a cached sea move. */
+    private final int[] seaMove = new int[2];
+
+
+    /**
+     * Get the search state for the current thread.
+     *
+     * Searches started from inside a search, say by a goal decider,
+     * get a fresh state.
+     *
+     * @return A <code>PathSearch</code> that is not in use.
+     */
+    static PathSearch get() {
+        PathSearch ps = searches.get();
+        if (ps == null) {
+            ps = new PathSearch();
+            searches.set(ps);
+        } else if (ps.busy) {
+            ps = new PathSearch();
+        }
+        return ps;
+    }
+
+    /**
+     * Prepare the state for a new search on a map.
+     *
+     * @param map The <code>Map</code> to search.
+     */
+    private void reset(Map map) {
+        final int n = map.getWidth() * map.getHeight();
+        if (stamp.length < n) {
+            stamp = new int[n];
+            state = new byte[n];
+            flags = new byte[n];
+            cost = new int[n];
+            f = new int[n];
+            movesLeft = new int[n];
+            turns = new int[n];
+            carrierMovesLeft = new int[n];
+            carrierTurns = new int[n];
+            previous = new PathNode[n];
+            heap = new int[n];
+            position = new int[n];
+            generation = 0;
+        }
+        if (++generation == 0) { // Wrapped, clear the old stamps
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Get the state of a tile in the current search.
+     *
+     * @param i The tile index.
+     * @return The tile state.
+     */
+    private byte getState(int i) {
+        return (stamp[i] == generation) ? state[i] : NONE;
+    }
+
+    /**
+     * Set the state of a tile in the current search.
+     *
+     * @param i The tile index.
+     * @param s The new tile state.
+     */
+    private void setState(int i, byte s) {
+        stamp[i] = generation;
+        state[i] = s;
+    }
+
+    /**
+     * Create the path node for a tile, as it leaves the open list.
+     *
+     * @param tile The <code>Tile</code> to create a node for.
+     * @param i The tile index.
+     * @return A new <code>PathNode</code>.
+     */
+    private PathNode makeNode(Tile tile, int i) {
+        PathNode prev = previous[i];
+        previous[i] = null;
+        if ((flags[i] & DISEMBARK) != 0) {
+            prev = new PathNode(tile, carrierMovesLeft[i], carrierTurns[i],
+                                true, prev, null);
+        }
+        return new PathNode(tile, movesLeft[i], turns[i],
+                            (flags[i] & ON_CARRIER) != 0, prev, null);
+    }
+
+
+    // The open list, which must sift exactly as PriorityQueue does.
+
+    private int compare(int a, int b) {
+        return f[a] - f[b];
+    }
+
+    private void siftUp(int k, int x) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            int e = heap[parent];
+            if (compare(x, e) >= 0) break;
+            heap[k] = e;
+            position[e] = k;
+            k = parent;
+        }
+        heap[k] = x;
+        position[x] = k;
+    }
+
+    private void siftDown(int k, int x) {
+        final int half = size >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < size && compare(c, heap[right]) > 0) {
+                c = heap[child = right];
+            }
+            if (compare(x, c) <= 0) break;
+            heap[k] = c;
+            position[c] = k;
+            k = child;
+        }
+        heap[k] = x;
+        position[x] = k;
+    }
+
+    private void offer(int x) {
+        siftUp(size++, x);
+    }
+
+    private int poll() {
+        final int result = heap[0];
+        final int n = --size;
+        if (n > 0) siftDown(0, heap[n]);
+        return result;
+    }
+
+    private void remove(int x) {
+        final int i = position[x];
+        final int s = --size;
+        if (s != i) {
+            int moved = heap[s];
+            siftDown(i, moved);
+            if (heap[i] == moved) siftUp(i, moved);
+        }
+    }
+
+    /**
+     * Searches for a path to a goal determined by the given
+     * <code>GoalDecider</code>.  See Map.searchMap for the details,
+     * as this must behave identically.
+     *
+     * @param map The <code>Map</code> to search.
+     * @param unit The <code>Unit</code> to find a path for.
+     * @param start The <code>Tile</code> to start the search from.
+     * @param goalDecider The object responsible for determining whether a
+     *     given <code>PathNode</code> is a goal or not.
+     * @param costDecider An optional <code>CostDecider</code>
+     *     responsible for determining the path cost.
+     * @param maxTurns The maximum number of turns the given
+     *     <code>Unit</code> is allowed to move.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param searchHeuristic An optional <code>SearchHeuristic</code>.
+     * @return A path to a goal determined by the given
+     *     <code>GoalDecider</code>.
+     */
+    PathNode search(final Map map, final Unit unit, final Tile start,
+                    final GoalDecider goalDecider,
+                    final CostDecider costDecider,
+                    final int maxTurns, final Unit carrier,
+                    final Map.SearchHeuristic searchHeuristic) {
+        return search(map, unit, start, goalDecider, costDecider, maxTurns,
+                      carrier, searchHeuristic, null, null);
+    }
+
+    /**
+     * Searches for a path to a goal, only visiting tiles in a
+     * corridor of clusters.
+     *
+     * @param map The <code>Map</code> to search.
+     * @param unit The <code>Unit</code> to find a path for.
+     * @param start The <code>Tile</code> to start the search from.
+     * @param goalDecider The object responsible for determining whether a
+     *     given <code>PathNode</code> is a goal or not.
+     * @param costDecider An optional <code>CostDecider</code>
+     *     responsible for determining the path cost.
+     * @param maxTurns The maximum number of turns the given
+     *     <code>Unit</code> is allowed to move.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param searchHeuristic An optional <code>SearchHeuristic</code>.
+     * @param clusters The <code>MapClusters</code> of the map.
+     * @param corridor Flags for the clusters the search may visit,
+     *     or null to search the whole map.
+     * @return A path to a goal determined by the given
+     *     <code>GoalDecider</code>.
+     */
+    PathNode search(final Map map, final Unit unit, final Tile start,
+                    final GoalDecider goalDecider,
+                    final CostDecider costDecider,
+                    final int maxTurns, final Unit carrier,
+                    final Map.SearchHeuristic searchHeuristic,
+                    final MapClusters clusters, final boolean[] corridor) {
+        busy = true;
+        this.clusters = clusters;
+        this.corridor = corridor;
+        try {
+            reset(map);
+            return searchInternal(map, unit, start, goalDecider, costDecider,
+                                  maxTurns, carrier, searchHeuristic);
+        } finally {
+            // Do not hold on to the paths.
+            for (int i = 0; i < size; i++) previous[heap[i]] = null;
+            size = 0;
+            this.clusters = null;
+            this.corridor = null;
+            busy = false;
+        }
+    }
+
+    /**
+     * Searches for a path to a goal, only visiting tiles in a
+     * corridor of tiles.
+     *
+     * @param map The <code>Map</code> to search.
+     * @param unit The <code>Unit</code> to find a path for.
+     * @param start The <code>Tile</code> to start the search from.
+     * @param goalDecider The object responsible for determining whether a
+     *     given <code>PathNode</code> is a goal or not.
+     * @param costDecider An optional <code>CostDecider</code>
+     *     responsible for determining the path cost.
+     * @param maxTurns The maximum number of turns the given
+     *     <code>Unit</code> is allowed to move.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param searchHeuristic An optional <code>SearchHeuristic</code>.
+     * @param tiles Flags for the tiles the search may visit, indexed
+     *     by y * width + x.
+     * @return A path to a goal determined by the given
+     *     <code>GoalDecider</code>.
+     */
+    PathNode search(final Map map, final Unit unit, final Tile start,
+                    final GoalDecider goalDecider,
+                    final CostDecider costDecider,
+                    final int maxTurns, final Unit carrier,
+                    final Map.SearchHeuristic searchHeuristic,
+                    final boolean[] tiles) {
+        this.tiles = tiles;
+        try {
+            return search(map, unit, start, goalDecider, costDecider,
+                          maxTurns, carrier, searchHeuristic, null, null);
+        } finally {
+            this.tiles = null;
+        }
+    }
+
+    private PathNode searchInternal(final Map map, final Unit unit,
+                                    final Tile start,
+                                    final GoalDecider goalDecider,
+                                    final CostDecider costDecider,
+                                    final int maxTurns, final Unit carrier,
+                                    final Map.SearchHeuristic searchHeuristic) {
+        final int width = map.getWidth();
+        final Unit offMapUnit = (carrier != null) ? carrier : unit;
+        // The default cost deciders keep state, so each search needs
+        // its own, but one per unit will do for the whole search.
+        final CostDecider unitCostDecider = (costDecider != null)
+            ? costDecider
+            : CostDeciders.defaultCostDeciderFor(unit);
+        final CostDecider offMapCostDecider = (offMapUnit == unit)
+            ? unitCostDecider
+            : (costDecider != null) ? costDecider
+            : CostDeciders.defaultCostDeciderFor(offMapUnit);
+        // Sea moves with the default cost decider can be cached.
+        final SeaLegCache.SeaLegs seaLegs = (costDecider == null
+            && offMapUnit != null && offMapUnit.isNaval())
+            ? map.getSeaLegs(offMapUnit)
+            : null;
+        Unit currentUnit = (start.isLand())
+            ? ((start.hasSettlement()
+                    && start.getSettlement().isConnectedPort()
+                    && unit != null
+                    && unit.getLocation() == carrier) ? carrier : unit)
+            : offMapUnit;
+
+        // Put the start tile on the open list.
+        final int startIndex = start.getY() * width + start.getX();
+        final boolean startOnCarrier = carrier != null
+            && currentUnit == carrier;
+        setState(startIndex, OPEN);
+        movesLeft[startIndex] = (currentUnit != null)
+            ? currentUnit.getMovesLeft() : -1;
+        turns[startIndex] = 0;
+        cost[startIndex] = PathNode.getCost(0, movesLeft[startIndex]);
+        flags[startIndex] = (byte)((startOnCarrier)
+            ? ON_CARRIER | USED_CARRIER : 0);
+        previous[startIndex] = null;
+        f[startIndex] = (searchHeuristic == null) ? 0
+            : searchHeuristic.getValue(start);
+        offer(startIndex);
+
+        PathNode best = null;
+        int bestScore = INFINITY;
+        while (size > 0) {
+            // Choose the node with the lowest f.
+            final int current = poll();
+            final Tile currentTile = map.getTile(current % width,
+                                                 current / width);
+            final PathNode currentNode = makeNode(currentTile, current);
+            setState(current, NONE);
+
+            // Reset current unit to that of this node.
+            currentUnit = (currentNode.isOnCarrier()) ? carrier : unit;
+
+            // Check for success.
+            if (goalDecider.check(currentUnit, currentNode)) {
+                best = goalDecider.getGoal();
+                bestScore = best.getCost();
+                if (!goalDecider.hasSubGoals()) break;
+                continue;
+            }
+
+            // Skip nodes that can not beat the current best path.
+            if (bestScore < currentNode.getCost()) {
+                setState(current, CLOSED);
+                continue;
+            }
+
+            // Ignore nodes over the turn limit.
+            if (currentNode.getTurns() > maxTurns) continue;
+
+            // Valid candidate for the closed list.
+            setState(current, CLOSED);
+
+            // Collect the parameters for the current node.
+            final int currentCost = currentNode.getCost();
+            final int currentMovesLeft = currentNode.getMovesLeft();
+            final int currentTurns = currentNode.getTurns();
+            final boolean currentOnCarrier = currentNode.isOnCarrier();
+            final boolean currentUsedCarrier
+                = (flags[current] & USED_CARRIER) != 0;
+            final int x = currentTile.getX(), y = currentTile.getY();
+
+            // Try the tiles in each direction
+            for (Direction d : NEIGHBOURS) {
+                final int nx = d.stepX(x, y), ny = d.stepY(x, y);
+                final int next = ny * width + nx;
+                if (!map.isValid(nx, ny)
+                    || (corridor != null
+                        && !corridor[clusters.getCluster(nx, ny)])
+                    || (tiles != null && !tiles[next])) continue;
+                final Tile moveTile = map.getTile(nx, ny);
+
+                // If the new tile is the tile we just visited, skip it.
+                if (currentNode.previous != null
+                    && currentNode.previous.getTile() == moveTile) continue;
+
+                // Skip neighbouring tiles already too expensive.
+                final byte nextState = getState(next);
+                if (nextState == CLOSED && cost[next] <= currentCost) {
+                    continue;
+                }
+
+                // Is this move to the goal?  Use fake high cost so
+                // this does not become cached inside the goal decider
+                // as the preferred path.
+                boolean isGoal = goalDecider.check(unit,
+                    new PathNode(moveTile, 0, INFINITY/2, false,
+                        currentNode, null));
+
+                // Is this move possible for the base unit?
+                // Allow some seemingly impossible moves if it is to
+                // the goal (see the comment to recoverMove).
+                Unit.MoveType umt = unit.getSimpleMoveType(currentTile,
+                                                           moveTile);
+                boolean carrierMove = carrier != null
+                    && carrier.isTileAccessible(moveTile);
+                boolean unitMove = umt.isProgress();
+                if (isGoal) {
+                    if (!unitMove) {
+                        switch (umt) {
+                        case ATTACK_UNIT:
+                        case ATTACK_SETTLEMENT:
+                        case ENTER_FOREIGN_COLONY_WITH_SCOUT:
+                        case ENTER_INDIAN_SETTLEMENT_WITH_SCOUT:
+                        case ENTER_INDIAN_SETTLEMENT_WITH_FREE_COLONIST:
+                        case ENTER_INDIAN_SETTLEMENT_WITH_MISSIONARY:
+                        case ENTER_SETTLEMENT_WITH_CARRIER_AND_GOODS:
+                            unitMove = true;
+                            break;
+                        case MOVE_NO_ATTACK_MARINE:
+                        case MOVE_NO_ATTACK_CIVILIAN:
+                            if (moveTile.hasSettlement()) break;
+                            unitMove = currentTurns > 0
+                                && moveTile.getAvailableAdjacentCount() >= 3;
+                            break;
+                        case MOVE_NO_ACCESS_WATER:
+                            continue;
+                        default:
+                            break;
+                        }
+                        if (!unitMove && unit == currentUnit) continue;
+                    }
+                    if (unitMove && carrierMove && currentOnCarrier) {
+                        carrierMove = currentMovesLeft > 0
+                            || currentNode.embarkedThisTurn(currentTurns);
+                    }
+                }
+
+                // Work out the move, as Map.MoveCandidate does.
+                final Map.MoveStep step = (currentOnCarrier)
+                    ? ((carrierMove) ? Map.MoveStep.BYWATER
+                        : (unitMove) ? Map.MoveStep.DISEMBARK
+                        : Map.MoveStep.FAIL)
+                    : ((carrierMove && !currentUsedCarrier)
+                        ? Map.MoveStep.EMBARK
+                        : (unitMove || isGoal) ? ((unit.isNaval())
+                            ? Map.MoveStep.BYWATER
+                            : Map.MoveStep.BYLAND)
+                        : Map.MoveStep.FAIL);
+                Unit moveUnit;
+                int ml, t;
+                boolean onCarrier;
+                switch (step) {
+                case BYLAND:
+                    moveUnit = unit;
+                    ml = currentMovesLeft;
+                    onCarrier = false;
+                    break;
+                case BYWATER:
+                    moveUnit = offMapUnit;
+                    ml = currentMovesLeft;
+                    onCarrier = currentOnCarrier;
+                    break;
+                case EMBARK:
+                    moveUnit = unit;
+                    ml = currentMovesLeft;
+                    onCarrier = true;
+                    break;
+                case DISEMBARK:
+                    moveUnit = unit;
+                    ml = 0;
+                    onCarrier = false;
+                    break;
+                case FAIL: default:
+                    continue;
+                }
+                t = currentTurns;
+                int c;
+                if (seaLegs != null && moveUnit == offMapUnit
+                    && !currentTile.isLand() && !moveTile.isLand()) {
+                    c = seaLegs.getCost(currentTile, moveTile, next, ml,
+                                        seaMove);
+                    if (c != CostDecider.ILLEGAL_MOVE) {
+                        t += seaMove[1];
+                        ml = seaMove[0];
+                        c = PathNode.getCost(t, ml);
+                    }
+                } else {
+                    final CostDecider cd = (moveUnit == offMapUnit)
+                        ? offMapCostDecider
+                        : unitCostDecider;
+                    c = cd.getCost(moveUnit, currentTile, moveTile, ml);
+                    if (c != CostDecider.ILLEGAL_MOVE) {
+                        t += cd.getNewTurns();
+                        ml = cd.getMovesLeft();
+                        c = PathNode.getCost(t, ml);
+                    }
+                }
+                if (step == Map.MoveStep.EMBARK) {
+                    moveUnit = carrier;
+                    ml = carrier.getInitialMovesLeft();
+                    c = PathNode.getCost(t, ml);
+                }
+
+                // Finish the path to a goal, as MoveCandidate.resetPath.
+                int cml = 0, ct = 0;
+                boolean disembark = false;
+                if (isGoal) {
+                    if (c == CostDecider.ILLEGAL_MOVE
+                        && moveUnit != null) {
+                        ml = moveUnit.getInitialMovesLeft();
+                        t++;
+                    }
+                    Settlement s;
+                    if (moveUnit != null && onCarrier
+                        && (s = moveTile.getSettlement()) != null
+                        && moveUnit.getOwner().owns(s)) {
+                        cml = ml;
+                        ct = t;
+                        ml = 0;
+                        if (currentNode.embarkedThisTurn(t)) t++;
+                        onCarrier = false;
+                        disembark = true;
+                    }
+                    c = PathNode.getCost(t, ml);
+                }
+
+                // Improve on a previously seen case if possible.
+                if (c == CostDecider.ILLEGAL_MOVE) continue;
+                if (nextState == CLOSED || nextState == OPEN) {
+                    // Ties keep the existing path, as in
+                    // Map.MoveCandidate.canImprove.
+                    if (c >= cost[next]) continue;
+                    if (nextState == OPEN) remove(next);
+                }
+                setState(next, OPEN);
+                cost[next] = c;
+                movesLeft[next] = ml;
+                turns[next] = t;
+                carrierMovesLeft[next] = cml;
+                carrierTurns[next] = ct;
+                flags[next] = (byte)(((onCarrier) ? ON_CARRIER : 0)
+                    | ((onCarrier || disembark || currentUsedCarrier)
+                        ? USED_CARRIER : 0)
+                    | ((disembark) ? DISEMBARK : 0));
+                previous[next] = currentNode;
+                f[next] = (searchHeuristic == null) ? c
+                    : c + searchHeuristic.getValue(moveTile);
+                offer(next);
+            }
+        }
+
+        // Relink the path.  We omitted the .next link while constructing it.
+        best = goalDecider.getGoal();
+        if (best != null) {
+            while (best.previous != null) {
+                best.previous.next = best;
+                best = best.previous;
+            }
+        }
+        return best;
+    }
+
+}
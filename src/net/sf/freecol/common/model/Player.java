@@ -32,6 +32,7 @@ import java.util.Map.Entry;
 import java.util.Locale;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -2773,7 +2774,11 @@ public class Player extends FreeColGameObject implements Nameable {
         // player has units, settlements, (optionally) missions, and
         // extra visibility.
         // Set the PET for visible tiles to the tile itself.
-        boolean[][] cST = new boolean[map.getWidth()][map.getHeight()];
+        final boolean[][] cST = new boolean[map.getWidth()][map.getHeight()];
+        final Consumer<Tile> see = t -> {
+            cST[t.getX()][t.getY()] = true;
+            t.seeTile(this);
+        };
 
         for (Unit unit : getUnits()) {
             // Only consider units directly on the map, not those on a
@@ -2781,19 +2786,13 @@ public class Player extends FreeColGameObject implements Nameable {
             if (!(unit.getLocation() instanceof Tile)) continue;
 
             // All the units.
-            for (Tile t : ((Tile)unit.getLocation()).getSurroundingTiles(0,
-                    unit.getLineOfSight())) {
-                cST[t.getX()][t.getY()] = true;
-                t.seeTile(this);
-            }
+            map.forEachTile((Tile)unit.getLocation(), 0,
+                            unit.getLineOfSight(), see);
         }
         // All the settlements.
         for (Settlement settlement : getSettlements()) {
-            for (Tile t : settlement.getTile().getSurroundingTiles(0,
-                    settlement.getLineOfSight())) {
-                cST[t.getX()][t.getY()] = true;
-                t.seeTile(this);
-            }
+            map.forEachTile(settlement.getTile(), 0,
+                            settlement.getLineOfSight(), see);
         }
         // All missions if using enhanced missionaries.
         if (isEuropean()
@@ -2803,11 +2802,8 @@ public class Player extends FreeColGameObject implements Nameable {
                     if (!is.hasMissionary(this)) {
                         continue;
                     }
-                    for (Tile t : is.getTile().getSurroundingTiles(0,
-                            is.getLineOfSight())) {
-                        cST[t.getX()][t.getY()] = true;
-                        t.seeTile(this);
-                    }
+                    map.forEachTile(is.getTile(), 0,
+                                    is.getLineOfSight(), see);
                 }
             }
         }
@@ -2815,11 +2811,8 @@ public class Player extends FreeColGameObject implements Nameable {
         if (isEuropean() && hasAbility(Ability.SEE_ALL_COLONIES)) {
             for (Player other : getGame().getLiveEuropeanPlayers(this)) {
                 for (Colony colony : other.getColonies()) {
-                    for (Tile t : colony.getTile().getSurroundingTiles(0,
-                            colony.getLineOfSight())) {
-                        cST[t.getX()][t.getY()] = true;
-                        t.seeTile(this);
-                    }
+                    map.forEachTile(colony.getTile(), 0,
+                                    colony.getLineOfSight(), see);
                 }
             }
         }
@@ -2938,6 +2931,8 @@ public class Player extends FreeColGameObject implements Nameable {
             valid = false;
         }
         stance.put(player.getId(), newStance);
+        final Map map = getGame().getMap();
+        if (map != null) map.pathsChanged();
         return valid;
     }
 
@@ -3843,6 +3838,14 @@ public class Player extends FreeColGameObject implements Nameable {
         return featureContainer;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getAbilityState(String id) {
+        return featureContainer.getAbilityState(id);
+    }
+
 
     // Serialization
 
@@ -36,6 +36,11 @@ import static net.sf.freecol.common.util.CollectionUtils.*;
  * buildings, as well as the consumption of all units, buildings and
  * build queues.
  *
+ * The production of colony tiles and buildings is recorded along
+ * with the inputs it was calculated from.  When the cache is
+ * refreshed following a change to a single work location or goods
+ * type, only those work locations whose inputs have changed are
+ * recalculated.
  */
 public class ProductionCache {
 
@@ -57,6 +62,18 @@ public class ProductionCache {
     /** A set of the goods used by the colony. */
     private final Set<GoodsType> goodsUsed = new HashSet<>();
 
+    /**
+     * The inputs the production of each work location was last
+     * calculated from.
+     */
+    private Map<WorkLocation, List<Object>> dependencies = new HashMap<>();
+
+    /** Work locations that must be recalculated on the next update. */
+    private final Set<WorkLocation> dirty = new HashSet<>();
+
+    /** Flag to indicate that no cached production may be reused. */
+    private boolean fullUpdate = true;
+
     /**
      * Flag to indicate whether the cache is up to date, or not and
      * needs {@link #update} to be called.
@@ -95,13 +112,22 @@ public class ProductionCache {
         final Specification spec = colony.getSpecification();
         final GoodsType bells = spec.getGoodsType("model.goods.bells");
 
+        final Map<Object, ProductionInfo> previous
+            = (fullUpdate) ? new HashMap<>()
+            : new HashMap<>(productionAndConsumption);
+        final Map<WorkLocation, List<Object>> oldDependencies = dependencies;
+        dependencies = new HashMap<>();
         productionAndConsumption.clear();
         netProduction.clear();
         goodsUsed.clear();
         ProductionMap production = new ProductionMap();
 
         for (ColonyTile colonyTile : colony.getColonyTiles()) {
-            ProductionInfo info = colonyTile.getBasicProductionInfo();
+            List<Object> deps = getDependencies(colonyTile, null, null);
+            ProductionInfo info = getReusable(colonyTile, deps,
+                                              oldDependencies, previous);
+            if (info == null) info = colonyTile.getBasicProductionInfo();
+            dependencies.put(colonyTile, deps);
             production.add(info.getProduction());
             productionAndConsumption.put(colonyTile, info);
             for (AbstractGoods goods : info.getProduction()) {
@@ -152,7 +178,12 @@ public class ProductionCache {
                         + getGoodsCount(outputType));
                     outputs.add(newOutput);
                 }
-                info = building.getAdjustedProductionInfo(goods, outputs);
+                List<Object> deps = getDependencies(building, goods, outputs);
+                info = getReusable(building, deps, oldDependencies, previous);
+                if (info == null) {
+                    info = building.getAdjustedProductionInfo(goods, outputs);
+                }
+                dependencies.put(building, deps);
             } else if (consumer instanceof Unit) {
                 info = ((Unit)consumer).getProductionInfo(goods);
             } else if (consumer instanceof BuildQueue) {
@@ -172,10 +203,79 @@ public class ProductionCache {
                 productionAndConsumption.put(consumer, info);
             }
         }
+        dirty.clear();
+        fullUpdate = false;
         upToDate = true;
     }
 
 
+    /**
+     * Gets the inputs the production of a work location depends on.
+     *
+     * Units and build queues are cheap to recalculate, so only the
+     * colony tiles and buildings are tracked.  Changes to global
+     * modifiers are not visible here, and must be signalled with
+     * {@link #invalidate()}.
+     *
+     * @param wl The <code>WorkLocation</code> to check.
+     * @param inputs The available input goods, or null for colony tiles.
+     * @param outputs The available output goods, or null for colony tiles.
+     * @return A list of the inputs to the work location production.
+     */
+    private List<Object> getDependencies(WorkLocation wl,
+                                         List<AbstractGoods> inputs,
+                                         List<AbstractGoods> outputs) {
+        final Turn turn = colony.getGame().getTurn();
+        List<Object> deps = new ArrayList<>();
+        deps.add(wl.getProductionType());
+        deps.add(colony.getProductionBonus());
+        deps.add((turn == null) ? -1 : turn.getNumber());
+        for (Unit u : wl.getUnitList()) {
+            deps.add(u);
+            deps.add(u.getType());
+        }
+        if (wl instanceof ColonyTile) {
+            final Tile tile = ((ColonyTile)wl).getWorkTile();
+            deps.add(tile.getType());
+            deps.add(tile.getOwner());
+        }
+        if (inputs != null) {
+            for (AbstractGoods ag : inputs) {
+                deps.add(ag.getType());
+                deps.add(ag.getAmount());
+            }
+        }
+        if (outputs != null) {
+            deps.add(colony.getWarehouseCapacity());
+            for (AbstractGoods ag : outputs) {
+                // Autoproducers also read the stored amount directly.
+                deps.add(ag.getType());
+                deps.add(ag.getAmount());
+                deps.add(getGoodsCount(ag.getType()));
+            }
+        }
+        return deps;
+    }
+
+    /**
+     * Gets the previously calculated production of a work location if
+     * it is still valid.
+     *
+     * @param wl The <code>WorkLocation</code> to check.
+     * @param deps The current inputs to the work location production.
+     * @param oldDependencies The inputs recorded by the last update.
+     * @param previous The production calculated by the last update.
+     * @return The reusable <code>ProductionInfo</code>, or null if the
+     *     production must be recalculated.
+     */
+    private ProductionInfo getReusable(WorkLocation wl, List<Object> deps,
+        Map<WorkLocation, List<Object>> oldDependencies,
+        Map<Object, ProductionInfo> previous) {
+        return (dirty.contains(wl) || !deps.equals(oldDependencies.get(wl)))
+            ? null
+            : previous.get(wl);
+    }
+
     /**
      * Returns the number of goods of the given type stored in the
      * colony.
@@ -196,6 +296,21 @@ public class ProductionCache {
      */
     public synchronized void invalidate() {
         upToDate = false;
+        fullUpdate = true;
+    }
+
+    /**
+     * Invalidates the production of a work location.  This method
+     * needs to be called whenever units are added to or removed from
+     * the work location, or its production type changes.  Production
+     * elsewhere in the colony that depends on the work location is
+     * recalculated only if its inputs change as a result.
+     *
+     * @param workLocation The <code>WorkLocation</code> that changed.
+     */
+    public synchronized void invalidate(WorkLocation workLocation) {
+        dirty.add(workLocation);
+        upToDate = false;
     }
 
     /**
@@ -259,6 +259,25 @@ public class Resource extends TileItem {
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final Resource o = (Resource)other;
+        this.type = o.type;
+        this.quantity = o.quantity;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,204 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import net.sf.freecol.common.model.pathfinding.CostDecider;
+import net.sf.freecol.common.model.pathfinding.CostDeciders;
+
+
+/**
+ * A cache of the cost of the moves naval units make at sea within a
+ * turn.
+ *
+ * Searches with a carrier, or for a naval unit, spend most of their
+ * time costing sea moves with the default naval cost decider, which
+ * checks the move type, blocking units, bombarding settlements and
+ * threatening units around the tile moved to.  For a move from one
+ * sea tile to another the result only depends on the tile moved to
+ * and the moves left, so it is kept per naval unit and reused by the
+ * following searches, such as the many transport queries the AI makes
+ * with the same carrier.
+ *
+ * Everything the result depends on is near the tile moved to, so a
+ * change to a tile, or a unit moving onto or off it, drops the results
+ * for the moves onto it and its neighbours.  Stance changes drop the
+ * whole cache, as does the turn changing.
+ */
+final class SeaLegCache {
+
+    /** The maximum number of units before the cache is dropped. */
+    private static final int MAX_UNITS = 256;
+
+    /** The number of ints for each result: moves left before, cost,
+        moves left after and new turns. */
+    private static final int RESULT_SIZE = 4;
+
+    /** An empty result list. */
+    private static final int[] NONE = new int[0];
+
+    /** The sea legs of a naval unit. */
+    static final class SeaLegs {
+
+        /** The unit making the moves. */
+        private final Unit unit;
+
+        /** The results for the moves onto each tile. */
+        private final int[][] results;
+
+        /** The cost decider the results come from. */
+        private final CostDecider costDecider;
+
+        /** Statistics. */
+        private long hits = 0, misses = 0;
+
+
+        SeaLegs(Unit unit, int size) {
+            this.unit = unit;
+            this.results = new int[size][];
+            this.costDecider = CostDeciders.defaultCostDeciderFor(unit);
+        }
+
+        /**
+         * Get the cost of a move between two sea tiles, as the
+         * default cost decider for the unit would.
+         *
+         * @param from The <code>Tile</code> to move from.
+         * @param to The <code>Tile</code> to move to.
+         * @param index The index of the tile to move to.
+         * @param ml The moves left before the move.
+         * @param out An array to return the moves left after the move
+         *     and the new turns taken by it in.
+         * @return The cost of the move, or CostDecider.ILLEGAL_MOVE.
+         */
+        synchronized int getCost(Tile from, Tile to, int index, int ml,
+                                 int[] out) {
+            int[] r = results[index];
+            if (r == null) r = NONE;
+            for (int i = 0; i < r.length; i += RESULT_SIZE) {
+                if (r[i] == ml) {
+                    hits++;
+                    out[0] = r[i + 2];
+                    out[1] = r[i + 3];
+                    return r[i + 1];
+                }
+            }
+            misses++;
+            final int cost = costDecider.getCost(unit, from, to, ml);
+            out[0] = costDecider.getMovesLeft();
+            out[1] = costDecider.getNewTurns();
+            r = Arrays.copyOf(r, r.length + RESULT_SIZE);
+            r[r.length - 4] = ml;
+            r[r.length - 3] = cost;
+            r[r.length - 2] = out[0];
+            r[r.length - 1] = out[1];
+            results[index] = r;
+            return cost;
+        }
+
+        /**
+         * Drop the results for the moves onto a tile.
+         *
+         * @param index The index of the tile.
+         */
+        private synchronized void drop(int index) {
+            results[index] = null;
+        }
+    }
+
+    /** The sea legs by unit. */
+    private final java.util.Map<Unit, SeaLegs> legs = new HashMap<>();
+
+    /** The turn the sea legs are for. */
+    private int turn = -1;
+
+    /** Statistics for the dropped sea legs. */
+    private long hits = 0, misses = 0;
+
+
+    /**
+     * Get the sea legs of a naval unit.
+     *
+     * @param map The <code>Map</code> the unit is on.
+     * @param unit The naval <code>Unit</code> to get the legs for.
+     * @param turn The current turn number.
+     * @return The <code>SeaLegs</code> of the unit.
+     */
+    synchronized SeaLegs getSeaLegs(Map map, Unit unit, int turn) {
+        if (turn != this.turn || legs.size() >= MAX_UNITS) {
+            clear();
+            this.turn = turn;
+        }
+        SeaLegs sl = legs.get(unit);
+        if (sl == null) {
+            sl = new SeaLegs(unit, map.getWidth() * map.getHeight());
+            legs.put(unit, sl);
+        }
+        return sl;
+    }
+
+    /**
+     * Note a change to a tile, or to the units on it.
+     *
+     * @param map The <code>Map</code> containing the tile.
+     * @param tile The <code>Tile</code> that changed.
+     */
+    synchronized void tileChanged(Map map, Tile tile) {
+        if (legs.isEmpty()) return;
+        final int width = map.getWidth();
+        map.forEachTile(tile, 0, 1, (Tile t) -> {
+                final int index = t.getY() * width + t.getX();
+                for (SeaLegs sl : legs.values()) sl.drop(index);
+            });
+    }
+
+    /**
+     * Drop all the sea legs.
+     */
+    synchronized void clear() {
+        for (SeaLegs sl : legs.values()) {
+            synchronized (sl) {
+                hits += sl.hits;
+                misses += sl.misses;
+            }
+        }
+        legs.clear();
+    }
+
+    /**
+     * Add the statistics of the cache to a map.
+     *
+     * @param stats The map of statistics to add to.
+     */
+    synchronized void addStatistics(java.util.Map<String, String> stats) {
+        long h = hits, m = misses;
+        for (SeaLegs sl : legs.values()) {
+            synchronized (sl) {
+                h += sl.hits;
+                m += sl.misses;
+            }
+        }
+        stats.put("seaLegUnits", Integer.toString(legs.size()));
+        stats.put("seaLegHits", Long.toString(h));
+        stats.put("seaLegMisses", Long.toString(m));
+    }
+}
@@ -299,7 +299,7 @@ public abstract class Settlement extends GoodsLocation
      * @return True if the settlement is connected to the high seas.
      */
     public boolean isConnectedPort() {
-        return any(getTile().getSurroundingTiles(1, 1),
+        return getGame().getMap().anyTile(getTile(), 1, 1,
             t -> !t.isLand() && t.isHighSeasConnected());
     }
 
@@ -420,6 +420,21 @@ public abstract class Settlement extends GoodsLocation
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final Settlement o = (Settlement)other;
+        this.owner = o.owner;
+        this.name = o.name;
+        context.resolve(o.tile, t -> this.tile = t);
+        this.type = o.type;
+        // As with serialization, owned tiles are left to the Map.
+        featureContainer.addFeatures(o);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -438,6 +453,14 @@ public abstract class Settlement extends GoodsLocation
         return featureContainer;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getAbilityState(String id) {
+        return featureContainer.getAbilityState(id);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -250,6 +250,9 @@ public final class Specification {
     /** A cache of the military roles in decreasing order.  Do not serialize. */
     private List<Role> militaryRoles = null;
 
+    /** The static move costs, built on demand.  Do not serialize. */
+    private volatile MoveCostTable moveCostTable = null;
+
     private boolean initialized = false;
 
     /** The specification identifier. */
@@ -522,6 +525,8 @@ public final class Specification {
     public void clean(String why) {
         logger.finest("Cleaning up specification following " + why + ".");
 
+        moveCostTable = null;
+
         Iterator<FreeColGameObjectType> typeIterator
             = allTypes.values().iterator();
         while (typeIterator.hasNext()) {
@@ -920,6 +925,7 @@ public final class Specification {
     public void addAbility(String id) {
         if (!allAbilities.containsKey(id)) {
             allAbilities.put(id, new ArrayList<Ability>());
+            Ability.getIndex(id);
         }
     }
 
@@ -1274,6 +1280,17 @@ public final class Specification {
         return getType(id, TileImprovementType.class);
     }
 
+    /**
+     * Get the table of static move costs by tile type and improvements.
+     *
+     * @return The <code>MoveCostTable</code> for this specification.
+     */
+    MoveCostTable getMoveCostTable() {
+        MoveCostTable table = moveCostTable;
+        if (table == null) moveCostTable = table = new MoveCostTable(this);
+        return table;
+    }
+
     // -- Units --
 
     public List<UnitType> getUnitTypeList() {
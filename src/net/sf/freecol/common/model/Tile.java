@@ -37,6 +37,7 @@ import javax.xml.stream.XMLStreamException;
 
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.RecordingXMLStreamWriter;
 import net.sf.freecol.common.model.Direction;
 import static net.sf.freecol.common.util.CollectionUtils.*;
 import net.sf.freecol.common.util.RandomChoice;
@@ -193,6 +194,13 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     private int contiguity = -1;
 
+    /**
+     * The static cost for a land unit of moving onto this tile from
+     * each direction, built from the MoveCostTable, or null if not yet
+     * found.  Do not serialize.
+     */
+    private volatile int[] landMoveCosts = null;
+
     /** A map of cached tiles for each European player, null in clients. */
     private final java.util.Map<Player, Tile> cachedTiles;
 
@@ -281,6 +289,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setType(TileType t) {
         type = t;
+        invalidatePaths();
     }
 
     /**
@@ -362,6 +371,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setSettlement(Settlement settlement) {
         this.settlement = settlement;
+        invalidatePaths();
     }
 
     /**
@@ -393,6 +403,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setOwningSettlement(Settlement owner) {
         this.owningSettlement = owner;
+        final Map map = getMap();
+        if (map != null) map.pathsChanged(this);
     }
 
     /**
@@ -1166,6 +1178,32 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         return getMap().getDirection(this, tile);
     }
 
+    /**
+     * Gets the static cost for a land unit of moving onto this tile
+     * from a neighbouring tile, that is the basic move cost of the
+     * tile type reduced by any roads and rivers connecting the tiles.
+     *
+     * @param from The <code>Tile</code> to move from.
+     * @return The move cost.
+     */
+    int getLandMoveCost(Tile from) {
+        int[] costs = landMoveCosts;
+        if (costs == null) {
+            landMoveCosts = costs
+                = getSpecification().getMoveCostTable().getCosts(this);
+        }
+        if (from != null && costs != MoveCostTable.UNTABLED) {
+            for (Direction d : Direction.allDirections) {
+                if (d.stepX(x, y) == from.x && d.stepY(x, y) == from.y) {
+                    return costs[d.ordinal()];
+                }
+            }
+        }
+        final int cost = type.getBasicMoveCost();
+        return (tileItemContainer == null) ? cost
+            : tileItemContainer.getMoveCost(from, this, cost);
+    }
+
     /**
      * Get the neighbouring tile in the given direction.
      *
@@ -1186,7 +1224,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public boolean isAdjacent(Tile tile) {
         return (tile == null) ? false
-            : any(getSurroundingTiles(1, 1), t -> t == tile);
+            : getMap().getDistance(this, tile) == 1;
     }
 
     /**
@@ -1205,7 +1243,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public boolean isLandLocked() {
         return (!isLand()) ? false
-            : all(getSurroundingTiles(1, 1), Tile::isLand);
+            : !getMap().anyTile(this, 1, 1, t -> !t.isLand());
     }
 
     /**
@@ -1218,7 +1256,9 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @return True if this <code>Tile</code> is on the shore.
      */
     public boolean isShore() {
-        return any(getSurroundingTiles(1, 1), t -> t.isLand() != this.isLand());
+        return (isLand())
+            ? getMap().anyTile(this, 1, 1, t -> !t.isLand())
+            : getMap().anyTile(this, 1, 1, Tile::isLand);
     }
 
 
@@ -1248,22 +1288,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public List<Tile> getSurroundingTiles(int rangeMin, int rangeMax) {
         List<Tile> result = new ArrayList<>();
-        if (rangeMin > rangeMax || rangeMin < 0) return result;
-
-        if (rangeMin == 0) result.add(this);
-
-        if (rangeMax > 0) {
-            for (Tile t : getSurroundingTiles(rangeMax)) {
-                // add all tiles up to rangeMax
-                result.add(t);
-            }
-        }
-        if (rangeMin > 1) {
-            for (Tile t : getSurroundingTiles(rangeMin - 1)) {
-                // remove the tiles closer than rangeMin
-                result.remove(t);
-            }
-        }
+        getMap().forEachTile(this, rangeMin, rangeMax, result::add);
         return result;
     }
 
@@ -1274,7 +1299,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      *     unexplored.
      */
     public boolean hasUnexploredAdjacent() {
-        return any(getSurroundingTiles(1, 1), t -> !t.isExplored());
+        return getMap().anyTile(this, 1, 1, t -> !t.isExplored());
     }
 
     /**
@@ -1469,6 +1494,26 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         updateColonyTiles();
     }
 
+    /**
+     * Tell the map that this tile has changed in a way that may
+     * change the paths through it.
+     */
+    void invalidatePaths() {
+        landMoveCosts = null;
+        final Map map = getMap();
+        if (map != null) map.tileChanged(this);
+    }
+
+    /**
+     * Tell the map that a unit has moved onto or off this tile.
+     *
+     * @param unit The <code>Unit</code> that moved.
+     */
+    private void unitMoved(Unit unit) {
+        final Map map = getMap();
+        if (map != null) map.unitMoved(this, unit);
+    }
+
     /**
      * Is this tile under active use?
      *
@@ -1826,7 +1871,9 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setCachedTile(Player player, Tile tile) {
         if (cachedTiles == null || !player.isEuropean()) return;
-        cachedTiles.put(player, tile);
+        if ((cachedTiles.put(player, tile) == null) != (tile == null)) {
+            exploredChanged(player);
+        }
     }
 
     /**
@@ -2000,11 +2047,22 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         if (cachedTiles == null || !player.isEuropean()) return;
         if (reveal) {
             seeTile(player);
-        } else {
-            cachedTiles.remove(player);
+        } else if (cachedTiles.remove(player) != null) {
+            exploredChanged(player);
         }
     }
 
+    /**
+     * Tell the map that a player has explored or unexplored this
+     * tile, which changes where it may plan paths to.
+     *
+     * @param player The <code>Player</code> whose view changed.
+     */
+    private void exploredChanged(Player player) {
+        final Map map = getMap();
+        if (map != null) map.playerPathsChanged(player);
+    }
+
 
     //
     // Unit manipulation
@@ -2167,6 +2225,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         } else if (locatable instanceof Unit) {
             if (super.add(locatable)) {
                 ((Unit)locatable).setState(Unit.UnitState.ACTIVE);
+                unitMoved((Unit)locatable);
                 return true;
             }
             return false;
@@ -2187,6 +2246,13 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             return removeTileItem((TileItem)locatable)
                 == locatable;//-til
 
+        } else if (locatable instanceof Unit) {
+            if (super.remove(locatable)) {
+                unitMoved((Unit)locatable);
+                return true;
+            }
+            return false;
+
         } else {
             return super.remove(locatable);
         }
@@ -2290,11 +2356,43 @@ public final class Tile extends UnitLocation implements Named, Ownable {
     @Override
     public void setOwner(Player owner) {
         this.owner = owner;
+        final Map map = getMap();
+        if (map != null) map.pathsChanged(this);
     }
 
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return settlement == null || settlement instanceof Colony;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final Tile o = (Tile)other;
+        this.type = o.type;
+        this.x = o.x;
+        this.y = o.y;
+        this.owner = o.owner;
+        this.settlement = context.copy(o.settlement, Colony.class);
+        context.resolve(o.owningSettlement, s -> this.owningSettlement = s);
+        this.tileItemContainer = context.copy(o.tileItemContainer,
+                                              TileItemContainer.class);
+        this.region = o.region;
+        this.highSeasCount = o.highSeasCount;
+        this.moveToEurope = o.moveToEurope;
+        this.style = o.style;
+        this.contiguity = o.contiguity;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -2349,6 +2447,15 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         return getType().getAbilities(id, fcgot, turn);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getAbilityState(String id) {
+        // Delegate to type
+        return getType().getAbilityState(id);
+    }
+
 
     // Serialization
 
@@ -2481,19 +2588,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     @Override
     protected void writeChildren(FreeColXMLWriter xw) throws XMLStreamException {
-        // Show tile contents (e.g. enemy units) if not scoped to a
-        // player that can not see the tile, and there is no blocking
-        // enemy settlement.
         Player player = xw.getClientPlayer();
-        if ((player == null || player.canSee(this)) 
-            && (settlement == null
-                || xw.validFor(settlement.getOwner()))) {
-            super.writeChildren(xw);
-        }
-
-        if (settlement != null) settlement.toXML(xw);
-
-        if (tileItemContainer != null) tileItemContainer.toXML(xw);
+        writeContents(xw, player == null || player.canSee(this));
 
         // Save the cached tiles to saved games.
         if (xw.validForSave() && cachedTiles != null) {
@@ -2509,28 +2605,118 @@ public final class Tile extends UnitLocation implements Named, Ownable {
                                                    getWantedGoods(p));
                 }
 
-                xw.writeStartElement(CACHED_TILE_TAG);
+                writeCachedTile(xw, p, t, t != this && p.canSee(this));
+            }
+        }
+    }
 
-                xw.writeAttribute(PLAYER_TAG, p);
+    /**
+     * Write the contents of this tile, that is, its units, settlement
+     * and tile items.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @param visible True if the tile is visible to the player the
+     *     writer is scoped to, if any.
+     * @exception XMLStreamException if there are any problems writing
+     *     to the stream.
+     */
+    private void writeContents(FreeColXMLWriter xw, boolean visible)
+        throws XMLStreamException {
+        // Show tile contents (e.g. enemy units) if not scoped to a
+        // player that can not see the tile, and there is no blocking
+        // enemy settlement.
+        if (visible
+            && (settlement == null
+                || xw.validFor(settlement.getOwner()))) {
+            super.writeChildren(xw);
+        }
 
-                xw.writeAttribute(COPIED_TAG, t != this);
+        if (settlement != null) settlement.toXML(xw);
 
-                if (t != this) {
-                    // Only write copied tiles, with limited scope.
-                    FreeColXMLWriter.WriteScope scope = xw.getWriteScope();
-                    xw.setWriteScope(FreeColXMLWriter.WriteScope.toClient(p));
-                    // Do not call toXML!  It will look for a cached tile,
-                    // inside t which is already a cached copy!
-                    try {
-                        t.internalToXML(xw, getXMLElementTagName());
-                    } finally {
-                        xw.setWriteScope(scope);
-                    }
-                }
+        if (tileItemContainer != null) tileItemContainer.toXML(xw);
+    }
+
+    /**
+     * Write a player view of this tile to a saved game.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @param p The <code>Player</code> whose view this is.
+     * @param t The cached <code>Tile</code>, either this tile or a copy.
+     * @param visible True if the player can see the tile.
+     * @exception XMLStreamException if there are any problems writing
+     *     to the stream.
+     */
+    private void writeCachedTile(FreeColXMLWriter xw, Player p, Tile t,
+                                 boolean visible) throws XMLStreamException {
+        xw.writeStartElement(CACHED_TILE_TAG);
+
+        xw.writeAttribute(PLAYER_TAG, p);
+
+        xw.writeAttribute(COPIED_TAG, t != this);
+
+        if (t != this) {
+            // Only write copied tiles, with limited scope.
+            FreeColXMLWriter.WriteScope scope = xw.getWriteScope();
+            xw.setWriteScope(FreeColXMLWriter.WriteScope.toClient(p));
+            // Do not call toXML!  It will look for a cached tile,
+            // inside t which is already a cached copy!
+            try {
+                xw.writeStartElement(getXMLElementTagName());
+
+                t.writeAttributes(xw);
+
+                t.writeContents(xw, visible);
 
                 xw.writeEndElement();
+            } finally {
+                xw.setWriteScope(scope);
             }
         }
+
+        xw.writeEndElement();
+    }
+
+    /**
+     * Take a snapshot of this tile for a saved game, to be written
+     * later while play continues.  The tile and its contents are
+     * copied structurally, and the player views and visibility are
+     * captured now, as the cached copies are replaced rather than
+     * changed.
+     *
+     * @param players The live European <code>Player</code>s to save
+     *     the views of.
+     * @return A <code>RecordingXMLStreamWriter.Action</code> writing
+     *     the tile as it is now, or null if it can not be copied.
+     */
+    RecordingXMLStreamWriter.Action getSaveSnapshot(List<Player> players) {
+        if (!isStructurallyCopyable()) return null;
+        final Tile copy = new CopyContext(getGame()).copyTree(this, Tile.class);
+        final List<Player> viewers = new ArrayList<>(players.size());
+        final List<Tile> views = new ArrayList<>(players.size());
+        final List<Boolean> visible = new ArrayList<>(players.size());
+        if (cachedTiles != null) {
+            for (Player p : players) {
+                Tile t = getCachedTile(p);
+                if (t == null) continue;
+                viewers.add(p);
+                views.add((t == this) ? copy : t);
+                visible.add(t != this && p.canSee(this));
+            }
+        }
+        return (xw) -> {
+            xw.writeStartElement(getXMLElementTagName());
+
+            copy.writeAttributes(xw);
+
+            copy.writeContents(xw, true);
+
+            for (int i = 0; i < viewers.size(); i++) {
+                copy.writeCachedTile(xw, viewers.get(i), views.get(i),
+                                     visible.get(i));
+            }
+
+            xw.writeEndElement();
+        };
     }
 
     /**
@@ -2629,6 +2815,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             }
         }
         // end @compat 0.10.1
+
+        invalidatePaths();
     }
 
     /**
@@ -188,6 +188,8 @@ public class TileImprovement extends TileItem implements Named {
      */
     public void setTurnsToComplete(int turns) {
         turnsToComplete = turns;
+        final Tile tile = getTile();
+        if (tile != null) tile.invalidatePaths();
     }
 
     /**
@@ -262,6 +264,8 @@ public class TileImprovement extends TileItem implements Named {
                 connected &= ~(1 << direction.ordinal());
             }
             style = TileImprovementStyle.getInstance(encodeConnections());
+            final Tile tile = getTile();
+            if (tile != null) tile.invalidatePaths();
         }
     }
 
@@ -523,6 +527,29 @@ public class TileImprovement extends TileItem implements Named {
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final TileImprovement o = (TileImprovement)other;
+        this.type = o.type;
+        this.turnsToComplete = o.turnsToComplete;
+        this.magnitude = o.magnitude;
+        this.style = o.style;
+        this.virtual = o.virtual;
+        this.connected = o.connected;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -141,6 +141,19 @@ public abstract class TileItem extends FreeColGameObject
     public abstract boolean isComplete();
 
 
+    // Override FreeColGameObject
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final TileItem o = (TileItem)other;
+        context.resolve(o.tile, t -> this.tile = t);
+    }
+
+
     // Interface Locatable
 
     /**
@@ -164,13 +164,15 @@ public class TileItemContainer extends FreeColGameObject {
 
     /**
      * Invalidate the production cache of the owning colony if any
-     * but only if the tile is actually being used.
+     * but only if the tile is actually being used, and the paths
+     * through the tile.
      */
     private void invalidateCache() {
         Colony colony = tile.getColony();
         if (colony != null && colony.isTileInUse(tile)) {
             colony.invalidateCache();
         }
+        tile.invalidatePaths();
     }
 
     /**
@@ -364,6 +366,7 @@ public class TileItemContainer extends FreeColGameObject {
         while (iterator.hasNext()) {
             if (c.isInstance(iterator.next())) iterator.remove();
         }
+        tile.invalidatePaths();
     }
 
     /**
@@ -525,6 +528,31 @@ public class TileItemContainer extends FreeColGameObject {
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final TileItemContainer o = (TileItemContainer)other;
+        context.resolve(o.tile, t -> this.tile = t);
+        for (TileItem item : o.tileItems) {
+            Class<? extends TileItem> c = (item instanceof TileImprovement)
+                ? TileImprovement.class
+                : (item instanceof Resource) ? Resource.class
+                : LostCityRumour.class;
+            tileItems.add(context.copy(item, c));
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1985,13 +1985,9 @@ public class Unit extends GoodsLocation
         // Remember to also change map.findPath(...) if you change anything
         // here.
 
-        int cost = target.getType().getBasicMoveCost();
-        if (target.isLand() && !isNaval()) {
-            TileItemContainer container = target.getTileItemContainer();
-            if (container != null) {
-                cost = container.getMoveCost(from, target, cost);
-            }
-        }
+        int cost = (target.isLand() && !isNaval())
+            ? target.getLandMoveCost(from)
+            : target.getType().getBasicMoveCost();
 
         if (isBeached(from)) {
             // Ship on land due to it was in a colony which was abandoned
@@ -2404,7 +2400,7 @@ public class Unit extends GoodsLocation
         return (canMoveToHighSeas())
             ? true
             : (hasTile() && getMovesLeft() > 0)
-            ? any(getTile().getSurroundingTiles(1, 1),
+            ? getGame().getMap().anyTile(getTile(), 1, 1,
                 Tile::isDirectlyHighSeasConnected)
             : false;
     }
@@ -4004,6 +4000,52 @@ public class Unit extends GoodsLocation
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStructurallyCopyable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final Unit o = (Unit)other;
+        this.name = o.name;
+        this.owner = o.owner;
+        this.unitType = o.unitType;
+        this.state = o.state;
+        this.role = o.role;
+        this.roleCount = o.roleCount;
+        context.resolve(o.location, l -> this.location = l);
+        context.resolve(o.entryLocation, l -> this.entryLocation = l);
+        this.movesLeft = o.movesLeft;
+        this.workType = o.workType;
+        this.experienceType = o.experienceType;
+        this.experience = o.experience;
+        this.workLeft = o.workLeft;
+        this.workImprovement = context.copy(o.workImprovement,
+                                            TileImprovement.class);
+        context.resolve(o.student, u -> this.student = u);
+        context.resolve(o.teacher, u -> this.teacher = u);
+        this.turnsOfTraining = o.turnsOfTraining;
+        this.nationality = o.nationality;
+        this.ethnicity = o.ethnicity;
+        // Unlike setHomeIndianSettlement, do not register the copy
+        // with the settlement.
+        this.indianSettlement = o.indianSettlement;
+        this.hitPoints = o.hitPoints;
+        context.resolve(o.destination, l -> this.destination = l);
+        this.tradeRoute = o.tradeRoute;
+        this.currentStop = o.currentStop;
+        this.treasureAmount = o.treasureAmount;
+        this.attrition = o.attrition;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -4122,6 +4164,22 @@ public class Unit extends GoodsLocation
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int getAbilityState(String id) {
+        // Combine the same sources as getAbilities, leaving the
+        // unusual Europe case to the full evaluation.
+        if (isInEurope()) return FeatureContainer.ABILITY_UNKNOWN;
+        int state = Math.max(getType().getAbilityState(id),
+            Math.max(role.getAbilityState(id),
+                     getOwner().getAbilityState(id)));
+        final Settlement settlement = getSettlement();
+        return (settlement == null) ? state
+            : Math.max(state, settlement.getAbilityState(id));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -260,6 +260,20 @@ public abstract class UnitLocation extends FreeColGameObject implements Location
 
     // Override FreeColGameObject
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final UnitLocation o = (UnitLocation)other;
+        synchronized (o.units) {
+            for (Unit u : o.units) {
+                units.add(context.copy(u, Unit.class));
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
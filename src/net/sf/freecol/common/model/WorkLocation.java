@@ -163,7 +163,7 @@ public abstract class WorkLocation extends UnitLocation
     public final void setProductionType(final ProductionType newProductionType) {
         if (!Utils.equals(newProductionType, productionType)) {
             productionType = newProductionType;
-            colony.invalidateCache();
+            colony.invalidateCache(this);
             logger.fine("Production type at " + this
                 + " is now: " + newProductionType);
         }
@@ -702,7 +702,7 @@ public abstract class WorkLocation extends UnitLocation
         // Choose a sensible work type, which should update production type.
         setWorkFor(unit);
 
-        getColony().invalidateCache();
+        getColony().invalidateCache(this);
         return true;
     }
 
@@ -724,7 +724,7 @@ public abstract class WorkLocation extends UnitLocation
         // Switch to unattended production if possible.
         if (isEmpty()) updateProductionType();
 
-        getColony().invalidateCache();
+        getColony().invalidateCache(this);
         return true;
     }
 
@@ -908,6 +908,20 @@ public abstract class WorkLocation extends UnitLocation
     }
 
 
+    // Override FreeColGameObject
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyIn(FreeColGameObject other, CopyContext context) {
+        super.copyIn(other, context);
+        final WorkLocation o = (WorkLocation)other;
+        context.resolve(o.colony, c -> this.colony = c);
+        this.productionType = o.productionType;
+    }
+
+
     // Serialization
 
     private static final String COLONY_TAG = "colony";
@@ -28,6 +28,10 @@ import net.sf.freecol.common.model.Unit;
  * Determines the cost of a single move.
  * Used by {@link net.sf.freecol.common.model.Map#findPath}
  * and {@link net.sf.freecol.common.model.Map#search}.
+ *
+ * The results of getCost are read back with getMovesLeft and
+ * getNewTurns, so an instance must only be used by one search at a
+ * time.  getCost must not change the game.
  */
 public interface CostDecider {
 
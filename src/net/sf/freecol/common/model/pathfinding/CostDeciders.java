@@ -31,57 +31,54 @@ import net.sf.freecol.common.model.Unit;
 
 /**
  * Cost deciders to be used while finding paths.
+ *
+ * Cost deciders hold the result of the last move they costed, so
+ * each call returns a new instance, which must only be used by one
+ * search at a time.
  */
 public final class CostDeciders {
 
-    /**
-     * A <code>CostDecider</code> that costs unit moves normally.
-     */
-    private static final CostDecider avoidIllegalCostDecider
-        = new BaseCostDecider();
-
-
     /**
      * A trivial <code>CostDecider</code> that only considers the
      * number of locations visited when determining cost.  Totally ignores
      * the legality of the move.
      */
-    private static final CostDecider trivialCostDecider = new CostDecider() {
-            @Override
-            public int getCost(Unit unit, Location oldLocation,
-                               Location newLocation, int movesLeft) {
-                return (newLocation == null) ? ILLEGAL_MOVE
-                    : (newLocation instanceof Europe) ? 1
-                    : (newLocation.getTile() == null) ? ILLEGAL_MOVE
-                    : 1;
-            }
-            @Override
-            public int getMovesLeft() { return 0; }
-            @Override
-            public int getNewTurns() { return 0; }
-        };
+    private static class TrivialCostDecider implements CostDecider {
+        @Override
+        public int getCost(Unit unit, Location oldLocation,
+                           Location newLocation, int movesLeft) {
+            return (newLocation == null) ? ILLEGAL_MOVE
+                : (newLocation instanceof Europe) ? 1
+                : (newLocation.getTile() == null) ? ILLEGAL_MOVE
+                : 1;
+        }
+        @Override
+        public int getMovesLeft() { return 0; }
+        @Override
+        public int getNewTurns() { return 0; }
+    };
 
 
     /**
      * A <code>CostDecider</code> that only considers the number of
      * tiles visited when determining the cost, but differs from the
-     * trivialCostDecider in checking the legality of the move.
+     * TrivialCostDecider in checking the legality of the move.
      */
-    private static final CostDecider tileCostDecider = new CostDecider() {
-            @Override
-            public int getCost(Unit unit, Location oldLocation,
-                               Location newLocation, int movesLeft) {
-                return (newLocation == null) ? ILLEGAL_MOVE
-                    : (newLocation instanceof Europe) ? 1
-                    : (newLocation.getTile() == null) ? ILLEGAL_MOVE
-                    : (unit.isTileAccessible(newLocation.getTile())) ? 1
-                    : ILLEGAL_MOVE;
-            }
-            @Override
-            public int getMovesLeft() { return 0; }
-            @Override
-            public int getNewTurns() { return 1; }
-        };
+    private static class TileCostDecider implements CostDecider {
+        @Override
+        public int getCost(Unit unit, Location oldLocation,
+                           Location newLocation, int movesLeft) {
+            return (newLocation == null) ? ILLEGAL_MOVE
+                : (newLocation instanceof Europe) ? 1
+                : (newLocation.getTile() == null) ? ILLEGAL_MOVE
+                : (unit.isTileAccessible(newLocation.getTile())) ? 1
+                : ILLEGAL_MOVE;
+        }
+        @Override
+        public int getMovesLeft() { return 0; }
+        @Override
+        public int getNewTurns() { return 1; }
+    };
 
 
     /**
@@ -103,11 +100,6 @@ public final class CostDeciders {
             return cost;
         }
     };
-    /**
-     * A server-side <code>CostDecider</code> that costs unit moves normally.
-     */
-    private static final CostDecider
-        serverAvoidIllegalCostDecider = new ServerBaseCostDecider();
 
 
     /**
@@ -129,11 +121,6 @@ public final class CostDeciders {
             return cost;
         }
     };
-    /**
-     * An instance of the cost decider for avoiding settlements.
-     */
-    private static final AvoidSettlementsCostDecider
-        avoidSettlementsCostDecider = new AvoidSettlementsCostDecider();
 
 
     /**
@@ -163,13 +150,6 @@ public final class CostDeciders {
         }
     };
 
-    /**
-     * An instance of the settlement+unit avoiding cost decider.
-     */
-    private static final AvoidSettlementsAndBlockingUnitsCostDecider
-        avoidSettlementsAndBlockingUnitsCostDecider
-        = new AvoidSettlementsAndBlockingUnitsCostDecider();
-
 
     /**
      * A <code>CostDecider</code> to avoid naval danger.
@@ -284,7 +264,7 @@ public final class CostDeciders {
      * @return The <code>CostDecider</code>.
      */
     public static CostDecider numberOfTiles() {
-        return trivialCostDecider;
+        return new TrivialCostDecider();
     }
 
     /**
@@ -294,7 +274,7 @@ public final class CostDeciders {
      * @return The <code>CostDecider</code>.
      */
     public static CostDecider numberOfLegalTiles() {
-        return tileCostDecider;
+        return new TileCostDecider();
     }
 
     /**
@@ -304,7 +284,7 @@ public final class CostDeciders {
      * @return The <code>CostDecider</code>.
      */
     public static CostDecider avoidIllegal() {
-        return avoidIllegalCostDecider;
+        return new BaseCostDecider();
     }
 
     /**
@@ -316,7 +296,7 @@ public final class CostDeciders {
      * @return The <code>CostDecider</code>.
      */
     public static CostDecider serverAvoidIllegal() {
-        return serverAvoidIllegalCostDecider;
+        return new ServerBaseCostDecider();
     }
 
     /**
@@ -327,7 +307,7 @@ public final class CostDeciders {
      * @return The <code>CostDecider</code>.
      */
     public static CostDecider avoidSettlements() {
-        return avoidSettlementsCostDecider;
+        return new AvoidSettlementsCostDecider();
     }
 
     /**
@@ -339,7 +319,7 @@ public final class CostDeciders {
      * @return The <code>CostDecider</code>.
      */
     public static CostDecider avoidSettlementsAndBlockingUnits() {
-        return avoidSettlementsAndBlockingUnitsCostDecider;
+        return new AvoidSettlementsAndBlockingUnitsCostDecider();
     }
 
     /**
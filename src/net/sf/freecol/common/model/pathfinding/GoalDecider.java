@@ -40,6 +40,11 @@ import net.sf.freecol.common.model.Unit;
  * </ol>
  * 
  * The method {@link #getGoal()} will get called after this.
+ *
+ * Goal deciders keep the best goal found so far, so each search
+ * needs its own instance.  The check method must not change the
+ * game, as searches may run concurrently (see
+ * {@link net.sf.freecol.common.model.Map#searchAll}).
  */
 public interface GoalDecider {
 
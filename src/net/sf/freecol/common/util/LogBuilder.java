@@ -22,6 +22,7 @@ package net.sf.freecol.common.util;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,12 +32,22 @@ import net.sf.freecol.common.model.Location;
 
 /**
  * A class to wrap a StringBuilder for log generation purposes.
+ *
+ * A LogBuilder bound to a logger and level does nothing at all if
+ * that level is not loggable, so it can be passed through expensive
+ * routines such as the AI turn processing without cost.
  */
 public class LogBuilder {
 
-    /** The string builder to use. */
+    /** The string builder to use, null if disabled. */
     private final StringBuilder sb;
 
+    /** The logger to write to, if bound. */
+    private final Logger logger;
+
+    /** The level to log at, if bound. */
+    private final Level level;
+
     /** The remembered buffer index. */
     private final List<Integer> points = new ArrayList<>();
 
@@ -48,6 +59,33 @@ public class LogBuilder {
      */
     public LogBuilder(int size) {
         this.sb = (size <= 0) ? null : new StringBuilder(size);
+        this.logger = null;
+        this.level = null;
+    }
+
+    /**
+     * Create a new LogBuilder bound to a logger and level.  The
+     * builder is disabled if the logger would not log at that level.
+     *
+     * @param logger The <code>Logger</code> to write to.
+     * @param level The logging <code>Level</code>.
+     * @param size An initial size for the buffer.
+     */
+    public LogBuilder(Logger logger, Level level, int size) {
+        this.sb = (size <= 0 || !logger.isLoggable(level)) ? null
+            : new StringBuilder(size);
+        this.logger = logger;
+        this.level = level;
+    }
+
+
+    /**
+     * Is this builder collecting anything?
+     *
+     * @return True if the builder is enabled.
+     */
+    public boolean isEnabled() {
+        return sb != null;
     }
 
 
@@ -64,6 +102,20 @@ public class LogBuilder {
             : o.toString();
     }
 
+    /**
+     * Add an object to a string builder, expanding arrays.
+     *
+     * @param sb The <code>StringBuilder</code> to add to.
+     * @param o The object to add.
+     */
+    private static void append(StringBuilder sb, Object o) {
+        if (o instanceof Object[]) {
+            for (Object o2 : (Object[])o) append(sb, o2);
+        } else {
+            sb.append(o2s(o));
+        }
+    }
+
     /**
      * Add objects to a string builder.
      *
@@ -71,14 +123,63 @@ public class LogBuilder {
      * @param objects The objects to add.
      */
     private static void add(StringBuilder sb, Object... objects) {
-        for (Object o : objects) {
-            if (o instanceof Object[]) {
-                for (Object o2 : (Object[])o) {
-                    sb.append(o2s(o2));
-                }
-            } else {
-                sb.append(o2s(o));
-            }
+        for (Object o : objects) append(sb, o);
+    }
+
+    // The fixed arity versions of add() avoid creating an array
+    // when the builder is disabled, and cover most uses.
+
+    /**
+     * Add an object to the buffer.
+     *
+     * @param o1 The object to add.
+     */
+    public void add(Object o1) {
+        if (sb != null) append(sb, o1);
+    }
+
+    /**
+     * Add objects to the buffer.
+     *
+     * @param o1 The first object to add.
+     * @param o2 The second object to add.
+     */
+    public void add(Object o1, Object o2) {
+        if (sb != null) {
+            append(sb, o1);
+            append(sb, o2);
+        }
+    }
+
+    /**
+     * Add objects to the buffer.
+     *
+     * @param o1 The first object to add.
+     * @param o2 The second object to add.
+     * @param o3 The third object to add.
+     */
+    public void add(Object o1, Object o2, Object o3) {
+        if (sb != null) {
+            append(sb, o1);
+            append(sb, o2);
+            append(sb, o3);
+        }
+    }
+
+    /**
+     * Add objects to the buffer.
+     *
+     * @param o1 The first object to add.
+     * @param o2 The second object to add.
+     * @param o3 The third object to add.
+     * @param o4 The fourth object to add.
+     */
+    public void add(Object o1, Object o2, Object o3, Object o4) {
+        if (sb != null) {
+            append(sb, o1);
+            append(sb, o2);
+            append(sb, o3);
+            append(sb, o4);
         }
     }
 
@@ -91,6 +192,17 @@ public class LogBuilder {
         if (sb != null) add(sb, objects);
     }
 
+    /**
+     * Add the result of a supplier to the buffer.  The supplier is
+     * only called if the builder is enabled, so it can be used for
+     * expensive descriptions.
+     *
+     * @param supplier A <code>Supplier</code> for the object to add.
+     */
+    public void addLazy(Supplier<?> supplier) {
+        if (sb != null) append(sb, supplier.get());
+    }
+
     /**
      * Add a delimited collection to the buffer.
      *
@@ -160,6 +272,13 @@ public class LogBuilder {
         }
     }
 
+    /**
+     * Output to the bound logger at the bound level.
+     */
+    public void log() {
+        log(this.logger, this.level);
+    }
+
     /**
      * Output to a logger.
      *
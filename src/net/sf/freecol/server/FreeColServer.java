@@ -20,27 +20,40 @@
 package net.sf.freecol.server;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.BindException;
 import java.net.InetAddress;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import javax.imageio.ImageIO;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.FreeColException;
@@ -50,6 +63,8 @@ import net.sf.freecol.common.io.FreeColDirectories;
 import net.sf.freecol.common.io.FreeColSavegameFile;
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.RecordingXMLStreamWriter;
+import net.sf.freecol.common.io.SavegameIndex;
 import net.sf.freecol.common.model.FreeColObject;
 import net.sf.freecol.common.model.Game;
 import net.sf.freecol.common.model.GameOptions;
@@ -74,6 +89,7 @@ import net.sf.freecol.common.util.Utils;
 import net.sf.freecol.server.ai.AIInGameInputHandler;
 import net.sf.freecol.server.ai.AIMain;
 import net.sf.freecol.server.ai.AIPlayer;
+import net.sf.freecol.server.control.ActionJournal;
 import net.sf.freecol.server.control.Controller;
 import net.sf.freecol.server.control.InGameController;
 import net.sf.freecol.server.control.InGameInputHandler;
@@ -117,6 +133,9 @@ public final class FreeColServer {
 
     private static final int META_SERVER_UPDATE_INTERVAL = 60000;
 
+    /** The seconds to wait for background saves on shutdown. */
+    private static final int SAVE_SHUTDOWN_TIMEOUT = 60;
+
     /**
      * The save game format used for saving games.
      *
@@ -195,6 +214,24 @@ public final class FreeColServer {
     /** An active unit specified in a saved game. */
     private Unit activeUnit = null;
 
+    /**
+     * The journal of the actions since the game was last saved, if
+     * any.  Set on the game thread, and by the save thread when a
+     * save completes, so always accessed holding journalLock.
+     */
+    private ActionJournal journal = null;
+
+    /** Lock for the journal. */
+    private final Object journalLock = new Object();
+
+    /** The thread that writes games saved in the background. */
+    private final ExecutorService saveExecutor
+        = Executors.newSingleThreadExecutor((Runnable r) -> {
+                Thread t = new Thread(r, FreeCol.SERVER_THREAD + "save");
+                t.setDaemon(true);
+                return t;
+            });
+
     
     /**
      * Starts a new server, with a new game.
@@ -272,6 +309,10 @@ public final class FreeColServer {
         this.inGameController = new InGameController(this, random);
         this.mapGenerator = null;
 
+        // Recover the actions since the game was saved, if it crashed.
+        setJournal(ActionJournal.replay(this, savegame.getFile(),
+                                        FreeCol.getJournal()));
+
         this.publicServer = updateMetaServer(true);
     }
 
@@ -547,6 +588,85 @@ public final class FreeColServer {
         this.mapGenerator = mapGenerator;
     }
 
+    /**
+     * Get the journal of the actions since the game was last saved.
+     *
+     * @return The <code>ActionJournal</code>, or null if not journaling.
+     */
+    public ActionJournal getJournal() {
+        synchronized (journalLock) {
+            return journal;
+        }
+    }
+
+    /**
+     * Set the journal.
+     *
+     * @param journal The new <code>ActionJournal</code>.
+     */
+    private void setJournal(ActionJournal journal) {
+        synchronized (journalLock) {
+            this.journal = journal;
+        }
+    }
+
+    /**
+     * Prepare a new journal for a game that is being saved.  The
+     * current journal carries on until the save has succeeded, see
+     * {@link #finishJournal}.
+     *
+     * @param file The <code>File</code> the game is being saved to.
+     * @return The new prepared journal.
+     */
+    private ActionJournal prepareJournal(File file) {
+        final ActionJournal next = ActionJournal.prepare(file, getGame(),
+                                                         random);
+        synchronized (journalLock) {
+            if (journal == null) journal = next; else journal.follow(next);
+        }
+        return next;
+    }
+
+    /**
+     * Finish with a journal prepared for a save.  If the save
+     * succeeded the journal is started, replacing the journal of the
+     * previous save, otherwise it is dropped and the previous journal
+     * carries on.
+     *
+     * @param next The prepared <code>ActionJournal</code>, or null if
+     *     none.
+     * @param saved True if the save succeeded.
+     */
+    private void finishJournal(ActionJournal next, boolean saved) {
+        if (next == null) return;
+        synchronized (journalLock) {
+            if (journal == null) return; // Stopped meanwhile
+            if (saved) {
+                try {
+                    journal = journal.start(next);
+                    return;
+                } catch (IOException ioe) {
+                    logger.log(Level.WARNING, "Failed to start journal: "
+                        + next.getFile(), ioe);
+                }
+            }
+            journal = journal.drop(next);
+        }
+    }
+
+    /**
+     * Stop journaling.
+     *
+     * @param discard If true, delete the journal file as well.
+     */
+    public void stopJournal(boolean discard) {
+        synchronized (journalLock) {
+            if (journal == null) return;
+            if (discard) journal.discard(); else journal.close();
+            journal = null;
+        }
+    }
+
     /**
      * Gets the server random number generator.
      *
@@ -756,34 +876,121 @@ public final class FreeColServer {
      */
     public void saveGame(File file, OptionGroup options, BufferedImage image)
         throws IOException {
-        final ServerGame game = getGame();
-        try (
-            JarOutputStream fos = new JarOutputStream(new FileOutputStream(file));
-        ) {
-            if (image != null) {
-                fos.putNextEntry(new JarEntry(FreeColSavegameFile.THUMBNAIL_FILE));
-                ImageIO.write(image, "png", fos);
-                fos.closeEntry();
+        SaveSnapshot snapshot = takeSnapshot(file, options, image);
+        boolean saved = false;
+        try {
+            snapshot.write(null);
+            saved = true;
+        } finally {
+            finishJournal(snapshot.journal, saved);
+        }
+    }
+
+    /**
+     * Saves a game in the background.
+     *
+     * Only a snapshot of the game is taken on the calling thread, so
+     * the game is consistent, and the rest of the work of compressing
+     * and writing the file is done by the save thread.  Saves are
+     * written in the order they are requested.
+     *
+     * @param file The file where the data will be written.
+     * @param previous If not null, an existing saved game in
+     *     <code>file</code> is moved here before the new one replaces it.
+     * @param options Optional client options to save in the game.
+     * @return A <code>Future</code> that completes when the game has
+     *     been saved.
+     * @exception IOException If a problem was encountered while taking
+     *     the snapshot.
+     */
+    public Future<File> saveGameInBackground(final File file,
+                                             final File previous,
+                                             OptionGroup options)
+        throws IOException {
+        final SaveSnapshot snapshot = takeSnapshot(file, options, null);
+        return saveExecutor.submit(() -> {
+                try {
+                    snapshot.write(previous);
+                } catch (IOException ioe) {
+                    logger.log(Level.WARNING, "Background save failed: "
+                        + file, ioe);
+                    finishJournal(snapshot.journal, false);
+                    throw ioe;
+                }
+                finishJournal(snapshot.journal, true);
+                return file;
+            });
+    }
+
+    /**
+     * Wait for any saves running in the background to complete.
+     */
+    public void finishSaves() {
+        try {
+            saveExecutor.submit(() -> {}).get();
+        } catch (InterruptedException | ExecutionException e) {
+            logger.log(Level.WARNING, "Waiting for saves failed", e);
+        }
+    }
+
+    /**
+     * Complete any saves running in the background, and stop the
+     * save thread.  No more games can be saved in the background
+     * after this.
+     */
+    public void shutdownSaves() {
+        saveExecutor.shutdown();
+        try {
+            if (!saveExecutor.awaitTermination(SAVE_SHUTDOWN_TIMEOUT,
+                                               TimeUnit.SECONDS)) {
+                logger.warning("Timed out waiting for saves to complete");
             }
+        } catch (InterruptedException ie) {
+            logger.log(Level.WARNING, "Waiting for saves interrupted", ie);
+            Thread.currentThread().interrupt();
+        }
+    }
 
+    /**
+     * Take a snapshot of the game to save.  The game is recorded
+     * rather than serialized, with the tiles, which are the bulk of
+     * it, copied structurally, so that the serialization can be done
+     * later by the save thread while the game continues.
+     *
+     * @param file The file where the data will be written.
+     * @param options Optional client options to save in the game.
+     * @param image A thumbnail <code>Image</code> value to save in the game.
+     * @return A new <code>SaveSnapshot</code>.
+     * @exception IOException If a problem was encountered while trying
+     *     to record the game.
+     */
+    private SaveSnapshot takeSnapshot(File file, OptionGroup options,
+                                      BufferedImage image) throws IOException {
+        final ServerGame game = getGame();
+        SaveSnapshot snapshot = new SaveSnapshot(file, image,
+                                                 FreeCol.getBinarySaves());
+        try {
             if (options != null) {
-                fos.putNextEntry(new JarEntry(FreeColSavegameFile.CLIENT_OPTIONS));
-                options.save(fos, FreeColXMLWriter.WriteScope.toSave(), true);
-                fos.closeEntry();
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                options.save(bos, FreeColXMLWriter.WriteScope.toSave(), true);
+                snapshot.options = bos.toByteArray();
             }
 
-            Properties properties = new Properties();
-            properties.put("map.width", Integer.toString(game.getMap().getWidth()));
-            properties.put("map.height", Integer.toString(game.getMap().getHeight()));
-            fos.putNextEntry(new JarEntry(FreeColSavegameFile.SAVEGAME_PROPERTIES));
-            properties.store(fos, null);
-            fos.closeEntry();
-
-            // save the actual game data
-            fos.putNextEntry(new JarEntry(FreeColSavegameFile.SAVEGAME_FILE));
+            snapshot.properties.put(SavegameIndex.MAP_WIDTH_PROPERTY,
+                Integer.toString(game.getMap().getWidth()));
+            snapshot.properties.put(SavegameIndex.MAP_HEIGHT_PROPERTY,
+                Integer.toString(game.getMap().getHeight()));
+            snapshot.properties.put(SavegameIndex.TURN_PROPERTY,
+                Integer.toString(game.getTurn().getNumber()));
+            snapshot.properties.put(SavegameIndex.PLAYERS_PROPERTY,
+                game.getLiveEuropeanPlayers(null).stream()
+                    .filter(p -> !p.isREF()).map(Player::getName)
+                    .collect(Collectors.joining(", ")));
+
+            // Record the actual game data
             try (
-                FreeColXMLWriter xw = new FreeColXMLWriter(fos,
-                    FreeColXMLWriter.WriteScope.toSave(), false);
+                FreeColXMLWriter xw = new FreeColXMLWriter(snapshot.recording,
+                    FreeColXMLWriter.WriteScope.toSave());
             ) {
                 xw.writeStartDocument("UTF-8", "1.0");
 
@@ -828,14 +1035,134 @@ public final class FreeColServer {
 
                 xw.writeEndElement();
                 xw.writeEndDocument();
-                xw.flush();
             }
-            fos.closeEntry();
         } catch (XMLStreamException e) {
             throw new IOException("Failed to save (XML)", e);
         } catch (Exception e) {
             throw new IOException("Failed to save", e);
         }
+        // The journal for the new save starts from the snapshot.
+        if (FreeCol.getJournal() && gameState == GameState.IN_GAME) {
+            snapshot.journal = prepareJournal(file);
+        }
+        return snapshot;
+    }
+
+    /**
+     * A snapshot of a game to be saved.
+     */
+    private static class SaveSnapshot {
+
+        /** The file to save to. */
+        public final File file;
+
+        /** An optional thumbnail image. */
+        public final BufferedImage image;
+
+        /** The serialized client options, if any. */
+        public byte[] options = null;
+
+        /** The saved game properties. */
+        public final Properties properties = new Properties();
+
+        /** Whether to save in the binary format. */
+        public final boolean binary;
+
+        /** The recorded game. */
+        public final RecordingXMLStreamWriter recording
+            = new RecordingXMLStreamWriter();
+
+        /** The journal prepared for this save, to start once saved. */
+        public ActionJournal journal = null;
+
+
+        public SaveSnapshot(File file, BufferedImage image, boolean binary) {
+            this.file = file;
+            this.image = image;
+            this.binary = binary;
+        }
+
+        /**
+         * Serialize the recorded game.
+         *
+         * @return The serialized game, as saved game entries by name.
+         * @exception IOException if the serialization fails.
+         */
+        private java.util.Map<String, byte[]> serialize() throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 20);
+            XMLStreamWriter sw = FreeColSavegameFile
+                .createSavegameWriter(bos, binary);
+            try {
+                try (
+                    FreeColXMLWriter xw = new FreeColXMLWriter(sw,
+                        FreeColXMLWriter.WriteScope.toSave());
+                ) {
+                    recording.replay(xw);
+                    xw.flush();
+                }
+                return FreeColSavegameFile
+                    .getSavegameEntries(bos.toByteArray(), sw);
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to save (XML)", e);
+            } catch (Exception e) {
+                throw new IOException("Failed to save", e);
+            }
+        }
+
+        /**
+         * Write this snapshot.  The game is serialized and written to a
+         * temporary file which then replaces the target, so an
+         * existing saved game is never left half written.
+         *
+         * @param previous If not null, move an existing saved game
+         *     to this file first.
+         * @exception IOException if the save fails.
+         */
+        public void write(File previous) throws IOException {
+            final java.util.Map<String, byte[]> game = serialize();
+            File tmp = new File(file.getPath() + ".tmp");
+            try (
+                JarOutputStream fos = new JarOutputStream(new FileOutputStream(tmp));
+            ) {
+                if (image != null) {
+                    fos.putNextEntry(new JarEntry(FreeColSavegameFile.THUMBNAIL_FILE));
+                    ImageIO.write(image, "png", fos);
+                    fos.closeEntry();
+                }
+
+                if (options != null) {
+                    fos.putNextEntry(new JarEntry(FreeColSavegameFile.CLIENT_OPTIONS));
+                    fos.write(options);
+                    fos.closeEntry();
+                }
+
+                fos.putNextEntry(new JarEntry(FreeColSavegameFile.SAVEGAME_PROPERTIES));
+                properties.store(fos, null);
+                fos.closeEntry();
+
+                for (Entry<String, byte[]> e : game.entrySet()) {
+                    fos.putNextEntry(new JarEntry(e.getKey()));
+                    fos.write(e.getValue());
+                    fos.closeEntry();
+                }
+            } catch (IOException ioe) {
+                tmp.delete();
+                throw ioe;
+            }
+            if (previous != null && file.exists()) {
+                Files.move(file.toPath(), previous.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tmp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            SavegameIndex.updateIndex(file, properties, image);
+        }
     }
 
     /**
@@ -1224,6 +1551,51 @@ public final class FreeColServer {
         }
     }
 
+    /**
+     * Remove the oldest autosaves with a given prefix, keeping a
+     * given number of the most recent ones.  This is done by the save
+     * thread once the saves already requested have been written, so
+     * that they are counted.
+     *
+     * @param prefix The autosave file prefix.
+     * @param keep The number of autosaves to keep.
+     * @param excludes Autosave <code>File</code>s to neither count
+     *     nor remove.
+     */
+    public void pruneAutosaves(final String prefix, final int keep,
+                               final File... excludes) {
+        saveExecutor.execute(() -> deleteOldAutosaves(prefix, keep,
+                                                      excludes));
+    }
+
+    /**
+     * Delete the oldest autosaves with a given prefix, keeping a
+     * given number of the most recent ones.
+     *
+     * @param prefix The autosave file prefix.
+     * @param keep The number of autosaves to keep.
+     * @param excludes Autosave <code>File</code>s to neither count
+     *     nor remove.
+     */
+    private static void deleteOldAutosaves(String prefix, int keep,
+                                           File... excludes) {
+        final List<File> exclude = Arrays.asList(excludes);
+        File[] files = FreeColDirectories.getAutosaveDirectory().listFiles();
+        if (files == null) return;
+        List<File> autosaves = new ArrayList<>();
+        for (File f : files) {
+            if (f.getName().startsWith(prefix)
+                && f.getName().endsWith("." + FreeCol.FREECOL_SAVE_EXTENSION)
+                && !exclude.contains(f)) autosaves.add(f);
+        }
+        if (autosaves.size() <= keep) return;
+        Collections.sort(autosaves,
+            Comparator.comparingLong(File::lastModified).reversed());
+        for (File f : autosaves.subList(Math.max(keep, 0), autosaves.size())) {
+            if (!f.delete()) logger.warning("Failed to delete: " + f);
+        }
+    }
+
     /**
      * Reveals or hides the entire map for all players.
      * Debug menu helper.
@@ -1282,6 +1654,7 @@ public final class FreeColServer {
      * Shut down this FreeColServer.
      */
     public void shutdown() {
+        shutdownSaves();
         server.shutdown();
     }
 }
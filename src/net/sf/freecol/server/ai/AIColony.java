@@ -676,7 +676,7 @@ public class AIColony extends AIObject implements PropertyChangeListener {
      * @return True if autodestruction has been averted.
      */
     private boolean avertAutoDestruction() {
-        LogBuilder lb = new LogBuilder(64);
+        LogBuilder lb = new LogBuilder(logger, Level.WARNING, 64);
         lb.add("Colony ", colony.getName(), " rearrangement leaves no units, ",
             colony.getTile().getUnitCount(), " available:");
         for (Unit u : colony.getTile().getUnitList()) lb.add(" ", u);
@@ -697,7 +697,7 @@ public class AIColony extends AIObject implements PropertyChangeListener {
                 }
             }
         }
-        lb.log(logger, Level.WARNING);
+        lb.log();
         return colony.getUnitCount() > 0;
     }
 
@@ -2124,9 +2124,16 @@ public class EuropeanAIPlayer extends AIPlayer {
                     worstColony = colony;
                     break;
                 }
-                int ttr = 1 + unit.getTurnsToReach(loc, colony.getTile(),
-                    unit.getCarrier(),
-                    ((relaxed) ? CostDeciders.numberOfTiles() : null));
+                // Units on the map can use the distance field of
+                // the colony, shared with all similar units.
+                int ttr = 1 + ((!relaxed && unit.hasTile()
+                        && !unit.isOnCarrier())
+                    ? getGame().getMap().getDistanceField(unit,
+                        colony.getTile()).getTurns(unit.getTile(),
+                                                   unit.getMovesLeft())
+                    : unit.getTurnsToReach(loc, colony.getTile(),
+                        unit.getCarrier(),
+                        ((relaxed) ? CostDeciders.numberOfTiles() : null)));
                 if (ttr >= Unit.MANY_TURNS) continue;
                 double value = colony.getDefenceRatio() * 100.0 / ttr;
                 if (worstValue > value) {
@@ -2351,7 +2358,7 @@ public class EuropeanAIPlayer extends AIPlayer {
         // AIPlayer.createAIUnits which we want to do early, certainly
         // before cheat() or other operations that might make new units
         // happen.
-        LogBuilder lb = new LogBuilder(1024);
+        LogBuilder lb = new LogBuilder(logger, Level.FINE, 1024);
         int colonyCount = getAIColonies().size();
         lb.add(player.getDebugName(),
                " in ", turn, "/", turn.getNumber(),
@@ -2393,7 +2400,7 @@ public class EuropeanAIPlayer extends AIPlayer {
             if (aiUnits.isEmpty()) break;
             aiUnits = doMissions(aiUnits, lb);
         }
-        lb.log(logger, Level.FINE);
+        lb.log();
 
         clearAIUnits();
         tipMap.clear();
@@ -2525,7 +2532,7 @@ public class EuropeanAIPlayer extends AIPlayer {
         final java.util.Map<TradeItem, Integer> scores = new HashMap<>();
         TradeItem peace = null;
         TradeItem cash = null;
-        LogBuilder lb = new LogBuilder(64);
+        LogBuilder lb = new LogBuilder(logger, Level.INFO, 64);
         lb.add("Evaluate trade offer from ", other.getName());
         TradeStatus result = null;
 
@@ -2632,7 +2639,7 @@ public class EuropeanAIPlayer extends AIPlayer {
         }
 
         lb.add(" => ", result);
-        lb.log(logger, Level.INFO);
+        lb.log();
         return result;
     }
 
@@ -2726,7 +2733,7 @@ public class EuropeanAIPlayer extends AIPlayer {
     @Override
     public boolean acceptTax(int tax) {
         boolean ret = true;
-        LogBuilder lb = new LogBuilder(64);
+        LogBuilder lb = new LogBuilder(logger, Level.INFO, 64);
         Goods toBeDestroyed = getPlayer().getMostValuableGoods();
         lb.add("Tax demand to ", getPlayer().getName(), " of ", tax, "% with ",
             getPlayer().getMostValuableGoods(), " ");
@@ -2785,7 +2792,7 @@ public class EuropeanAIPlayer extends AIPlayer {
                 averageIncome, ").");
         }
         if (!ret) suppressEuropeanTrade(goodsType, lb);
-        lb.log(logger, Level.INFO);
+        lb.log();
         return ret;
     }
 
@@ -738,7 +738,7 @@ public class NativeAIPlayer extends AIPlayer {
         final int nSettlements = player.getNumberOfSettlements();
         final Random air = getAIRandom();
 
-        LogBuilder lb = new LogBuilder(1024);
+        LogBuilder lb = new LogBuilder(logger, Level.FINEST, 1024);
         lb.add(player.getDebugName(), " in ", turn, "/", turn.getNumber());
 
         sessionRegister.clear();
@@ -769,7 +769,7 @@ public class NativeAIPlayer extends AIPlayer {
             doMissions(more, lb);
         }
         clearAIUnits();
-        lb.log(logger, Level.FINEST);
+        lb.log();
     }
 
     /**
@@ -222,10 +222,10 @@ public class REFAIPlayer extends EuropeanAIPlayer {
         }
         Collections.sort(targets);
 
-        LogBuilder lb = new LogBuilder(64);
+        LogBuilder lb = new LogBuilder(logger, Level.FINE, 64);
         lb.add("REF found colony targets:");
         for (TargetTuple t : targets) lb.add(" ", t.colony, "(", t.score, ")");
-        lb.log(logger, Level.FINE);
+        lb.log();
         return targets;
     }
 
@@ -285,19 +285,27 @@ public class REFAIPlayer extends EuropeanAIPlayer {
         final Player rebel = targets.get(0).colony.getOwner();
         double ratio = getStrengthRatio(rebel);
         int n = targets.size();
-        LogBuilder lb = new LogBuilder(64);
+        LogBuilder lb = new LogBuilder(logger, Level.FINE, 64);
         lb.add("REF attacking ", rebel.getName(), " ratio=", ratio);
 
         // For each target search from the target position to find a
         // Tile to disembark to.  If teleporting in, the navy will
         // appear at this location, otherwise at the best entry
-        // location for it.
+        // location for it.  The searches are independent, so they
+        // are run together.
+        List<net.sf.freecol.common.model.Map.SearchRequest> requests
+            = new ArrayList<>(n);
+        for (TargetTuple t : targets) {
+            requests.add(new net.sf.freecol.common.model.Map.SearchRequest(
+                    unit, t.entry,
+                    GoalDeciders.getDisembarkGoalDecider(t.colony.getTile()),
+                    null, 10, carrier));
+        }
+        List<PathNode> paths = getGame().getMap().searchAll(requests);
         int fail = 0;
         for (int i = 0; i < n; i++) {
             final TargetTuple t = targets.get(i);
-            final GoalDecider gd = GoalDeciders
-                .getDisembarkGoalDecider(t.colony.getTile());
-            PathNode path = unit.search(t.entry, gd, null, 10, carrier);
+            final PathNode path = paths.get(i);
             if (path == null) {
                 t.disembarkTile = null;
                 fail++;
@@ -460,7 +468,7 @@ public class REFAIPlayer extends EuropeanAIPlayer {
                 }
             }
         }
-        lb.log(logger, Level.FINE);
+        lb.log();
         return true;
     }
 
@@ -869,9 +877,9 @@ public class REFAIPlayer extends EuropeanAIPlayer {
             }
         }
         if (!land.isEmpty() && !transport.isEmpty()) {
-            LogBuilder lb = new LogBuilder(256);
+            LogBuilder lb = new LogBuilder(logger, Level.FINE, 256);
             allocateTransportables(land, transport, lb);
-            lb.log(logger, Level.FINE);
+            lb.log();
         }
     }
 
@@ -0,0 +1,751 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.server.control;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.networking.Connection;
+import net.sf.freecol.common.networking.DOMMessage;
+import net.sf.freecol.common.util.Utils;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.model.ServerGame;
+import net.sf.freecol.server.model.ServerPlayer;
+import net.sf.freecol.server.networking.DummyConnection;
+
+import org.w3c.dom.Element;
+
+import static net.sf.freecol.common.util.CollectionUtils.*;
+
+
+/**
+ * An append-only journal of the actions applied to a game since it
+ * was last saved, allowing the game to be recovered after a crash by
+ * loading the last save and replaying the journal.
+ *
+ * Each top level message from a player is written to the journal
+ * before it is handled, along with the state of the server random
+ * number generator.  The replies players give to questions the
+ * server asks while handling an action are recorded too, so that the
+ * replay does not need the players to be connected.  The random state
+ * is used to check that the replay has not diverged from the original
+ * game, and the replay stops at the first action where it has.
+ *
+ * The journal lives next to the saved game it belongs to, and its
+ * header records the random state at the time of the save so that a
+ * stale journal is never applied to the wrong game.
+ *
+ * A game saved in the background is only on disk some time after
+ * its snapshot was taken, and the save may fail.  So the journal for
+ * the new save is prepared when the snapshot is taken, and follows
+ * the current journal: the actions recorded in the current journal
+ * are also kept in memory for the new one.  Only once the save has
+ * succeeded is the new journal written out, replacing the current
+ * one.  If the save fails it is dropped, and the current journal
+ * carries on.
+ *
+ * Replay covers only the server model.  The AI players act by sending
+ * messages like any other player, so their actions are replayed, but
+ * the state of AIMain (the AI objects, missions and the AI players'
+ * own random number generators) is not journaled.  After a recovery
+ * the AI continues from its state in the saved game, and may make
+ * different choices than it would have without the crash.
+ */
+public final class ActionJournal {
+
+    private static final Logger logger = Logger.getLogger(ActionJournal.class.getName());
+
+    /** The suffix added to a saved game name to make its journal. */
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    /** Tag at the start of the journal header. */
+    private static final String JOURNAL_TAG = "FreeColJournal";
+
+    /** Journal line types. */
+    private static final String ACTION = "A", REPLY = "R";
+
+    /** Placeholder for a missing field. */
+    private static final String NONE = "-";
+
+    /** Field separator. */
+    private static final String SEPARATOR = " ";
+
+    /** An entry read back from a journal. */
+    private static final class Entry {
+
+        /** The index of the action, or of the enclosing action of a reply. */
+        public final int index;
+
+        /** True if this entry is a reply to a server question. */
+        public final boolean reply;
+
+        /** The identifier of the player that sent the message. */
+        public final String playerId;
+
+        /** The server random state before an action, null for replies. */
+        public final String randomState;
+
+        /** The message, which may be null for replies. */
+        public final Element element;
+
+        /** The journal line this entry was read from. */
+        public final String line;
+
+
+        public Entry(int index, boolean reply, String playerId,
+                     String randomState, Element element, String line) {
+            this.index = index;
+            this.reply = reply;
+            this.playerId = playerId;
+            this.randomState = randomState;
+            this.element = element;
+            this.line = line;
+        }
+    }
+
+    /** An action being recorded. */
+    private static final class Action {
+
+        /** The journal the action is recorded in. */
+        public final ActionJournal journal;
+
+        /** The index of the action. */
+        public final int index;
+
+
+        public Action(ActionJournal journal, int index) {
+            this.journal = journal;
+            this.index = index;
+        }
+    }
+
+    /** The journal file. */
+    private final File file;
+
+    /** The server random number source. */
+    private final Random random;
+
+    /** The header line, kept until a prepared journal is started. */
+    private final String header;
+
+    /** The writer for the journal, null if prepared or closed. */
+    private Writer writer;
+
+    /** The lines of a prepared journal, null once started or closed. */
+    private List<String> lines;
+
+    /** Has the journal file been written? */
+    private boolean started;
+
+    /** The number of actions recorded so far. */
+    private int actionCount;
+
+    /** A prepared journal following this one, if any. */
+    private ActionJournal successor = null;
+
+    /** The number of actions in this journal before the successor. */
+    private int successorBase = 0;
+
+    /**
+     * Lock for writing to journals, and changing which follow which.
+     * One lock covers them all, as an action is written to every
+     * journal that follows.
+     */
+    private static final Object lock = new Object();
+
+    /** The action the current thread is handling, if any. */
+    private static final ThreadLocal<Action> current = new ThreadLocal<>();
+
+
+    /**
+     * Create a new journal.
+     *
+     * @param file The journal <code>File</code>.
+     * @param random The server random number source.
+     * @param writer The <code>Writer</code> to append to.
+     * @param actionCount The number of actions already in the journal.
+     */
+    private ActionJournal(File file, Random random, Writer writer,
+                          int actionCount) {
+        this.file = file;
+        this.random = random;
+        this.header = null;
+        this.writer = writer;
+        this.lines = null;
+        this.started = true;
+        this.actionCount = actionCount;
+    }
+
+    /**
+     * Create a new prepared journal, recording to memory until it is
+     * started.
+     *
+     * @param file The journal <code>File</code>.
+     * @param random The server random number source.
+     * @param header The header line.
+     */
+    private ActionJournal(File file, Random random, String header) {
+        this.file = file;
+        this.random = random;
+        this.header = header;
+        this.writer = null;
+        this.lines = new ArrayList<>();
+        this.started = false;
+        this.actionCount = 0;
+    }
+
+    /**
+     * Get the journal file that belongs to a saved game.
+     *
+     * @param save The saved game <code>File</code>.
+     * @return The journal <code>File</code>.
+     */
+    public static File getJournalFile(File save) {
+        return new File(save.getPath() + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Start a new journal for a game that has just been saved.
+     *
+     * @param save The <code>File</code> the game was saved to.
+     * @param game The <code>ServerGame</code> that was saved.
+     * @param random The server random number source.
+     * @return A new <code>ActionJournal</code>.
+     * @exception IOException if the journal can not be created.
+     */
+    public static ActionJournal start(File save, ServerGame game,
+                                      Random random) throws IOException {
+        return start(getJournalFile(save), makeHeader(game, random),
+                     new ArrayList<String>(), random, 0);
+    }
+
+    /**
+     * Prepare a new journal for a game that is being saved, to be
+     * started with {@link #start()} once the save has succeeded.
+     * Nothing is written until then.
+     *
+     * @param save The <code>File</code> the game is being saved to.
+     * @param game The <code>ServerGame</code> being saved.
+     * @param random The server random number source.
+     * @return A new prepared <code>ActionJournal</code>.
+     */
+    public static ActionJournal prepare(File save, ServerGame game,
+                                        Random random) {
+        return new ActionJournal(getJournalFile(save), random,
+                                 makeHeader(game, random));
+    }
+
+    /**
+     * Make the header line for a new journal.
+     *
+     * @param game The <code>ServerGame</code> to journal.
+     * @param random The server random number source.
+     * @return The header line.
+     */
+    private static String makeHeader(ServerGame game, Random random) {
+        return JOURNAL_TAG + SEPARATOR
+            + ((game.getCurrentPlayer() == null) ? NONE
+                : game.getCurrentPlayer().getId())
+            + SEPARATOR + Utils.getRandomState(random);
+    }
+
+    /**
+     * Write a journal file from a header and existing lines, and
+     * open it for appending.  The file is written to a temporary
+     * file first, so an existing journal survives a failure.
+     *
+     * @param file The journal <code>File</code>.
+     * @param header The header line.
+     * @param lines The existing journal lines.
+     * @param random The server random number source.
+     * @param actionCount The number of actions in the existing lines.
+     * @return A new <code>ActionJournal</code>.
+     * @exception IOException if the journal can not be created.
+     */
+    private static ActionJournal start(File file, String header,
+                                       List<String> lines, Random random,
+                                       int actionCount) throws IOException {
+        writeJournal(file, header, lines);
+        return new ActionJournal(file, random, openWriter(file, true),
+                                 actionCount);
+    }
+
+    /**
+     * Write a journal file from a header and lines, through a
+     * temporary file so that an existing journal survives a failure.
+     *
+     * @param file The journal <code>File</code>.
+     * @param header The header line.
+     * @param lines The journal lines.
+     * @exception IOException if the journal can not be written.
+     */
+    private static void writeJournal(File file, String header,
+                                     List<String> lines) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (
+            Writer w = openWriter(tmp, false);
+        ) {
+            w.write(header);
+            w.write('\n');
+            for (String line : lines) {
+                w.write(line);
+                w.write('\n');
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Open a UTF-8 writer on a file.
+     *
+     * @param file The <code>File</code> to write to.
+     * @param append If true, append to the file.
+     * @return A new <code>Writer</code>.
+     * @exception IOException if the file can not be opened.
+     */
+    private static Writer openWriter(File file, boolean append)
+        throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, append), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the journal file.
+     *
+     * @return The journal <code>File</code>.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Make a prepared journal follow this one, after any others
+     * already following it.
+     *
+     * @param next The prepared <code>ActionJournal</code> to follow.
+     */
+    public void follow(ActionJournal next) {
+        synchronized (lock) {
+            ActionJournal j = this;
+            while (j.successor != null) j = j.successor;
+            j.successor = next;
+            j.successorBase = j.actionCount;
+        }
+    }
+
+    /**
+     * Is a journal this one or one that follows it?
+     *
+     * @param journal The <code>ActionJournal</code> to look for.
+     * @return True if the journal is found.
+     */
+    private boolean leadsTo(ActionJournal journal) {
+        for (ActionJournal j = this; j != null; j = j.successor) {
+            if (j == journal) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Start a prepared journal that follows this one, now that its
+     * save has succeeded.  It is written out, replacing its file, and
+     * this journal and any between them are retired: closed, and
+     * deleted unless the started journal has replaced their file.
+     *
+     * @param next The prepared <code>ActionJournal</code> to start.
+     * @return The journal to record to from now on, which is this one
+     *     if the successor could not be started.
+     * @exception IOException if the successor could not be written,
+     *     in which case it is dropped.
+     */
+    public ActionJournal start(ActionJournal next) throws IOException {
+        synchronized (lock) {
+            if (next.lines == null || !leadsTo(next)) {
+                throw new IOException("Journal not prepared: " + next.file);
+            }
+            try {
+                writeJournal(next.file, next.header, next.lines);
+                next.writer = openWriter(next.file, true);
+                next.started = true;
+            } catch (IOException ioe) {
+                drop(next);
+                throw ioe;
+            }
+            next.lines = null;
+            for (ActionJournal j = this; j != next; j = j.successor) {
+                if (j.file.equals(next.file)) j.close(); else j.discard();
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Drop a prepared journal that follows this one, as its save has
+     * failed.  Any journals following it now follow its predecessor.
+     *
+     * @param next The prepared <code>ActionJournal</code> to drop.
+     * @return The journal to record to from now on.
+     */
+    public ActionJournal drop(ActionJournal next) {
+        synchronized (lock) {
+            next.lines = null;
+            if (next == this) return successor;
+            for (ActionJournal j = this; j != null; j = j.successor) {
+                if (j.successor == next) {
+                    j.successor = next.successor;
+                    j.successorBase += next.successorBase;
+                    break;
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Record the start of the handling of a message from a player.
+     * Messages that arrive while the current thread is already
+     * handling an action are part of that action, and are not
+     * recorded as new actions.
+     *
+     * @param player The <code>ServerPlayer</code> that sent the message.
+     * @param element The message <code>Element</code>.
+     * @return True if a new action was started, in which case
+     *     {@link #endAction} must be called when it has been handled.
+     */
+    public boolean beginAction(ServerPlayer player, Element element) {
+        if (current.get() != null) return false;
+        synchronized (lock) {
+            int index = actionCount;
+            current.set(new Action(this, index));
+            write(ACTION, index, player, Utils.getRandomState(random),
+                  element);
+        }
+        return true;
+    }
+
+    /**
+     * Record the end of the handling of an action.
+     */
+    public void endAction() {
+        current.remove();
+    }
+
+    /**
+     * Record the reply a player gave to a question from the server,
+     * if the current thread is handling a journaled action.
+     *
+     * @param player The <code>ServerPlayer</code> that was asked.
+     * @param reply The reply <code>Element</code>, which may be null.
+     */
+    public static void recordReply(ServerPlayer player, Element reply) {
+        Action action = current.get();
+        if (action == null) return;
+        synchronized (lock) {
+            action.journal.write(REPLY, action.index, player, NONE, reply);
+        }
+    }
+
+    /**
+     * Write an entry to the journal, and to the journals that follow
+     * it.  The journal is flushed so that the entry survives a crash
+     * of the server.  If the journal can not be written it is closed,
+     * as a journal with holes in it would be useless.
+     *
+     * @param type The entry type.
+     * @param index The action index.
+     * @param player The <code>ServerPlayer</code> concerned.
+     * @param state The random state to record.
+     * @param element The message <code>Element</code> to record.
+     */
+    private void write(String type, int index, ServerPlayer player,
+                       String state, Element element) {
+        String xml = (element == null) ? null
+            : DOMMessage.elementToString(element);
+        write(type, index, ((player == null) ? NONE : player.getId()),
+              state, ((xml == null) ? NONE
+                  : Base64.getEncoder().encodeToString(xml
+                      .getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Write an encoded entry to the journal, and to the journals that
+     * follow it, renumbering the action for each.  Replies to actions
+     * begun before a journal was prepared are not passed on to it.
+     *
+     * @param type The entry type.
+     * @param index The action index.
+     * @param playerId The identifier of the player concerned.
+     * @param state The random state to record.
+     * @param data The encoded message.
+     */
+    private void write(String type, int index, String playerId,
+                       String state, String data) {
+        if (index >= actionCount) actionCount = index + 1;
+        String line = type + SEPARATOR + index + SEPARATOR + playerId
+            + SEPARATOR + state + SEPARATOR + data;
+        if (lines != null) {
+            lines.add(line);
+        } else if (writer != null) {
+            try {
+                writer.write(line + "\n");
+                writer.flush();
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, "Journal write failed: " + file,
+                           ioe);
+                close();
+            }
+        }
+        if (successor != null && index >= successorBase) {
+            successor.write(type, index - successorBase, playerId, state,
+                            data);
+        }
+    }
+
+    /**
+     * Close this journal, keeping the file.
+     */
+    public void close() {
+        synchronized (lock) {
+            lines = null;
+            if (writer == null) return;
+            try {
+                writer.close();
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, "Journal close failed: " + file,
+                           ioe);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Close this journal and delete the file, as is done when the
+     * game it belongs to is superseded by a new save or ends cleanly.
+     * A journal that was only prepared has no file of its own to
+     * delete.
+     */
+    public void discard() {
+        synchronized (lock) {
+            close();
+            if (!started) return;
+            if (!file.delete() && file.exists()) {
+                logger.warning("Failed to delete journal: " + file);
+            }
+        }
+    }
+
+
+    // Recovery
+
+    /**
+     * Read a journal entry.
+     *
+     * @param line The journal line to read.
+     * @return The <code>Entry</code> found, or null if the line is
+     *     malformed, as is the last line of a journal when the server
+     *     crashed while writing it.
+     */
+    private static Entry readEntry(String line) {
+        String[] fields = line.split(SEPARATOR);
+        if (fields.length != 5) return null;
+        boolean reply = REPLY.equals(fields[0]);
+        if (!reply && !ACTION.equals(fields[0])) return null;
+        try {
+            Element element = null;
+            if (!NONE.equals(fields[4])) {
+                byte[] bytes = Base64.getDecoder().decode(fields[4]);
+                element = new DOMMessage(new ByteArrayInputStream(bytes))
+                    .getDocument().getDocumentElement();
+            }
+            return new Entry(Integer.parseInt(fields[1]), reply,
+                (NONE.equals(fields[2])) ? null : fields[2],
+                (reply) ? null : fields[3], element, line);
+        } catch (Exception e) { // Parse failures, bad numbers, bad base64
+            return null;
+        }
+    }
+
+    /**
+     * Recover a game that was loaded from a saved game by replaying
+     * its journal, if one exists.
+     *
+     * The actions are replayed through the in game input handler,
+     * with each player temporarily connected to a dummy connection
+     * that answers the server questions with the recorded replies.
+     * As when loading a saved game, there is no current player when
+     * the replay is complete.  The AI state is not replayed, see the
+     * class comment.
+     *
+     * @param server The <code>FreeColServer</code> that loaded the game.
+     * @param save The saved game <code>File</code>.
+     * @param resume If true, and actions were replayed, return a
+     *     journal to continue recording to.
+     * @return A journal to continue recording to, or null if not
+     *     resuming or nothing was replayed.
+     */
+    public static ActionJournal replay(FreeColServer server, File save,
+                                       boolean resume) {
+        final File file = getJournalFile(save);
+        if (!file.exists()) return null;
+        final ServerGame game = server.getGame();
+        final Random random = server.getServerRandom();
+
+        // Read the journal, checking that it belongs to this game.
+        String header;
+        List<Entry> entries = new ArrayList<>();
+        try (
+            BufferedReader br = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), StandardCharsets.UTF_8));
+        ) {
+            header = br.readLine();
+            String line;
+            while ((line = br.readLine()) != null) {
+                Entry entry = readEntry(line);
+                if (entry == null) {
+                    logger.warning("Truncated journal: " + file);
+                    break;
+                }
+                entries.add(entry);
+            }
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Journal read failed: " + file, ioe);
+            return null;
+        }
+        String[] fields = (header == null) ? null : header.split(SEPARATOR);
+        if (fields == null || fields.length != 3
+            || !JOURNAL_TAG.equals(fields[0])
+            || !fields[2].equals(Utils.getRandomState(random))) {
+            logger.warning("Ignoring journal for another game: " + file);
+            return null;
+        }
+
+        // Separate the replies out by the action they belong to.
+        final Map<Integer, List<Entry>> replies = new HashMap<>();
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+            Entry e = it.next();
+            if (!e.reply) continue;
+            List<Entry> l = replies.get(e.index);
+            if (l == null) {
+                l = new ArrayList<>();
+                replies.put(e.index, l);
+            }
+            l.add(e);
+            it.remove();
+        }
+
+        // Connect all the players to the replay.
+        final int[] action = { -1 };
+        final Map<String, Connection> saved = new HashMap<>();
+        final Map<String, Boolean> connected = new HashMap<>();
+        final Map<String, Connection> replayConnections = new HashMap<>();
+        for (Player p : game.getPlayers()) {
+            final ServerPlayer sp = (ServerPlayer)p;
+            final String id = sp.getId();
+            saved.put(id, sp.getConnection());
+            connected.put(id, sp.isConnected());
+            DummyConnection serverSide = new DummyConnection("Replay-" + id,
+                server.getInGameInputHandler());
+            DummyConnection playerSide = new DummyConnection("Replay-"
+                + id + "-player", (Connection c, Element request) -> {
+                    synchronized (action) {
+                        List<Entry> l = replies.get(action[0]);
+                        Entry e = (l == null) ? null
+                            : find(l, r -> id.equals(r.playerId));
+                        if (e == null) return null;
+                        l.remove(e);
+                        return e.element;
+                    }
+                });
+            serverSide.setConnection(playerSide);
+            playerSide.setConnection(serverSide);
+            replayConnections.put(id, serverSide);
+            sp.setConnection(serverSide);
+        }
+
+        // Replay the actions until they run out or the game diverges.
+        if (!NONE.equals(fields[1])) {
+            game.setCurrentPlayer(game.getFreeColGameObject(fields[1],
+                    ServerPlayer.class));
+        }
+        List<String> lines = new ArrayList<>();
+        int count = 0;
+        for (Entry e : entries) {
+            if (!e.randomState.equals(Utils.getRandomState(random))) {
+                logger.warning("Journal replay diverged at action "
+                    + e.index + ", " + (entries.size() - count)
+                    + " actions lost");
+                break;
+            }
+            synchronized (action) {
+                action[0] = e.index;
+            }
+            Connection conn = replayConnections.get(e.playerId);
+            if (conn != null && e.element != null) {
+                server.getInGameInputHandler().handle(conn, e.element);
+            }
+            lines.add(e.line);
+            List<Entry> l = replies.get(e.index);
+            if (l != null) {
+                for (Entry r : l) lines.add(r.line);
+            }
+            count++;
+        }
+        logger.info("Replayed " + count + " actions from journal: " + file);
+
+        // Restore the connections.
+        for (Player p : game.getPlayers()) {
+            final ServerPlayer sp = (ServerPlayer)p;
+            sp.setConnection(saved.get(sp.getId()));
+            sp.setConnected(connected.get(sp.getId()));
+        }
+        game.setCurrentPlayer(null);
+
+        if (!resume || count == 0) return null;
+        try {
+            return start(file, header, lines, random,
+                         entries.get(count - 1).index + 1);
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Journal resume failed: " + file, ioe);
+        }
+        return null;
+    }
+}
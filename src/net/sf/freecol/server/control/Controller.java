@@ -48,6 +48,9 @@ public abstract class Controller extends FreeColServerHolder {
      * Shut down the server (which sends a message to each client).
      */
     public void shutdown() {
+        // A clean shutdown needs no recovery.
+        getFreeColServer().shutdownSaves();
+        getFreeColServer().stopJournal(true);
         Server server = getFreeColServer().getServer();
         if (server != null) {
             server.shutdown();
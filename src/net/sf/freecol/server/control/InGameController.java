@@ -499,6 +499,8 @@ public final class InGameController extends Controller {
             reply = null;
             logger.log(Level.WARNING, "Exception completing future", e);
         }
+        ActionJournal.recordReply(serverPlayer,
+            (reply == null) ? null : reply.toXMLElement());
         return reply;
     }
 
@@ -568,11 +570,11 @@ public final class InGameController extends Controller {
                 game.csNextTurn(next);
                 game.sendToAll(next);
 
-                LogBuilder lb = new LogBuilder(512);
+                LogBuilder lb = new LogBuilder(logger, Level.FINEST, 512);
                 lb.add("New turn ", game.getTurn(), " for ");
                 game.csNewTurn(random, lb, cs);
                 lb.shrink(", ");
-                lb.log(logger, Level.FINEST);
+                lb.log();
                 if (debugOnlyAITurns > 0) {
                     if (--debugOnlyAITurns <= 0) {
                         // If this was a debug run, complete it.  This will
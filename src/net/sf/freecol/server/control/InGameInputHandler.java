@@ -641,6 +641,22 @@ public final class InGameInputHandler extends InputHandler
                 .handle(freeColServer, connection));
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * All in game messages are journaled, apart from those that just
+     * manage the connection.
+     */
+    @Override
+    protected boolean isJournaled(String tagName) {
+        switch (tagName) {
+        case "chat": case "disconnect": case "logout":
+            return false;
+        default:
+            return true;
+        }
+    }
+
     /**
      * Handles a "logout"-message.
      * 
@@ -107,13 +107,23 @@ public abstract class InputHandler extends FreeColServerHolder implements Messag
         String tagName = element.getTagName();
         NetworkRequestHandler handler = _handlerMap.get(tagName);
         if (handler != null) {
+            final ActionJournal journal = getFreeColServer().getJournal();
+            boolean journaled = false;
             try {
                 logger.log(Level.FINEST, "Handling " + tagName);
+                if (journal != null && isJournaled(tagName)) {
+                    ServerPlayer player = getFreeColServer()
+                        .getPlayer(connection);
+                    journaled = player != null
+                        && journal.beginAction(player, element);
+                }
                 return handler.handle(connection, element);
             } catch (Exception e) {
                 // FIXME: should we really catch Exception? The old code did.
                 logger.log(Level.WARNING, "Handler failed", e);
                 sendReconnectSafely(connection);
+            } finally {
+                if (journaled) journal.endAction();
             }
         } else {
             // Should we return an error here? The old handler returned null.
@@ -122,6 +132,19 @@ public abstract class InputHandler extends FreeColServerHolder implements Messag
         return null;
     }
 
+    /**
+     * Should messages with a given tag be recorded in the action
+     * journal?
+     *
+     * To be overridden by the handlers of messages that change the game.
+     *
+     * @param tagName The message tag.
+     * @return True if the message should be journaled.
+     */
+    protected boolean isJournaled(String tagName) {
+        return false;
+    }
+
     /**
      * Send a reconnect message ignoring (but logging) IO errors.
      * 
@@ -96,6 +96,7 @@ import net.sf.freecol.common.networking.MonarchActionMessage;
 import net.sf.freecol.common.util.LogBuilder;
 import net.sf.freecol.common.util.RandomChoice;
 import static net.sf.freecol.common.util.RandomUtils.*;
+import net.sf.freecol.server.control.ActionJournal;
 import net.sf.freecol.server.control.ChangeSet;
 import net.sf.freecol.server.control.ChangeSet.ChangePriority;
 import net.sf.freecol.server.control.ChangeSet.See;
@@ -307,6 +308,7 @@ public class ServerPlayer extends Player implements ServerModelObject {
             Element reply;
             try {
                 reply = this.connection.ask(request);
+                ActionJournal.recordReply(this, reply);
                 if (reply == null) break;
             } catch (IOException e) {
                 logger.log(Level.WARNING, "Could not send \""
@@ -782,7 +784,7 @@ public class ServerPlayer extends Player implements ServerModelObject {
 
         // Select one from each father type
         List<FoundingFather> randomFathers = new ArrayList<>();
-        LogBuilder lb = new LogBuilder(64);
+        LogBuilder lb = new LogBuilder(logger, Level.INFO, 64);
         lb.add("Random fathers for ", getDebugName());
         for (FoundingFatherType type : FoundingFatherType.values()) {
             List<RandomChoice<FoundingFather>> rc = choices.get(type);
@@ -795,7 +797,7 @@ public class ServerPlayer extends Player implements ServerModelObject {
                 }
             }
         }
-        lb.log(logger, Level.INFO);
+        lb.log();
         return randomFathers;
     }
 
@@ -1122,7 +1124,7 @@ public class ServerPlayer extends Player implements ServerModelObject {
         List<Unit> leftOver = new ArrayList<>();
         randomShuffle(logger, "Naval load", navalUnits, random);
         randomShuffle(logger, "Land load", landUnits, random);
-        LogBuilder lb = new LogBuilder(256);
+        LogBuilder lb = new LogBuilder(logger, Level.FINEST, 256);
         lb.mark();
         landUnit: for (Unit unit : landUnits) {
             for (Unit carrier : navalUnits) {
@@ -1136,7 +1138,7 @@ public class ServerPlayer extends Player implements ServerModelObject {
         }
         if (lb.grew("Load ships: ")) {
             lb.shrink(", ");
-            lb.log(logger, Level.FINEST);
+            lb.log();
         }        
         return leftOver;
     }
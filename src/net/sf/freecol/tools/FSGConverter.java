@@ -31,6 +31,7 @@ import java.io.OutputStream;
 import java.util.zip.GZIPInputStream;
 
 import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.io.FreeColSavegameFile;
 
 
 /**
@@ -168,17 +169,36 @@ public class FSGConverter {
     }
     
     
+    /**
+     * Converts a saved game between the XML and binary saved game
+     * formats.
+     *
+     * @param in The input file.
+     * @param out The output file. This file will be overwritten
+     *      if it already exists.
+     * @param binary If true convert to the binary format, otherwise
+     *     to XML.
+     * @throws IOException if thrown while reading or writing the files.
+     * @see FreeColSavegameFile#convert
+     */
+    public void convertSavegame(File in, File out, boolean binary)
+        throws IOException {
+        FreeColSavegameFile.convert(new FreeColSavegameFile(in), out, binary);
+    }
+
     /**
      * Prints the usage of this program to standard out.
      */
     private static void printUsage() {
         System.out.println("A program for converting FreeCol Savegames.");
         System.out.println();
-        System.out.println("Usage: java -cp FreeCol.jar net.sf.freecol.tools.FSGConverter [-][-]output:xml FSG_FILE [OUTPUT_FILE]");
+        System.out.println("Usage: java -cp FreeCol.jar net.sf.freecol.tools.FSGConverter [-][-]output:xml|binary|fsg FSG_FILE [OUTPUT_FILE]");
         System.out.println();
         System.out.println("output:xml \tThe output will be indented XML.");
+        System.out.println("output:binary \tThe output will be a binary format savegame.");
+        System.out.println("output:fsg \tThe output will be an XML format savegame.");
         System.out.println();
-        System.out.println("The output file will get the same name as FSG_FILE if not specified (with \".fsg\" replaced with \".xml\").");
+        System.out.println("The output file will get the same name as FSG_FILE if not specified (with \".fsg\" replaced with \".xml\", \"-binary.fsg\" or \"-xml.fsg\").");
     }
     
     /**
@@ -212,6 +232,35 @@ public class FSGConverter {
                 e.printStackTrace();
                 System.exit(1);
             }
+        } else if (args.length >= 2 && (args[0].endsWith("output:binary")
+                || args[0].endsWith("output:fsg"))) {
+            boolean binary = args[0].endsWith("output:binary");
+            File in = new File(args[1]);
+            if (!in.exists()) {
+                printUsage();
+                System.exit(1);
+            }
+            File out;
+            if (args.length >= 3) {
+                out = new File(args[2]);
+            } else {
+                String suffix = ((binary) ? "-binary." : "-xml.")
+                    + FreeCol.FREECOL_SAVE_EXTENSION;
+                String filename = in.getName()
+                    .replaceAll("." + FreeCol.FREECOL_SAVE_EXTENSION, suffix);
+                if (filename.equals(in.getName())) {
+                    filename += suffix;
+                }
+                out = new File(filename);
+            }
+            try {
+                FSGConverter fsgc = FSGConverter.getFSGConverter();
+                fsgc.convertSavegame(in, out, binary);
+            } catch (IOException e) {
+                System.out.println("An error occured while converting the file.");
+                e.printStackTrace();
+                System.exit(1);
+            }
         } else {
             printUsage();
             System.exit(1);
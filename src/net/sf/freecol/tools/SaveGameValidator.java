@@ -22,38 +22,267 @@ package net.sf.freecol.tools;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
 import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColTcFile;
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.server.FreeColServer;
 
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 
 /**
- * Validate a saved game.
+ * Validate saved games.
+ *
+ * Usage: SaveGameValidator [--load] [--threads N] [--report FILE]
+ *     FILE_OR_DIRECTORY...
+ *
+ * The saved games are validated against the schema concurrently on
+ * a pool of worker threads (one per processor by default).  With
+ * --load, each readable game is also read back with
+ * {@link FreeColServer#readGame}.  With --report, a tab separated
+ * report is written with a line for each saved game giving its
+ * status, the time taken to validate and load it, and the memory
+ * allocated while doing so.  The heap peak of each game is only
+ * reported when running on a single thread, as otherwise the games
+ * share the heap.
  */
 public class SaveGameValidator {
 
-    public static void main(String[] args) throws Exception {
+    /** The columns of the report. */
+    private static final String REPORT_HEADER = "file\tstatus"
+        + "\tvalidateMillis\tloadMillis\tallocatedBytes\tpeakHeapBytes"
+        + "\tmessage";
 
-        SchemaFactory factory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
-        File schemaLocation = new File("schema/data/data-savedGame.xsd");
-        Schema schema = factory.newSchema(schemaLocation);
-        Validator saveGameValidator = schema.newValidator();
+    /** The specification of each worker thread, see getSpecification. */
+    private static final ThreadLocal<Specification> specification
+        = new ThreadLocal<>();
+
+    /** The outcome of checking one saved game. */
+    private static enum Status {
+        VALID,       // Valid, and loaded if requested
+        INVALID,     // Failed schema validation, but loaded if requested
+        UNREADABLE,  // Could not be read at all
+        UNLOADABLE,  // Failed to load
+    }
+
+    /** The result of checking one saved game. */
+    private static class Result {
+
+        public final File file;
+        public Status status = Status.VALID;
+        public long validateMillis = -1, loadMillis = -1;
+        public long allocated = -1, peakHeap = -1;
+        public String message = "";
+
+
+        public Result(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Get the report line for this result.
+         *
+         * @return The report line.
+         */
+        public String toReport() {
+            return file.getPath() + "\t" + status.toString().toLowerCase()
+                + "\t" + validateMillis + "\t" + loadMillis
+                + "\t" + allocated + "\t" + peakHeap
+                + "\t" + message.replaceAll("\\s+", " ");
+        }
+    }
+
+
+    /**
+     * Check a saved game.
+     *
+     * @param schema The saved game <code>Schema</code>.
+     * @param file The saved game <code>File</code>.
+     * @param load If true, load the game after validating it.
+     * @param measureHeap If true, measure the heap peak.  Only
+     *     meaningful if no other games are being checked.
+     * @return The <code>Result</code> of the check.
+     */
+    private static Result check(Schema schema, File file, boolean load,
+                                boolean measureHeap) {
+        final Result result = new Result(file);
+        final long allocated = getAllocatedBytes();
+        if (measureHeap) resetHeapPeak();
+
+        long t = System.nanoTime();
+        FreeColSavegameFile fsg = null;
+        try {
+            fsg = new FreeColSavegameFile(file);
+            Validator validator = schema.newValidator();
+            if (fsg.isBinary()) {
+                try (
+                    FreeColXMLReader xr = fsg.getFreeColXMLReader();
+                ) {
+                    validator.validate(new StAXSource(xr));
+                }
+            } else {
+                try (
+                    InputStream is = fsg.getSavegameInputStream();
+                ) {
+                    validator.validate(new StreamSource(is));
+                }
+            }
+        } catch (SAXException e) {
+            // Parse errors in binary saved games arrive wrapped
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof SAXParseException)) {
+                cause = cause.getCause();
+            }
+            if (cause != null) {
+                SAXParseException spe = (SAXParseException)cause;
+                result.status = Status.INVALID;
+                result.message = spe.getMessage()
+                    + " at line=" + spe.getLineNumber()
+                    + " column=" + spe.getColumnNumber();
+            } else {
+                result.status = Status.UNREADABLE;
+                result.message = "Failed to read " + file.getName()
+                    + ": " + e;
+            }
+        } catch (IOException e) {
+            result.status = Status.UNREADABLE;
+            result.message = "Failed to read " + file.getName() + ": " + e;
+        }
+        result.validateMillis = (System.nanoTime() - t) / 1000000;
+
+        if (load && result.status != Status.UNREADABLE) {
+            t = System.nanoTime();
+            try {
+                if (FreeColServer.readGame(fsg, getSpecification(),
+                                           null) == null) {
+                    result.status = Status.UNLOADABLE;
+                    result.message = "No game found in " + file.getName();
+                }
+            } catch (Exception e) { // Report any failure, and continue
+                result.status = Status.UNLOADABLE;
+                result.message = "Failed to load " + file.getName() + ": " + e;
+            }
+            result.loadMillis = (System.nanoTime() - t) / 1000000;
+        }
 
+        if (allocated >= 0) result.allocated = getAllocatedBytes() - allocated;
+        if (measureHeap) result.peakHeap = getHeapPeak();
+        return result;
+    }
+
+    /**
+     * Get the specification to load saved games that do not contain
+     * their own, such as maps.  Each worker thread has its own copy,
+     * as loading a game may update the specification.
+     *
+     * @return The classic rules <code>Specification</code>.
+     * @exception IOException if the rules can not be loaded.
+     */
+    private static Specification getSpecification() throws IOException {
+        Specification spec = specification.get();
+        if (spec == null) {
+            spec = new FreeColTcFile("freecol").getSpecification();
+            specification.set(spec);
+        }
+        return spec;
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread.
+     *
+     * @return The allocated bytes, or negative if not supported.
+     */
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean tmx
+            = ManagementFactory.getThreadMXBean();
+        return (tmx instanceof com.sun.management.ThreadMXBean)
+            ? ((com.sun.management.ThreadMXBean)tmx)
+                .getThreadAllocatedBytes(Thread.currentThread().getId())
+            : -1L;
+    }
+
+    /**
+     * Reset the peak usage of the heap memory pools.
+     */
+    private static void resetHeapPeak() {
+        for (MemoryPoolMXBean mp : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (mp.getType() == MemoryType.HEAP) mp.resetPeakUsage();
+        }
+    }
+
+    /**
+     * Get the peak usage of the heap since the last reset.
+     *
+     * @return The sum of the peak usage of the heap memory pools.
+     */
+    private static long getHeapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean mp : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (mp.getType() == MemoryType.HEAP) {
+                peak += mp.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Prints the usage of this program to standard out.
+     */
+    private static void printUsage() {
+        System.out.println("Usage: java -cp FreeCol.jar net.sf.freecol.tools.SaveGameValidator [--load] [--threads N] [--report REPORT_FILE] FILE_OR_DIRECTORY...");
+        System.out.println();
+        System.out.println("--load \tAlso load each readable saved game.");
+        System.out.println("--threads \tThe number of saved games to check at once.");
+        System.out.println("--report \tWrite a tab separated report to REPORT_FILE.");
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean load = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File report = null;
         List<File> allFiles = new ArrayList<>();
         FileFilter ff = FreeColSavegameFile.getFileFilter();
-        for (String name : args) {
-            File file = new File(name);
-            if (file.exists()) {
-                if (file.isDirectory()) {
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if ("--load".equals(name)) {
+                load = true;
+            } else if ("--threads".equals(name) && i+1 < args.length) {
+                try {
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                } catch (NumberFormatException nfe) {
+                    printUsage();
+                    System.exit(1);
+                }
+            } else if ("--report".equals(name) && i+1 < args.length) {
+                report = new File(args[++i]);
+            } else if (name.startsWith("--")) {
+                printUsage();
+                System.exit(1);
+            } else {
+                File file = new File(name);
+                if (!file.exists()) {
+                    ; // Ignore
+                } else if (file.isDirectory()) {
                     for (File fsg : file.listFiles(ff)) {
                         allFiles.add(fsg);
                     }
@@ -62,22 +291,57 @@ public class SaveGameValidator {
                 }
             }
         }
+        if (allFiles.isEmpty()) {
+            printUsage();
+            System.exit(1);
+        }
+
+        // Schemas are thread safe, validators are not.
+        SchemaFactory factory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
+        File schemaLocation = new File("schema/data/data-savedGame.xsd");
+        final Schema schema = factory.newSchema(schemaLocation);
 
+        final boolean doLoad = load;
+        final boolean measureHeap = threads == 1;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> futures = new ArrayList<>();
         for (File file : allFiles) {
-            System.out.println("Processing file " + file.getPath());
-            try {
-                FreeColSavegameFile mapFile = new FreeColSavegameFile(file);
-                saveGameValidator.validate(new StreamSource(mapFile.getSavegameInputStream()));
-                System.out.println("Successfully validated " + file.getName());
-            } catch (SAXParseException e) {
-                System.out.println(e.getMessage() 
-                                   + " at line=" + e.getLineNumber() 
-                                   + " column=" + e.getColumnNumber());
-            } catch (IOException | SAXException e) {
-                System.out.println("Failed to read " + file.getName());
+            futures.add(pool.submit(() ->
+                    check(schema, file, doLoad, measureHeap)));
+        }
+        pool.shutdown();
+
+        int failed = 0;
+        try (
+            PrintStream out = (report == null) ? null
+                : new PrintStream(report, "UTF-8");
+        ) {
+            if (out != null) out.println(REPORT_HEADER);
+            for (int i = 0; i < futures.size(); i++) {
+                Result result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException ee) {
+                    // Report any failure against its file, and continue
+                    result = new Result(allFiles.get(i));
+                    result.status = Status.UNREADABLE;
+                    result.message = "Failed to check "
+                        + result.file.getName() + ": " + ee.getCause();
+                }
+                System.out.println("Processing file "
+                    + result.file.getPath());
+                if (result.status == Status.VALID) {
+                    System.out.println("Successfully "
+                        + ((doLoad) ? "validated and loaded " : "validated ")
+                        + result.file.getName());
+                } else {
+                    System.out.println(result.message);
+                    failed++;
+                }
+                if (out != null) out.println(result.toReport());
             }
         }
+        System.out.println("Checked " + allFiles.size() + " saved games, "
+            + failed + " failed.");
     }
-
 }
-
@@ -0,0 +1,167 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+import java.util.regex.Pattern;
+
+
+/**
+ * A small throughput benchmark runner, in the manner of JMH.
+ *
+ * Each benchmark is an operation that is called repeatedly for a
+ * number of timed iterations, the first few of which are warmup and
+ * not reported.  The mean throughput of the measured iterations is
+ * reported in operations per second, with the standard deviation
+ * across iterations, along with the allocation rate of the
+ * benchmarking thread where the JVM can measure it.
+ *
+ * The runner is configured with system properties:
+ * <ul>
+ * <li>bench.warmup: the number of warmup iterations (default 3)</li>
+ * <li>bench.iterations: the number of measured iterations (default 5)</li>
+ * <li>bench.time: the length of an iteration in milliseconds
+ *     (default 1000)</li>
+ * <li>bench.filter: a regular expression the benchmark names must
+ *     contain a match for to be run (default all)</li>
+ * </ul>
+ */
+public final class BenchmarkRunner {
+
+    /** The thread bean, if it can measure allocations. */
+    private static final com.sun.management.ThreadMXBean threadBean;
+    static {
+        java.lang.management.ThreadMXBean tb
+            = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean ret = null;
+        if (tb instanceof com.sun.management.ThreadMXBean) {
+            ret = (com.sun.management.ThreadMXBean)tb;
+            if (ret.isThreadAllocatedMemorySupported()) {
+                ret.setThreadAllocatedMemoryEnabled(true);
+            } else {
+                ret = null;
+            }
+        }
+        threadBean = ret;
+    }
+
+    /** The number of warmup iterations. */
+    private final int warmup = Integer.getInteger("bench.warmup", 3);
+
+    /** The number of measured iterations. */
+    private final int iterations = Integer.getInteger("bench.iterations", 5);
+
+    /** The length of an iteration, in nanoseconds. */
+    private final long iterationTime
+        = Long.getLong("bench.time", 1000L) * 1000000L;
+
+    /** The benchmarks to run. */
+    private final Pattern filter
+        = Pattern.compile(System.getProperty("bench.filter", ""));
+
+    /** The stream to report to. */
+    private final PrintStream out;
+
+    /** The results of the operations, kept so they can not be elided. */
+    private volatile int sink = 0;
+
+
+    /**
+     * Create a new benchmark runner.
+     *
+     * @param out The <code>PrintStream</code> to report to.
+     */
+    public BenchmarkRunner(PrintStream out) {
+        this.out = out;
+        out.println(String.format("# Warmup: %d, iterations: %d, %d ms each",
+                warmup, iterations, iterationTime / 1000000L));
+        out.println(String.format("%-32s %-20s %3s %12s %10s %10s %12s",
+                "Benchmark", "Fixture", "Cnt", "Score", "Error",
+                "MB/s", "B/op"));
+    }
+
+    /**
+     * Is a benchmark selected to run?
+     *
+     * @param name The benchmark name.
+     * @return True if the benchmark should run.
+     */
+    public boolean isSelected(String name) {
+        return filter.matcher(name).find();
+    }
+
+    /**
+     * Run a benchmark and report the result.
+     *
+     * @param name The benchmark name.
+     * @param fixture The name of the fixture the benchmark runs on.
+     * @param op The operation to benchmark.  Its result is used only
+     *     to stop the operation being optimized away.
+     */
+    public void run(String name, String fixture, IntSupplier op) {
+        if (!isSelected(name)) return;
+
+        final double[] scores = new double[iterations];
+        long ops = 0, bytes = 0, time = 0;
+        for (int i = -warmup; i < iterations; i++) {
+            final long bytes0 = allocatedBytes();
+            final long start = System.nanoTime();
+            final long end = start + iterationTime;
+            long n = 0, now;
+            int s = 0;
+            do {
+                s += op.getAsInt();
+                n++;
+                now = System.nanoTime();
+            } while (now < end);
+            final long allocated = allocatedBytes() - bytes0;
+            sink += s;
+            if (i < 0) continue;
+            scores[i] = n * 1.0e9 / (now - start);
+            ops += n;
+            bytes += allocated;
+            time += now - start;
+        }
+
+        double mean = 0.0, sd = 0.0;
+        for (double d : scores) mean += d;
+        mean /= iterations;
+        for (double d : scores) sd += (d - mean) * (d - mean);
+        sd = (iterations > 1) ? Math.sqrt(sd / (iterations - 1)) : 0.0;
+        out.println(String.format("%-32s %-20s %3d %12.3f %10.3f %10s %12s",
+                name, fixture, iterations, mean, sd,
+                (threadBean == null) ? "n/a"
+                    : String.format("%.1f", bytes * 1.0e9 / time / 1.0e6),
+                (threadBean == null) ? "n/a"
+                    : String.format("%d", bytes / Math.max(1L, ops))));
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread.
+     *
+     * @return The bytes allocated, or zero if not measurable.
+     */
+    private static long allocatedBytes() {
+        return (threadBean == null) ? 0L
+            : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
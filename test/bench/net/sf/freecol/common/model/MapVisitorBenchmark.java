@@ -0,0 +1,132 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import net.sf.freecol.common.i18n.Messages;
+
+
+/**
+ * Benchmarks of the tile neighbourhood visitors of the map.
+ *
+ * Maps are generated as in {@link PathfindingBenchmark}, with the
+ * bench.sizes and bench.seed properties.  Each operation visits the
+ * neighbourhood of the next tile of the map, so every benchmark
+ * cycles through all the tiles, edges included.  The circle
+ * iterator the visitors replaced is run alongside as a baseline.
+ * See {@link BenchmarkRunner} for the other options.
+ *
+ * Run with `ant benchmark', passing options as -Dbench.filter=... etc.
+ */
+public final class MapVisitorBenchmark {
+
+    /** A visitor that counts the tiles it is passed. */
+    private static final class Counter implements Consumer<Tile> {
+
+        public int count = 0;
+
+        @Override
+        public void accept(Tile tile) {
+            count++;
+        }
+    }
+
+
+    /**
+     * Run the benchmarks on a map.
+     *
+     * @param runner The <code>BenchmarkRunner</code> to run with.
+     * @param name The name of the map.
+     * @param map The <code>Map</code> to benchmark.
+     */
+    private static void runBenchmarks(BenchmarkRunner runner, String name,
+                                      final Map map) {
+        final List<Tile> all = new ArrayList<>();
+        for (Tile t : map.getAllTiles()) all.add(t);
+        final Tile[] tiles = all.toArray(new Tile[0]);
+        final int[] next = new int[1];
+        final Counter counter = new Counter();
+
+        for (int r = 1; r <= Map.MAX_RING_RADIUS + 1; r++) {
+            final int radius = r;
+            runner.run("circleTiles.r" + r, name, () -> {
+                    Tile center = tiles[next[0]++ % tiles.length];
+                    int n = 0;
+                    for (Tile t : map.getCircleTiles(center, true, radius)) {
+                        if (map.getDistance(center, t) == radius) n++;
+                    }
+                    return n;
+                });
+            runner.run("getSurroundingTiles.r" + r, name, () -> {
+                    Tile center = tiles[next[0]++ % tiles.length];
+                    return center.getSurroundingTiles(radius, radius).size();
+                });
+            runner.run("forEachTile.r" + r, name, () -> {
+                    Tile center = tiles[next[0]++ % tiles.length];
+                    map.forEachTile(center, radius, radius, counter);
+                    return counter.count;
+                });
+        }
+        runner.run("anyTile.none", name, () -> {
+                Tile center = tiles[next[0]++ % tiles.length];
+                return (map.anyTile(center, 1, 1, t -> false)) ? 1 : 0;
+            });
+        runner.run("isAdjacent", name, () -> {
+                int i = next[0]++ % tiles.length;
+                return (tiles[i].isAdjacent(tiles[(i + 1) % tiles.length]))
+                    ? 1 : 0;
+            });
+        runner.run("isShore", name, () -> {
+                Tile center = tiles[next[0]++ % tiles.length];
+                return (center.isShore()) ? 1 : 0;
+            });
+        runner.run("isLandLocked", name, () -> {
+                Tile center = tiles[next[0]++ % tiles.length];
+                return (center.isLandLocked()) ? 1 : 0;
+            });
+        runner.run("hasUnexploredAdjacent", name, () -> {
+                Tile center = tiles[next[0]++ % tiles.length];
+                return (center.hasUnexploredAdjacent()) ? 1 : 0;
+            });
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Messages.loadMessageBundle(Locale.US);
+        final long seed = Long.getLong("bench.seed", 1L);
+
+        BenchmarkRunner runner = new BenchmarkRunner(System.out);
+        for (String size : System.getProperty("bench.sizes",
+                "40x100,80x160,160x200").split(",")) {
+            if (size.isEmpty()) continue;
+            String[] wh = size.split("x");
+            int width = Integer.parseInt(wh[0]);
+            int height = Integer.parseInt(wh[1]);
+            Game game = PathfindingBenchmark.generateGame(width, height,
+                                                          seed);
+            runBenchmarks(runner, "gen-" + size, game.getMap());
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,317 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+import net.sf.freecol.common.i18n.Messages;
+import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.model.pathfinding.GoalDeciders;
+import net.sf.freecol.common.option.FileOption;
+import net.sf.freecol.common.option.MapGeneratorOptions;
+import net.sf.freecol.common.option.OptionGroup;
+import net.sf.freecol.common.util.LogBuilder;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.generator.SimpleMapGenerator;
+import net.sf.freecol.server.model.ServerGame;
+import net.sf.freecol.server.model.ServerPlayer;
+import net.sf.freecol.server.model.ServerUnit;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+/**
+ * Benchmarks of the path finding on generated and saved maps.
+ *
+ * Maps are generated with the simple map generator at each of the
+ * sizes in the bench.sizes property (default 40x100,80x160,160x200),
+ * using the seed in bench.seed (default 1).  The savegames named on
+ * the command line or in bench.savegames are also loaded, or if none
+ * are named, any in test/data.  On each map a galleon and a number of colonists are
+ * placed at random, but reproducibly, and each benchmark cycles
+ * through a fixed set of queries for them.
+ *
+ * Path and sea leg caching are off unless bench.caching is true, so
+ * that the searches themselves are measured.  The units belong to an
+ * AI player, as hierarchical search is only used for AI units, and
+ * the findPath benchmarks are run both without and with it, the
+ * latter with a ".hierarchical" suffix.  See {@link BenchmarkRunner}
+ * for the other options.
+ *
+ * Run with `ant benchmark', passing options as -Dbench.filter=... etc.
+ */
+public final class PathfindingBenchmark {
+
+    /** The number of queries of each kind per fixture. */
+    private static final int QUERIES = 32;
+
+    /** The number of tries to find a reachable end for a query. */
+    private static final int TRIES = 20;
+
+    /** The maximum number of turns for the goal searches. */
+    private static final int MAX_TURNS = 10;
+
+    /** The radius for the circle searches. */
+    private static final int CIRCLE_RADIUS = 10;
+
+
+    /** A map with units and queries to benchmark on. */
+    private static final class Fixture {
+
+        public final String name;
+        public final Game game;
+        public final Map map;
+        public final Unit galleon;
+        public final List<Player> natives;
+        public final List<Unit> colonists = new ArrayList<>();
+        public final List<Tile> landEnds = new ArrayList<>();
+        public final List<Tile> carrierEnds = new ArrayList<>();
+        public final List<Tile> seaEnds = new ArrayList<>();
+
+
+        public Fixture(String name, Game game, Random random) {
+            this.name = name;
+            this.game = game;
+            this.map = game.getMap();
+            this.natives = game.getLiveNativePlayers(null);
+
+            final Player owner = game.getLiveEuropeanPlayers(null).get(0);
+            owner.setAI(true);
+            if (owner instanceof ServerPlayer) {
+                ((ServerPlayer)owner).exploreMap(true);
+            }
+            final Specification spec = game.getSpecification();
+            final UnitType colonistType
+                = spec.getUnitType("model.unit.freeColonist");
+            final UnitType galleonType
+                = spec.getUnitType("model.unit.galleon");
+            final List<Tile> land = new ArrayList<>();
+            final List<Tile> sea = new ArrayList<>();
+            for (Tile t : map.getAllTiles()) {
+                if (t.getSettlement() != null || t.getUnitCount() > 0) continue;
+                if (t.isLand()) {
+                    land.add(t);
+                } else if (t.isHighSeasConnected()) {
+                    sea.add(t);
+                }
+            }
+            if (land.isEmpty() || sea.isEmpty()) {
+                throw new IllegalStateException("No room for units: " + name);
+            }
+
+            this.galleon = new ServerUnit(game, pick(sea, random),
+                                          owner, galleonType);
+            for (int i = 0; i < QUERIES; i++) {
+                Unit u = new ServerUnit(game, pick(land, random),
+                                        owner, colonistType);
+                colonists.add(u);
+                landEnds.add(pickEnd(land, random,
+                        (t) -> map.findPath(u, u.getTile(), t, null,
+                                            null, null)));
+                carrierEnds.add(pickEnd(land, random,
+                        (t) -> map.findPath(u, u.getTile(), t, galleon,
+                                            null, null)));
+                seaEnds.add(pickEnd(sea, random,
+                        (t) -> map.findPath(galleon, galleon.getTile(), t,
+                                            null, null, null)));
+            }
+        }
+
+        private static Tile pick(List<Tile> tiles, Random random) {
+            return tiles.get(random.nextInt(tiles.size()));
+        }
+
+        /**
+         * Pick an end tile, preferring one a path can be found to.
+         */
+        private static Tile pickEnd(List<Tile> tiles, Random random,
+                                   Function<Tile, PathNode> search) {
+            Tile t = null;
+            for (int i = 0; i < TRIES; i++) {
+                t = pick(tiles, random);
+                if (search.apply(t) != null) break;
+            }
+            return t;
+        }
+    }
+
+
+    /**
+     * Generate a map with the simple map generator.
+     *
+     * @param width The map width.
+     * @param height The map height.
+     * @param seed The seed for the generator.
+     * @return A new <code>Game</code> with the map.
+     */
+    static Game generateGame(int width, int height, long seed) {
+        final Specification spec = FreeColTestCase.spec();
+        final OptionGroup options = spec.getMapGeneratorOptions();
+        ((FileOption)options.getOption(MapGeneratorOptions.IMPORT_FILE))
+            .setValue(null);
+        options.setInteger(MapGeneratorOptions.MAP_WIDTH, width);
+        options.setInteger(MapGeneratorOptions.MAP_HEIGHT, height);
+
+        Game game = new ServerGame(spec);
+        game.setNationOptions(new NationOptions(spec));
+        for (Nation n : spec.getNations()) {
+            if (n.isUnknownEnemy()) continue;
+            Player p = new ServerPlayer(game, false, n, null, null);
+            p.setAI(!n.getType().isEuropean() || n.getType().isREF());
+            game.addPlayer(p);
+        }
+        new SimpleMapGenerator(game, new Random(seed))
+            .createMap(new LogBuilder(-1));
+        return game;
+    }
+
+    /**
+     * Load a game from a savegame.
+     *
+     * @param file The savegame <code>File</code>.
+     * @return The <code>Game</code> loaded.
+     */
+    private static Game loadGame(File file) throws Exception {
+        FreeColServer server = new FreeColServer(
+            new FreeColSavegameFile(file), null, -1, "PathfindingBenchmark");
+        return server.getGame();
+    }
+
+    /**
+     * Gets the cost of a path, as the result of an operation.
+     *
+     * @param path The <code>PathNode</code> found.
+     * @return The cost of the path, or -1 if none.
+     */
+    private static int cost(PathNode path) {
+        return (path == null) ? -1 : path.getLastNode().getCost();
+    }
+
+    /**
+     * Run the benchmarks on a fixture.
+     *
+     * @param runner The <code>BenchmarkRunner</code> to run with.
+     * @param f The <code>Fixture</code> to benchmark.
+     */
+    private static void runBenchmarks(BenchmarkRunner runner,
+                                      final Fixture f) {
+        final Map map = f.map;
+        final Unit galleon = f.galleon;
+        final int[] next = new int[1];
+        final IntUnaryOperator query = (n) -> next[0]++ % n;
+
+        for (boolean hierarchical : new boolean[] { false, true }) {
+            Map.setHierarchicalSearch(hierarchical);
+            final String suffix = (hierarchical) ? ".hierarchical" : "";
+            runner.run("findPath.land" + suffix, f.name, () -> {
+                    int i = query.applyAsInt(QUERIES);
+                    Unit u = f.colonists.get(i);
+                    return cost(map.findPath(u, u.getTile(),
+                            f.landEnds.get(i), null, null, null));
+                });
+            runner.run("findPath.carrier" + suffix, f.name, () -> {
+                    int i = query.applyAsInt(QUERIES);
+                    Unit u = f.colonists.get(i);
+                    return cost(map.findPath(u, u.getTile(),
+                            f.carrierEnds.get(i), galleon, null, null));
+                });
+            runner.run("findPath.naval" + suffix, f.name, () -> {
+                    int i = query.applyAsInt(QUERIES);
+                    return cost(map.findPath(galleon, galleon.getTile(),
+                            f.seaEnds.get(i), null, null, null));
+                });
+        }
+        Map.setHierarchicalSearch(false);
+        if (!f.natives.isEmpty()) {
+            runner.run("search.enemySettlement", f.name, () -> {
+                    Unit u = f.colonists.get(query.applyAsInt(QUERIES));
+                    return cost(u.search(u.getTile(),
+                            GoalDeciders.getEnemySettlementGoalDecider(f.natives),
+                            null, MAX_TURNS, null));
+                });
+            runner.run("search.enemySettlement.carrier", f.name, () -> {
+                    Unit u = f.colonists.get(query.applyAsInt(QUERIES));
+                    return cost(u.search(u.getTile(),
+                            GoalDeciders.getEnemySettlementGoalDecider(f.natives),
+                            null, MAX_TURNS, galleon));
+                });
+        }
+        runner.run("search.highSeas", f.name,
+            () -> cost(galleon.search(galleon.getTile(),
+                    GoalDeciders.getHighSeasGoalDecider(),
+                    null, MAX_TURNS, null)));
+        runner.run("searchCircle", f.name, () -> {
+                Unit u = f.colonists.get(query.applyAsInt(QUERIES));
+                Tile t = map.searchCircle(u.getTile(),
+                    GoalDeciders.getSimpleHighSeasGoalDecider(),
+                    CIRCLE_RADIUS);
+                return (t == null) ? -1 : t.getX() + t.getY();
+            });
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Messages.loadMessageBundle(Locale.US);
+        final boolean caching = Boolean.getBoolean("bench.caching");
+        Map.setPathCaching(caching);
+        Map.setSeaLegCaching(caching);
+        Map.setHierarchicalSearch(false);
+        final long seed = Long.getLong("bench.seed", 1L);
+
+        List<Fixture> fixtures = new ArrayList<>();
+        for (String size : System.getProperty("bench.sizes",
+                "40x100,80x160,160x200").split(",")) {
+            if (size.isEmpty()) continue;
+            String[] wh = size.split("x");
+            int width = Integer.parseInt(wh[0]);
+            int height = Integer.parseInt(wh[1]);
+            fixtures.add(new Fixture("gen-" + size,
+                    generateGame(width, height, seed), new Random(seed)));
+        }
+        List<File> files = new ArrayList<>();
+        for (String a : args) files.add(new File(a));
+        for (String a : System.getProperty("bench.savegames", "")
+                 .split(File.pathSeparator)) {
+            if (!a.isEmpty()) files.add(new File(a));
+        }
+        if (files.isEmpty()) {
+            File[] data = new File("test/data")
+                .listFiles((d, n) -> n.endsWith(".fsg"));
+            if (data != null) {
+                Arrays.sort(data);
+                files.addAll(Arrays.asList(data));
+            }
+        }
+        for (File file : files) {
+            fixtures.add(new Fixture(file.getName(), loadGame(file),
+                                     new Random(seed)));
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(System.out);
+        for (Fixture f : fixtures) runBenchmarks(runner, f);
+        System.exit(0);
+    }
+}
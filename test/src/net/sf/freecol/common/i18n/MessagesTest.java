@@ -362,6 +362,60 @@ public class MessagesTest extends FreeColTestCase {
             .equals(Messages.message("key3")));
     }
 
+    public void testMessageCache() {
+        String mapping = "cache.key=The {{plural:%number%|one=colonist|"
+            + "other=colonists}} of %colony%.\n";
+        try {
+            Messages.loadMessages(new ByteArrayInputStream(mapping.getBytes()));
+        } catch (IOException ioe) { fail(); }
+        assertEquals(0, Messages.getMessageCacheSize());
+
+        StringTemplate t = StringTemplate.template("cache.key")
+            .addAmount("%number%", 1)
+            .addName("%colony%", "Jamestown");
+        assertEquals("The colonist of Jamestown.", Messages.message(t));
+        assertEquals(1, Messages.getMessageCacheSize());
+        assertEquals("The colonist of Jamestown.", Messages.message(t));
+        assertEquals(1, Messages.getMessageCacheSize());
+
+        // Different values are different entries
+        StringTemplate t2 = StringTemplate.template("cache.key")
+            .addAmount("%number%", 2)
+            .addName("%colony%", "Jamestown");
+        assertEquals("The colonists of Jamestown.", Messages.message(t2));
+        assertEquals(2, Messages.getMessageCacheSize());
+
+        // Values containing key syntax must not collide
+        StringTemplate t3 = StringTemplate.template("cache.key")
+            .addAmount("%number%", 1)
+            .addName("%colony%", "1:%colony%4:Jamestown");
+        assertEquals("The colonist of 1:%colony%4:Jamestown.",
+                     Messages.message(t3));
+
+        // Loading messages drops stale results
+        mapping = "cache.key=The {{plural:%number%|one=settler|"
+            + "other=settlers}} of %colony%.\n";
+        try {
+            Messages.loadMessages(new ByteArrayInputStream(mapping.getBytes()));
+        } catch (IOException ioe) { fail(); }
+        assertEquals(0, Messages.getMessageCacheSize());
+        assertEquals("The settler of Jamestown.", Messages.message(t));
+
+        // So does a locale change
+        Messages.loadMessageBundle(Locale.GERMANY);
+        assertEquals(0, Messages.getMessageCacheSize());
+        assertEquals("Handelsberater",
+                     Messages.message(StringTemplate.template("reportTradeAction.name")));
+
+        // The cache is bounded
+        for (int i = 0; i <= Messages.MESSAGE_CACHE_SIZE; i++) {
+            Messages.message(StringTemplate.template("model.building.locationLabel")
+                .addName("%location%", "colony" + i));
+        }
+        assertEquals(Messages.MESSAGE_CACHE_SIZE,
+                     Messages.getMessageCacheSize());
+    }
+
     public void testREFMessages() {
         StringTemplate template = StringTemplate
             .template(Monarch.MonarchAction.ADD_TO_REF.getTextKey())
@@ -971,4 +971,24 @@ public class BuildingTest extends FreeColTestCase {
         // did that differed from magazine
         assertEquals(18, armory.getTotalProductionOf(musketsType));
     }
+
+    public void testStructuralCopy() {
+        Game game = getGame();
+        game.setMap(getTestMap(true));
+        Colony colony = getStandardColony(2);
+        Building weaver = colony.getBuilding(weaverHouseType);
+        Unit unit = colony.getUnitList().get(0);
+        unit.setLocation(weaver);
+        assertTrue(weaver.contains(unit));
+
+        Building copy = copyChecked(weaver, Building.class);
+        assertEquals(weaver.getType(), copy.getType());
+        assertTrue(copy.getColony() == colony);
+        assertEquals(1, copy.getUnitCount());
+        Unit copyUnit = copy.getUnitList().get(0);
+        assertFalse(unit == copyUnit);
+        assertTrue(copyUnit.getLocation() == copy);
+        assertTrue(unit.getLocation() == weaver);
+        assertEquals(weaver.getProductionType(), copy.getProductionType());
+    }
 }
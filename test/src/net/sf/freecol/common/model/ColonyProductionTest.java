@@ -20,6 +20,7 @@
 package net.sf.freecol.common.model;
 
 import java.util.List;
+import java.util.Random;
 
 import net.sf.freecol.server.model.ServerBuilding;
 import net.sf.freecol.server.model.ServerColony;
@@ -521,4 +522,57 @@ public class ColonyProductionTest extends FreeColTestCase {
             0,
             colonyTile.getPotentialProduction(cottonType, colonistType));
     }
+
+    public void testIncrementalProductionCache() {
+        Game game = getGame();
+        game.setMap(getTestMap());
+
+        Colony colony = getStandardColony(6);
+        List<WorkLocation> wls = colony.getAvailableWorkLocations();
+        List<Unit> units = colony.getUnitList();
+        List<GoodsType> goodsTypes = spec().getStorableGoodsTypeList();
+        Random random = new Random(42);
+        checkProductionCache(colony);
+        for (int i = 0; i < 200; i++) {
+            if (random.nextBoolean()) {
+                Unit unit = units.get(random.nextInt(units.size()));
+                WorkLocation wl = wls.get(random.nextInt(wls.size()));
+                if (wl.canAdd(unit)) unit.setLocation(wl);
+            } else {
+                GoodsType type
+                    = goodsTypes.get(random.nextInt(goodsTypes.size()));
+                int amount = random.nextInt(100);
+                if (random.nextBoolean()) {
+                    colony.addGoods(type, amount);
+                } else {
+                    colony.removeGoods(type, Math.min(amount,
+                            colony.getGoodsCount(type)));
+                }
+            }
+            checkProductionCache(colony);
+        }
+    }
+
+    /**
+     * Check that the colony production cache agrees with a full
+     * recalculation.
+     */
+    private void checkProductionCache(Colony colony) {
+        ProductionCache full = new ProductionCache(colony);
+        for (WorkLocation wl : colony.getAllWorkLocations()) {
+            assertEquals("Production at " + wl,
+                String.valueOf(full.getProductionInfo(wl)),
+                String.valueOf(colony.getProductionInfo(wl)));
+        }
+        for (Consumer consumer : colony.getConsumers()) {
+            assertEquals("Consumption by " + consumer,
+                String.valueOf(full.getProductionInfo(consumer)),
+                String.valueOf(colony.getProductionInfo(consumer)));
+        }
+        for (GoodsType type : spec().getGoodsTypeList()) {
+            assertEquals("Net production of " + type,
+                full.getNetProductionOf(type),
+                colony.getNetProductionOf(type));
+        }
+    }
 }
@@ -538,4 +538,30 @@ public class ColonyTest extends FreeColTestCase {
             }
         }
     }
+
+    public void testStructuralCopy() {
+        Game game = getGame();
+        game.setMap(getTestMap(true));
+        Colony colony = getStandardColony(4);
+        colony.addGoods(spec().getGoodsType("model.goods.furs"), 42);
+        colony.getExportData(spec().getGoodsType("model.goods.furs"))
+            .setExportLevel(17);
+        colony.setCurrentlyBuilding(spec().getBuildingType("model.building.docks"));
+
+        Colony copy = copyChecked(colony, Colony.class);
+        assertEquals(42, copy.getGoodsCount(spec().getGoodsType("model.goods.furs")));
+        assertEquals(colony.getCurrentlyBuilding(), copy.getCurrentlyBuilding());
+        int count = 0;
+        for (WorkLocation wl : copy.getAllWorkLocations()) {
+            assertTrue(wl.getColony() == copy);
+            for (Unit u : wl.getUnitList()) {
+                assertTrue(u.getLocation() == wl);
+                count++;
+            }
+        }
+        assertEquals(colony.getUnitCount(), count);
+        // The original is untouched.
+        assertEquals(colony, colony.getTile().getColony());
+        assertTrue(colony.getTile().getColony() == colony);
+    }
 }
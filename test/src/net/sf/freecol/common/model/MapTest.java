@@ -20,6 +20,7 @@
 package net.sf.freecol.common.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
@@ -32,6 +33,7 @@ import net.sf.freecol.common.model.Stance;
 import net.sf.freecol.common.model.pathfinding.CostDecider;
 import net.sf.freecol.common.model.pathfinding.CostDeciders;
 import net.sf.freecol.common.model.pathfinding.GoalDecider;
+import net.sf.freecol.common.model.pathfinding.GoalDeciders;
 import net.sf.freecol.server.model.ServerUnit;
 import net.sf.freecol.util.test.FreeColTestCase;
 import net.sf.freecol.util.test.FreeColTestUtils;
@@ -45,6 +47,8 @@ public class MapTest extends FreeColTestCase {
         = spec().getTileType("model.tile.lake");
     private final TileType oceanType
         = spec().getTileType("model.tile.ocean");
+    private final TileType hillsType
+        = spec().getTileType("model.tile.hills");
     private final TileType plainsType
         = spec().getTileType("model.tile.plains");
 
@@ -162,6 +166,46 @@ public class MapTest extends FreeColTestCase {
         assertEquals(150 - 1, surroundingTiles.size());
     }
 
+    public void testRingTiles() {
+        Game game = getStandardGame();
+
+        MapBuilder builder = new MapBuilder(game);
+        Map map = builder.setDimensions(12, 24).build();
+        game.setMap(map);
+
+        for (Tile center : map.getAllTiles()) {
+            // Adjacent tiles match the circle iterator.
+            List<Tile> circle = new ArrayList<>();
+            for (Tile t : center.getSurroundingTiles(1)) circle.add(t);
+            List<Tile> adjacent = new ArrayList<>();
+            map.forEachTile(center, 1, 1, adjacent::add);
+            assertEquals(circle, adjacent);
+
+            // Ranges match the circle iterator less the inner tiles,
+            // in the same order, within and beyond the ring tables.
+            for (int max = 0; max <= Map.MAX_RING_RADIUS + 2; max++) {
+                for (int min = 0; min <= max; min++) {
+                    List<Tile> expected = new ArrayList<>();
+                    if (min == 0) expected.add(center);
+                    for (Tile t : map.getCircleTiles(center, true, max)) {
+                        if (max > 0 && map.getDistance(center, t) >= min) {
+                            expected.add(t);
+                        }
+                    }
+                    assertEquals(expected,
+                                 center.getSurroundingTiles(min, max));
+                }
+            }
+        }
+
+        // The predicate form stops at the first match.
+        Tile center = map.getTile(6, 12);
+        int[] tested = { 0 };
+        assertTrue(map.anyTile(center, 1, 2, t -> ++tested[0] == 3));
+        assertEquals(3, tested[0]);
+        assertFalse(map.anyTile(center, 2, 1, t -> true));
+    }
+
     public void testGetReverseDirection() {
         assertEquals(Direction.S, Direction.N.getReverseDirection());
         assertEquals(Direction.N, Direction.S.getReverseDirection());
@@ -609,4 +653,627 @@ public class MapTest extends FreeColTestCase {
         assertFalse(otherColony == colony);
         assertEquals(otherColony.getId(), colony.getId());
     }
+
+    public void testIncrementalContiguity() {
+        Game game = getStandardGame();
+        Map map = getCoastTestMap(plainsType);
+        game.setMap(map);
+        Random random = new Random(1);
+        TileType[] types = { plainsType, oceanType, lakeType, highSeasType };
+
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 5; j++) {
+                Tile tile = map.getTile(random.nextInt(map.getWidth()),
+                                        random.nextInt(map.getHeight()));
+                TileType type = types[random.nextInt(types.length)];
+                boolean land = tile.isLand();
+                tile.changeType(type);
+                if (land != tile.isLand()) map.resetContiguity(tile);
+                map.resetHighSeasCount(tile);
+            }
+
+            java.util.Map<Tile, Integer> contig = new java.util.HashMap<>();
+            java.util.Map<Tile, Integer> count = new java.util.HashMap<>();
+            for (Tile t : map.getAllTiles()) {
+                contig.put(t, t.getContiguity());
+                count.put(t, t.getHighSeasCount());
+            }
+            map.resetContiguity();
+            map.resetHighSeasCount();
+
+            java.util.Map<Integer, Integer> same = new java.util.HashMap<>();
+            java.util.Map<Integer, Integer> back = new java.util.HashMap<>();
+            for (Tile t : map.getAllTiles()) {
+                int inc = contig.get(t), full = t.getContiguity();
+                assertTrue("Contiguity set at " + t, inc >= 0);
+                assertEquals("Contiguity partition at " + t,
+                    (Integer)full, same.computeIfAbsent(inc, k -> full));
+                assertEquals("Contiguity partition at " + t,
+                    (Integer)inc, back.computeIfAbsent(full, k -> inc));
+                assertEquals("High seas count at " + t,
+                    t.getHighSeasCount(), (int)count.get(t));
+            }
+        }
+    }
+
+    private static String pathString(PathNode path) {
+        return (path == null) ? "no path" : path.fullPathToString();
+    }
+
+    public void testArraySearch() {
+        Game game = getStandardGame();
+        MapBuilder builder = new MapBuilder(game);
+        builder.setBaseTileType(oceanType).setExploredByAll(true);
+        Random random = new Random(2);
+        for (int x = 1; x < 15; x++) {
+            for (int y = 1; y < 14; y++) {
+                int r = random.nextInt(10);
+                if (r < 5) builder.setTile(x, y, plainsType);
+                else if (r < 7) builder.setTile(x, y, hillsType);
+            }
+        }
+        Map map = builder.build();
+        game.setMap(map);
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+
+        List<Tile> land = new ArrayList<>(), water = new ArrayList<>();
+        for (Tile t : map.getAllTiles()) {
+            ((t.isLand()) ? land : water).add(t);
+        }
+        Tile colonyTile = null;
+        for (Tile t : land) {
+            if (t.isShore() && t.getX() > 2) {
+                colonyTile = t;
+                break;
+            }
+        }
+        FreeColTestUtils.getColonyBuilder().player(dutch)
+            .colonyTile(colonyTile).build();
+        Unit galleon = new ServerUnit(game, water.get(0), dutch, galleonType);
+        Unit colonist = new ServerUnit(game, land.get(0), dutch, colonistType);
+        Unit pioneer = new ServerUnit(game, colonyTile, dutch, pioneerType);
+
+        Tile[] starts = { land.get(0), colonyTile, land.get(land.size() / 2),
+                          water.get(water.size() / 3) };
+        Map.setHierarchicalSearch(false);
+        Map.setPathCaching(false);
+        try {
+            for (Tile start : starts) {
+                for (Tile end : map.getAllTiles()) {
+                    if ((end.getX() + end.getY()) % 3 != 0) continue;
+                    for (Unit carrier : new Unit[] { null, galleon }) {
+                        Unit unit = (start.isLand()) ? colonist : galleon;
+                        if (unit == carrier) continue;
+                        Map.setArraySearch(false);
+                        String expected = pathString(map.findPath(unit,
+                                start, end, carrier, null, null));
+                        Map.setArraySearch(true);
+                        assertEquals("Path from " + start + " to " + end
+                            + " carrier " + carrier, expected,
+                            pathString(map.findPath(unit, start, end,
+                                    carrier, null, null)));
+                    }
+                }
+            }
+
+            // Goal deciders with sub goals and turn limits.
+            for (Unit unit : new Unit[] { colonist, pioneer, galleon }) {
+                for (int turns : new int[] { 1, 3, FreeColObject.INFINITY }) {
+                    Map.setArraySearch(false);
+                    String expected = pathString(unit.search(unit.getTile(),
+                            GoalDeciders.getOurClosestSettlementGoalDecider(),
+                            null, turns, null));
+                    String expectedCarrier = pathString(unit.search(
+                            unit.getTile(), GoalDeciders.getCornerGoalDecider(),
+                            null, turns, (unit.isNaval()) ? null : galleon));
+                    Map.setArraySearch(true);
+                    assertEquals(expected, pathString(unit.search(
+                            unit.getTile(),
+                            GoalDeciders.getOurClosestSettlementGoalDecider(),
+                            null, turns, null)));
+                    assertEquals(expectedCarrier, pathString(unit.search(
+                            unit.getTile(), GoalDeciders.getCornerGoalDecider(),
+                            null, turns, (unit.isNaval()) ? null : galleon)));
+                }
+            }
+        } finally {
+            Map.setArraySearch(true);
+            Map.setHierarchicalSearch(true);
+            Map.setPathCaching(true);
+        }
+    }
+
+    public void testHierarchicalSearch() {
+        Game game = getStandardGame();
+        MapBuilder builder = new MapBuilder(game);
+        builder.setDimensions(40, 100).setBaseTileType(plainsType)
+            .setExploredByAll(true);
+        Random random = new Random(3);
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 100; y++) {
+                if (random.nextInt(4) == 0) builder.setTile(x, y, hillsType);
+            }
+        }
+        // A lake across the map with a gap at the east end.
+        for (int x = 0; x < 36; x++) {
+            for (int y = 48; y < 52; y++) builder.setTile(x, y, oceanType);
+        }
+        Map map = builder.build();
+        game.setMap(map);
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        Player french = game.getPlayerByNationId("model.nation.french");
+        dutch.setAI(true);
+        french.setAI(false);
+        Tile start = map.getTile(3, 5), end = map.getTile(5, 94);
+        Unit colonist = new ServerUnit(game, start, dutch, colonistType);
+        Unit human = new ServerUnit(game, start, french, colonistType);
+
+        Map.setPathCaching(false);
+        PathNode path, humanPath, full;
+        try {
+            path = map.findPath(colonist, start, end, null, null, null);
+            humanPath = map.findPath(human, start, end, null, null, null);
+            Map.setHierarchicalSearch(false);
+            full = map.findPath(colonist, start, end, null, null, null);
+        } finally {
+            Map.setHierarchicalSearch(true);
+            Map.setPathCaching(true);
+        }
+        assertNotNull("Corridor path", path);
+        assertNotNull("Full path", full);
+        assertEquals("Human players search the whole map",
+                     pathString(full), pathString(humanPath));
+        assertEquals("Corridor path ends at the end", end,
+                     path.getLastNode().getTile());
+        assertTrue("Full path is no worse",
+            path.getLastNode().getCost() >= full.getLastNode().getCost());
+        boolean gap = false;
+        for (PathNode p = path; p != null; p = p.next) {
+            Tile t = p.getTile();
+            if (t.getY() >= 48 && t.getY() < 52 && t.getX() >= 36) gap = true;
+        }
+        assertTrue("Path uses the gap", gap);
+
+        // Close the gap, the incremental update must match a rebuild.
+        MapClusters clusters = map.getClusters();
+        MapClusters.MovementClass land = MapClusters.MovementClass.LAND;
+        assertNotNull(clusters.getCorridor(start, end, land));
+        for (int x = 36; x < 40; x++) {
+            for (int y = 48; y < 52; y++) {
+                map.getTile(x, y).changeType(oceanType);
+            }
+        }
+        assertNull(clusters.getCorridor(start, end, land));
+        assertNull(new MapClusters(map).getCorridor(start, end, land));
+        assertNull(map.findPath(colonist, start, end, null, null, null));
+
+        // Reopen part of it.
+        map.getTile(38, 49).changeType(plainsType);
+        map.getTile(38, 50).changeType(plainsType);
+        map.getTile(38, 51).changeType(plainsType);
+        map.getTile(38, 48).changeType(plainsType);
+        assertTrue(Arrays.equals(new MapClusters(map).getCorridor(start, end,
+                                                                  land),
+                                 clusters.getCorridor(start, end, land)));
+        assertNotNull(map.findPath(colonist, start, end, null, null, null));
+    }
+
+    public void testPathCache() {
+        Game game = getStandardGame();
+        Map map = getTestMap(plainsType, true);
+        game.setMap(map);
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        Player french = game.getPlayerByNationId("model.nation.french");
+        Tile start = map.getTile(3, 3), end = map.getTile(12, 12);
+        Unit colonist = new ServerUnit(game, start, dutch, colonistType);
+        Unit other = new ServerUnit(game, start, dutch, colonistType);
+        Unit frenchman = new ServerUnit(game, map.getTile(10, 3), french,
+                                        colonistType);
+
+        // Repairs may find different paths of the same cost, which the
+        // cache verification would report.
+        boolean repairing = Map.setPathRepairing(false);
+        boolean verify = Map.setVerifyPathCache(true);
+        try {
+            PathNode path = map.findPath(colonist, start, end, null, null,
+                                         null);
+            assertNotNull(path);
+            assertEquals(0L, getPathCacheStatistic(map, "pathCacheHits"));
+
+            // Units with the same profile share the path, and the
+            // copies are independent.
+            PathNode shared = map.findPath(other, start, end, null, null,
+                                           null);
+            assertEquals(1L, getPathCacheStatistic(map, "pathCacheHits"));
+            assertEquals(path.fullPathToString(), shared.fullPathToString());
+            assertNotSame(path, shared);
+            shared.addTurns(1);
+            assertEquals(path.fullPathToString(), map.findPath(colonist,
+                    start, end, null, null, null).fullPathToString());
+            assertEquals(2L, getPathCacheStatistic(map, "pathCacheHits"));
+
+            // Our own land units do not block us, but foreign ones might.
+            other.setLocation(map.getTile(4, 4));
+            map.findPath(colonist, start, end, null, null, null);
+            assertEquals(3L, getPathCacheStatistic(map, "pathCacheHits"));
+            frenchman.setLocation(map.getTile(10, 5));
+            map.findPath(colonist, start, end, null, null, null);
+            assertEquals(3L, getPathCacheStatistic(map, "pathCacheHits"));
+            assertEquals(1L, getPathCacheStatistic(map, "pathCacheStale"));
+
+            // Terrain changes invalidate the path.
+            for (int y = 0; y < map.getHeight(); y++) {
+                map.getTile(8, y).changeType(oceanType);
+            }
+            assertNull(map.findPath(colonist, start, end, null, null, null));
+            assertEquals(2L, getPathCacheStatistic(map, "pathCacheStale"));
+
+            // So does a new turn.
+            map.findPath(colonist, start, end, null, null, null);
+            assertEquals(4L, getPathCacheStatistic(map, "pathCacheHits"));
+            game.setTurn(new Turn(game.getTurn().getNumber() + 1));
+            map.findPath(colonist, start, end, null, null, null);
+            assertEquals(4L, getPathCacheStatistic(map, "pathCacheHits"));
+            assertEquals(0L, getPathCacheStatistic(map,
+                                                   "pathCacheMismatches"));
+        } finally {
+            Map.setVerifyPathCache(verify);
+            Map.setPathRepairing(repairing);
+        }
+    }
+
+    public void testPathCacheInvalidation() {
+        Game game = getStandardGame();
+        MapBuilder builder = new MapBuilder(game);
+        builder.setDimensions(20, 40).setBaseTileType(plainsType)
+            .setExploredByAll(true);
+        // A lake across the map with a gap in the middle.
+        for (int x = 0; x < 20; x++) {
+            if (x == 10) continue;
+            for (int y = 18; y < 22; y++) builder.setTile(x, y, oceanType);
+        }
+        Map map = builder.build();
+        game.setMap(map);
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        Player french = game.getPlayerByNationId("model.nation.french");
+        Tile start = map.getTile(3, 5), end = map.getTile(3, 35);
+        Unit colonist = new ServerUnit(game, start, dutch, colonistType);
+        Unit trader = new ServerUnit(game, start, dutch, colonistType);
+        Unit frenchman = new ServerUnit(game, map.getTile(4, 5), french,
+                                        colonistType);
+        List<Tile> gap = new ArrayList<>();
+        for (int y = 18; y < 22; y++) gap.add(map.getTile(10, y));
+
+        boolean repairing = Map.setPathRepairing(false);
+        try {
+            // Units on a trade route avoid rumours, so do not share
+            // paths with other units.
+            for (Tile t : gap) {
+                t.addLostCityRumour(new LostCityRumour(game, t));
+            }
+            assertNotNull(map.findPath(colonist, start, end, null, null,
+                                       null));
+            trader.setTradeRoute(new TradeRoute(game, "route", dutch));
+            assertNull(map.findPath(trader, start, end, null, null, null));
+            for (Tile t : gap) t.removeLostCityRumour();
+
+            // Exploring tiles changes where the server lets a player
+            // move.
+            final CostDecider cd = CostDeciders.serverAvoidIllegal();
+            for (Tile t : gap) t.setExplored(french, false);
+            assertNull(map.findPath(frenchman, frenchman.getTile(), end,
+                                    null, cd, null));
+            for (Tile t : gap) t.setExplored(french, true);
+            assertNotNull(map.findPath(frenchman, frenchman.getTile(), end,
+                                       null, cd, null));
+
+            // The cargo of a carrier decides if it may enter a native
+            // settlement to trade, so paths with it are not shared
+            // once the cargo changes.
+            Unit carrier = new ServerUnit(game, map.getTile(5, 18), dutch,
+                                          galleonType);
+            final long hits = getPathCacheStatistic(map, "pathCacheHits");
+            map.findPath(colonist, start, end, carrier, null, null);
+            carrier.addGoods(spec().getGoodsType("model.goods.food"), 100);
+            map.findPath(colonist, start, end, carrier, null, null);
+            assertEquals(hits, getPathCacheStatistic(map, "pathCacheHits"));
+            map.findPath(colonist, start, end, carrier, null, null);
+            assertEquals(hits + 1, getPathCacheStatistic(map,
+                                                         "pathCacheHits"));
+        } finally {
+            Map.setPathRepairing(repairing);
+        }
+    }
+
+    public void testPathRepair() {
+        Game game = getStandardGame();
+        MapBuilder builder = new MapBuilder(game);
+        builder.setDimensions(20, 40).setBaseTileType(plainsType)
+            .setExploredByAll(true);
+        Map map = builder.build();
+        game.setMap(map);
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        Player french = game.getPlayerByNationId("model.nation.french");
+        Tile start = map.getTile(3, 3), end = map.getTile(12, 20);
+        Unit colonist = new ServerUnit(game, start, dutch, colonistType);
+        Unit scout = new ServerUnit(game, map.getTile(4, 3), dutch,
+                                    colonistType);
+
+        boolean verify = Map.setVerifyPathCache(true);
+        try {
+            // Only paths to the destination of a unit are planned.
+            assertNotNull(map.findPath(colonist, start, end, null, null,
+                                       null));
+            assertEquals(0L, getPathCacheStatistic(map, "pathRepairPlansMade"));
+
+            colonist.setDestination(end);
+            PathNode path = map.findPath(colonist, start, end, null, null,
+                                         null);
+            assertNotNull(path);
+            assertEquals(1L, getPathCacheStatistic(map, "pathRepairPlansMade"));
+            assertEquals(0L, getPathCacheStatistic(map, "pathRepairRepairs"));
+
+            // Moving along the plan repairs it.
+            colonist.setLocation(path.next.getTile());
+            path = map.findPath(colonist, colonist.getTile(), end, null,
+                                null, null);
+            assertNotNull(path);
+            assertEquals(1L, getPathCacheStatistic(map, "pathRepairRepairs"));
+            assertEquals(searchTurns(map, colonist, end),
+                         path.getTotalTurns());
+
+            // A foreign unit in the way is avoided inside the corridor.
+            Tile blocked = path.next.getTile();
+            Unit frenchman = new ServerUnit(game, blocked, french,
+                                            colonistType);
+            path = map.findPath(colonist, colonist.getTile(), end, null,
+                                null, null);
+            assertNotNull(path);
+            assertEquals(2L, getPathCacheStatistic(map, "pathRepairRepairs"));
+            for (PathNode p = path.next; p != null; p = p.next) {
+                assertNotSame(blocked, p.getTile());
+            }
+            assertEquals(searchTurns(map, colonist, end),
+                         path.getTotalTurns());
+
+            // A foreign unit leaving a tile near the plan, but outside
+            // the corridor, may open a shortcut, so falls back to a
+            // full search.
+            Tile off = map.getTile(colonist.getTile().getX() + 4,
+                                   colonist.getTile().getY());
+            frenchman.setLocation(off);
+            frenchman.setLocation(map.getTile(19, 39));
+            path = map.findPath(colonist, colonist.getTile(), end, null,
+                                null, null);
+            assertNotNull(path);
+            assertEquals(1L, getPathCacheStatistic(map,
+                                                   "pathRepairFallbacks"));
+            assertEquals(2L, getPathCacheStatistic(map, "pathRepairPlansMade"));
+
+            // So does a terrain change there.
+            off.changeType(hillsType);
+            path = map.findPath(colonist, colonist.getTile(), end, null,
+                                null, null);
+            assertNotNull(path);
+            assertEquals(2L, getPathCacheStatistic(map,
+                                                   "pathRepairFallbacks"));
+            assertEquals(3L, getPathCacheStatistic(map, "pathRepairPlansMade"));
+
+            // And a change not tied to a tile.
+            colonist.setLocation(path.next.getTile());
+            map.pathsChanged();
+            map.findPath(colonist, colonist.getTile(), end, null, null, null);
+            assertEquals(3L, getPathCacheStatistic(map,
+                                                   "pathRepairFallbacks"));
+            assertEquals(2L, getPathCacheStatistic(map, "pathRepairRepairs"));
+            assertEquals(0L, getPathCacheStatistic(map,
+                                                   "pathRepairMismatches"));
+
+            // The plans of disposed units are dropped in the next turn.
+            scout.setDestination(end);
+            map.findPath(scout, scout.getTile(), end, null, null, null);
+            assertEquals(2L, getPathCacheStatistic(map, "pathRepairPlans"));
+            colonist.dispose();
+            game.setTurn(new Turn(game.getTurn().getNumber() + 1));
+            map.findPath(scout, scout.getTile(), end, null, null, null);
+            assertEquals(1L, getPathCacheStatistic(map, "pathRepairPlans"));
+
+            // As are those of units whose destination has changed.
+            scout.setDestination(null);
+            game.setTurn(new Turn(game.getTurn().getNumber() + 1));
+            map.findPath(scout, scout.getTile(), end, null, null, null);
+            assertEquals(0L, getPathCacheStatistic(map, "pathRepairPlans"));
+        } finally {
+            Map.setVerifyPathCache(verify);
+        }
+    }
+
+    public void testSeaLegCache() {
+        Game game = getStandardGame();
+        Map map = getCoastTestMap(plainsType, true);
+        game.setMap(map);
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        Player french = game.getPlayerByNationId("model.nation.french");
+        Tile start = map.getTile(12, 1), end = map.getTile(12, 13);
+        Unit galleon = new ServerUnit(game, start, dutch, galleonType);
+        Unit privateer = new ServerUnit(game, map.getTile(18, 1), french,
+            spec().getUnitType("model.unit.privateer"));
+        Unit colonist = new ServerUnit(game, map.getTile(9, 1), dutch,
+                                       colonistType);
+
+        boolean caching = Map.setPathCaching(false);
+        try {
+            String path = seaLegPath(map, galleon, start, end, null);
+            assertEquals(path, seaLegPath(map, galleon, start, end, null));
+            assertTrue(getPathCacheStatistic(map, "seaLegHits") > 0L);
+
+            // The privateer threatens the moves next to it, and
+            // blocks its own tile.
+            for (int y = 3; y <= 11; y += 2) {
+                privateer.setLocation(map.getTile(12, y));
+                seaLegPath(map, galleon, start, end, null);
+                seaLegPath(map, colonist, colonist.getTile(),
+                           map.getTile(9, 13), galleon);
+            }
+            privateer.setLocation(map.getTile(18, 1));
+            assertEquals(path, seaLegPath(map, galleon, start, end, null));
+
+            // So do other naval units, when at war.
+            Unit frigate = new ServerUnit(game, map.getTile(13, 7), french,
+                spec().getUnitType("model.unit.frigate"));
+            assertEquals(path, seaLegPath(map, galleon, start, end, null));
+            dutch.setStance(french, Stance.WAR);
+            french.setStance(dutch, Stance.WAR);
+            assertFalse(path.equals(seaLegPath(map, galleon, start, end,
+                                               null)));
+            frigate.setLocation(map.getTile(18, 13));
+            assertEquals(path, seaLegPath(map, galleon, start, end, null));
+        } finally {
+            Map.setPathCaching(caching);
+        }
+    }
+
+    private static String seaLegPath(Map map, Unit unit, Tile start,
+                                     Tile end, Unit carrier) {
+        PathNode path = map.findPath(unit, start, end, carrier, null, null);
+        boolean legs = Map.setSeaLegCaching(false);
+        try {
+            PathNode expected = map.findPath(unit, start, end, carrier,
+                                             null, null);
+            String s = (path == null) ? "null" : path.fullPathToString();
+            assertEquals((expected == null) ? "null"
+                : expected.fullPathToString(), s);
+            return s;
+        } finally {
+            Map.setSeaLegCaching(legs);
+        }
+    }
+
+    private static int searchTurns(Map map, Unit unit, Tile end) {
+        boolean repairing = Map.setPathRepairing(false);
+        boolean caching = Map.setPathCaching(false);
+        try {
+            return map.findPath(unit, unit.getTile(), end, null, null, null)
+                .getTotalTurns();
+        } finally {
+            Map.setPathCaching(caching);
+            Map.setPathRepairing(repairing);
+        }
+    }
+
+    private static long getPathCacheStatistic(Map map, String key) {
+        return Long.parseLong(map.getPathCacheStatistics().get(key));
+    }
+
+    public void testDistanceField() {
+        Game game = getStandardGame();
+        MapBuilder builder = new MapBuilder(game);
+        builder.setBaseTileType(plainsType).setExploredByAll(true);
+        for (int y = 0; y < 10; y++) builder.setTile(10, y, oceanType);
+        Map map = builder.build();
+        game.setMap(map);
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        Tile target = map.getTile(5, 5);
+        Unit colonist = new ServerUnit(game, map.getTile(1, 1), dutch,
+                                       colonistType);
+
+        // Plains cost all the moves of a colonist, so the field agrees
+        // with the real paths.
+        DistanceField field = map.getDistanceField(colonist, target);
+        assertSame(field, map.getDistanceField(colonist, target));
+        for (Tile tile : map.getAllTiles()) {
+            if (!tile.isLand()) {
+                assertFalse(field.isReachable(tile));
+                assertEquals(Unit.MANY_TURNS, field.getTurns(tile));
+                continue;
+            }
+            PathNode path = map.findPath(colonist, tile, target, null, null,
+                                         null);
+            assertNotNull("Path from " + tile, path);
+            assertEquals("Turns from " + tile, path.getTotalTurns(),
+                         field.getTurns(tile, colonist.getInitialMovesLeft()));
+        }
+        assertEquals(0, field.getTurns(target));
+        assertEquals(1, field.getTurns(target, 0));
+
+        // Changing the map rebuilds the field.
+        Tile tile = map.getTile(15, 5);
+        int turns = field.getTurns(tile);
+        map.getTile(12, 5).changeType(oceanType);
+        map.getTile(13, 5).changeType(oceanType);
+        DistanceField changed = map.getDistanceField(colonist, target);
+        assertNotSame(field, changed);
+        assertTrue(changed.getTurns(tile) >= turns);
+
+        // The nearest of several targets.
+        java.util.List<Tile> targets = new ArrayList<>();
+        targets.add(target);
+        targets.add(tile);
+        assertEquals(0, map.getDistanceField(colonist, targets)
+            .getTurns(tile));
+    }
+
+    public void testSearchAll() {
+        Game game = getStandardGame();
+        MapBuilder builder = new MapBuilder(game);
+        builder.setBaseTileType(oceanType).setExploredByAll(true);
+        Random random = new Random(4);
+        for (int x = 1; x < 15; x++) {
+            for (int y = 1; y < 14; y++) {
+                int r = random.nextInt(10);
+                if (r < 5) builder.setTile(x, y, plainsType);
+                else if (r < 7) builder.setTile(x, y, hillsType);
+            }
+        }
+        Map map = builder.build();
+        game.setMap(map);
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        List<Tile> land = new ArrayList<>();
+        for (Tile t : map.getAllTiles()) {
+            if (t.isLand()) land.add(t);
+        }
+        FreeColTestUtils.getColonyBuilder().player(dutch)
+            .colonyTile(land.get(land.size() / 2)).build();
+        Unit colonist = new ServerUnit(game, land.get(0), dutch,
+                                       colonistType);
+
+        List<Map.SearchRequest> requests = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < land.size(); i += 3) {
+            Tile start = land.get(i);
+            Location target = land.get((i * 7) % land.size());
+            for (int turns : new int[] { 1, FreeColObject.INFINITY }) {
+                expected.add(pathString(map.search(colonist, start,
+                        GoalDeciders.getLocationGoalDecider(target),
+                        null, turns, null, null)));
+                requests.add(new Map.SearchRequest(colonist, start,
+                        GoalDeciders.getLocationGoalDecider(target),
+                        null, turns, null));
+            }
+            expected.add(pathString(map.search(colonist, start,
+                    GoalDeciders.getOurClosestSettlementGoalDecider(),
+                    CostDeciders.avoidSettlements(), 5, null, null)));
+            requests.add(new Map.SearchRequest(colonist, start,
+                    GoalDeciders.getOurClosestSettlementGoalDecider(),
+                    CostDeciders.avoidSettlements(), 5, null));
+        }
+        List<PathNode> paths = map.searchAll(requests);
+        assertEquals(expected.size(), paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            assertEquals("Request " + i, expected.get(i),
+                         pathString(paths.get(i)));
+        }
+
+        // Deciders can not be shared.
+        GoalDecider gd = GoalDeciders.getOurClosestSettlementGoalDecider();
+        requests.clear();
+        requests.add(new Map.SearchRequest(colonist, land.get(0), gd,
+                                           null, 5, null));
+        requests.add(new Map.SearchRequest(colonist, land.get(1), gd,
+                                           null, 5, null));
+        try {
+            map.searchAll(requests);
+            fail("Shared goal decider");
+        } catch (IllegalArgumentException iae) {}
+    }
 }
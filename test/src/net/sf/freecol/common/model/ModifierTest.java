@@ -346,4 +346,109 @@ public class ModifierTest extends FreeColTestCase {
         assertEquals(Modifier.UNKNOWN,
             featureContainer.applyModifiers(1, new Turn(15), "test", null));
     }
+
+    public void testModifierCache() {
+        Modifier modifier1 = new Modifier("test", 3,
+                                          ModifierType.ADDITIVE);
+        Modifier modifier2 = new Modifier("test", 1.5f,
+                                          ModifierType.MULTIPLICATIVE);
+        Modifier modifier3 = new Modifier("test", 30,
+                                          ModifierType.PERCENTAGE);
+        Scope scope = new Scope();
+        scope.setType("model.unit.frigate");
+        modifier1.addScope(scope);
+
+        FeatureContainer featureContainer = new FeatureContainer();
+        featureContainer.addModifier(modifier1);
+        featureContainer.addModifier(modifier2);
+        assertEquals((1 + 3) * 1.5f,
+            featureContainer.applyModifiers(1, null, "test", frigate));
+        assertEquals(1.5f,
+            featureContainer.applyModifiers(1, null, "test", carpenter));
+        List<Modifier> sorted
+            = featureContainer.getSortedModifiers("test", frigate, null);
+        assertEquals(2, sorted.size());
+        assertEquals(modifier1, sorted.get(0));
+        assertTrue(sorted == featureContainer.getSortedModifiers("test",
+                frigate, null));
+
+        // Adding and removing invalidates the cached results
+        featureContainer.addModifier(modifier3);
+        assertEquals(3, featureContainer.getModifiers("test", frigate,
+                null).size());
+        assertEquals(1.5f + (1.5f * 30) / 100,
+            featureContainer.applyModifiers(1, null, "test", carpenter));
+        featureContainer.removeModifier(modifier2);
+        assertEquals(1.3f,
+            featureContainer.applyModifiers(1, null, "test", carpenter));
+
+        // Changes to contained modifiers invalidate the cached results
+        modifier3.setLastTurn(new Turn(10));
+        assertEquals(1.3f, featureContainer.applyModifiers(1, new Turn(10),
+                "test", carpenter));
+        assertEquals(1f, featureContainer.applyModifiers(1, new Turn(11),
+                "test", carpenter));
+        assertEquals(1.3f, featureContainer.applyModifiers(1, new Turn(9),
+                "test", carpenter));
+
+        // Values are not cached
+        modifier1.setValue(5);
+        assertEquals(6f + (6f * 30) / 100,
+            featureContainer.applyModifiers(1, null, "test", frigate));
+    }
+
+    public void testAbilityState() {
+        Ability ability1 = new Ability("test1", true);
+        Ability ability2 = new Ability("test2", false);
+        Ability ability3 = new Ability("test3", true);
+        Scope scope = new Scope();
+        scope.setType("model.unit.frigate");
+        ability3.addScope(scope);
+
+        FeatureContainer featureContainer = new FeatureContainer();
+        assertEquals(FeatureContainer.ABILITY_ABSENT,
+            featureContainer.getAbilityState("test1"));
+        featureContainer.addAbility(ability1);
+        featureContainer.addAbility(ability2);
+        featureContainer.addAbility(ability3);
+        assertEquals(FeatureContainer.ABILITY_TRUE,
+            featureContainer.getAbilityState("test1"));
+        assertEquals(FeatureContainer.ABILITY_FALSE,
+            featureContainer.getAbilityState("test2"));
+        assertEquals(FeatureContainer.ABILITY_UNKNOWN,
+            featureContainer.getAbilityState("test3"));
+        assertEquals(FeatureContainer.ABILITY_ABSENT,
+            featureContainer.getAbilityState("test4"));
+        assertTrue(featureContainer.hasAbility("test1", null, null));
+        assertFalse(featureContainer.hasAbility("test2", null, null));
+        assertTrue(featureContainer.hasAbility("test3", frigate, null));
+        assertFalse(featureContainer.hasAbility("test3", carpenter, null));
+
+        // Changes to the container or its abilities update the state
+        featureContainer.addAbility(new Ability("test1", false));
+        assertEquals(FeatureContainer.ABILITY_FALSE,
+            featureContainer.getAbilityState("test1"));
+        ability2.setValue(true);
+        assertEquals(FeatureContainer.ABILITY_TRUE,
+            featureContainer.getAbilityState("test2"));
+        ability3.setScopes(null);
+        assertEquals(FeatureContainer.ABILITY_TRUE,
+            featureContainer.getAbilityState("test3"));
+        featureContainer.removeAbilities("test1");
+        assertEquals(FeatureContainer.ABILITY_ABSENT,
+            featureContainer.getAbilityState("test1"));
+
+        // The quick check agrees with the full evaluation for all types
+        Set<String> ids = new HashSet<>();
+        for (UnitType unitType : spec().getUnitTypeList()) {
+            for (Ability a : unitType.getAbilities()) ids.add(a.getId());
+        }
+        for (UnitType unitType : spec().getUnitTypeList()) {
+            for (String id : ids) {
+                assertEquals(unitType + "/" + id,
+                    FeatureContainer.hasAbility(unitType.getAbilities(id)),
+                    unitType.hasAbility(id));
+            }
+        }
+    }
 }
@@ -19,6 +19,9 @@
 
 package net.sf.freecol.common.model;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import net.sf.freecol.server.model.ServerUnit;
 import net.sf.freecol.util.test.FreeColTestCase;
 
@@ -206,6 +209,59 @@ public class MovementTest extends FreeColTestCase {
                      colonist.getMoveCost(tile2));
     }
 
+    public void testMoveCostTable() throws Exception {
+        Game game = getStandardGame();
+        Map map = getTestMap(plains);
+        game.setMap(map);
+
+        // Mix the land tile types, roads and rivers.
+        List<TileType> types = new ArrayList<>();
+        for (TileType tt : spec().getTileTypeList()) {
+            if (!tt.isWater()) types.add(tt);
+        }
+        int i = 0;
+        for (Tile tile : map.getAllTiles()) {
+            tile.setType(types.get(i % types.size()));
+            if (i % 3 == 0) tile.addRiver(1 + i % 2, "1010");
+            if (i % 4 == 0) {
+                TileImprovement road = tile.addRoad();
+                road.setTurnsToComplete(0);
+            }
+            i++;
+        }
+        for (Tile tile : map.getAllTiles()) {
+            TileImprovement road = tile.getRoad();
+            if (road != null) road.updateRoadConnections(true);
+        }
+
+        // The table agrees with the improvements for all neighbours.
+        for (Tile tile : map.getAllTiles()) {
+            for (Tile from : tile.getSurroundingTiles(1)) {
+                TileItemContainer tic = tile.getTileItemContainer();
+                int cost = tile.getType().getBasicMoveCost();
+                if (tic != null) cost = tic.getMoveCost(from, tile, cost);
+                assertEquals(cost, tile.getLandMoveCost(from));
+            }
+        }
+
+        // Changing a road changes the cost.
+        Tile tile1 = map.getTile(5, 8);
+        Tile tile2 = tile1.getNeighbourOrNull(Direction.E);
+        TileImprovement road1 = tile1.getRoad();
+        if (road1 == null) road1 = tile1.addRoad();
+        road1.setTurnsToComplete(0);
+        road1.updateRoadConnections(true);
+        TileImprovement road2 = tile2.getRoad();
+        if (road2 == null) road2 = tile2.addRoad();
+        road2.setTurnsToComplete(0);
+        road2.updateRoadConnections(true);
+        assertEquals(1, tile2.getLandMoveCost(tile1));
+        road2.setTurnsToComplete(1);
+        assertEquals(tile2.getTileItemContainer().getMoveCost(tile1, tile2,
+                tile2.getType().getBasicMoveCost()),
+            tile2.getLandMoveCost(tile1));
+    }
+
     public void testScoutColony() {
         Game game = getGame();
         Map map = getTestMap(true);
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.io.FreeColModFile;
 import net.sf.freecol.common.io.FreeColTcFile;
 import net.sf.freecol.common.model.Modifier;
@@ -96,6 +97,26 @@ public final class SpecificationTest extends FreeColTestCase {
         assertNotNull(spec);
     }
 
+    /**
+     * Make sure a preloaded specification is used once, and is
+     * prepared like a directly loaded one.
+     */
+    public void testPreload() throws Exception {
+        FreeColTcFile tcf = new FreeColTcFile("freecol");
+        FreeCol.preloadSpecification(tcf);
+        Specification first = FreeCol.loadSpecification(tcf, null,
+            "model.difficulty.medium");
+        Specification second = FreeCol.loadSpecification(tcf, null,
+            "model.difficulty.medium");
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertEquals(second.getUnitTypeList().size(),
+                     first.getUnitTypeList().size());
+        assertEquals(second.getInteger(GameOptions.STARTING_MONEY),
+                     first.getInteger(GameOptions.STARTING_MONEY));
+    }
+
     /**
      * Test for some typical abilities.
      */
@@ -747,6 +747,41 @@ public class TileTest extends FreeColTestCase {
         // work locations from contributing their units.
     }
 
+    public void testStructuralCopy() {
+        Game game = getStandardGame();
+        game.setMap(getTestMap(plains));
+        Colony colony = getStandardColony(3);
+        Tile tile = colony.getTile();
+        Tile workTile = tile.getNeighbourOrNull(Direction.N);
+        tile.addResource(new Resource(game, tile, grainResource));
+        workTile.addRoad();
+
+        Tile copy = copyChecked(tile, Tile.class);
+        Colony copyColony = copy.getColony();
+        assertFalse(colony == copyColony);
+        assertTrue(copyColony.getTile() == copy);
+        assertTrue(copy.getOwningSettlement() == copyColony);
+        assertTrue(copy.getTileItemContainer().getTile() == copy);
+        assertTrue(copy.getResource().getTile() == copy);
+        for (Unit u : copyColony.getUnitList()) {
+            assertTrue(u.getColony() == copyColony);
+        }
+        for (ColonyTile ct : copyColony.getColonyTiles()) {
+            assertTrue(ct.getColony() == copyColony);
+            if (ct.isColonyCenterTile()) {
+                assertTrue(ct.getWorkTile() == copy);
+            } else {
+                // Tiles outside the copy are not copied.
+                assertTrue(ct.getWorkTile()
+                    == colony.getColonyTile(ct.getWorkTile()).getWorkTile());
+            }
+        }
+
+        Tile copyWork = copyChecked(workTile, Tile.class);
+        assertTrue(copyWork.getRoad().getTile() == copyWork);
+        assertTrue(copyWork.getOwningSettlement() == colony);
+    }
+
     public void testGetBestDisembarkTile() {
         Game game = getStandardGame();
         Map map = getCoastTestMap(plains, true);
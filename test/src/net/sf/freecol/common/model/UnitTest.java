@@ -588,6 +588,29 @@ public class UnitTest extends FreeColTestCase {
             other.getUnitList().get(0).getId());
     }
 
+    public void testStructuralCopy() {
+        Game game = getStandardGame();
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        Map map = getTestMap(plains, true);
+        game.setMap(map);
+
+        Tile tile = map.getTile(6, 8);
+        Unit merchantman = new ServerUnit(game, tile, dutch, merchantmanType);
+        Unit soldier = new ServerUnit(game, merchantman, dutch,
+                                      veteranSoldierType);
+        merchantman.add(new Goods(game, merchantman, cottonType, 44));
+        merchantman.setDestination(map.getTile(9, 9));
+
+        Unit copy = copyChecked(merchantman, Unit.class);
+        assertTrue(copy.getLocation() == merchantman.getLocation());
+        assertEquals(merchantman.getDestination(), copy.getDestination());
+        assertEquals(44, copy.getGoodsCount(cottonType));
+        Unit copySoldier = copy.getUnitList().get(0);
+        assertFalse(soldier == copySoldier);
+        assertTrue(copySoldier.getLocation() == copy);
+        assertTrue(soldier.getLocation() == merchantman);
+    }
+
     public void testElement() {
         Game game = getStandardGame();
         Player dutch = game.getPlayerByNationId("model.nation.dutch");
@@ -22,8 +22,11 @@ package net.sf.freecol.common.utils;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import net.sf.freecol.common.util.CollectionUtils;
+import net.sf.freecol.common.util.LogBuilder;
 
 import net.sf.freecol.util.test.FreeColTestCase;
 
@@ -81,4 +84,33 @@ public class UtilsTest extends FreeColTestCase {
         Collections.sort(o, CollectionUtils.descendingListLengthComparator);
         assertEquals(o.get(0), o3);
     }
+
+    public void testLogBuilder() {
+        LogBuilder lb = new LogBuilder(64);
+        assertTrue(lb.isEnabled());
+        lb.add("a");
+        lb.add("b", 1);
+        lb.add("c", 2, null);
+        lb.add("d", 3, 'x', 4.5);
+        lb.add("e", 5, 6, 7, 8);
+        lb.add(new Object[] { "f", 9 });
+        lb.addLazy(() -> "g");
+        assertEquals("ab1c2nulld3x4.5e5678f9g", lb.toString());
+
+        Logger logger = Logger.getLogger("UtilsTest.testLogBuilder");
+        logger.setLevel(Level.INFO);
+        LogBuilder off = new LogBuilder(logger, Level.FINE, 64);
+        assertFalse(off.isEnabled());
+        off.add("a", 1);
+        off.addLazy(() -> { fail("Supplier called"); return null; });
+        off.mark();
+        assertFalse(off.grew("x"));
+        assertEquals(0, off.size());
+        assertEquals("", off.toString());
+
+        LogBuilder on = new LogBuilder(logger, Level.WARNING, 64);
+        assertTrue(on.isEnabled());
+        on.addLazy(() -> "h");
+        assertEquals("h", on.toString());
+    }
 }
@@ -19,14 +19,38 @@
 
 package net.sf.freecol.server;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.RecordingXMLStreamWriter;
+import net.sf.freecol.common.io.SavegameIndex;
+import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.IndianSettlement;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.networking.RenameMessage;
 import net.sf.freecol.common.option.FileOption;
 import net.sf.freecol.common.option.MapGeneratorOptions;
+import net.sf.freecol.server.control.ActionJournal;
 import net.sf.freecol.server.control.Controller;
 import net.sf.freecol.server.control.PreGameController;
+import net.sf.freecol.server.model.ServerPlayer;
+import net.sf.freecol.server.model.ServerUnit;
 import net.sf.freecol.util.test.FreeColTestCase;
 
 
@@ -91,4 +115,320 @@ public class SaveLoadTest extends FreeColTestCase {
         file.delete();
         assertFalse(file.exists());
     }
+
+    public void testBackgroundSave() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        File copy = new File(file.getPath() + ".copy");
+        File previous = new File(file.getPath() + ".previous");
+        try {
+            FreeColServer server = ServerTestHelper.startServer(file,
+                false, true);
+            assertEquals(copy, server.saveGameInBackground(copy, previous,
+                    null).get());
+            assertTrue(copy.exists());
+            assertFalse(previous.exists());
+            server.saveGameInBackground(copy, previous, null);
+            server.finishSaves();
+            assertTrue(copy.exists());
+            assertTrue(previous.exists());
+            assertFalse(new File(copy.getPath() + ".tmp").exists());
+            ServerTestHelper.stopServer();
+
+            server = ServerTestHelper.startServer(copy, false, true);
+            assertNotNull(server.getGame().getMap());
+        } finally {
+            copy.delete();
+            previous.delete();
+            file.delete();
+        }
+    }
+
+    public void testJournalReplay() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        File journalFile = ActionJournal.getJournalFile(file);
+        FreeCol.setJournal(true);
+        try {
+            FreeColServer server = ServerTestHelper.startServer(file,
+                false, true);
+            assertNull(server.getJournal());
+            ServerPlayer player = null;
+            for (Player p : server.getGame().getLiveEuropeanPlayers(null)) {
+                if (!p.getUnits().isEmpty()) {
+                    player = (ServerPlayer)p;
+                    break;
+                }
+            }
+            assertNotNull(player);
+            server.getGame().setCurrentPlayer(player);
+            server.saveGame(file, null);
+            assertNotNull(server.getJournal());
+            assertTrue(journalFile.exists());
+
+            Unit unit = player.getUnits().get(0);
+            Unit other = player.getUnits().get(player.getUnits().size() - 1);
+            server.getInGameInputHandler().handle(player.getConnection(),
+                new RenameMessage(unit, "journaled").toXMLElement());
+            server.getInGameInputHandler().handle(player.getConnection(),
+                new RenameMessage(other, "replayed").toXMLElement());
+            assertEquals("journaled", unit.getName());
+            assertEquals("replayed", other.getName());
+
+            // Simulate a crash, which leaves the journal behind.
+            byte[] journal = Files.readAllBytes(journalFile.toPath());
+            ServerTestHelper.stopServer();
+            assertFalse(journalFile.exists());
+            Files.write(journalFile.toPath(), journal);
+
+            server = ServerTestHelper.startServer(file, false, true);
+            assertEquals("journaled", server.getGame()
+                .getFreeColGameObject(unit.getId(), Unit.class).getName());
+            assertEquals("replayed", server.getGame()
+                .getFreeColGameObject(other.getId(), Unit.class).getName());
+            assertNull(server.getGame().getCurrentPlayer());
+            assertNotNull(server.getJournal());
+            ServerTestHelper.stopServer();
+            assertFalse(journalFile.exists());
+        } finally {
+            FreeCol.setJournal(false);
+            journalFile.delete();
+            file.delete();
+        }
+    }
+
+    public void testJournalFailedSave() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        File journalFile = ActionJournal.getJournalFile(file);
+        File bad = new File(file.getPath() + ".missing", "bad.fsg");
+        FreeCol.setJournal(true);
+        try {
+            FreeColServer server = ServerTestHelper.startServer(file,
+                false, true);
+            ServerPlayer player = null;
+            for (Player p : server.getGame().getLiveEuropeanPlayers(null)) {
+                if (!p.getUnits().isEmpty()) {
+                    player = (ServerPlayer)p;
+                    break;
+                }
+            }
+            assertNotNull(player);
+            server.getGame().setCurrentPlayer(player);
+            server.saveGame(file, null);
+            assertEquals(journalFile, server.getJournal().getFile());
+
+            // The journal of the last good save carries on through a
+            // failed save, including the actions while it was written.
+            Unit unit = player.getUnits().get(0);
+            Future<File> future = server.saveGameInBackground(bad, null,
+                                                              null);
+            server.getInGameInputHandler().handle(player.getConnection(),
+                new RenameMessage(unit, "journaled").toXMLElement());
+            try {
+                future.get();
+                fail("Saved to a missing directory");
+            } catch (ExecutionException ee) {
+                // Expected
+            }
+            assertEquals(journalFile, server.getJournal().getFile());
+            assertFalse(ActionJournal.getJournalFile(bad).exists());
+
+            byte[] journal = Files.readAllBytes(journalFile.toPath());
+            ServerTestHelper.stopServer();
+            Files.write(journalFile.toPath(), journal);
+            server = ServerTestHelper.startServer(file, false, true);
+            assertEquals("journaled", server.getGame()
+                .getFreeColGameObject(unit.getId(), Unit.class).getName());
+            ServerTestHelper.stopServer();
+        } finally {
+            FreeCol.setJournal(false);
+            journalFile.delete();
+            file.delete();
+        }
+    }
+
+    public void testSnapshotSave() throws Exception {
+        Game game = getStandardGame();
+        game.setMap(getTestMap(true));
+        Colony colony = getStandardColony(3);
+        IndianSettlement settlement = new IndianSettlementBuilder(game)
+            .settlementTile(game.getMap().getTile(8, 3)).build();
+        Player dutch = game.getPlayerByNationId("model.nation.dutch");
+        Tile tile = game.getMap().getTile(2, 2);
+        Unit unit = new ServerUnit(game, tile, dutch, spec()
+            .getUnitType("model.unit.hardyPioneer"));
+        assertTrue(dutch.canSee(tile)); // Settle the visibility
+        tile.setCachedTile(dutch, tile.getTileToCache());
+        assertNotNull(colony);
+        assertNotNull(settlement);
+
+        StringWriter direct = new StringWriter();
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(direct,
+                FreeColXMLWriter.WriteScope.toSave());
+        ) {
+            game.toXML(xw);
+        }
+        RecordingXMLStreamWriter recording = new RecordingXMLStreamWriter();
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(recording,
+                FreeColXMLWriter.WriteScope.toSave());
+        ) {
+            game.toXML(xw);
+        }
+
+        // Changes after the snapshot do not reach the replay.
+        final String name = unit.getName();
+        unit.setName("renamed");
+        colony.getUnitList().get(0).setName("renamed");
+        StringWriter replayed = new StringWriter();
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(replayed,
+                FreeColXMLWriter.WriteScope.toSave());
+        ) {
+            recording.replay(xw);
+        }
+        assertEquals(direct.toString(), replayed.toString());
+        assertFalse(replayed.toString().contains("renamed"));
+        unit.setName(name);
+    }
+
+    private static byte[] readSavegameXML(File file) throws IOException {
+        try (
+            InputStream is = new FreeColSavegameFile(file)
+                .getSavegameInputStream();
+        ) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) > 0) bos.write(buf, 0, n);
+            return bos.toByteArray();
+        }
+    }
+
+    private static int countUnits(FreeColServer server) {
+        int n = 0;
+        for (Player p : server.getGame().getPlayers()) n += p.getUnits().size();
+        return n;
+    }
+
+    public void testBinarySavegame() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        File binary = new File(file.getPath() + ".binary");
+        File xml = new File(file.getPath() + ".xml");
+        File back = new File(file.getPath() + ".back");
+        File saved = new File(file.getPath() + ".saved");
+        try {
+            FreeColSavegameFile original = new FreeColSavegameFile(file);
+            assertFalse(original.isBinary());
+            FreeColSavegameFile.convert(original, binary, true);
+            FreeColSavegameFile fsg = new FreeColSavegameFile(binary);
+            assertTrue(fsg.isBinary());
+            assertEquals(original.getSavegameVersion(),
+                         fsg.getSavegameVersion());
+
+            // Converting through the binary format loses nothing.
+            FreeColSavegameFile.convert(original, xml, false);
+            FreeColSavegameFile.convert(fsg, back, false);
+            assertFalse(new FreeColSavegameFile(back).isBinary());
+            assertTrue(Arrays.equals(readSavegameXML(xml),
+                                     readSavegameXML(back)));
+
+            FreeColServer server = ServerTestHelper.startServer(file,
+                false, true);
+            final int units = countUnits(server);
+            final int tiles = server.getGame().getMap().getWidth()
+                * server.getGame().getMap().getHeight();
+            ServerTestHelper.stopServer();
+
+            server = ServerTestHelper.startServer(binary, false, true);
+            assertNotNull(server.getAIMain());
+            assertEquals(units, countUnits(server));
+            assertEquals(tiles, server.getGame().getMap().getWidth()
+                * server.getGame().getMap().getHeight());
+
+            // The server can write binary saves directly.
+            FreeCol.setBinarySaves(true);
+            server.saveGame(saved, null);
+            ServerTestHelper.stopServer();
+            assertTrue(new FreeColSavegameFile(saved).isBinary());
+            server = ServerTestHelper.startServer(saved, false, true);
+            assertEquals(units, countUnits(server));
+        } finally {
+            FreeCol.setBinarySaves(false);
+            binary.delete();
+            xml.delete();
+            back.delete();
+            saved.delete();
+            file.delete();
+        }
+    }
+
+    public void testSavegameIndex() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        File dir = Files.createTempDirectory("index").toFile();
+        File saved = new File(dir, "indexed.fsg");
+        File indexFile = new File(dir, SavegameIndex.INDEX_FILE);
+        File thumbnails = new File(dir, SavegameIndex.THUMBNAIL_DIRECTORY);
+        try {
+            FreeColServer server = ServerTestHelper.startServer(file,
+                false, true);
+            server.saveGame(saved, null);
+            final int turn = server.getGame().getTurn().getNumber();
+            final int width = server.getGame().getMap().getWidth();
+            ServerTestHelper.stopServer();
+
+            // A missing index is built on demand.
+            SavegameIndex index = SavegameIndex.getIndex(dir);
+            SavegameIndex.Entry entry = index.getEntry(saved);
+            assertNotNull(entry);
+            assertEquals(turn, entry.getTurn());
+            assertEquals(width, entry.getWidth());
+            assertNotNull(entry.getPlayers());
+            assertNull(entry.getThumbnail());
+            assertNull(index.getEntry(indexFile));
+            index.save();
+            assertTrue(indexFile.exists());
+            assertSame(index, SavegameIndex.getIndex(dir));
+
+            // An index file replaced from outside is reloaded, and
+            // its entries used while the saved game is unchanged.
+            assertTrue(indexFile.setLastModified(indexFile.lastModified()
+                    - 10000));
+            assertNotSame(index, SavegameIndex.getIndex(dir));
+            index = SavegameIndex.getIndex(dir);
+            assertEquals(1, index.getEntries().size());
+            Properties properties = new Properties();
+            properties.setProperty(SavegameIndex.TURN_PROPERTY, "42");
+            index.update(saved, properties, new BufferedImage(400, 200,
+                    BufferedImage.TYPE_INT_ARGB));
+            index.save();
+            assertTrue(indexFile.setLastModified(indexFile.lastModified()
+                    - 10000));
+            entry = SavegameIndex.getIndex(dir).getEntry(saved);
+            assertEquals(42, entry.getTurn());
+            assertEquals(SavegameIndex.THUMBNAIL_SIZE,
+                         entry.getThumbnail().getWidth());
+            assertEquals(SavegameIndex.THUMBNAIL_SIZE / 2,
+                         entry.getThumbnail().getHeight());
+            assertEquals(1, thumbnails.list().length);
+
+            // Changed files are read again, and removed ones dropped
+            // along with their thumbnails.
+            assertTrue(saved.setLastModified(saved.lastModified() - 10000));
+            index = SavegameIndex.getIndex(dir);
+            assertEquals(turn, index.getEntry(saved).getTurn());
+            index.update(saved, properties, new BufferedImage(400, 200,
+                    BufferedImage.TYPE_INT_ARGB));
+            saved.delete();
+            assertTrue(index.getEntries().isEmpty());
+            assertEquals(0, thumbnails.list().length);
+        } finally {
+            saved.delete();
+            indexFile.delete();
+            File[] files = thumbnails.listFiles();
+            if (files != null) for (File f : files) f.delete();
+            thumbnails.delete();
+            dir.delete();
+            file.delete();
+        }
+    }
 }
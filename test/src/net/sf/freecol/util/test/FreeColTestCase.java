@@ -19,6 +19,7 @@
 
 package net.sf.freecol.util.test;
 
+import java.io.StringReader;
 import java.lang.reflect.Field;
 
 import java.util.ArrayList;
@@ -29,6 +30,7 @@ import java.util.Locale;
 import junit.framework.TestCase;
 import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.i18n.Messages;
+import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColTcFile;
 import net.sf.freecol.common.model.AbstractGoods;
 import net.sf.freecol.common.model.Colony;
@@ -327,6 +329,32 @@ public class FreeColTestCase extends TestCase {
         return ret;
     }
 
+    /**
+     * Copy a game object, checking that the copy is equivalent to one
+     * made with a serialization round trip.
+     *
+     * @param fcgo The <code>FreeColGameObject</code> to copy.
+     * @param returnClass The class of the copy.
+     * @return The copy.
+     */
+    public static <T extends FreeColGameObject> T copyChecked(T fcgo,
+        Class<T> returnClass) {
+        final Game game = fcgo.getGame();
+        T copy = fcgo.copy(game, returnClass);
+        assertNotNull(copy);
+        assertFalse(fcgo == copy);
+        assertEquals(returnClass, copy.getClass());
+        assertEquals(fcgo, game.getFreeColGameObject(fcgo.getId()));
+        try (FreeColXMLReader xr
+            = new FreeColXMLReader(new StringReader(fcgo.serialize()))) {
+            T xmlCopy = xr.copy(game, returnClass);
+            assertEquals(xmlCopy.serialize(), copy.serialize());
+        } catch (Exception e) {
+            fail("Serialized copy of " + fcgo.getId() + " failed: " + e);
+        }
+        return copy;
+    }
+
     /**
      * Useful utility to make sure a work location is empty before doing
      * some test that implicates it.